@@ -0,0 +1,568 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.collision;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyVector3;
+
+/**
+ * Static bounding volume hierarchy of axis aligned bounding boxes, built once
+ * when a level is loaded and used to answer the swept box queries of the
+ * player. The nodes are stored into flat arrays (depth first order, the left
+ * child immediately follows its parent) to keep the memory footprint per box
+ * low even with tens of thousands of boxes.
+ *
+ * The queries use a preallocated traversal stack, they don't allocate anything
+ * but this tree mustn't be used by several threads at the same time.
+ *
+ * @author Julien Gouesse
+ *
+ */
+public final class BoundingBoxTree {
+
+    /** maximum count of boxes in a leaf */
+    private static final int MAX_LEAF_SIZE = 4;
+    /** maximum count of sliding iterations when resolving a movement */
+    private static final int MAX_SLIDE_COUNT = 3;
+    /** distance kept between the moving box and the obstacles */
+    private static final double SKIN_WIDTH = 0.001;
+    /** bounds of the boxes (min x, min y, min z, max x, max y, max z) */
+    private final float[] boxBounds;
+    /** bounds of the nodes (min x, min y, min z, max x, max y, max z) */
+    private final float[] nodeBounds;
+    /**
+     * index of the right child for an inner node, index of the first box in
+     * {@link #boxIndices} for a leaf
+     */
+    private final int[] nodeOffsets;
+    /** count of boxes in a leaf, zero for an inner node */
+    private final int[] nodeBoxCounts;
+    /** indices of the boxes sorted by leaf */
+    private final int[] boxIndices;
+    /** count of nodes */
+    private final int nodeCount;
+    /** traversal stack */
+    private int[] stack;
+    /** index of the latest hit box, -1 if none */
+    private int latestHitBoxIndex;
+    /** normal of the face of the latest hit box */
+    private final Vector3 latestHitNormal;
+    /** entry fraction of the latest successful slab test */
+    private double latestEntry;
+    /** displacement used during the resolution of a movement */
+    private final Vector3 sweepDisplacement;
+
+    /**
+     * Constructor
+     *
+     * @param boundingBoxes
+     *            boxes stored into this tree
+     */
+    public BoundingBoxTree(final List<BoundingBox> boundingBoxes) {
+        this(computeBoxBounds(boundingBoxes));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param boxBounds
+     *            bounds of the boxes stored into this tree (min x, min y, min
+     *            z, max x, max y, max z), this array is used as is
+     */
+    public BoundingBoxTree(final float[] boxBounds) {
+        super();
+        if (boxBounds.length % 6 != 0)
+            throw new IllegalArgumentException("The length of the bounds must be a multiple of 6");
+        this.boxBounds = boxBounds;
+        final int boxCount = boxBounds.length / 6;
+        final float[] centers = new float[boxCount * 3];
+        for (int boxIndex = 0; boxIndex < boxCount; boxIndex++)
+            for (int coordIndex = 0; coordIndex < 3; coordIndex++)
+                centers[boxIndex * 3 + coordIndex] = (boxBounds[boxIndex * 6 + coordIndex]
+                        + boxBounds[boxIndex * 6 + coordIndex + 3]) * 0.5f;
+        boxIndices = new int[boxCount];
+        for (int boxIndex = 0; boxIndex < boxCount; boxIndex++)
+            boxIndices[boxIndex] = boxIndex;
+        // a binary tree whose leaves contain at least one box has less than
+        // twice as many nodes as boxes
+        final int maxNodeCount = Math.max(1, 2 * boxCount - 1);
+        final float[] localNodeBounds = new float[maxNodeCount * 6];
+        final int[] localNodeOffsets = new int[maxNodeCount];
+        final int[] localNodeBoxCounts = new int[maxNodeCount];
+        int depth = 0;
+        if (boxCount == 0) {
+            nodeCount = 0;
+        } else {
+            final int[] counters = new int[] { 0, 0 };
+            build(0, boxCount, 0, centers, localNodeBounds, localNodeOffsets, localNodeBoxCounts, counters);
+            nodeCount = counters[0];
+            depth = counters[1];
+        }
+        nodeBounds = Arrays.copyOf(localNodeBounds, nodeCount * 6);
+        nodeOffsets = Arrays.copyOf(localNodeOffsets, nodeCount);
+        nodeBoxCounts = Arrays.copyOf(localNodeBoxCounts, nodeCount);
+        stack = new int[depth + 2];
+        latestHitBoxIndex = -1;
+        latestHitNormal = new Vector3();
+        sweepDisplacement = new Vector3();
+    }
+
+    /**
+     * Constructor used to restore a tree that has already been built, the
+     * arrays are used as is
+     *
+     * @param boxBounds
+     *            bounds of the boxes
+     * @param nodeBounds
+     *            bounds of the nodes
+     * @param nodeOffsets
+     *            indices of the right children of the inner nodes and indices
+     *            of the first boxes of the leaves
+     * @param nodeBoxCounts
+     *            counts of boxes of the leaves
+     * @param boxIndices
+     *            indices of the boxes sorted by leaf
+     */
+    BoundingBoxTree(final float[] boxBounds, final float[] nodeBounds, final int[] nodeOffsets,
+            final int[] nodeBoxCounts, final int[] boxIndices) {
+        super();
+        final int boxCount = boxBounds.length / 6;
+        nodeCount = nodeOffsets.length;
+        if (boxBounds.length != boxCount * 6 || boxIndices.length != boxCount || nodeBounds.length != nodeCount * 6
+                || nodeBoxCounts.length != nodeCount)
+            throw new IllegalArgumentException("Inconsistent tree");
+        for (final int boxIndex : boxIndices)
+            if (boxIndex < 0 || boxIndex >= boxCount)
+                throw new IllegalArgumentException("Invalid box index " + boxIndex);
+        // checks the nodes and computes the depth, the children follow their
+        // parent
+        final int[] nodeDepths = new int[nodeCount];
+        int depth = 0;
+        for (int nodeIndex = 0; nodeIndex < nodeCount; nodeIndex++) {
+            final int offset = nodeOffsets[nodeIndex];
+            final int count = nodeBoxCounts[nodeIndex];
+            if (count == 0) {
+                if (offset <= nodeIndex + 1 || offset >= nodeCount)
+                    throw new IllegalArgumentException("Invalid inner node " + nodeIndex);
+                nodeDepths[nodeIndex + 1] = nodeDepths[nodeIndex] + 1;
+                nodeDepths[offset] = nodeDepths[nodeIndex] + 1;
+            } else if (count < 0 || offset < 0 || offset > boxCount - count)
+                throw new IllegalArgumentException("Invalid leaf " + nodeIndex);
+            depth = Math.max(depth, nodeDepths[nodeIndex]);
+        }
+        this.boxBounds = boxBounds;
+        this.nodeBounds = nodeBounds;
+        this.nodeOffsets = nodeOffsets;
+        this.nodeBoxCounts = nodeBoxCounts;
+        this.boxIndices = boxIndices;
+        stack = new int[depth + 2];
+        latestHitBoxIndex = -1;
+        latestHitNormal = new Vector3();
+        sweepDisplacement = new Vector3();
+    }
+
+    private static float[] computeBoxBounds(final List<BoundingBox> boundingBoxes) {
+        final int boxCount = boundingBoxes.size();
+        final float[] boxBounds = new float[boxCount * 6];
+        for (int boxIndex = 0; boxIndex < boxCount; boxIndex++) {
+            final BoundingBox boundingBox = boundingBoxes.get(boxIndex);
+            final ReadOnlyVector3 center = boundingBox.getCenter();
+            final int offset = boxIndex * 6;
+            boxBounds[offset] = (float) (center.getX() - boundingBox.getXExtent());
+            boxBounds[offset + 1] = (float) (center.getY() - boundingBox.getYExtent());
+            boxBounds[offset + 2] = (float) (center.getZ() - boundingBox.getZExtent());
+            boxBounds[offset + 3] = (float) (center.getX() + boundingBox.getXExtent());
+            boxBounds[offset + 4] = (float) (center.getY() + boundingBox.getYExtent());
+            boxBounds[offset + 5] = (float) (center.getZ() + boundingBox.getZExtent());
+        }
+        return (boxBounds);
+    }
+
+    /**
+     * Builds the subtree containing the boxes between two indices
+     *
+     * @param begin
+     *            first index (inclusive) in {@link #boxIndices}
+     * @param end
+     *            last index (exclusive) in {@link #boxIndices}
+     * @param depth
+     *            depth of the node
+     * @param centers
+     *            centers of the boxes
+     * @param counters
+     *            count of nodes and maximum depth
+     * @return the index of the created node
+     */
+    private int build(final int begin, final int end, final int depth, final float[] centers,
+            final float[] localNodeBounds, final int[] localNodeOffsets, final int[] localNodeBoxCounts,
+            final int[] counters) {
+        final int nodeIndex = counters[0]++;
+        counters[1] = Math.max(counters[1], depth);
+        // computes the bounds of the node and of the centers of its boxes
+        final int nodeOffset = nodeIndex * 6;
+        float minCenterX = Float.POSITIVE_INFINITY, minCenterY = Float.POSITIVE_INFINITY,
+                minCenterZ = Float.POSITIVE_INFINITY;
+        float maxCenterX = Float.NEGATIVE_INFINITY, maxCenterY = Float.NEGATIVE_INFINITY,
+                maxCenterZ = Float.NEGATIVE_INFINITY;
+        for (int coordIndex = 0; coordIndex < 3; coordIndex++) {
+            localNodeBounds[nodeOffset + coordIndex] = Float.POSITIVE_INFINITY;
+            localNodeBounds[nodeOffset + coordIndex + 3] = Float.NEGATIVE_INFINITY;
+        }
+        for (int index = begin; index < end; index++) {
+            final int boxIndex = boxIndices[index];
+            for (int coordIndex = 0; coordIndex < 3; coordIndex++) {
+                localNodeBounds[nodeOffset + coordIndex] = Math.min(localNodeBounds[nodeOffset + coordIndex],
+                        boxBounds[boxIndex * 6 + coordIndex]);
+                localNodeBounds[nodeOffset + coordIndex + 3] = Math.max(localNodeBounds[nodeOffset + coordIndex + 3],
+                        boxBounds[boxIndex * 6 + coordIndex + 3]);
+            }
+            minCenterX = Math.min(minCenterX, centers[boxIndex * 3]);
+            minCenterY = Math.min(minCenterY, centers[boxIndex * 3 + 1]);
+            minCenterZ = Math.min(minCenterZ, centers[boxIndex * 3 + 2]);
+            maxCenterX = Math.max(maxCenterX, centers[boxIndex * 3]);
+            maxCenterY = Math.max(maxCenterY, centers[boxIndex * 3 + 1]);
+            maxCenterZ = Math.max(maxCenterZ, centers[boxIndex * 3 + 2]);
+        }
+        final int count = end - begin;
+        if (count <= MAX_LEAF_SIZE) {
+            localNodeOffsets[nodeIndex] = begin;
+            localNodeBoxCounts[nodeIndex] = count;
+        } else {
+            // splits along the longest axis of the centers at the median
+            final float sizeX = maxCenterX - minCenterX;
+            final float sizeY = maxCenterY - minCenterY;
+            final float sizeZ = maxCenterZ - minCenterZ;
+            final int axis = sizeX >= sizeY && sizeX >= sizeZ ? 0 : sizeY >= sizeZ ? 1 : 2;
+            final int middle = (begin + end) >>> 1;
+            select(begin, end - 1, middle, axis, centers);
+            build(begin, middle, depth + 1, centers, localNodeBounds, localNodeOffsets, localNodeBoxCounts,
+                    counters);
+            localNodeOffsets[nodeIndex] = build(middle, end, depth + 1, centers, localNodeBounds, localNodeOffsets,
+                    localNodeBoxCounts, counters);
+            localNodeBoxCounts[nodeIndex] = 0;
+        }
+        return (nodeIndex);
+    }
+
+    /**
+     * Partially sorts the box indices so that the k-th one is at its final
+     * place, with smaller centers before it and bigger centers after it
+     * (quickselect)
+     */
+    private void select(int left, int right, final int k, final int axis, final float[] centers) {
+        while (right > left) {
+            final int middle = (left + right) >>> 1;
+            final float pivot = centers[boxIndices[middle] * 3 + axis];
+            int i = left, j = right;
+            while (i <= j) {
+                while (centers[boxIndices[i] * 3 + axis] < pivot)
+                    i++;
+                while (centers[boxIndices[j] * 3 + axis] > pivot)
+                    j--;
+                if (i <= j) {
+                    final int tmp = boxIndices[i];
+                    boxIndices[i] = boxIndices[j];
+                    boxIndices[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j)
+                right = j;
+            else if (k >= i)
+                left = i;
+            else
+                break;
+        }
+    }
+
+    /**
+     * Returns the count of boxes
+     *
+     * @return the count of boxes
+     */
+    public int getBoxCount() {
+        return (boxIndices.length);
+    }
+
+    /**
+     * Returns the count of nodes
+     *
+     * @return the count of nodes
+     */
+    public int getNodeCount() {
+        return (nodeCount);
+    }
+
+    /**
+     * Returns the size in bytes of the arrays used by this tree
+     *
+     * @return the size in bytes of the arrays
+     */
+    public long getSizeInBytes() {
+        return ((long) boxBounds.length * Float.BYTES + (long) nodeBounds.length * Float.BYTES
+                + (long) nodeOffsets.length * Integer.BYTES + (long) nodeBoxCounts.length * Integer.BYTES
+                + (long) boxIndices.length * Integer.BYTES + (long) stack.length * Integer.BYTES);
+    }
+
+    float[] getBoxBounds() {
+        return (boxBounds);
+    }
+
+    float[] getNodeBounds() {
+        return (nodeBounds);
+    }
+
+    int[] getNodeOffsets() {
+        return (nodeOffsets);
+    }
+
+    int[] getNodeBoxCounts() {
+        return (nodeBoxCounts);
+    }
+
+    int[] getBoxIndices() {
+        return (boxIndices);
+    }
+
+    /**
+     * Tells whether a box overlaps at least one box of this tree
+     *
+     * @param center
+     *            center of the box
+     * @param halfExtents
+     *            half extents of the box
+     * @return <code>true</code> if it overlaps at least one box
+     */
+    public boolean intersects(final ReadOnlyVector3 center, final ReadOnlyVector3 halfExtents) {
+        if (nodeCount == 0)
+            return (false);
+        final double minX = center.getX() - halfExtents.getX(), maxX = center.getX() + halfExtents.getX();
+        final double minY = center.getY() - halfExtents.getY(), maxY = center.getY() + halfExtents.getY();
+        final double minZ = center.getZ() - halfExtents.getZ(), maxZ = center.getZ() + halfExtents.getZ();
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        while (stackSize > 0) {
+            final int nodeIndex = stack[--stackSize];
+            if (overlaps(nodeBounds, nodeIndex * 6, minX, minY, minZ, maxX, maxY, maxZ)) {
+                final int boxCount = nodeBoxCounts[nodeIndex];
+                if (boxCount == 0) {
+                    stack[stackSize++] = nodeOffsets[nodeIndex];
+                    stack[stackSize++] = nodeIndex + 1;
+                } else {
+                    final int first = nodeOffsets[nodeIndex];
+                    for (int index = first; index < first + boxCount; index++)
+                        if (overlaps(boxBounds, boxIndices[index] * 6, minX, minY, minZ, maxX, maxY, maxZ))
+                            return (true);
+                }
+            }
+        }
+        return (false);
+    }
+
+    private static boolean overlaps(final float[] bounds, final int offset, final double minX, final double minY,
+            final double minZ, final double maxX, final double maxY, final double maxZ) {
+        return (minX < bounds[offset + 3] && bounds[offset] < maxX && minY < bounds[offset + 4]
+                && bounds[offset + 1] < maxY && minZ < bounds[offset + 5] && bounds[offset + 2] < maxZ);
+    }
+
+    /**
+     * Sweeps a box along a segment and computes the fraction of the segment
+     * travelled before the first contact. The boxes already overlapping the
+     * moving box at the start of the segment are ignored so that it can
+     * always escape from them
+     *
+     * @param center
+     *            center of the box at the start of the segment
+     * @param halfExtents
+     *            half extents of the box
+     * @param displacement
+     *            vector from the start to the end of the segment
+     * @return the fraction of the segment travelled before the first contact
+     *         (in [0;1]), 1 if there is no contact
+     */
+    public double sweep(final ReadOnlyVector3 center, final ReadOnlyVector3 halfExtents,
+            final ReadOnlyVector3 displacement) {
+        latestHitBoxIndex = -1;
+        if (nodeCount == 0)
+            return (1);
+        final double originX = center.getX(), originY = center.getY(), originZ = center.getZ();
+        final double halfX = halfExtents.getX(), halfY = halfExtents.getY(), halfZ = halfExtents.getZ();
+        final double dirX = displacement.getX(), dirY = displacement.getY(), dirZ = displacement.getZ();
+        double nearestHit = 1;
+        int nearestAxis = -1;
+        int stackSize = 0;
+        stack[stackSize++] = 0;
+        while (stackSize > 0) {
+            final int nodeIndex = stack[--stackSize];
+            if (slab(nodeBounds, nodeIndex * 6, originX, originY, originZ, halfX, halfY, halfZ, dirX, dirY, dirZ,
+                    nearestHit, true) >= 0) {
+                final int boxCount = nodeBoxCounts[nodeIndex];
+                if (boxCount == 0) {
+                    stack[stackSize++] = nodeOffsets[nodeIndex];
+                    stack[stackSize++] = nodeIndex + 1;
+                } else {
+                    final int first = nodeOffsets[nodeIndex];
+                    for (int index = first; index < first + boxCount; index++) {
+                        final int boxIndex = boxIndices[index];
+                        final int axis = slab(boxBounds, boxIndex * 6, originX, originY, originZ, halfX, halfY,
+                                halfZ, dirX, dirY, dirZ, nearestHit, false);
+                        if (axis >= 0) {
+                            nearestHit = latestEntry;
+                            nearestAxis = axis;
+                            latestHitBoxIndex = boxIndex;
+                        }
+                    }
+                }
+            }
+        }
+        if (nearestAxis >= 0) {
+            final double sign = (nearestAxis == 0 ? dirX : nearestAxis == 1 ? dirY : dirZ) > 0 ? -1 : 1;
+            latestHitNormal.set(nearestAxis == 0 ? sign : 0, nearestAxis == 1 ? sign : 0, nearestAxis == 2 ? sign : 0);
+        }
+        return (nearestHit);
+    }
+
+    /**
+     * Intersects a segment with a box expanded by the half extents of the
+     * moving box (Minkowski sum)
+     *
+     * @param node
+     *            <code>true</code> if the box is a node (the start may be
+     *            inside), <code>false</code> if it is a box of the level (the
+     *            start mustn't be inside)
+     * @return the axis of the entry face if the segment enters the box before
+     *         the supplied maximum fraction, -1 otherwise. The entry fraction
+     *         is stored into {@link #latestEntry}
+     */
+    private int slab(final float[] bounds, final int offset, final double originX, final double originY,
+            final double originZ, final double halfX, final double halfY, final double halfZ, final double dirX,
+            final double dirY, final double dirZ, final double maxFraction, final boolean node) {
+        double entry = Double.NEGATIVE_INFINITY, exit = Double.POSITIVE_INFINITY;
+        int entryAxis = -1;
+        for (int axis = 0; axis < 3; axis++) {
+            final double origin = axis == 0 ? originX : axis == 1 ? originY : originZ;
+            final double half = axis == 0 ? halfX : axis == 1 ? halfY : halfZ;
+            final double dir = axis == 0 ? dirX : axis == 1 ? dirY : dirZ;
+            final double min = bounds[offset + axis] - half;
+            final double max = bounds[offset + axis + 3] + half;
+            if (dir == 0) {
+                if (origin <= min || origin >= max)
+                    return (-1);
+            } else {
+                final double inverseDir = 1.0 / dir;
+                double near = (min - origin) * inverseDir;
+                double far = (max - origin) * inverseDir;
+                if (near > far) {
+                    final double tmp = near;
+                    near = far;
+                    far = tmp;
+                }
+                if (near > entry) {
+                    entry = near;
+                    entryAxis = axis;
+                }
+                exit = Math.min(exit, far);
+                if (entry >= exit)
+                    return (-1);
+            }
+        }
+        if (exit <= 0 || entry >= maxFraction)
+            return (-1);
+        if (!node && (entry < 0 || entryAxis == -1))
+            // the moving box already overlaps this box
+            return (-1);
+        latestEntry = Math.max(0, entry);
+        return (node ? Math.max(0, entryAxis) : entryAxis);
+    }
+
+    /**
+     * Returns the index of the box hit during the latest sweep
+     *
+     * @return the index of the box hit during the latest sweep, -1 if none
+     */
+    public int getLatestHitBoxIndex() {
+        return (latestHitBoxIndex);
+    }
+
+    /**
+     * Returns the normal of the face hit during the latest sweep
+     *
+     * @return the normal of the face hit during the latest sweep
+     */
+    public ReadOnlyVector3 getLatestHitNormal() {
+        return (latestHitNormal);
+    }
+
+    /**
+     * Computes the furthest legal location of a box moving on a segment, the
+     * box slides along the faces of the obstacles
+     *
+     * @param center
+     *            center of the box at the start of the segment
+     * @param halfExtents
+     *            half extents of the box
+     * @param end
+     *            center of the box at the end of the segment
+     * @param store
+     *            vector used to store the result, can be <code>null</code>
+     * @return the furthest legal location
+     */
+    public Vector3 resolveMovement(final ReadOnlyVector3 center, final ReadOnlyVector3 halfExtents,
+            final ReadOnlyVector3 end, final Vector3 store) {
+        final Vector3 result = store == null ? new Vector3() : store;
+        double x = center.getX(), y = center.getY(), z = center.getZ();
+        double dx = end.getX() - x, dy = end.getY() - y, dz = end.getZ() - z;
+        for (int slideIndex = 0; slideIndex <= MAX_SLIDE_COUNT && (dx != 0 || dy != 0 || dz != 0); slideIndex++) {
+            result.set(x, y, z);
+            sweepDisplacement.set(dx, dy, dz);
+            final double fraction = sweep(result, halfExtents, sweepDisplacement);
+            if (latestHitBoxIndex == -1) {
+                x += dx;
+                y += dy;
+                z += dz;
+                break;
+            }
+            // moves until the contact while keeping a small gap
+            final double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            final double travelledFraction = Math.max(0, fraction - SKIN_WIDTH / length);
+            x += dx * travelledFraction;
+            y += dy * travelledFraction;
+            z += dz * travelledFraction;
+            if (slideIndex == MAX_SLIDE_COUNT)
+                break;
+            // removes the component of the remaining displacement along the
+            // normal of the hit face
+            final double remaining = 1 - travelledFraction;
+            dx *= remaining;
+            dy *= remaining;
+            dz *= remaining;
+            final double dot = dx * latestHitNormal.getX() + dy * latestHitNormal.getY()
+                    + dz * latestHitNormal.getZ();
+            dx -= dot * latestHitNormal.getX();
+            dy -= dot * latestHitNormal.getY();
+            dz -= dot * latestHitNormal.getZ();
+        }
+        result.set(x, y, z);
+        return (result);
+    }
+}
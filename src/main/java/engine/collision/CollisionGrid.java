@@ -0,0 +1,411 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.collision;
+
+import com.ardor3d.math.Vector3;
+
+/**
+ * Flat 2D collision grid whose cells are packed into a bit set (one bit per
+ * cell, 64 cells per long), used to resolve the movements of the player on the
+ * horizontal plane.
+ *
+ * The movement resolution reproduces the legacy algorithm that moved the
+ * player step by step along the segment (with steps whose length is at most
+ * {@link #STEP_LENGTH}), that tried to slide along an axis when the next step
+ * was blocked and that stopped when sliding was impossible. Instead of testing
+ * each step, it traverses the grid in a single pass in the manner of a DDA
+ * (digital differential analyzer), jumping from a change of cell to the next
+ * one as the outcome of the tests can't change between two consecutive changes
+ * of cell, and it skips the traversal when the whole swept area is free.
+ *
+ * @author Julien Gouesse
+ *
+ */
+public final class CollisionGrid {
+
+    /** maximum length of a step of the legacy algorithm */
+    public static final double STEP_LENGTH = 0.2;
+    /** half size of the square footprint of the player */
+    private static final double HALF_FOOTPRINT_SIZE = 0.2;
+    /** size of the square footprint of the player */
+    private static final double FOOTPRINT_SIZE = 0.4;
+
+    /** margin (in steps) subtracted from the estimated steps of the changes of cell */
+    private static final double CELL_CHANGE_MARGIN = 1e-6;
+
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+
+    private static final int BITS_PER_WORD = 1 << ADDRESS_BITS_PER_WORD;
+    /** count of cells on the X axis */
+    private final int width;
+    /** count of cells on the Z axis */
+    private final int height;
+    /** count of words used by a row (a fixed Z coordinate) */
+    private final int wordsPerRow;
+    /** bit set, row major (Z then X) */
+    private final long[] words;
+
+    /**
+     * Constructor
+     *
+     * @param width
+     *            count of cells on the X axis
+     * @param height
+     *            count of cells on the Z axis
+     */
+    public CollisionGrid(final int width, final int height) {
+        super();
+        if (width < 0 || height < 0)
+            throw new IllegalArgumentException("the size of the grid must be positive");
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + BITS_PER_WORD - 1) >>> ADDRESS_BITS_PER_WORD;
+        this.words = new long[wordsPerRow * height];
+    }
+
+    /**
+     * Creates a collision grid from an array whose first index is the X
+     * coordinate and whose second index is the Z coordinate
+     *
+     * @param collisionMap
+     *            collision map, <code>true</code> when a cell is blocked
+     * @return the collision grid
+     */
+    public static CollisionGrid fromArray(final boolean[][] collisionMap) {
+        final int width = collisionMap.length;
+        final int height = width == 0 ? 0 : collisionMap[0].length;
+        final CollisionGrid grid = new CollisionGrid(width, height);
+        for (int x = 0; x < width; x++)
+            for (int z = 0; z < height; z++)
+                if (collisionMap[x][z])
+                    grid.set(x, z, true);
+        return (grid);
+    }
+
+    public int getWidth() {
+        return (width);
+    }
+
+    public int getHeight() {
+        return (height);
+    }
+
+    /**
+     * Marks a cell as blocked or free
+     *
+     * @param x
+     *            index of the cell on the X axis
+     * @param z
+     *            index of the cell on the Z axis
+     * @param blocked
+     *            <code>true</code> if the cell is blocked
+     */
+    public void set(final int x, final int z, final boolean blocked) {
+        if (x < 0 || x >= width || z < 0 || z >= height)
+            throw new IndexOutOfBoundsException("(" + x + ", " + z + ") is outside the grid");
+        final int wordIndex = z * wordsPerRow + (x >>> ADDRESS_BITS_PER_WORD);
+        if (blocked)
+            words[wordIndex] |= 1L << x;
+        else
+            words[wordIndex] &= ~(1L << x);
+    }
+
+    /**
+     * Tells whether a cell is blocked. A cell outside the grid is never blocked
+     *
+     * @param x
+     *            index of the cell on the X axis
+     * @param z
+     *            index of the cell on the Z axis
+     * @return <code>true</code> if the cell is inside the grid and blocked
+     */
+    public boolean isBlocked(final int x, final int z) {
+        return (0 <= x && x < width && 0 <= z && z < height
+                && (words[z * wordsPerRow + (x >>> ADDRESS_BITS_PER_WORD)] & (1L << x)) != 0);
+    }
+
+    /**
+     * Tells whether all cells of a rectangle are free. The parts of the
+     * rectangle outside the grid are considered as free
+     *
+     * @param minX
+     *            smallest index on the X axis (inclusive)
+     * @param minZ
+     *            smallest index on the Z axis (inclusive)
+     * @param maxX
+     *            biggest index on the X axis (inclusive)
+     * @param maxZ
+     *            biggest index on the Z axis (inclusive)
+     * @return <code>true</code> if no cell of the rectangle is blocked
+     */
+    public boolean isFree(final int minX, final int minZ, final int maxX, final int maxZ) {
+        final int x0 = Math.max(0, minX);
+        final int x1 = Math.min(width - 1, maxX);
+        final int z0 = Math.max(0, minZ);
+        final int z1 = Math.min(height - 1, maxZ);
+        if (x0 > x1 || z0 > z1)
+            return (true);
+        final int firstWord = x0 >>> ADDRESS_BITS_PER_WORD;
+        final int lastWord = x1 >>> ADDRESS_BITS_PER_WORD;
+        final long firstMask = -1L << x0;
+        final long lastMask = -1L >>> (BITS_PER_WORD - 1 - (x1 & (BITS_PER_WORD - 1)));
+        for (int z = z0; z <= z1; z++) {
+            final int rowOffset = z * wordsPerRow;
+            if (firstWord == lastWord) {
+                if ((words[rowOffset + firstWord] & firstMask & lastMask) != 0)
+                    return (false);
+            } else {
+                if ((words[rowOffset + firstWord] & firstMask) != 0
+                        || (words[rowOffset + lastWord] & lastMask) != 0)
+                    return (false);
+                for (int wordIndex = firstWord + 1; wordIndex < lastWord; wordIndex++)
+                    if (words[rowOffset + wordIndex] != 0)
+                        return (false);
+            }
+        }
+        return (true);
+    }
+
+    /**
+     * Tells whether a segment crosses no blocked cell, for instance a line of
+     * sight. The cells are traversed in a single pass (DDA)
+     *
+     * @param startX
+     *            abscissa of the start of the segment
+     * @param startZ
+     *            applicate of the start of the segment
+     * @param endX
+     *            abscissa of the end of the segment
+     * @param endZ
+     *            applicate of the end of the segment
+     * @return <code>true</code> if no cell crossed by the segment is blocked
+     */
+    public boolean isSegmentFree(final double startX, final double startZ, final double endX, final double endZ) {
+        int x = (int) Math.floor(startX);
+        int z = (int) Math.floor(startZ);
+        final int lastX = (int) Math.floor(endX);
+        final int lastZ = (int) Math.floor(endZ);
+        final double dx = endX - startX;
+        final double dz = endZ - startZ;
+        final int stepX = dx > 0 ? 1 : -1;
+        final int stepZ = dz > 0 ? 1 : -1;
+        // fractions of the segment travelled to cross a cell and to reach the
+        // next boundaries
+        final double deltaX = dx == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / dx);
+        final double deltaZ = dz == 0 ? Double.POSITIVE_INFINITY : Math.abs(1 / dz);
+        double maxX = dx == 0 ? Double.POSITIVE_INFINITY : (dx > 0 ? x + 1 - startX : startX - x) * deltaX;
+        double maxZ = dz == 0 ? Double.POSITIVE_INFINITY : (dz > 0 ? z + 1 - startZ : startZ - z) * deltaZ;
+        final int cellCount = Math.abs(lastX - x) + Math.abs(lastZ - z);
+        for (int cellIndex = 0; cellIndex <= cellCount; cellIndex++) {
+            if (isBlocked(x, z))
+                return (false);
+            if (maxX < maxZ) {
+                x += stepX;
+                maxX += deltaX;
+            } else {
+                z += stepZ;
+                maxZ += deltaZ;
+            }
+        }
+        return (true);
+    }
+
+    /**
+     * Tells whether the square footprint of the player centered on the given
+     * location overlaps a blocked cell
+     *
+     * @param x
+     *            abscissa of the center of the player
+     * @param z
+     *            applicate of the center of the player
+     * @return <code>true</code> if the footprint overlaps a blocked cell
+     */
+    public boolean isFootprintBlocked(final double x, final double z) {
+        return (isFootprintBlocked(lowerCell(x), upperCell(x), lowerCell(z), upperCell(z)));
+    }
+
+    private boolean isFootprintBlocked(final int lowerX, final int upperX, final int lowerZ, final int upperZ) {
+        return (isBlocked(lowerX, lowerZ) || isBlocked(upperX, lowerZ) || isBlocked(lowerX, upperZ)
+                || isBlocked(upperX, upperZ));
+    }
+
+    /**
+     * Computes the furthest legal location of the player moving on a segment.
+     * The segment is virtually cut into steps as the legacy algorithm did,
+     * which keeps the sliding behavior unchanged, but the grid is traversed in
+     * a single pass (DDA): each edge of the footprint keeps the step at which
+     * it enters its next cell and the steps between two of these events are
+     * handled at once
+     *
+     * @param startX
+     *            abscissa of the start of the segment
+     * @param startZ
+     *            applicate of the start of the segment
+     * @param endX
+     *            abscissa of the end of the segment
+     * @param endZ
+     *            applicate of the end of the segment
+     * @param stepCount
+     *            count of steps, usually <code>ceil(distance / STEP_LENGTH)</code>
+     * @param store
+     *            vector used to store the result (its ordinate is left
+     *            unchanged), can be <code>null</code>
+     * @return the furthest legal location
+     */
+    public Vector3 resolveMovement(final double startX, final double startZ, final double endX, final double endZ,
+            final int stepCount, final Vector3 store) {
+        final Vector3 result = store == null ? new Vector3() : store;
+        final double stepX = stepCount == 0 ? 0 : (endX - startX) / stepCount;
+        final double stepZ = stepCount == 0 ? 0 : (endZ - startZ) / stepCount;
+        final boolean slidingEnabled = stepX != 0 && stepZ != 0;
+        double correctX = startX, correctZ = startZ;
+        if (stepCount > 0) {
+            // computes the cells swept by the footprint during the whole
+            // movement (the indices are monotonic along the segment)
+            final double lastX = startX + (stepX * stepCount);
+            final double lastZ = startZ + (stepZ * stepCount);
+            final int minX = Math.min(lowerCell(startX), lowerCell(lastX));
+            final int maxX = Math.max(upperCell(startX), upperCell(lastX));
+            final int minZ = Math.min(lowerCell(startZ), lowerCell(lastZ));
+            final int maxZ = Math.max(upperCell(startZ), upperCell(lastZ));
+            if (isFree(minX, minZ, maxX, maxZ)) {
+                // nothing can block the player
+                correctX = lastX;
+                correctZ = lastZ;
+            } else {
+                final double inverseStepX = stepX == 0 ? 0 : 1 / stepX;
+                final double inverseStepZ = stepZ == 0 ? 0 : 1 / stepZ;
+                final double lowerStartX = cellCoordinate(startX, false);
+                final double upperStartX = cellCoordinate(startX, true);
+                final double lowerStartZ = cellCoordinate(startZ, false);
+                final double upperStartZ = cellCoordinate(startZ, true);
+                // cells of the edges of the footprint at the current step
+                int lowerX = (int) lowerStartX, upperX = (int) upperStartX;
+                int lowerZ = (int) lowerStartZ, upperZ = (int) upperStartZ;
+                // steps at which the edges enter their next cells
+                int nextLowerX = nextCellChange(lowerStartX, stepX, inverseStepX, lowerX, 0, stepCount);
+                int nextUpperX = nextCellChange(upperStartX, stepX, inverseStepX, upperX, 0, stepCount);
+                int nextLowerZ = nextCellChange(lowerStartZ, stepZ, inverseStepZ, lowerZ, 0, stepCount);
+                int nextUpperZ = nextCellChange(upperStartZ, stepZ, inverseStepZ, upperZ, 0, stepCount);
+                int step = 0;
+                while (step < stepCount) {
+                    final int nextStep = Math.min(Math.min(nextLowerX, nextUpperX),
+                            Math.min(nextLowerZ, nextUpperZ));
+                    if (nextStep > step + 1) {
+                        // the steps before the next change of cell keep the
+                        // current cells, they are either all legal or the
+                        // first one is blocked without any possible sliding
+                        if (isFootprintBlocked(lowerX, upperX, lowerZ, upperZ))
+                            break;
+                        step = nextStep - 1;
+                        correctX = startX + (stepX * step);
+                        correctZ = startZ + (stepZ * step);
+                    } else {
+                        step = nextStep;
+                        final double currentX = startX + (stepX * step);
+                        final double currentZ = startZ + (stepZ * step);
+                        final int currentLowerX = lowerCell(currentX), currentUpperX = upperCell(currentX);
+                        final int currentLowerZ = lowerCell(currentZ), currentUpperZ = upperCell(currentZ);
+                        if (!isFootprintBlocked(currentLowerX, currentUpperX, currentLowerZ, currentUpperZ)) {
+                            correctX = currentX;
+                            correctZ = currentZ;
+                        } else if (slidingEnabled
+                                && !isFootprintBlocked(currentLowerX, currentUpperX, lowerZ, upperZ)) {
+                            // slides along the X axis
+                            correctX = currentX;
+                            correctZ = startZ + (stepZ * (step - 1));
+                        } else if (slidingEnabled
+                                && !isFootprintBlocked(lowerX, upperX, currentLowerZ, currentUpperZ)) {
+                            // slides along the Z axis
+                            correctX = startX + (stepX * (step - 1));
+                            correctZ = currentZ;
+                        } else
+                            // blocked
+                            break;
+                        // moves the edges that have reached their events
+                        if (nextLowerX == step || currentLowerX != lowerX) {
+                            lowerX = currentLowerX;
+                            nextLowerX = nextCellChange(lowerStartX, stepX, inverseStepX, lowerX, step, stepCount);
+                        }
+                        if (nextUpperX == step || currentUpperX != upperX) {
+                            upperX = currentUpperX;
+                            nextUpperX = nextCellChange(upperStartX, stepX, inverseStepX, upperX, step, stepCount);
+                        }
+                        if (nextLowerZ == step || currentLowerZ != lowerZ) {
+                            lowerZ = currentLowerZ;
+                            nextLowerZ = nextCellChange(lowerStartZ, stepZ, inverseStepZ, lowerZ, step, stepCount);
+                        }
+                        if (nextUpperZ == step || currentUpperZ != upperZ) {
+                            upperZ = currentUpperZ;
+                            nextUpperZ = nextCellChange(upperStartZ, stepZ, inverseStepZ, upperZ, step, stepCount);
+                        }
+                    }
+                }
+            }
+        }
+        result.set(correctX, result.getY(), correctZ);
+        return (result);
+    }
+
+    /**
+     * Returns the step at which an edge of the footprint enters its next cell.
+     * The estimate is slightly early rather than late so that rounding errors
+     * never skip a change of cell, an early estimate only costs an additional
+     * step
+     *
+     * @param start
+     *            coordinate of the edge at the start of the segment
+     * @param stepLength
+     *            signed length of a step on this axis
+     * @param inverseStepLength
+     *            inverse of the signed length of a step on this axis
+     * @param cell
+     *            cell index of the edge at the current step
+     * @param step
+     *            current step
+     * @param stepCount
+     *            count of steps
+     * @return the index of the step at which the edge enters its next cell,
+     *         <code>stepCount + 1</code> if it stays in its cell until the end
+     */
+    private static int nextCellChange(final double start, final double stepLength, final double inverseStepLength,
+            final int cell, final int step, final int stepCount) {
+        if (stepLength == 0)
+            return (stepCount + 1);
+        // the indices are truncated, the cell 0 spans ]-1;1[
+        final int boundary;
+        if (stepLength > 0)
+            boundary = cell >= 0 ? cell + 1 : cell;
+        else
+            boundary = cell > 0 ? cell : cell - 1;
+        final double estimate = Math.ceil(((boundary - start) * inverseStepLength) - CELL_CHANGE_MARGIN);
+        return (estimate > stepCount ? stepCount + 1 : Math.max(step + 1, (int) estimate));
+    }
+
+    private static double cellCoordinate(final double coordinate, final boolean upper) {
+        return (upper ? coordinate - HALF_FOOTPRINT_SIZE + FOOTPRINT_SIZE : coordinate - HALF_FOOTPRINT_SIZE);
+    }
+
+    private static int lowerCell(final double coordinate) {
+        return ((int) cellCoordinate(coordinate, false));
+    }
+
+    private static int upperCell(final double coordinate) {
+        return ((int) cellCoordinate(coordinate, true));
+    }
+}
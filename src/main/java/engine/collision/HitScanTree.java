@@ -0,0 +1,391 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.collision;
+
+import java.util.Arrays;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.bounding.BoundingSphere;
+import com.ardor3d.bounding.BoundingVolume;
+import com.ardor3d.math.Ray3;
+import com.ardor3d.math.type.ReadOnlyVector3;
+
+/**
+ * Bounding volume hierarchy rebuilt at each frame over the world bounds of
+ * moving targets (enemies, player) and used to resolve all hit scans (rays)
+ * of a frame. The arrays are kept between the frames and only grow when there
+ * are more targets than ever, there is no allocation in steady state. The
+ * nearest target hit by a ray is found in logarithmic time instead of testing
+ * all targets sorted by distance.
+ *
+ * This tree mustn't be used by several threads at the same time.
+ *
+ * @author Julien Gouesse
+ *
+ * @param <T>
+ *            type of the targets
+ */
+public final class HitScanTree<T> {
+
+    /** maximum count of targets in a leaf */
+    private static final int MAX_LEAF_SIZE = 2;
+    /** targets */
+    private Object[] targets;
+    /** world bounds of the targets */
+    private BoundingVolume[] targetVolumes;
+    /**
+     * axis aligned bounds of the targets (min x, min y, min z, max x, max y,
+     * max z)
+     */
+    private float[] targetBounds;
+    /** centers of the targets */
+    private float[] targetCenters;
+    /** indices of the targets sorted by leaf */
+    private int[] targetIndices;
+    /** bounds of the nodes (min x, min y, min z, max x, max y, max z) */
+    private float[] nodeBounds;
+    /**
+     * index of the right child for an inner node, index of the first target in
+     * {@link #targetIndices} for a leaf
+     */
+    private int[] nodeOffsets;
+    /** count of targets in a leaf, zero for an inner node */
+    private int[] nodeTargetCounts;
+    /** traversal stack */
+    private int[] stack;
+    /** count of targets */
+    private int targetCount;
+    /** count of nodes */
+    private int nodeCount;
+    /** distance of the latest hit along the ray, in direction lengths */
+    private double latestHitDistance;
+    /** ray used by the bounding volumes that aren't handled directly */
+    private final Ray3 ray;
+
+    /**
+     * Constructor
+     */
+    public HitScanTree() {
+        super();
+        ray = new Ray3();
+        ensureCapacity(16);
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (targets == null || targets.length < capacity) {
+            final int newCapacity = Math.max(capacity, targets == null ? 0 : targets.length * 2);
+            targets = targets == null ? new Object[newCapacity] : Arrays.copyOf(targets, newCapacity);
+            targetVolumes = targetVolumes == null ? new BoundingVolume[newCapacity]
+                    : Arrays.copyOf(targetVolumes, newCapacity);
+            targetBounds = targetBounds == null ? new float[newCapacity * 6]
+                    : Arrays.copyOf(targetBounds, newCapacity * 6);
+            targetCenters = targetCenters == null ? new float[newCapacity * 3]
+                    : Arrays.copyOf(targetCenters, newCapacity * 3);
+            targetIndices = new int[newCapacity];
+            final int maxNodeCount = 2 * newCapacity - 1;
+            nodeBounds = new float[maxNodeCount * 6];
+            nodeOffsets = new int[maxNodeCount];
+            nodeTargetCounts = new int[maxNodeCount];
+            // the depth of a tree built with median splits is logarithmic
+            stack = new int[2 * (32 - Integer.numberOfLeadingZeros(newCapacity)) + 2];
+        }
+    }
+
+    /**
+     * Removes all targets, the tree has to be built again before casting rays
+     */
+    public void clear() {
+        Arrays.fill(targets, 0, targetCount, null);
+        Arrays.fill(targetVolumes, 0, targetCount, null);
+        targetCount = 0;
+        nodeCount = 0;
+    }
+
+    /**
+     * Adds a target, the tree has to be built again before casting rays
+     *
+     * @param target
+     *            target
+     * @param worldBound
+     *            world bound of the target, the target is ignored if it is
+     *            <code>null</code>
+     */
+    public void add(final T target, final BoundingVolume worldBound) {
+        if (worldBound != null) {
+            ensureCapacity(targetCount + 1);
+            final ReadOnlyVector3 center = worldBound.getCenter();
+            final double xExtent, yExtent, zExtent;
+            if (worldBound instanceof BoundingBox) {
+                final BoundingBox boundingBox = (BoundingBox) worldBound;
+                xExtent = boundingBox.getXExtent();
+                yExtent = boundingBox.getYExtent();
+                zExtent = boundingBox.getZExtent();
+            } else {
+                xExtent = worldBound.getRadius();
+                yExtent = xExtent;
+                zExtent = xExtent;
+            }
+            final int offset = targetCount * 6;
+            targetBounds[offset] = (float) (center.getX() - xExtent);
+            targetBounds[offset + 1] = (float) (center.getY() - yExtent);
+            targetBounds[offset + 2] = (float) (center.getZ() - zExtent);
+            targetBounds[offset + 3] = (float) (center.getX() + xExtent);
+            targetBounds[offset + 4] = (float) (center.getY() + yExtent);
+            targetBounds[offset + 5] = (float) (center.getZ() + zExtent);
+            targetCenters[targetCount * 3] = center.getXf();
+            targetCenters[targetCount * 3 + 1] = center.getYf();
+            targetCenters[targetCount * 3 + 2] = center.getZf();
+            targets[targetCount] = target;
+            targetVolumes[targetCount] = worldBound;
+            targetCount++;
+        }
+    }
+
+    /**
+     * Builds the tree over the targets added since the latest call of
+     * {@link #clear()}
+     */
+    public void build() {
+        for (int targetIndex = 0; targetIndex < targetCount; targetIndex++)
+            targetIndices[targetIndex] = targetIndex;
+        nodeCount = 0;
+        if (targetCount > 0)
+            build(0, targetCount);
+    }
+
+    private int build(final int begin, final int end) {
+        final int nodeIndex = nodeCount++;
+        final int nodeOffset = nodeIndex * 6;
+        float minCenterX = Float.POSITIVE_INFINITY, minCenterY = Float.POSITIVE_INFINITY,
+                minCenterZ = Float.POSITIVE_INFINITY;
+        float maxCenterX = Float.NEGATIVE_INFINITY, maxCenterY = Float.NEGATIVE_INFINITY,
+                maxCenterZ = Float.NEGATIVE_INFINITY;
+        for (int coordIndex = 0; coordIndex < 3; coordIndex++) {
+            nodeBounds[nodeOffset + coordIndex] = Float.POSITIVE_INFINITY;
+            nodeBounds[nodeOffset + coordIndex + 3] = Float.NEGATIVE_INFINITY;
+        }
+        for (int index = begin; index < end; index++) {
+            final int targetIndex = targetIndices[index];
+            for (int coordIndex = 0; coordIndex < 3; coordIndex++) {
+                nodeBounds[nodeOffset + coordIndex] = Math.min(nodeBounds[nodeOffset + coordIndex],
+                        targetBounds[targetIndex * 6 + coordIndex]);
+                nodeBounds[nodeOffset + coordIndex + 3] = Math.max(nodeBounds[nodeOffset + coordIndex + 3],
+                        targetBounds[targetIndex * 6 + coordIndex + 3]);
+            }
+            minCenterX = Math.min(minCenterX, targetCenters[targetIndex * 3]);
+            minCenterY = Math.min(minCenterY, targetCenters[targetIndex * 3 + 1]);
+            minCenterZ = Math.min(minCenterZ, targetCenters[targetIndex * 3 + 2]);
+            maxCenterX = Math.max(maxCenterX, targetCenters[targetIndex * 3]);
+            maxCenterY = Math.max(maxCenterY, targetCenters[targetIndex * 3 + 1]);
+            maxCenterZ = Math.max(maxCenterZ, targetCenters[targetIndex * 3 + 2]);
+        }
+        if (end - begin <= MAX_LEAF_SIZE) {
+            nodeOffsets[nodeIndex] = begin;
+            nodeTargetCounts[nodeIndex] = end - begin;
+        } else {
+            // splits along the longest axis of the centers at the median
+            final float sizeX = maxCenterX - minCenterX;
+            final float sizeY = maxCenterY - minCenterY;
+            final float sizeZ = maxCenterZ - minCenterZ;
+            final int axis = sizeX >= sizeY && sizeX >= sizeZ ? 0 : sizeY >= sizeZ ? 1 : 2;
+            final int middle = (begin + end) >>> 1;
+            select(begin, end - 1, middle, axis);
+            build(begin, middle);
+            nodeOffsets[nodeIndex] = build(middle, end);
+            nodeTargetCounts[nodeIndex] = 0;
+        }
+        return (nodeIndex);
+    }
+
+    /**
+     * Partially sorts the target indices so that the k-th one is at its final
+     * place (quickselect)
+     */
+    private void select(int left, int right, final int k, final int axis) {
+        while (right > left) {
+            final float pivot = targetCenters[targetIndices[(left + right) >>> 1] * 3 + axis];
+            int i = left, j = right;
+            while (i <= j) {
+                while (targetCenters[targetIndices[i] * 3 + axis] < pivot)
+                    i++;
+                while (targetCenters[targetIndices[j] * 3 + axis] > pivot)
+                    j--;
+                if (i <= j) {
+                    final int tmp = targetIndices[i];
+                    targetIndices[i] = targetIndices[j];
+                    targetIndices[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j)
+                right = j;
+            else if (k >= i)
+                left = i;
+            else
+                break;
+        }
+    }
+
+    /**
+     * Returns the count of targets
+     *
+     * @return the count of targets
+     */
+    public int getTargetCount() {
+        return (targetCount);
+    }
+
+    /**
+     * Returns a target
+     *
+     * @param targetIndex
+     *            index of the target, as returned by
+     *            {@link #castRay(ReadOnlyVector3, ReadOnlyVector3, Object)}
+     * @return the target
+     */
+    @SuppressWarnings("unchecked")
+    public T getTarget(final int targetIndex) {
+        return ((T) targets[targetIndex]);
+    }
+
+    /**
+     * Returns the distance of the latest hit along the ray
+     *
+     * @return the distance of the latest hit, expressed in lengths of the
+     *         direction of the ray
+     */
+    public double getLatestHitDistance() {
+        return (latestHitDistance);
+    }
+
+    /**
+     * Finds the nearest target hit by a ray, a ray whose origin is inside the
+     * bounds of a target hits it at the distance zero
+     *
+     * @param origin
+     *            origin of the ray
+     * @param direction
+     *            direction of the ray
+     * @param excludedTarget
+     *            target ignored by the ray (its originator), can be
+     *            <code>null</code>
+     * @return the index of the nearest target hit by the ray, -1 if none
+     */
+    public int castRay(final ReadOnlyVector3 origin, final ReadOnlyVector3 direction, final T excludedTarget) {
+        int nearestTargetIndex = -1;
+        latestHitDistance = Double.POSITIVE_INFINITY;
+        if (nodeCount > 0) {
+            final double originX = origin.getX(), originY = origin.getY(), originZ = origin.getZ();
+            final double dirX = direction.getX(), dirY = direction.getY(), dirZ = direction.getZ();
+            int stackSize = 0;
+            stack[stackSize++] = 0;
+            while (stackSize > 0) {
+                final int nodeIndex = stack[--stackSize];
+                if (slab(nodeBounds, nodeIndex * 6, originX, originY, originZ, dirX, dirY,
+                        dirZ) < latestHitDistance) {
+                    final int count = nodeTargetCounts[nodeIndex];
+                    if (count == 0) {
+                        stack[stackSize++] = nodeOffsets[nodeIndex];
+                        stack[stackSize++] = nodeIndex + 1;
+                    } else {
+                        final int first = nodeOffsets[nodeIndex];
+                        for (int index = first; index < first + count; index++) {
+                            final int targetIndex = targetIndices[index];
+                            if (targets[targetIndex] != excludedTarget) {
+                                final double distance = narrowPhase(targetIndex, origin, direction);
+                                if (distance < latestHitDistance) {
+                                    latestHitDistance = distance;
+                                    nearestTargetIndex = targetIndex;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return (nearestTargetIndex);
+    }
+
+    /**
+     * Intersects a ray with the exact bounding volume of a target
+     *
+     * @return the distance of the entry point along the ray,
+     *         {@link Double#POSITIVE_INFINITY} if it misses the target
+     */
+    private double narrowPhase(final int targetIndex, final ReadOnlyVector3 origin,
+            final ReadOnlyVector3 direction) {
+        final double distance = slab(targetBounds, targetIndex * 6, origin.getX(), origin.getY(), origin.getZ(),
+                direction.getX(), direction.getY(), direction.getZ());
+        final BoundingVolume targetVolume = targetVolumes[targetIndex];
+        if (distance == Double.POSITIVE_INFINITY || targetVolume instanceof BoundingBox)
+            return (distance);
+        if (targetVolume instanceof BoundingSphere) {
+            final ReadOnlyVector3 center = targetVolume.getCenter();
+            final double diffX = origin.getX() - center.getX(), diffY = origin.getY() - center.getY(),
+                    diffZ = origin.getZ() - center.getZ();
+            final double dirX = direction.getX(), dirY = direction.getY(), dirZ = direction.getZ();
+            final double radius = targetVolume.getRadius();
+            final double a = dirX * dirX + dirY * dirY + dirZ * dirZ;
+            final double b = diffX * dirX + diffY * dirY + diffZ * dirZ;
+            final double c = diffX * diffX + diffY * diffY + diffZ * diffZ - radius * radius;
+            if (c <= 0)
+                // the origin is inside the sphere
+                return (0);
+            final double discriminant = b * b - a * c;
+            if (b >= 0 || discriminant < 0)
+                return (Double.POSITIVE_INFINITY);
+            return ((-b - Math.sqrt(discriminant)) / a);
+        }
+        // lets the bounding volume do the job
+        ray.setOrigin(origin);
+        ray.setDirection(direction);
+        return (targetVolume.intersects(ray) ? distance : Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Intersects a ray with an axis aligned box
+     *
+     * @return the distance of the entry point along the ray (zero if the origin
+     *         is inside the box), {@link Double#POSITIVE_INFINITY} if it misses
+     *         the box
+     */
+    private static double slab(final float[] bounds, final int offset, final double originX, final double originY,
+            final double originZ, final double dirX, final double dirY, final double dirZ) {
+        double entry = 0, exit = Double.POSITIVE_INFINITY;
+        for (int axis = 0; axis < 3; axis++) {
+            final double origin = axis == 0 ? originX : axis == 1 ? originY : originZ;
+            final double dir = axis == 0 ? dirX : axis == 1 ? dirY : dirZ;
+            final double min = bounds[offset + axis];
+            final double max = bounds[offset + axis + 3];
+            if (dir == 0) {
+                if (origin < min || origin > max)
+                    return (Double.POSITIVE_INFINITY);
+            } else {
+                final double inverseDir = 1.0 / dir;
+                final double near = (min - origin) * inverseDir;
+                final double far = (max - origin) * inverseDir;
+                entry = Math.max(entry, Math.min(near, far));
+                exit = Math.min(exit, Math.max(near, far));
+                if (entry > exit)
+                    return (Double.POSITIVE_INFINITY);
+            }
+        }
+        return (entry);
+    }
+}
@@ -0,0 +1,343 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.collision;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyVector3;
+import com.ardor3d.util.export.Savable;
+import com.ardor3d.util.export.binary.BinaryImporter;
+
+/**
+ * Collision volumes of a level packed into arrays, read from and written into a
+ * compact file in a single bulk operation. The layout of the file (big endian)
+ * is:
+ * <ul>
+ * <li>header: magic number, version, flags (bit 0 set if the spatial index is
+ * present), count of boxes, count of nodes of the spatial index</li>
+ * <li>boxes: center (x, y, z) and extents (x, y, z) of each box as floats</li>
+ * <li>optional spatial index: bounds of the nodes as floats, offsets of the
+ * nodes, counts of boxes of the nodes and indices of the boxes sorted by leaf
+ * as integers, i.e the arrays of a {@link BoundingBoxTree}</li>
+ * </ul>
+ * JFPSM writes these files without the spatial index, the tree is then built
+ * when the level is loaded. This format must be kept in sync with
+ * <code>jfpsm.service.EngineServiceProvider</code>
+ *
+ * @author Julien Gouesse
+ *
+ */
+public final class PackedCollisionVolumes {
+
+    /** extension of the packed collision volume files */
+    public static final String FILE_EXTENSION = ".pcol";
+
+    private static final byte[] MAGIC = "TUERPCOL".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 24;
+
+    private static final int SPATIAL_INDEX_FLAG = 1;
+
+    private static final int GZIP_HEADER_SIZE = 10;
+
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    /** centers and extents of the boxes */
+    private final float[] centersAndExtents;
+    /** bounds of the nodes of the spatial index, null if there is no index */
+    private final float[] nodeBounds;
+    /** offsets of the nodes of the spatial index, null if there is no index */
+    private final int[] nodeOffsets;
+    /**
+     * counts of boxes of the nodes of the spatial index, null if there is no
+     * index
+     */
+    private final int[] nodeBoxCounts;
+    /**
+     * indices of the boxes sorted by leaf of the spatial index, null if there
+     * is no index
+     */
+    private final int[] boxIndices;
+
+    /**
+     * Constructor
+     *
+     * @param boundingBoxes
+     *            boxes
+     */
+    public PackedCollisionVolumes(final List<BoundingBox> boundingBoxes) {
+        this(pack(boundingBoxes), null, null, null, null);
+    }
+
+    private PackedCollisionVolumes(final float[] centersAndExtents, final float[] nodeBounds,
+            final int[] nodeOffsets, final int[] nodeBoxCounts, final int[] boxIndices) {
+        super();
+        this.centersAndExtents = centersAndExtents;
+        this.nodeBounds = nodeBounds;
+        this.nodeOffsets = nodeOffsets;
+        this.nodeBoxCounts = nodeBoxCounts;
+        this.boxIndices = boxIndices;
+    }
+
+    private static float[] pack(final List<BoundingBox> boundingBoxes) {
+        final float[] centersAndExtents = new float[boundingBoxes.size() * 6];
+        int offset = 0;
+        for (final BoundingBox boundingBox : boundingBoxes) {
+            final ReadOnlyVector3 center = boundingBox.getCenter();
+            centersAndExtents[offset++] = center.getXf();
+            centersAndExtents[offset++] = center.getYf();
+            centersAndExtents[offset++] = center.getZf();
+            centersAndExtents[offset++] = (float) boundingBox.getXExtent();
+            centersAndExtents[offset++] = (float) boundingBox.getYExtent();
+            centersAndExtents[offset++] = (float) boundingBox.getZExtent();
+        }
+        return (centersAndExtents);
+    }
+
+    /**
+     * Returns the name of the packed collision volume file matching an Ardor3D
+     * binary file
+     *
+     * @param resourceName
+     *            name of the Ardor3D binary file, ending with ".abin"
+     * @return the name of the packed collision volume file
+     */
+    public static String getPackedResourceName(final String resourceName) {
+        final String baseName = resourceName.endsWith(".abin")
+                ? resourceName.substring(0, resourceName.length() - ".abin".length())
+                : resourceName;
+        return (baseName + FILE_EXTENSION);
+    }
+
+    /**
+     * Reads a packed collision volume file
+     *
+     * @param url
+     *            URL of the file
+     * @return the collision volumes
+     * @throws IOException
+     *             if the file cannot be read or if it isn't a valid packed
+     *             collision volume file
+     */
+    public static PackedCollisionVolumes read(final URL url) throws IOException {
+        try (final InputStream inputStream = url.openStream()) {
+            return (read(ByteBuffer.wrap(inputStream.readAllBytes())));
+        }
+    }
+
+    /**
+     * Reads the content of a packed collision volume file
+     *
+     * @param content
+     *            content of the file, big endian
+     * @return the collision volumes
+     * @throws IOException
+     *             if the content isn't a valid packed collision volume file
+     */
+    public static PackedCollisionVolumes read(final ByteBuffer content) throws IOException {
+        try {
+            final byte[] magic = new byte[MAGIC.length];
+            content.get(magic);
+            if (!Arrays.equals(magic, MAGIC))
+                throw new IOException("Not a packed collision volume file");
+            final int version = content.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported version of packed collision volume file: " + version);
+            final int flags = content.getInt();
+            final int boxCount = content.getInt();
+            final int nodeCount = content.getInt();
+            final boolean spatialIndexPresent = (flags & SPATIAL_INDEX_FLAG) != 0;
+            final long expectedSize = boxCount * 6L * Float.BYTES + (spatialIndexPresent
+                    ? nodeCount * 6L * Float.BYTES + nodeCount * 2L * Integer.BYTES + boxCount * (long) Integer.BYTES
+                    : 0);
+            if (boxCount < 0 || nodeCount < 0 || content.remaining() != expectedSize)
+                throw new IOException("Invalid size of packed collision volume file");
+            final float[] centersAndExtents = new float[boxCount * 6];
+            content.asFloatBuffer().get(centersAndExtents);
+            content.position(content.position() + centersAndExtents.length * Float.BYTES);
+            final PackedCollisionVolumes packedCollisionVolumes;
+            if (spatialIndexPresent) {
+                final float[] nodeBounds = new float[nodeCount * 6];
+                final int[] nodeOffsets = new int[nodeCount];
+                final int[] nodeBoxCounts = new int[nodeCount];
+                final int[] boxIndices = new int[boxCount];
+                content.asFloatBuffer().get(nodeBounds);
+                content.position(content.position() + nodeBounds.length * Float.BYTES);
+                content.asIntBuffer().get(nodeOffsets).get(nodeBoxCounts).get(boxIndices);
+                packedCollisionVolumes = new PackedCollisionVolumes(centersAndExtents, nodeBounds, nodeOffsets,
+                        nodeBoxCounts, boxIndices);
+            } else
+                packedCollisionVolumes = new PackedCollisionVolumes(centersAndExtents, null, null, null, null);
+            return (packedCollisionVolumes);
+        } catch (BufferUnderflowException bue) {
+            throw new IOException("Truncated packed collision volume file", bue);
+        }
+    }
+
+    /**
+     * Reads the bounding boxes of a collision file in the former format, i.e
+     * Ardor3D binary savables written one after the other. Each savable is a
+     * GZIP member, they are split before being imported because the importer
+     * reads ahead and would swallow the following ones
+     *
+     * @param inputStream
+     *            stream of the file, left open
+     * @return the bounding boxes
+     * @throws IOException
+     *             if the stream cannot be read or if it contains anything else
+     *             than bounding boxes
+     */
+    public static List<BoundingBox> readSavables(final InputStream inputStream) throws IOException {
+        final byte[] content = inputStream.readAllBytes();
+        final List<BoundingBox> boundingBoxes = new ArrayList<>();
+        final BinaryImporter binaryImporter = new BinaryImporter();
+        final Inflater inflater = new Inflater(true);
+        final byte[] inflatedBytes = new byte[4096];
+        try {
+            int memberOffset = 0;
+            while (memberOffset < content.length) {
+                // GZIPOutputStream writes a header without any optional field
+                if (content.length - memberOffset < GZIP_HEADER_SIZE + GZIP_TRAILER_SIZE
+                        || (content[memberOffset] & 0xFF) != 0x1F || (content[memberOffset + 1] & 0xFF) != 0x8B
+                        || content[memberOffset + 3] != 0)
+                    throw new IOException("Invalid GZIP member at " + memberOffset);
+                inflater.reset();
+                inflater.setInput(content, memberOffset + GZIP_HEADER_SIZE,
+                        content.length - memberOffset - GZIP_HEADER_SIZE);
+                while (!inflater.finished())
+                    if (inflater.inflate(inflatedBytes) == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                        throw new IOException("Truncated GZIP member at " + memberOffset);
+                final int memberEnd = content.length - inflater.getRemaining() + GZIP_TRAILER_SIZE;
+                final Savable savable = binaryImporter.load(Arrays.copyOfRange(content, memberOffset, memberEnd));
+                if (!(savable instanceof BoundingBox))
+                    throw new IOException("Unexpected savable " + savable.getClass().getName());
+                boundingBoxes.add((BoundingBox) savable);
+                memberOffset = memberEnd;
+            }
+        } catch (DataFormatException dfe) {
+            throw new IOException("Corrupted collision file", dfe);
+        } finally {
+            inflater.end();
+        }
+        return (boundingBoxes);
+    }
+
+    /**
+     * Writes these collision volumes
+     *
+     * @param outputStream
+     *            destination stream, left open
+     * @param spatialIndexIncluded
+     *            <code>true</code> if the spatial index is written so that the
+     *            tree doesn't need to be built when reading this file
+     * @throws IOException
+     *             if the stream cannot be written
+     */
+    public void write(final OutputStream outputStream, final boolean spatialIndexIncluded) throws IOException {
+        final int boxCount = getBoxCount();
+        final BoundingBoxTree tree = spatialIndexIncluded ? createTree() : null;
+        final int nodeCount = tree == null ? 0 : tree.getNodeCount();
+        final ByteBuffer content = ByteBuffer.allocate(HEADER_SIZE + boxCount * 6 * Float.BYTES + (tree == null ? 0
+                : nodeCount * 6 * Float.BYTES + nodeCount * 2 * Integer.BYTES + boxCount * Integer.BYTES));
+        content.put(MAGIC).putInt(VERSION).putInt(tree == null ? 0 : SPATIAL_INDEX_FLAG).putInt(boxCount)
+                .putInt(nodeCount);
+        content.asFloatBuffer().put(centersAndExtents);
+        content.position(content.position() + centersAndExtents.length * Float.BYTES);
+        if (tree != null) {
+            content.asFloatBuffer().put(tree.getNodeBounds());
+            content.position(content.position() + nodeCount * 6 * Float.BYTES);
+            content.asIntBuffer().put(tree.getNodeOffsets()).put(tree.getNodeBoxCounts()).put(tree.getBoxIndices());
+        }
+        outputStream.write(content.array());
+    }
+
+    /**
+     * Returns the count of boxes
+     *
+     * @return the count of boxes
+     */
+    public int getBoxCount() {
+        return (centersAndExtents.length / 6);
+    }
+
+    /**
+     * Tells whether the spatial index has been read
+     *
+     * @return <code>true</code> if the spatial index has been read
+     */
+    public boolean isSpatialIndexPresent() {
+        return (nodeBounds != null);
+    }
+
+    /**
+     * Creates the bounding boxes
+     *
+     * @return a new list of bounding boxes
+     */
+    public List<BoundingBox> createBoundingBoxes() {
+        final int boxCount = getBoxCount();
+        final List<BoundingBox> boundingBoxes = new ArrayList<>(boxCount);
+        for (int offset = 0; offset < centersAndExtents.length; offset += 6)
+            boundingBoxes.add(new BoundingBox(
+                    new Vector3(centersAndExtents[offset], centersAndExtents[offset + 1],
+                            centersAndExtents[offset + 2]),
+                    centersAndExtents[offset + 3], centersAndExtents[offset + 4], centersAndExtents[offset + 5]));
+        return (boundingBoxes);
+    }
+
+    /**
+     * Creates the tree of the boxes, the spatial index is used if it has been
+     * read, otherwise the tree is built
+     *
+     * @return a new tree
+     * @throws IllegalArgumentException
+     *             if the spatial index is corrupted
+     */
+    public BoundingBoxTree createTree() {
+        final float[] boxBounds = new float[centersAndExtents.length];
+        for (int offset = 0; offset < centersAndExtents.length; offset += 6)
+            for (int coordIndex = 0; coordIndex < 3; coordIndex++) {
+                final double center = centersAndExtents[offset + coordIndex];
+                final double extent = centersAndExtents[offset + coordIndex + 3];
+                boxBounds[offset + coordIndex] = (float) (center - extent);
+                boxBounds[offset + coordIndex + 3] = (float) (center + extent);
+            }
+        final BoundingBoxTree tree;
+        if (isSpatialIndexPresent())
+            // the tree doesn't modify these arrays, they can be shared
+            tree = new BoundingBoxTree(boxBounds, nodeBounds, nodeOffsets, nodeBoxCounts, boxIndices);
+        else
+            tree = new BoundingBoxTree(boxBounds);
+        return (tree);
+    }
+}
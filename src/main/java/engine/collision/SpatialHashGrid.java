@@ -0,0 +1,264 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.collision;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+
+/**
+ * Broad phase based on a uniform grid on the horizontal plane (X and Z), the
+ * cells are stored into a hash table so that the grid is unbounded. Each item
+ * is registered in all cells overlapped by its square footprint. The queries
+ * don't allocate anything once the cells have been created, this grid mustn't
+ * be used by several threads at the same time.
+ *
+ * @author Julien Gouesse
+ *
+ * @param <T>
+ *            type of the stored items
+ */
+public final class SpatialHashGrid<T> {
+
+    /**
+     * Entry of an item in the grid
+     *
+     * @param <T>
+     *            type of the stored item
+     */
+    private static final class ItemEntry<T> {
+
+        private final T item;
+
+        private final double minX;
+
+        private final double minZ;
+
+        private final double maxX;
+
+        private final double maxZ;
+
+        /** stamp of the latest query that found this entry */
+        private int queryStamp;
+
+        private ItemEntry(final T item, final double minX, final double minZ, final double maxX, final double maxZ) {
+            super();
+            this.item = item;
+            this.minX = minX;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxZ = maxZ;
+        }
+    }
+
+    /** size of a cell */
+    private final double cellSize;
+    /** keys of the cells in the hash table (open addressing) */
+    private long[] cellKeys;
+    /** entries of the cells in the hash table, null if the slot is empty */
+    private ArrayList<ItemEntry<T>>[] cellEntries;
+    /** count of cells */
+    private int cellCount;
+    /** entries of the items */
+    private final IdentityHashMap<T, ItemEntry<T>> itemEntries;
+    /** stamp of the current query, used to avoid returning an item twice */
+    private int queryStamp;
+
+    /**
+     * Constructor
+     *
+     * @param cellSize
+     *            size of a cell, ideally a bit bigger than the stored items
+     */
+    public SpatialHashGrid(final double cellSize) {
+        super();
+        if (!(cellSize > 0))
+            throw new IllegalArgumentException("The cell size must be strictly positive");
+        this.cellSize = cellSize;
+        this.itemEntries = new IdentityHashMap<>();
+        allocateTable(16);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void allocateTable(final int capacity) {
+        cellKeys = new long[capacity];
+        cellEntries = new ArrayList[capacity];
+        cellCount = 0;
+    }
+
+    private int cellCoordinate(final double coordinate) {
+        return ((int) Math.floor(coordinate / cellSize));
+    }
+
+    private static long cellKey(final int cellX, final int cellZ) {
+        return ((((long) cellX) << 32) | (cellZ & 0xFFFFFFFFL));
+    }
+
+    private int slot(final long key) {
+        // mixes the bits (Murmur3 finalizer) to spread neighbour cells
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        int slot = (int) hash & (cellKeys.length - 1);
+        while (cellEntries[slot] != null && cellKeys[slot] != key)
+            slot = (slot + 1) & (cellKeys.length - 1);
+        return (slot);
+    }
+
+    private ArrayList<ItemEntry<T>> getOrCreateCell(final long key) {
+        int slot = slot(key);
+        if (cellEntries[slot] == null) {
+            // keeps the load factor below 0.5
+            if ((cellCount + 1) * 2 > cellKeys.length) {
+                final long[] previousKeys = cellKeys;
+                final ArrayList<ItemEntry<T>>[] previousEntries = cellEntries;
+                allocateTable(previousKeys.length * 2);
+                for (int previousSlot = 0; previousSlot < previousKeys.length; previousSlot++)
+                    if (previousEntries[previousSlot] != null) {
+                        final int newSlot = slot(previousKeys[previousSlot]);
+                        cellKeys[newSlot] = previousKeys[previousSlot];
+                        cellEntries[newSlot] = previousEntries[previousSlot];
+                        cellCount++;
+                    }
+                slot = slot(key);
+            }
+            cellKeys[slot] = key;
+            cellEntries[slot] = new ArrayList<>(2);
+            cellCount++;
+        }
+        return (cellEntries[slot]);
+    }
+
+    private ArrayList<ItemEntry<T>> getCell(final long key) {
+        return (cellEntries[slot(key)]);
+    }
+
+    /**
+     * Adds an item into the grid. An item already in the grid is moved
+     *
+     * @param item
+     *            item to add
+     * @param x
+     *            abscissa of the center of the item
+     * @param z
+     *            applicate of the center of the item
+     * @param radius
+     *            half size of the square footprint of the item
+     */
+    public void add(final T item, final double x, final double z, final double radius) {
+        remove(item);
+        final ItemEntry<T> entry = new ItemEntry<>(item, x - radius, z - radius, x + radius, z + radius);
+        itemEntries.put(item, entry);
+        final int minCellX = cellCoordinate(entry.minX), maxCellX = cellCoordinate(entry.maxX);
+        final int minCellZ = cellCoordinate(entry.minZ), maxCellZ = cellCoordinate(entry.maxZ);
+        for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++)
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++)
+                getOrCreateCell(cellKey(cellX, cellZ)).add(entry);
+    }
+
+    /**
+     * Removes an item from the grid
+     *
+     * @param item
+     *            item to remove
+     * @return <code>true</code> if the item was in the grid
+     */
+    public boolean remove(final T item) {
+        final ItemEntry<T> entry = itemEntries.remove(item);
+        if (entry != null) {
+            final int minCellX = cellCoordinate(entry.minX), maxCellX = cellCoordinate(entry.maxX);
+            final int minCellZ = cellCoordinate(entry.minZ), maxCellZ = cellCoordinate(entry.maxZ);
+            for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++)
+                for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                    final ArrayList<ItemEntry<T>> cell = getCell(cellKey(cellX, cellZ));
+                    if (cell != null) {
+                        final int index = cell.indexOf(entry);
+                        if (index != -1) {
+                            // swaps with the last entry, the order doesn't
+                            // matter
+                            final int lastIndex = cell.size() - 1;
+                            cell.set(index, cell.get(lastIndex));
+                            cell.remove(lastIndex);
+                        }
+                    }
+                }
+        }
+        return (entry != null);
+    }
+
+    /**
+     * Removes all items from the grid
+     */
+    public void clear() {
+        itemEntries.clear();
+        Arrays.fill(cellEntries, null);
+        cellCount = 0;
+    }
+
+    /**
+     * Returns the count of items in the grid
+     *
+     * @return the count of items in the grid
+     */
+    public int size() {
+        return (itemEntries.size());
+    }
+
+    /**
+     * Finds the items whose footprint overlaps a rectangle, each item is added
+     * only once
+     *
+     * @param minX
+     *            minimum abscissa of the rectangle
+     * @param minZ
+     *            minimum applicate of the rectangle
+     * @param maxX
+     *            maximum abscissa of the rectangle
+     * @param maxZ
+     *            maximum applicate of the rectangle
+     * @param store
+     *            collection into which the found items are added
+     * @return the count of found items
+     */
+    public int query(final double minX, final double minZ, final double maxX, final double maxZ,
+            final Collection<? super T> store) {
+        int foundItemCount = 0;
+        if (!itemEntries.isEmpty()) {
+            queryStamp++;
+            final int minCellX = cellCoordinate(minX), maxCellX = cellCoordinate(maxX);
+            final int minCellZ = cellCoordinate(minZ), maxCellZ = cellCoordinate(maxZ);
+            for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++)
+                for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                    final ArrayList<ItemEntry<T>> cell = getCell(cellKey(cellX, cellZ));
+                    if (cell != null)
+                        for (int entryIndex = 0, entryCount = cell.size(); entryIndex < entryCount; entryIndex++) {
+                            final ItemEntry<T> entry = cell.get(entryIndex);
+                            if (entry.queryStamp != queryStamp && entry.minX <= maxX && minX <= entry.maxX
+                                    && entry.minZ <= maxZ && minZ <= entry.maxZ) {
+                                entry.queryStamp = queryStamp;
+                                store.add(entry.item);
+                                foundItemCount++;
+                            }
+                        }
+                }
+        }
+        return (foundItemCount);
+    }
+}
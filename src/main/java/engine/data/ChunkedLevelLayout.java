@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.data;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.ardor3d.math.type.ReadOnlyVector3;
+
+/**
+ * Layout of a chunked level, i.e a level whose main model is split into square
+ * tiles on the horizontal plane (X and Z), each tile being stored into its own
+ * mapped level file. It's read from the manifest written by JFPSM (see
+ * <code>jfpsm.conversion.ArdorToChunkedLevelConverter</code> for the layout).
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public final class ChunkedLevelLayout {
+
+    /** extension of the manifests */
+    public static final String FILE_EXTENSION = ".chunks";
+
+    private static final byte[] MAGIC = "TUERCHNK".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int VERSION = 1;
+
+    /**
+     * Tile of a chunked level
+     */
+    public static final class Tile {
+
+        private final int tileX;
+
+        private final int tileZ;
+
+        private final float minX, minY, minZ;
+
+        private final float maxX, maxY, maxZ;
+
+        private final URL url;
+
+        private final long byteSize;
+
+        private Tile(final int tileX, final int tileZ, final float minX, final float minY, final float minZ,
+                final float maxX, final float maxY, final float maxZ, final URL url, final long byteSize) {
+            super();
+            this.tileX = tileX;
+            this.tileZ = tileZ;
+            this.minX = minX;
+            this.minY = minY;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.maxZ = maxZ;
+            this.url = url;
+            this.byteSize = byteSize;
+        }
+
+        public int getTileX() {
+            return (tileX);
+        }
+
+        public int getTileZ() {
+            return (tileZ);
+        }
+
+        public float getMinX() {
+            return (minX);
+        }
+
+        public float getMinY() {
+            return (minY);
+        }
+
+        public float getMinZ() {
+            return (minZ);
+        }
+
+        public float getMaxX() {
+            return (maxX);
+        }
+
+        public float getMaxY() {
+            return (maxY);
+        }
+
+        public float getMaxZ() {
+            return (maxZ);
+        }
+
+        /**
+         * Returns the URL of the mapped level file of this tile
+         * 
+         * @return the URL of the mapped level file of this tile
+         */
+        public URL getUrl() {
+            return (url);
+        }
+
+        /**
+         * Returns the size of the mapped level file of this tile
+         * 
+         * @return the size of the mapped level file of this tile in bytes
+         */
+        public long getByteSize() {
+            return (byteSize);
+        }
+
+        /**
+         * Computes the distance between a location and the bounds of this tile
+         * on the horizontal plane
+         * 
+         * @param location
+         *            location
+         * @return the distance, zero if the location is above or below the
+         *         tile
+         */
+        public double getHorizontalDistance(final ReadOnlyVector3 location) {
+            final double dx = Math.max(0, Math.max(minX - location.getX(), location.getX() - maxX));
+            final double dz = Math.max(0, Math.max(minZ - location.getZ(), location.getZ() - maxZ));
+            return (Math.sqrt(dx * dx + dz * dz));
+        }
+
+        @Override
+        public String toString() {
+            return ("Tile [" + tileX + ", " + tileZ + "]");
+        }
+    }
+
+    private final float tileSize;
+
+    private final List<Tile> tiles;
+
+    private ChunkedLevelLayout(final float tileSize, final List<Tile> tiles) {
+        super();
+        this.tileSize = tileSize;
+        this.tiles = Collections.unmodifiableList(tiles);
+    }
+
+    /**
+     * Returns the name of the manifest matching an Ardor3D binary file
+     * 
+     * @param resourceName
+     *            name of the Ardor3D binary file, ending with ".abin"
+     * @return the name of the manifest
+     */
+    public static String getManifestResourceName(final String resourceName) {
+        final String baseName = resourceName.endsWith(".abin")
+                ? resourceName.substring(0, resourceName.length() - ".abin".length())
+                : resourceName;
+        return (baseName + FILE_EXTENSION);
+    }
+
+    /**
+     * Reads the layout of a chunked level from its manifest, the files of the
+     * tiles are resolved relatively to the manifest
+     * 
+     * @param manifestUrl
+     *            URL of the manifest
+     * @return the layout of the chunked level
+     * @throws IOException
+     *             if the manifest cannot be read or if it isn't valid
+     */
+    public static ChunkedLevelLayout read(final URL manifestUrl) throws IOException {
+        try (final InputStream inputStream = manifestUrl.openStream();
+                final DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream))) {
+            final byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC))
+                throw new IOException("Not a chunked level manifest");
+            final int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported version of chunked level manifest: " + version);
+            final float tileSize = in.readFloat();
+            final int tileCount = in.readInt();
+            if (!(tileSize > 0) || tileCount < 0)
+                throw new IOException("Invalid chunked level manifest");
+            final List<Tile> tiles = new ArrayList<>(tileCount);
+            for (int tileIndex = 0; tileIndex < tileCount; tileIndex++) {
+                final int tileX = in.readInt();
+                final int tileZ = in.readInt();
+                final float minX = in.readFloat();
+                final float minY = in.readFloat();
+                final float minZ = in.readFloat();
+                final float maxX = in.readFloat();
+                final float maxY = in.readFloat();
+                final float maxZ = in.readFloat();
+                final URL tileUrl = new URL(manifestUrl, in.readUTF());
+                final long byteSize = in.readLong();
+                tiles.add(new Tile(tileX, tileZ, minX, minY, minZ, maxX, maxY, maxZ, tileUrl, byteSize));
+            }
+            return (new ChunkedLevelLayout(tileSize, tiles));
+        }
+    }
+
+    public float getTileSize() {
+        return (tileSize);
+    }
+
+    public List<Tile> getTiles() {
+        return (tiles);
+    }
+
+    /**
+     * Returns the total size of the files of the tiles
+     * 
+     * @return the total size of the files of the tiles in bytes
+     */
+    public long getByteSize() {
+        long byteSize = 0;
+        for (final Tile tile : tiles)
+            byteSize += tile.byteSize;
+        return (byteSize);
+    }
+}
@@ -0,0 +1,292 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.data;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import com.ardor3d.scenegraph.Mesh;
+
+import engine.misc.MD2FrameSet;
+
+/**
+ * Dense table of the enemies of a level (structure of arrays). The enemies are
+ * stored contiguously so that the per-frame loops only read arrays, the
+ * removal of an enemy swaps it with the last one. Each enemy gets an handle
+ * that remains valid until its removal whereas its index in the table can
+ * change.
+ *
+ * @author Julien Gouesse
+ *
+ */
+public final class EnemyTable {
+
+    /** detection time of an enemy that has never detected the player */
+    public static final long NEVER = Long.MIN_VALUE;
+    /** maximum health */
+    private static final int maxHealth = 100;
+    /** count of enemies */
+    private int size;
+    /** meshes of the enemies */
+    private Mesh[] meshes;
+    /** meshes of the weapons of the enemies */
+    private Mesh[] weaponMeshes;
+    /** latest detection times in nanoseconds */
+    private long[] latestDetectionTimes;
+    /** flags indicating whether nothing occluded the player from the enemies during their latest detection */
+    private boolean[] playerSeenFlags;
+    /** current animations */
+    private MD2FrameSet[] animations;
+    /** current healths */
+    private int[] healths;
+    /** flags indicating whether the enemies have been hit during this frame */
+    private boolean[] hitFlags;
+    /** handles of the enemies by index */
+    private int[] handles;
+    /** indices of the enemies by handle, -1 for unused handles */
+    private int[] indices;
+    /** next handle to reuse, -1 if none (linked through {@link #freeHandles}) */
+    private int firstFreeHandle;
+    /** free handles list */
+    private int[] freeHandles;
+    /** count of handles already used */
+    private int handleCount;
+    /** handles of the enemies by mesh */
+    private final IdentityHashMap<Mesh, Integer> handlesByMesh;
+
+    /**
+     * Constructor
+     */
+    public EnemyTable() {
+        super();
+        handlesByMesh = new IdentityHashMap<>();
+        meshes = new Mesh[0];
+        weaponMeshes = new Mesh[0];
+        latestDetectionTimes = new long[0];
+        playerSeenFlags = new boolean[0];
+        animations = new MD2FrameSet[0];
+        healths = new int[0];
+        hitFlags = new boolean[0];
+        handles = new int[0];
+        indices = new int[0];
+        freeHandles = new int[0];
+        firstFreeHandle = -1;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (meshes.length < capacity) {
+            final int newCapacity = Math.max(capacity, Math.max(8, meshes.length * 2));
+            meshes = Arrays.copyOf(meshes, newCapacity);
+            weaponMeshes = Arrays.copyOf(weaponMeshes, newCapacity);
+            latestDetectionTimes = Arrays.copyOf(latestDetectionTimes, newCapacity);
+            playerSeenFlags = Arrays.copyOf(playerSeenFlags, newCapacity);
+            animations = Arrays.copyOf(animations, newCapacity);
+            healths = Arrays.copyOf(healths, newCapacity);
+            hitFlags = Arrays.copyOf(hitFlags, newCapacity);
+            handles = Arrays.copyOf(handles, newCapacity);
+            indices = Arrays.copyOf(indices, newCapacity);
+            freeHandles = Arrays.copyOf(freeHandles, newCapacity);
+        }
+    }
+
+    /**
+     * Adds an enemy at full health, standing
+     *
+     * @param mesh
+     *            mesh of the enemy
+     * @param weaponMesh
+     *            mesh of its weapon
+     * @return the handle of the enemy
+     */
+    public int add(final Mesh mesh, final Mesh weaponMesh) {
+        if (handlesByMesh.containsKey(mesh))
+            throw new IllegalArgumentException("The enemy " + mesh.getName() + " is already in the table");
+        ensureCapacity(size + 1);
+        final int handle;
+        if (firstFreeHandle == -1)
+            handle = handleCount++;
+        else {
+            handle = firstFreeHandle;
+            firstFreeHandle = freeHandles[handle];
+        }
+        final int index = size++;
+        meshes[index] = mesh;
+        weaponMeshes[index] = weaponMesh;
+        latestDetectionTimes[index] = NEVER;
+        playerSeenFlags[index] = false;
+        animations[index] = MD2FrameSet.STAND;
+        healths[index] = maxHealth;
+        hitFlags[index] = false;
+        handles[index] = handle;
+        indices[handle] = index;
+        handlesByMesh.put(mesh, Integer.valueOf(handle));
+        return (handle);
+    }
+
+    /**
+     * Removes an enemy, the last enemy of the table takes its index
+     *
+     * @param handle
+     *            handle of the enemy
+     */
+    public void remove(final int handle) {
+        final int index = getIndex(handle);
+        final int lastIndex = --size;
+        handlesByMesh.remove(meshes[index]);
+        if (index != lastIndex) {
+            meshes[index] = meshes[lastIndex];
+            weaponMeshes[index] = weaponMeshes[lastIndex];
+            latestDetectionTimes[index] = latestDetectionTimes[lastIndex];
+            playerSeenFlags[index] = playerSeenFlags[lastIndex];
+            animations[index] = animations[lastIndex];
+            healths[index] = healths[lastIndex];
+            hitFlags[index] = hitFlags[lastIndex];
+            handles[index] = handles[lastIndex];
+            indices[handles[index]] = index;
+        }
+        meshes[lastIndex] = null;
+        weaponMeshes[lastIndex] = null;
+        animations[lastIndex] = null;
+        indices[handle] = -1;
+        freeHandles[handle] = firstFreeHandle;
+        firstFreeHandle = handle;
+    }
+
+    /**
+     * Removes all enemies, the handles are no longer valid
+     */
+    public void clear() {
+        Arrays.fill(meshes, 0, size, null);
+        Arrays.fill(weaponMeshes, 0, size, null);
+        Arrays.fill(animations, 0, size, null);
+        handlesByMesh.clear();
+        size = 0;
+        handleCount = 0;
+        firstFreeHandle = -1;
+    }
+
+    /**
+     * Returns the count of enemies
+     *
+     * @return the count of enemies
+     */
+    public int size() {
+        return (size);
+    }
+
+    /**
+     * Returns the current index of an enemy
+     *
+     * @param handle
+     *            handle of the enemy
+     * @return the index of the enemy
+     */
+    public int getIndex(final int handle) {
+        if (handle < 0 || handle >= handleCount || indices[handle] == -1)
+            throw new IllegalArgumentException("Invalid handle " + handle);
+        return (indices[handle]);
+    }
+
+    /**
+     * Returns the index of the enemy using a mesh
+     *
+     * @param mesh
+     *            mesh of an enemy
+     * @return the index of the enemy, -1 if this mesh isn't the mesh of any
+     *         enemy of the table
+     */
+    public int indexOf(final Object mesh) {
+        final Integer handle = handlesByMesh.get(mesh);
+        return (handle == null ? -1 : indices[handle.intValue()]);
+    }
+
+    public int getHandle(final int index) {
+        return (handles[index]);
+    }
+
+    public Mesh getMesh(final int index) {
+        return (meshes[index]);
+    }
+
+    public Mesh getWeaponMesh(final int index) {
+        return (weaponMeshes[index]);
+    }
+
+    public long getLatestDetectionTime(final int index) {
+        return (latestDetectionTimes[index]);
+    }
+
+    public void setLatestDetectionTime(final int index, final long latestDetectionTime) {
+        latestDetectionTimes[index] = latestDetectionTime;
+    }
+
+    public boolean isPlayerSeen(final int index) {
+        return (playerSeenFlags[index]);
+    }
+
+    public void setPlayerSeen(final int index, final boolean playerSeen) {
+        playerSeenFlags[index] = playerSeen;
+    }
+
+    public MD2FrameSet getAnimation(final int index) {
+        return (animations[index]);
+    }
+
+    public void setAnimation(final int index, final MD2FrameSet animation) {
+        animations[index] = animation;
+    }
+
+    public int getHealth(final int index) {
+        return (healths[index]);
+    }
+
+    public boolean isAlive(final int index) {
+        return (healths[index] > 0);
+    }
+
+    /**
+     * decreases the health
+     *
+     * @param index
+     *            index of the enemy
+     * @param damage
+     *            the suggested decrease of health
+     * @return the real decrease of health
+     */
+    public int decreaseHealth(final int index, final int damage) {
+        final int oldHealth = healths[index];
+        if (damage > 0)
+            healths[index] = Math.max(0, oldHealth - damage);
+        return (oldHealth - healths[index]);
+    }
+
+    public boolean isHit(final int index) {
+        return (hitFlags[index]);
+    }
+
+    public void setHit(final int index, final boolean hit) {
+        hitFlags[index] = hit;
+    }
+
+    /**
+     * Resets the flags indicating whether the enemies have been hit
+     */
+    public void clearHitFlags() {
+        Arrays.fill(hitFlags, 0, size, false);
+    }
+}
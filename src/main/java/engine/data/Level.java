@@ -20,17 +20,20 @@ package engine.data;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.Map.Entry;
 
 import com.ardor3d.bounding.BoundingBox;
 import com.ardor3d.extension.model.util.KeyframeController;
-import com.ardor3d.extension.model.util.KeyframeController.PointInTime;
 import com.ardor3d.image.Image;
 import com.ardor3d.image.Texture;
 import com.ardor3d.image.util.ImageLoaderUtil;
@@ -38,18 +41,27 @@ import com.ardor3d.image.util.ImageUtils;
 import com.ardor3d.math.ColorRGBA;
 import com.ardor3d.math.Matrix3;
 import com.ardor3d.math.Quaternion;
+import com.ardor3d.math.Transform;
 import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyTransform;
 import com.ardor3d.math.type.ReadOnlyVector3;
+import com.ardor3d.renderer.state.RenderState.StateType;
 import com.ardor3d.renderer.state.TextureState;
+import com.ardor3d.scenegraph.AbstractBufferData;
 import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.MeshData;
 import com.ardor3d.scenegraph.Node;
 import com.ardor3d.scenegraph.Spatial;
 import com.ardor3d.scenegraph.controller.ComplexSpatialController.RepeatType;
 import com.ardor3d.scenegraph.shape.Box;
+import com.ardor3d.scenegraph.visitor.Visitor;
 import com.ardor3d.util.TextureManager;
 import com.ardor3d.util.export.binary.BinaryImporter;
 import com.ardor3d.util.resource.URLResourceSource;
 
+import engine.collision.BoundingBoxTree;
+import engine.collision.CollisionGrid;
+import engine.collision.PackedCollisionVolumes;
 import engine.data.common.AmmunitionBox;
 import engine.data.common.AmmunitionBoxFactory;
 import engine.data.common.Medikit;
@@ -60,8 +72,12 @@ import engine.data.common.userdata.AmmunitionBoxUserData;
 import engine.data.common.userdata.MedikitUserData;
 import engine.data.common.userdata.TeleporterUserData;
 import engine.data.common.userdata.WeaponUserData;
+import engine.misc.DeallocatableBufferResolver;
+import engine.misc.DirectBufferArena;
+import engine.misc.KeyframeAnimationLod;
+import engine.misc.KeyframeStore;
 import engine.misc.MD2FrameSet;
-import engine.misc.NodeHelper;
+import engine.telemetry.DirectMemoryLedger;
 import engine.weaponry.Weapon;
 import engine.weaponry.WeaponFactory;
 
@@ -100,19 +116,35 @@ public class Level implements Comparable<Level> {
     // TODO move the fields below into another class
     /** binary importer used to import all scenegraph objects of this level */
     private final BinaryImporter binaryImporter;
+    /** importer of the mapped level file, used when it is available */
+    private final MappedLevelImporter mappedLevelImporter;
+    /** resolver used to find the buffers recorded in the ledger */
+    private static final DeallocatableBufferResolver deallocatableBufferResolver = new DeallocatableBufferResolver();
+    /** streaming manager of the tiles of the main model, null if it isn't chunked */
+    private LevelStreamingManager streamingManager;
+    /** arena of the buffers of the main model, null if it isn't imported */
+    private DirectBufferArena bufferArena;
     /** sky box */
     private com.ardor3d.scenegraph.extension.Skybox skyboxModel;
     /** root node whose hierarchy contains the geometry of the main model */
     private Node mainModel;
     /**
-     * @deprecated this collision map is a temporary solution, the real
-     *             collision system will have to use the 3D mesh instead of a
-     *             flat 2D array
+     * collision grid read from the collision map, used to resolve the
+     * movements of the player when the level has no collision volume
      */
-    @Deprecated
-    private boolean[][] collisionMap;
+    private CollisionGrid collisionGrid;
 
     private List<BoundingBox> boundingBoxList;
+    /**
+     * collision volumes read from the packed file, the bounding boxes are
+     * created only on demand
+     */
+    private PackedCollisionVolumes packedCollisionVolumes;
+    /** tree of the collision volumes, built once they're read */
+    private BoundingBoxTree boundingBoxTree;
+    /** rotation and scale applied to the models of the enemies and of their weapons */
+    private static final ReadOnlyTransform enemyModelTransform = new Transform()
+            .setRotation(new Quaternion().fromEulerAngles(-Math.PI / 2, 0, -Math.PI / 2)).setScale(0.015);
 
     public Level(final String label, final String identifier, final String resourceName,
             final String boundingBoxListResourceName, final Map<String, ReadOnlyVector3[]> enemyPositionsMap,
@@ -132,12 +164,15 @@ public class Level implements Comparable<Level> {
         this.skyboxIdentifier = skyboxIdentifier;
         this.teleporterPositionsMap = teleporterPositionsMap;
         this.boundingBoxList = null;
+        this.packedCollisionVolumes = null;
+        this.boundingBoxTree = null;
         final List<Objective> localObjectives = new ArrayList<>();
         if (objectives != null && objectives.length > 0)
             localObjectives.addAll(Arrays.asList(objectives));
         this.objectives = Collections.unmodifiableList(localObjectives);
         // TODO move it into another class
         this.binaryImporter = new BinaryImporter();
+        this.mappedLevelImporter = new MappedLevelImporter();
     }
 
     @Deprecated
@@ -145,43 +180,83 @@ public class Level implements Comparable<Level> {
         final URL mapUrl = Level.class.getResource("/images/containermap.png");
         final URLResourceSource mapSource = new URLResourceSource(mapUrl);
         final Image map = ImageLoaderUtil.loadImage(mapSource, false);
-        collisionMap = new boolean[map.getWidth()][map.getHeight()];
+        final CollisionGrid localCollisionGrid = new CollisionGrid(map.getWidth(), map.getHeight());
         for (int y = 0; y < map.getHeight(); y++)
             for (int x = 0; x < map.getWidth(); x++) {
                 final int argb = ImageUtils.getARGB(map, x, y);
-                collisionMap[x][y] = (argb == ColorRGBA.BLUE.asIntARGB());
+                if (argb == ColorRGBA.BLUE.asIntARGB())
+                    localCollisionGrid.set(x, y, true);
             }
+        collisionGrid = localCollisionGrid;
     }
 
-    public final void readCollisionVolumes() {
-        if (boundingBoxList == null && boundingBoxListResourceName != null) {
-            final URL url = getClass().getResource(boundingBoxListResourceName);
-            // if the file can be found
-            if (url != null) {// creates the list to store the bounding boxes
-                final ArrayList<BoundingBox> localBoundingBoxList = new ArrayList<>();
-                // uses a try with resource to ensure that there is no leak
-                try (final InputStream inputStream = url.openStream()) {
-                    // loops on the savable instances in the stream
-                    while (inputStream.available() > 0) {
-                        // loads a bounding box
-                        final BoundingBox boundingBox = (BoundingBox) binaryImporter.load(inputStream);
-                        // adds it into the list
-                        localBoundingBoxList.add(boundingBox);
+    public final synchronized void readCollisionVolumes() {
+        if (boundingBoxList == null && packedCollisionVolumes == null && boundingBoxListResourceName != null) {
+            // prefers the packed file if any as it's read in a single bulk
+            // operation
+            final URL packedUrl = getClass()
+                    .getResource(PackedCollisionVolumes.getPackedResourceName(boundingBoxListResourceName));
+            if (packedUrl != null) {
+                try {
+                    packedCollisionVolumes = PackedCollisionVolumes.read(packedUrl);
+                    if (packedCollisionVolumes.getBoxCount() > 0)
+                        boundingBoxTree = packedCollisionVolumes.createTree();
+                } catch (IOException | IllegalArgumentException e) {
+                    throw new RuntimeException("level collision volumes loading failed", e);
+                }
+            } else {
+                final URL url = getClass().getResource(boundingBoxListResourceName);
+                // if the file can be found
+                if (url != null) {
+                    // uses a try with resource to ensure that there is no leak
+                    try (final InputStream inputStream = url.openStream()) {
+                        boundingBoxList = Collections
+                                .unmodifiableList(PackedCollisionVolumes.readSavables(inputStream));
+                        if (!boundingBoxList.isEmpty())
+                            boundingBoxTree = new BoundingBoxTree(boundingBoxList);
+                    } catch (IOException ioe) {
+                        throw new RuntimeException("level collision volumes loading failed", ioe);
                     }
-                    boundingBoxList = Collections.unmodifiableList(localBoundingBoxList);
-                } catch (IOException ioe) {
-                    throw new RuntimeException("level collision volumes loading failed", ioe);
                 }
             }
         }
     }
 
     public final List<BoundingBox> getCollisionVolumes() {
+        if (boundingBoxList == null && packedCollisionVolumes != null)
+            boundingBoxList = Collections.unmodifiableList(packedCollisionVolumes.createBoundingBoxes());
         return (boundingBoxList);
     }
 
+    /**
+     * Returns the tree of the collision volumes. As JFPSM writes them in the
+     * frame of the map of the level, the ordinate of a volume is the row of
+     * the map (i.e the applicate in the world) and its applicate is the floor
+     * (i.e the ordinate in the world)
+     *
+     * @return the tree of the collision volumes, <code>null</code> if they
+     *         haven't been read or if there is none
+     */
+    public final BoundingBoxTree getCollisionVolumeTree() {
+        return (boundingBoxTree);
+    }
+
+    /**
+     * Creates the enemies and their weapons, the templates of their models are
+     * taken from the cache
+     * 
+     * @param enemyFactory
+     *            factory of the enemies
+     * @param animationLod
+     *            level of detail of the animations
+     * @param modelTemplateCache
+     *            cache of the templates of the animated models
+     * @return the meshes of the enemies followed by the meshes of their
+     *         weapons, <code>null</code> if there is no enemy
+     */
     @SuppressWarnings("unchecked")
-    public List<Mesh> loadEnemyModels(final EnemyFactory enemyFactory) {
+    public List<Mesh> loadEnemyModels(final EnemyFactory enemyFactory, final KeyframeAnimationLod animationLod,
+            final ModelTemplateCache modelTemplateCache) {
         List<Mesh> enemyMeshes = null;
         if (enemyPositionsMap != null && !enemyPositionsMap.isEmpty()) {
             final int enemyCount = enemyFactory.getSize();
@@ -193,44 +268,14 @@ public class Level implements Comparable<Level> {
                     if (enemyMeshes == null)
                         enemyMeshes = new ArrayList<>();
                     try {
-                        final Mesh weaponNodeTemplate = (Mesh) binaryImporter
-                                .load(getClass().getResource("/abin/weapon.abin"));
-                        weaponNodeTemplate.setRotation(new Quaternion().fromEulerAngles(-Math.PI / 2, 0, -Math.PI / 2));
-                        weaponNodeTemplate.setScale(0.015);
-                        // the transform of the mesh mustn't be polluted by the
-                        // initial rotation and scale as it is used to know the
-                        // orientation of the weapon
-                        NodeHelper.applyTransformToMeshData(weaponNodeTemplate);
-                        weaponNodeTemplate.updateModelBound();
-                        weaponNodeTemplate.updateWorldBound(true);
-                        final KeyframeController<Mesh> weaponKeyframeControllerTemplate = (KeyframeController<Mesh>) weaponNodeTemplate
-                                .getController(0);
-                        for (PointInTime pit : weaponKeyframeControllerTemplate._keyframes) {
-                            pit._newShape.setScale(0.015);
-                            pit._newShape.setRotation(new Quaternion().fromEulerAngles(-Math.PI / 2, 0, -Math.PI / 2));
-                            NodeHelper.applyTransformToMeshData(pit._newShape);
-                            pit._newShape.updateModelBound();
-                            pit._newShape.updateWorldBound(true);
-                        }
-                        final String enemyResourceName = enemy.getResourceName();
-                        final Mesh enemyNodeTemplate = (Mesh) binaryImporter
-                                .load(getClass().getResource(enemyResourceName));
-                        enemyNodeTemplate.setRotation(new Quaternion().fromEulerAngles(-Math.PI / 2, 0, -Math.PI / 2));
-                        enemyNodeTemplate.setScale(0.015);
-                        NodeHelper.applyTransformToMeshData(enemyNodeTemplate);
-                        enemyNodeTemplate.updateModelBound();
-                        enemyNodeTemplate.updateWorldBound(true);
-                        final KeyframeController<Mesh> soldierKeyframeControllerTemplate = (KeyframeController<Mesh>) enemyNodeTemplate
-                                .getController(0);
-                        for (PointInTime pit : soldierKeyframeControllerTemplate._keyframes) {
-                            pit._newShape.setScale(0.015);
-                            pit._newShape.setRotation(new Quaternion().fromEulerAngles(-Math.PI / 2, 0, -Math.PI / 2));
-                            NodeHelper.applyTransformToMeshData(pit._newShape);
-                            pit._newShape.updateModelBound();
-                            pit._newShape.updateWorldBound(true);
-                        }
+                        // the keyframes are shared by all enemies of this
+                        // type, each of them owns only its current pose
+                        final KeyframeStore weaponKeyframeStore = modelTemplateCache
+                                .getKeyframeStore("/abin/weapon.abin", enemyModelTransform);
+                        final KeyframeStore enemyKeyframeStore = modelTemplateCache
+                                .getKeyframeStore(enemy.getResourceName(), enemyModelTransform);
                         for (ReadOnlyVector3 enemyPos : enemiesPos) {
-                            final Mesh enemyNode = NodeHelper.makeCopy(enemyNodeTemplate, true);
+                            final Mesh enemyNode = enemyKeyframeStore.createInstance(animationLod);
                             enemyNode.setName("enemy@" + enemyNode.hashCode());
                             enemyNode.setTranslation(enemyPos);
                             final KeyframeController<Mesh> enemyKeyframeController = (KeyframeController<Mesh>) enemyNode
@@ -244,7 +289,7 @@ public class Level implements Comparable<Level> {
                             enemyKeyframeController.setCurTime(MD2FrameSet.STAND.getFirstFrameIndex());
                             enemyKeyframeController.setMinTime(MD2FrameSet.STAND.getFirstFrameIndex());
                             enemyKeyframeController.setMaxTime(MD2FrameSet.STAND.getLastFrameIndex());
-                            final Mesh weaponNode = NodeHelper.makeCopy(weaponNodeTemplate, true);
+                            final Mesh weaponNode = weaponKeyframeStore.createInstance(animationLod);
                             weaponNode.setName("weapon of " + enemyNode.getName());
                             weaponNode.setTranslation(enemyPos);
                             final KeyframeController<Mesh> weaponKeyframeController = (KeyframeController<Mesh>) weaponNode
@@ -257,6 +302,10 @@ public class Level implements Comparable<Level> {
                             weaponKeyframeController.setCurTime(MD2FrameSet.STAND.getFirstFrameIndex());
                             weaponKeyframeController.setMinTime(MD2FrameSet.STAND.getFirstFrameIndex());
                             weaponKeyframeController.setMaxTime(MD2FrameSet.STAND.getLastFrameIndex());
+                            // the other buffers belong to the templates of the
+                            // cache
+                            recordPoseBuffers(enemyKeyframeStore, enemyNode, enemy.getResourceName());
+                            recordPoseBuffers(weaponKeyframeStore, weaponNode, "/abin/weapon.abin");
                             enemyMeshes.add(enemyNode);
                             enemyMeshes.add(weaponNode);
                         }
@@ -288,6 +337,7 @@ public class Level implements Comparable<Level> {
                             final Node teleporterNode = new Node(teleporterLabel);
                             final Box teleporterBox = new Box(teleporterLabel, new Vector3(0, 0, 0), 0.5, 0.05, 0.5);
                             teleporterBox.setRandomColors();
+                            recordDirectBuffers(teleporterBox, teleporterIdentifier);
                             teleporterNode.setTranslation(teleporterPos);
                             teleporterNode.attachChild(teleporterBox);
                             // TODO set the destination
@@ -321,6 +371,7 @@ public class Level implements Comparable<Level> {
                             TextureManager.load(new URLResourceSource(getClass().getResource(textureResourceName)),
                                     Texture.MinificationFilter.Trilinear, true));
                     medikitBox.setRenderState(ts);
+                    recordDirectBuffers(medikitBox, textureResourceName);
                     for (final ReadOnlyVector3 medikitPos : medikitsPos) {
                         final Node medikitNode = new Node(medikitLabel);
                         medikitNode.setTranslation(medikitPos);
@@ -357,6 +408,7 @@ public class Level implements Comparable<Level> {
                                 new URLResourceSource(getClass().getResource(ammoTextureResourceName)),
                                 Texture.MinificationFilter.Trilinear, true));
                         ammoBoxBox.setRenderState(ts);
+                        recordDirectBuffers(ammoBoxBox, ammoTextureResourceName);
                         ammoBoxNode.setTranslation(ammoBoxPos);
                         ammoBoxNode.attachChild(ammoBoxBox);
                         ammoBoxNode.setUserData(new AmmunitionBoxUserData(ammunitionBoxFactory.get(ammoBoxIdentifier)));
@@ -401,6 +453,8 @@ public class Level implements Comparable<Level> {
                         final Node weaponTemplateNode = (Node) binaryImporter
                                 .load(getClass().getResource(weaponResourceName));
                         weaponTemplateNode.setName(weaponLabel);
+                        // the copies share the buffers of the template
+                        recordDirectBuffers(weaponTemplateNode, weaponResourceName);
                         final boolean digitalWatermarkEnabled, primary;
                         switch (weaponIdentifier) {
                         case "PISTOL_9MM": {// removes the bullet as it is not
@@ -483,16 +537,75 @@ public class Level implements Comparable<Level> {
     }
 
     public Node loadMainModel() {
+        return (loadMainModel(0));
+    }
+
+    /**
+     * Loads the main model. If the level has a chunked layout and if the
+     * streaming is enabled, the main model is empty, its tiles are attached
+     * and detached by the streaming manager
+     * 
+     * @param streamingRadius
+     *            distance under which the tiles of a chunked level are loaded,
+     *            zero to disable the streaming and to load the whole level
+     * @return the main model
+     */
+    public synchronized Node loadMainModel(final double streamingRadius) {
         if (mainModel == null) {
+            // the blocks of the arena are recorded as owned by the main model
+            final DirectMemoryLedger.Scope scope = DirectMemoryLedger.getInstance().openScope(identifier,
+                    resourceName);
             try {
-                mainModel = (Node) binaryImporter.load(getClass().getResource(resourceName));
+                final URL manifestUrl = streamingRadius > 0
+                        ? getClass().getResource(ChunkedLevelLayout.getManifestResourceName(resourceName))
+                        : null;
+                if (manifestUrl != null) {
+                    final ChunkedLevelLayout layout = ChunkedLevelLayout.read(manifestUrl);
+                    mainModel = new Node(identifier);
+                    // half a tile of hysteresis
+                    streamingManager = new LevelStreamingManager(layout, mainModel, streamingRadius,
+                            streamingRadius + layout.getTileSize() / 2);
+                } else {
+                    // prefers the mapped level file if any as its buffers
+                    // aren't copied
+                    final URL mappedLevelUrl = getClass()
+                            .getResource(MappedLevelImporter.getMappedResourceName(resourceName));
+                    if (mappedLevelUrl == null) {
+                        mainModel = (Node) binaryImporter.load(getClass().getResource(resourceName));
+                        // the imported buffers are released once copied into
+                        // the arena
+                        recordDirectBuffers(mainModel, resourceName);
+                        // the buffers of a previous main model disposed
+                        // without its arena are no longer used
+                        if (bufferArena != null)
+                            bufferArena.close();
+                        // the native memory of the buffers and of the images
+                        // is released as soon as the level is unloaded
+                        bufferArena = new DirectBufferArena();
+                        bufferArena.moveMeshBuffers(mainModel);
+                        bufferArena.moveTextureImages(mainModel);
+                    } else
+                        mainModel = mappedLevelImporter.load(mappedLevelUrl);
+                }
             } catch (IOException ioe) {
                 throw new RuntimeException("level loading failed", ioe);
+            } finally {
+                scope.close();
             }
         }
         return (mainModel);
     }
 
+    /**
+     * Returns the streaming manager of the main model
+     * 
+     * @return the streaming manager of the main model, null if the level isn't
+     *         chunked or if the streaming is disabled
+     */
+    public LevelStreamingManager getStreamingManager() {
+        return (streamingManager);
+    }
+
     public Node getMainModel() {
         return (mainModel);
     }
@@ -527,6 +640,7 @@ public class Level implements Comparable<Level> {
                 skyboxModel.setTexture(com.ardor3d.scenegraph.extension.Skybox.Face.East, east);
                 skyboxModel.setTexture(com.ardor3d.scenegraph.extension.Skybox.Face.Up, up);
                 skyboxModel.setTexture(com.ardor3d.scenegraph.extension.Skybox.Face.Down, down);
+                recordDirectBuffers(skyboxModel, skyboxIdentifier);
             }
         }
         return (skyboxModel);
@@ -536,17 +650,116 @@ public class Level implements Comparable<Level> {
         return (skyboxModel);
     }
 
+    /**
+     * Records the direct buffers of the meshes and of the images of the
+     * textures of a spatial and of its descendants in the ledger, as owned by
+     * an asset of this level
+     * 
+     * @param spatial
+     *            spatial
+     * @param assetPath
+     *            path of the asset
+     */
+    private void recordDirectBuffers(final Spatial spatial, final String assetPath) {
+        final DirectMemoryLedger.Scope scope = DirectMemoryLedger.getInstance().openScope(identifier, assetPath);
+        try {
+            recordDirectBuffers(spatial);
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * Records the buffers of the pose of an instance of an animated model in
+     * the ledger, as owned by an asset of this level
+     * 
+     * @param keyframeStore
+     *            store that created the instance
+     * @param instance
+     *            instance of the animated model
+     * @param assetPath
+     *            path of the asset
+     */
+    private void recordPoseBuffers(final KeyframeStore keyframeStore, final Mesh instance, final String assetPath) {
+        final DirectMemoryLedger.Scope scope = DirectMemoryLedger.getInstance().openScope(identifier, assetPath);
+        try {
+            for (final AbstractBufferData<?> bufferData : keyframeStore.getPoseBufferData(instance))
+                recordBuffer(bufferData);
+        } finally {
+            scope.close();
+        }
+    }
+
+    /**
+     * Records the direct buffers of the meshes and of the images of the
+     * textures of a spatial and of its descendants in the ledger, as owned by
+     * the current scope
+     * 
+     * @param spatial
+     *            spatial
+     */
+    static void recordDirectBuffers(final Spatial spatial) {
+        spatial.acceptVisitor(new Visitor() {
+            @Override
+            public void visit(final Spatial visitedSpatial) {
+                if (visitedSpatial instanceof Mesh) {
+                    final MeshData meshData = ((Mesh) visitedSpatial).getMeshData();
+                    recordBuffer(meshData.getVertexCoords());
+                    recordBuffer(meshData.getNormalCoords());
+                    recordBuffer(meshData.getColorCoords());
+                    recordBuffer(meshData.getFogCoords());
+                    recordBuffer(meshData.getTangentCoords());
+                    for (final AbstractBufferData<?> textureCoords : meshData.getTextureCoords())
+                        recordBuffer(textureCoords);
+                    recordBuffer(meshData.getIndices());
+                    recordBuffer(meshData.getInterleavedData());
+                }
+                final TextureState textureState = (TextureState) visitedSpatial.getLocalRenderState(StateType.Texture);
+                if (textureState != null)
+                    for (int textureUnit = 0; textureUnit <= textureState.getMaxTextureIndexUsed(); textureUnit++) {
+                        final Texture texture = textureState.getTexture(textureUnit);
+                        final Image image = texture == null ? null : texture.getImage();
+                        // the image of the default texture is shared by all
+                        // levels
+                        if (image != null && image != TextureState.getDefaultTextureImage()
+                                && image.getDataSize() >= 1)
+                            for (final ByteBuffer data : image.getData())
+                                recordBuffer(data);
+                    }
+            }
+        }, false);
+    }
+
+    private static void recordBuffer(final AbstractBufferData<?> bufferData) {
+        if (bufferData != null)
+            recordBuffer(bufferData.getBuffer());
+    }
+
+    private static void recordBuffer(final Buffer buffer) {
+        // the views are recorded through the buffers owning their native
+        // memory
+        if (buffer != null)
+            DirectMemoryLedger.getInstance()
+                    .recordAllocation(deallocatableBufferResolver.findDeallocatableBuffer(buffer));
+    }
+
     /**
      * Removes the disposable spatials from the level
      * 
      * @return the list of removed disposable spatials
      */
-    public List<Spatial> removeDisposableSpatials() {
+    public synchronized List<Spatial> removeDisposableSpatials() {
         final List<Spatial> disposableSpatials = new ArrayList<>();
         if (this.skyboxModel != null) {
             disposableSpatials.add(this.skyboxModel);
             this.skyboxModel = null;
         }
+        if (this.streamingManager != null) {
+            // the tiles detached by the streaming manager are disposed too
+            this.streamingManager.setTileDisposer(disposableSpatials::add);
+            this.streamingManager.dispose();
+            this.streamingManager = null;
+        }
         if (this.mainModel != null) {
             disposableSpatials.add(this.mainModel);
             this.mainModel = null;
@@ -554,6 +767,97 @@ public class Level implements Comparable<Level> {
         return (disposableSpatials);
     }
 
+    /**
+     * Removes the arena of the buffers of the main model, it must be closed
+     * once the main model is disposed
+     * 
+     * @return the arena of the buffers of the main model, null if none
+     */
+    public synchronized DirectBufferArena removeBufferArena() {
+        final DirectBufferArena bufferArena = this.bufferArena;
+        this.bufferArena = null;
+        return (bufferArena);
+    }
+
+    /**
+     * Releases the data loaded in advance whereas this level isn't played,
+     * i.e the main model and the collision volumes. They must have no resource
+     * on the GPU
+     */
+    public synchronized void releasePreloadedData() {
+        removeDisposableSpatials();
+        final DirectBufferArena bufferArena = removeBufferArena();
+        if (bufferArena != null)
+            bufferArena.close();
+        boundingBoxList = null;
+        packedCollisionVolumes = null;
+        boundingBoxTree = null;
+    }
+
+    /**
+     * Estimates the memory footprint of the loaded data of this level, i.e the
+     * buffers of the meshes and the images of the textures of the main model
+     * and the tree of the collision volumes
+     * 
+     * @return the memory footprint of the loaded data in bytes
+     */
+    public synchronized long getLoadedDataSizeInBytes() {
+        long sizeInBytes = 0;
+        if (mainModel != null) {
+            final Set<AbstractBufferData<?>> bufferDataSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            final Set<Image> imageSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            mainModel.acceptVisitor(new Visitor() {
+                @Override
+                public void visit(final Spatial spatial) {
+                    if (spatial instanceof Mesh) {
+                        final MeshData meshData = ((Mesh) spatial).getMeshData();
+                        bufferDataSet.add(meshData.getVertexCoords());
+                        bufferDataSet.add(meshData.getNormalCoords());
+                        bufferDataSet.add(meshData.getColorCoords());
+                        bufferDataSet.add(meshData.getFogCoords());
+                        bufferDataSet.add(meshData.getTangentCoords());
+                        bufferDataSet.addAll(meshData.getTextureCoords());
+                        bufferDataSet.add(meshData.getIndices());
+                        bufferDataSet.add(meshData.getInterleavedData());
+                    }
+                    final TextureState textureState = (TextureState) spatial
+                            .getLocalRenderState(StateType.Texture);
+                    if (textureState != null)
+                        for (int textureUnit = 0; textureUnit <= textureState.getMaxTextureIndexUsed(); textureUnit++) {
+                            final Texture texture = textureState.getTexture(textureUnit);
+                            if (texture != null && texture.getImage() != null)
+                                imageSet.add(texture.getImage());
+                        }
+                }
+            }, false);
+            bufferDataSet.remove(null);
+            for (final AbstractBufferData<?> bufferData : bufferDataSet)
+                if (bufferData.getBuffer() != null)
+                    sizeInBytes += (long) bufferData.getBufferCapacity() * bufferData.getByteCount();
+            for (final Image image : imageSet)
+                for (final ByteBuffer data : image.getData())
+                    if (data != null)
+                        sizeInBytes += data.capacity();
+        }
+        if (boundingBoxTree != null)
+            sizeInBytes += boundingBoxTree.getSizeInBytes();
+        return (sizeInBytes);
+    }
+
+    /**
+     * Returns the identifier of the level reached by the teleporters of this
+     * level, i.e the level played next
+     * 
+     * @return the identifier of the next level, <code>null</code> if none
+     */
+    public String getNextLevelIdentifier() {
+        if (teleporterPositionsMap != null)
+            for (final Entry<String, ReadOnlyVector3[]> teleporterPositions : teleporterPositionsMap.values())
+                if (!identifier.equals(teleporterPositions.getKey()))
+                    return (teleporterPositions.getKey());
+        return (null);
+    }
+
     public String getIdentifier() {
         return (identifier);
     }
@@ -589,9 +893,13 @@ public class Level implements Comparable<Level> {
         return (label.compareTo(level.label));
     }
 
-    @Deprecated
-    public boolean[][] getCollisionMap() {
-        return (collisionMap);
+    /**
+     * Returns the collision grid used to resolve the movements of the player
+     *
+     * @return the collision grid, <code>null</code> if it hasn't been read
+     */
+    public CollisionGrid getCollisionGrid() {
+        return (collisionGrid);
     }
 
     public List<Objective> getObjectives() {
@@ -0,0 +1,278 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.data;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+/**
+ * Preloader of the level likely to be played next. It loads the main model
+ * (the buffers of its meshes and the images of its textures) and the collision
+ * volumes of the level on a background thread while the player is in the menus
+ * or finishing the current level. These data are kept by the level, the
+ * loading of the level finds them instead of reading them again and the
+ * textures are sent to the GPU by the rendering thread as usual. If the data
+ * exceed the memory budget, they are released. If another level is requested or
+ * picked, the preload is cancelled and its data are released, unless the
+ * cancelled level is picked while it's still being loaded. A level being
+ * played must never be preloaded as its data would be released in case of
+ * cancellation.
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public final class LevelPreloader {
+
+    private static final Logger LOGGER = Logger.getLogger(LevelPreloader.class.getName());
+
+    /** preload of a level */
+    private static final class Preload {
+
+        private final Level level;
+
+        /** flag indicating whether the background thread is done */
+        private boolean done;
+
+        /** flag indicating whether the data must be released */
+        private boolean cancelled;
+
+        /** flag indicating whether the level has been picked by the player */
+        private boolean committed;
+
+        private Preload(final Level level) {
+            super();
+            this.level = level;
+        }
+    }
+
+    /** memory budget in bytes */
+    private final long budgetInBytes;
+    /** distance under which the tiles of a chunked level are loaded */
+    private final double streamingRadius;
+    /** executor loading the levels, it uses a single daemon thread */
+    private final ExecutorService executor;
+    /** current preload, null if none */
+    private Preload preload;
+    /**
+     * cancelled preloads whose background thread hasn't released the data
+     * yet
+     */
+    private final List<Preload> cancelledPreloads;
+    /** count of requested preloads */
+    private int requestCount;
+    /** count of levels played with preloaded data */
+    private int hitCount;
+    /** count of levels played without preloaded data */
+    private int missCount;
+    /** count of cancelled preloads */
+    private int cancellationCount;
+    /** count of preloads whose data exceeded the budget */
+    private volatile int rejectionCount;
+    /** duration of the latest completed preload in nanoseconds */
+    private volatile long latestPreloadDuration;
+    /** memory footprint of the latest completed preload in bytes */
+    private volatile long latestPreloadSizeInBytes;
+
+    /**
+     * Constructor
+     * 
+     * @param budgetInBytes
+     *            memory budget in bytes, zero disables the preloads
+     * @param streamingRadius
+     *            distance under which the tiles of a chunked level are loaded,
+     *            the same than the one passed to {@link Level#loadMainModel(double)}
+     *            when the level is played
+     */
+    public LevelPreloader(final long budgetInBytes, final double streamingRadius) {
+        super();
+        if (budgetInBytes < 0)
+            throw new IllegalArgumentException("The memory budget cannot be negative");
+        this.budgetInBytes = budgetInBytes;
+        this.streamingRadius = streamingRadius;
+        this.cancelledPreloads = new ArrayList<>();
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "Level preloading");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return (thread);
+        });
+    }
+
+    public boolean isEnabled() {
+        return (budgetInBytes > 0);
+    }
+
+    /**
+     * Requests the preload of a level, the current preload is cancelled if it
+     * concerns another level
+     * 
+     * @param level
+     *            level likely to be played next, can be null
+     */
+    public void request(final Level level) {
+        if (isEnabled() && level != null && (preload == null || preload.level != level)) {
+            cancel();
+            final Preload newPreload = new Preload(level);
+            executor.execute(() -> run(newPreload));
+            preload = newPreload;
+            requestCount++;
+        }
+    }
+
+    private void run(final Preload preload) {
+        synchronized (preload) {
+            // doesn't load anything if the preload has been cancelled before
+            // being started
+            if (preload.cancelled) {
+                preload.done = true;
+                return;
+            }
+        }
+        final long startTime = System.nanoTime();
+        long sizeInBytes = 0;
+        try {
+            preload.level.loadMainModel(streamingRadius);
+            preload.level.readCollisionVolumes();
+            sizeInBytes = preload.level.getLoadedDataSizeInBytes();
+            latestPreloadDuration = System.nanoTime() - startTime;
+            latestPreloadSizeInBytes = sizeInBytes;
+        } catch (Throwable t) {
+            LOGGER.log(java.util.logging.Level.WARNING,
+                    "Failed in preloading the level " + preload.level.getIdentifier(), t);
+        }
+        synchronized (preload) {
+            preload.done = true;
+            // the data of a picked level are kept even though they exceed the
+            // budget as they may already be in use
+            if (!preload.cancelled && !preload.committed && sizeInBytes > budgetInBytes) {
+                LOGGER.log(java.util.logging.Level.INFO, "The preloaded level " + preload.level.getIdentifier()
+                        + " exceeds the memory budget (" + sizeInBytes + " > " + budgetInBytes + " bytes)");
+                preload.cancelled = true;
+                rejectionCount++;
+            }
+            if (preload.cancelled)
+                preload.level.releasePreloadedData();
+        }
+    }
+
+    /**
+     * Cancels the current preload if any, its data are released
+     */
+    public void cancel() {
+        if (preload != null) {
+            final Preload cancelledPreload = preload;
+            preload = null;
+            synchronized (cancelledPreload) {
+                if (!cancelledPreload.cancelled) {
+                    cancelledPreload.cancelled = true;
+                    cancellationCount++;
+                    // the background thread releases the data if it's still
+                    // loading them
+                    if (cancelledPreload.done)
+                        cancelledPreload.level.releasePreloadedData();
+                    else
+                        cancelledPreloads.add(cancelledPreload);
+                }
+            }
+        }
+    }
+
+    /**
+     * Indicates the level picked by the player, the current preload is kept if
+     * it concerns this level, otherwise it's cancelled. The loading of the
+     * level waits for the end of the preload if necessary
+     * 
+     * @param level
+     *            level picked by the player
+     */
+    public void commit(final Level level) {
+        if (isEnabled()) {
+            // a cancelled preload of this level may still be loading its data,
+            // the background thread mustn't release them under the level
+            // being played
+            boolean resumed = false;
+            for (final Iterator<Preload> it = cancelledPreloads.iterator(); it.hasNext();) {
+                final Preload cancelledPreload = it.next();
+                synchronized (cancelledPreload) {
+                    if (!cancelledPreload.done && cancelledPreload.level == level) {
+                        cancelledPreload.cancelled = false;
+                        cancelledPreload.committed = true;
+                        resumed = true;
+                    }
+                    if (cancelledPreload.done || cancelledPreload.committed)
+                        it.remove();
+                }
+            }
+            if (preload != null && preload.level == level) {
+                final boolean rejected;
+                synchronized (preload) {
+                    preload.committed = true;
+                    rejected = preload.cancelled;
+                }
+                if (rejected)
+                    missCount++;
+                else
+                    hitCount++;
+                // the level now owns its data
+                preload = null;
+            } else {
+                cancel();
+                if (resumed)
+                    hitCount++;
+                else
+                    missCount++;
+            }
+        }
+    }
+
+    public long getBudgetInBytes() {
+        return (budgetInBytes);
+    }
+
+    public int getRequestCount() {
+        return (requestCount);
+    }
+
+    public int getHitCount() {
+        return (hitCount);
+    }
+
+    public int getMissCount() {
+        return (missCount);
+    }
+
+    public int getCancellationCount() {
+        return (cancellationCount);
+    }
+
+    public int getRejectionCount() {
+        return (rejectionCount);
+    }
+
+    public long getLatestPreloadDuration() {
+        return (latestPreloadDuration);
+    }
+
+    public long getLatestPreloadSizeInBytes() {
+        return (latestPreloadSizeInBytes);
+    }
+}
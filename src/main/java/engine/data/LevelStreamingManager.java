@@ -0,0 +1,347 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.data;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ardor3d.math.type.ReadOnlyVector3;
+import com.ardor3d.scenegraph.Node;
+
+import engine.data.ChunkedLevelLayout.Tile;
+import engine.telemetry.DirectMemoryLedger;
+
+/**
+ * Streaming manager of a chunked level. The tiles within the load radius of
+ * the player are loaded on a background thread and attached to the main model
+ * of the level by the game thread when calling {@link #update(ReadOnlyVector3)}.
+ * The tiles beyond the unload radius are detached and passed to the disposer
+ * so that their resources can be freed. The unload radius is bigger than the
+ * load radius so that a player walking along the border of a tile doesn't
+ * cause the same tile to be loaded and unloaded again and again. A tile loaded
+ * whereas it's already beyond the unload radius is discarded and passed to
+ * the disposer too.
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public final class LevelStreamingManager {
+
+    private static final Logger LOGGER = Logger.getLogger(LevelStreamingManager.class.getName());
+
+    /** tile loaded by the background thread */
+    private static final class TileLoad {
+
+        private final Tile tile;
+
+        /** loaded node, null if the loading failed */
+        private final Node node;
+
+        /** duration between the submission and the end of the loading */
+        private final long latencyInNanos;
+
+        private TileLoad(final Tile tile, final Node node, final long latencyInNanos) {
+            super();
+            this.tile = tile;
+            this.node = node;
+            this.latencyInNanos = latencyInNanos;
+        }
+    }
+
+    private final ChunkedLevelLayout layout;
+    /** node to which the tiles are attached */
+    private final Node parentNode;
+    /** distance under which a tile is loaded */
+    private final double loadRadius;
+    /** distance beyond which a tile is unloaded */
+    private final double unloadRadius;
+    /** executor loading the tiles, it uses a single daemon thread */
+    private final ExecutorService executor;
+    /** importer used only by the background thread */
+    private final MappedLevelImporter mappedLevelImporter;
+    /** nodes of the attached tiles */
+    private final Map<Tile, Node> residentTiles;
+    /** loadings not yet handled by the game thread */
+    private final Map<Tile, Future<?>> pendingTiles;
+    /** loadings performed by the background thread */
+    private final ConcurrentLinkedQueue<TileLoad> completedLoads;
+    /** disposer of the detached tiles, can be null */
+    private Consumer<Node> tileDisposer;
+    /** total size of the files of the attached tiles */
+    private long residentByteCount;
+    /** highest total size of the files of the attached tiles */
+    private long residentByteCountHighWaterMark;
+    /** latency of the latest attached tile */
+    private long lastStreamInLatencyInNanos;
+    /** highest latency */
+    private long maxStreamInLatencyInNanos;
+    /** sum of the latencies of the attached tiles */
+    private long totalStreamInLatencyInNanos;
+    /** count of attached tiles */
+    private int streamedInTileCount;
+    /** count of detached tiles */
+    private int streamedOutTileCount;
+    /** count of loaded tiles discarded as they were already too far */
+    private int discardedTileCount;
+    /** count of tiles whose loading failed */
+    private int failedTileCount;
+
+    /**
+     * Constructor
+     * 
+     * @param layout
+     *            layout of the chunked level
+     * @param parentNode
+     *            node to which the tiles are attached
+     * @param loadRadius
+     *            distance under which a tile is loaded
+     * @param unloadRadius
+     *            distance beyond which a tile is unloaded, greater than or
+     *            equal to the load radius
+     */
+    public LevelStreamingManager(final ChunkedLevelLayout layout, final Node parentNode, final double loadRadius,
+            final double unloadRadius) {
+        super();
+        if (layout == null)
+            throw new IllegalArgumentException("The layout cannot be null");
+        if (parentNode == null)
+            throw new IllegalArgumentException("The parent node cannot be null");
+        if (!(loadRadius > 0))
+            throw new IllegalArgumentException("The load radius must be strictly positive");
+        if (!(unloadRadius >= loadRadius))
+            throw new IllegalArgumentException("The unload radius must be greater than or equal to the load radius");
+        this.layout = layout;
+        this.parentNode = parentNode;
+        this.loadRadius = loadRadius;
+        this.unloadRadius = unloadRadius;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "Level streaming");
+            thread.setDaemon(true);
+            return (thread);
+        });
+        this.mappedLevelImporter = new MappedLevelImporter();
+        this.residentTiles = new IdentityHashMap<>();
+        this.pendingTiles = new IdentityHashMap<>();
+        this.completedLoads = new ConcurrentLinkedQueue<>();
+    }
+
+    public void setTileDisposer(final Consumer<Node> tileDisposer) {
+        this.tileDisposer = tileDisposer;
+    }
+
+    /**
+     * Attaches the loaded tiles, detaches the tiles too far from the player and
+     * requests the loading of the missing tiles near him. It must be called by
+     * the game thread
+     * 
+     * @param location
+     *            location of the player
+     */
+    public void update(final ReadOnlyVector3 location) {
+        // attaches the tiles loaded since the previous call
+        TileLoad tileLoad;
+        while ((tileLoad = completedLoads.poll()) != null) {
+            pendingTiles.remove(tileLoad.tile);
+            if (tileLoad.node == null)
+                failedTileCount++;
+            else if (tileLoad.tile.getHorizontalDistance(location) > unloadRadius) {
+                discardedTileCount++;
+                dispose(tileLoad.node);
+            } else {
+                parentNode.attachChild(tileLoad.node);
+                residentTiles.put(tileLoad.tile, tileLoad.node);
+                residentByteCount += tileLoad.tile.getByteSize();
+                residentByteCountHighWaterMark = Math.max(residentByteCountHighWaterMark, residentByteCount);
+                lastStreamInLatencyInNanos = tileLoad.latencyInNanos;
+                maxStreamInLatencyInNanos = Math.max(maxStreamInLatencyInNanos, tileLoad.latencyInNanos);
+                totalStreamInLatencyInNanos += tileLoad.latencyInNanos;
+                streamedInTileCount++;
+            }
+        }
+        // detaches the tiles beyond the unload radius
+        if (!residentTiles.isEmpty()) {
+            final List<Tile> farTiles = new ArrayList<>();
+            for (final Tile tile : residentTiles.keySet())
+                if (tile.getHorizontalDistance(location) > unloadRadius)
+                    farTiles.add(tile);
+            for (final Tile tile : farTiles)
+                unload(tile);
+        }
+        // requests the loading of the tiles within the load radius
+        for (final Tile tile : layout.getTiles())
+            if (tile.getHorizontalDistance(location) <= loadRadius && !residentTiles.containsKey(tile)
+                    && !pendingTiles.containsKey(tile)) {
+                final long submissionTime = System.nanoTime();
+                pendingTiles.put(tile, executor.submit(() -> load(tile, submissionTime)));
+            }
+    }
+
+    /**
+     * Requests the loading of the tiles near the player, waits for the end of
+     * these loadings and attaches them. It must be called by the game thread,
+     * typically before the first frame
+     * 
+     * @param location
+     *            location of the player
+     */
+    public void preload(final ReadOnlyVector3 location) {
+        update(location);
+        for (final Future<?> future : new ArrayList<>(pendingTiles.values()))
+            try {
+                future.get();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException ee) {
+                // the failure is already logged by the background thread
+            }
+        update(location);
+    }
+
+    private void load(final Tile tile, final long submissionTime) {
+        Node tileNode = null;
+        // the content of the tile belongs to the level of the parent node
+        final DirectMemoryLedger.Scope scope = DirectMemoryLedger.getInstance().openScope(parentNode.getName(),
+                tile.getUrl().getPath());
+        try {
+            tileNode = mappedLevelImporter.load(tile.getUrl());
+        } catch (Throwable t) {
+            LOGGER.log(Level.WARNING, "Failed in loading the tile " + tile + " from " + tile.getUrl(), t);
+        } finally {
+            scope.close();
+        }
+        completedLoads.add(new TileLoad(tile, tileNode, System.nanoTime() - submissionTime));
+    }
+
+    private void unload(final Tile tile) {
+        final Node tileNode = residentTiles.remove(tile);
+        parentNode.detachChild(tileNode);
+        residentByteCount -= tile.getByteSize();
+        streamedOutTileCount++;
+        dispose(tileNode);
+    }
+
+    /**
+     * Passes a tile node that is no longer used to the disposer so that its
+     * resources can be freed
+     * 
+     * @param tileNode
+     *            node of the tile
+     */
+    private void dispose(final Node tileNode) {
+        if (tileDisposer != null)
+            tileDisposer.accept(tileNode);
+    }
+
+    /**
+     * Cancels the pending loadings, stops the background thread, detaches all
+     * tiles and passes them to the disposer with the loaded tiles not
+     * attached yet. This manager can no longer be used
+     */
+    public void dispose() {
+        executor.shutdownNow();
+        for (final Future<?> future : pendingTiles.values())
+            future.cancel(true);
+        pendingTiles.clear();
+        TileLoad tileLoad;
+        while ((tileLoad = completedLoads.poll()) != null)
+            if (tileLoad.node != null)
+                dispose(tileLoad.node);
+        for (final Entry<Tile, Node> residentTile : new ArrayList<>(residentTiles.entrySet()))
+            unload(residentTile.getKey());
+    }
+
+    public ChunkedLevelLayout getLayout() {
+        return (layout);
+    }
+
+    public double getLoadRadius() {
+        return (loadRadius);
+    }
+
+    public double getUnloadRadius() {
+        return (unloadRadius);
+    }
+
+    public int getResidentTileCount() {
+        return (residentTiles.size());
+    }
+
+    public int getPendingTileCount() {
+        return (pendingTiles.size());
+    }
+
+    /**
+     * Returns the total size of the files of the attached tiles, i.e the size
+     * of the mapped regions used by their buffers
+     * 
+     * @return the total size of the files of the attached tiles in bytes
+     */
+    public long getResidentByteCount() {
+        return (residentByteCount);
+    }
+
+    public long getResidentByteCountHighWaterMark() {
+        return (residentByteCountHighWaterMark);
+    }
+
+    /**
+     * Returns the latency of the latest attached tile, i.e the duration
+     * between the request of its loading and the end of its loading
+     * 
+     * @return the latency of the latest attached tile in nanoseconds
+     */
+    public long getLastStreamInLatency() {
+        return (lastStreamInLatencyInNanos);
+    }
+
+    public long getMaxStreamInLatency() {
+        return (maxStreamInLatencyInNanos);
+    }
+
+    public long getAverageStreamInLatency() {
+        return (streamedInTileCount == 0 ? 0 : totalStreamInLatencyInNanos / streamedInTileCount);
+    }
+
+    public int getStreamedInTileCount() {
+        return (streamedInTileCount);
+    }
+
+    public int getStreamedOutTileCount() {
+        return (streamedOutTileCount);
+    }
+
+    public int getDiscardedTileCount() {
+        return (discardedTileCount);
+    }
+
+    public int getFailedTileCount() {
+        return (failedTileCount);
+    }
+}
@@ -0,0 +1,240 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.ardor3d.scenegraph.AbstractBufferData;
+import com.ardor3d.scenegraph.ByteBufferData;
+import com.ardor3d.scenegraph.FloatBufferData;
+import com.ardor3d.scenegraph.IntBufferData;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.MeshData;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.ShortBufferData;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.visitor.Visitor;
+import com.ardor3d.util.export.binary.BinaryImporter;
+
+import engine.telemetry.DirectMemoryLedger;
+
+/**
+ * Importer of the mapped level files written by JFPSM (see
+ * <code>jfpsm.service.MappedLevelExporter</code> for the layout). The file is
+ * mapped into memory and each buffer of the meshes is a read-only slice of the
+ * mapped region, only the compact description of the scenegraph is
+ * deserialized. A file inside a JAR cannot be mapped, it's read once into a
+ * single direct buffer that is sliced in the same way. The files bigger than 2
+ * GB aren't supported.
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public class MappedLevelImporter {
+
+    /** extension of the mapped level files */
+    public static final String FILE_EXTENSION = ".mlvl";
+
+    private static final byte[] MAGIC = "TUERMLVL".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+
+    private static final int TABLE_ENTRY_SIZE = 16;
+
+    private static final class BufferDataFinder implements Visitor {
+
+        private final List<AbstractBufferData<?>> bufferDataList;
+
+        private final Set<AbstractBufferData<?>> bufferDataSet;
+
+        private final List<MeshData> meshDataList;
+
+        private BufferDataFinder() {
+            super();
+            bufferDataList = new ArrayList<>();
+            bufferDataSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            meshDataList = new ArrayList<>();
+        }
+
+        @Override
+        public void visit(final Spatial spatial) {
+            if (spatial instanceof Mesh) {
+                final MeshData meshData = ((Mesh) spatial).getMeshData();
+                meshDataList.add(meshData);
+                add(meshData.getVertexCoords());
+                add(meshData.getNormalCoords());
+                add(meshData.getColorCoords());
+                add(meshData.getFogCoords());
+                add(meshData.getTangentCoords());
+                for (final FloatBufferData textureCoords : meshData.getTextureCoords())
+                    add(textureCoords);
+                add(meshData.getIndices());
+                add(meshData.getInterleavedData());
+            }
+        }
+
+        private void add(final AbstractBufferData<?> bufferData) {
+            if (bufferData != null && bufferData.getBuffer() != null && bufferDataSet.add(bufferData))
+                bufferDataList.add(bufferData);
+        }
+    }
+
+    private final BinaryImporter binaryImporter;
+
+    public MappedLevelImporter() {
+        super();
+        binaryImporter = new BinaryImporter();
+    }
+
+    /**
+     * Returns the name of the mapped level file matching an Ardor3D binary file
+     * 
+     * @param resourceName
+     *            name of the Ardor3D binary file, ending with ".abin"
+     * @return the name of the mapped level file
+     */
+    public static String getMappedResourceName(final String resourceName) {
+        final String baseName = resourceName.endsWith(".abin")
+                ? resourceName.substring(0, resourceName.length() - ".abin".length())
+                : resourceName;
+        return (baseName + FILE_EXTENSION);
+    }
+
+    /**
+     * Loads a level from a mapped level file
+     * 
+     * @param url
+     *            URL of the file
+     * @return the root node of the level
+     * @throws IOException
+     *             if the file cannot be read or if it isn't a valid mapped
+     *             level file
+     */
+    public Node load(final URL url) throws IOException {
+        final ByteBuffer content;
+        if ("file".equals(url.getProtocol())) {
+            try (final FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+                // the mapping remains valid once the channel is closed
+                content = channel.map(MapMode.READ_ONLY, 0, channel.size());
+            } catch (URISyntaxException urise) {
+                throw new IOException("Invalid file URL " + url, urise);
+            }
+        } else {
+            final URLConnection connection = url.openConnection();
+            final long length = connection.getContentLengthLong();
+            if (length < 0 || length > Integer.MAX_VALUE)
+                throw new IOException("Unknown or unsupported length of " + url);
+            content = ByteBuffer.allocateDirect((int) length);
+            try (final InputStream inputStream = connection.getInputStream();
+                    final ReadableByteChannel channel = Channels.newChannel(inputStream)) {
+                int readByteCount = 0;
+                while (content.hasRemaining() && readByteCount != -1)
+                    readByteCount = channel.read(content);
+            }
+            if (content.hasRemaining())
+                throw new IOException("Truncated content in " + url);
+            content.flip();
+        }
+        // the buffers of the meshes are slices of the content, it's released
+        // with them
+        DirectMemoryLedger.getInstance().recordAllocation(content);
+        return (load(content));
+    }
+
+    /**
+     * Loads a level from the content of a mapped level file, the buffers of the
+     * meshes are slices of this content
+     * 
+     * @param content
+     *            content of the file
+     * @return the root node of the level
+     * @throws IOException
+     *             if the content isn't a valid mapped level file
+     */
+    public Node load(final ByteBuffer content) throws IOException {
+        final ByteBuffer header = content.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if (header.limit() < HEADER_SIZE)
+            throw new IOException("Not a mapped level file");
+        final byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!Arrays.equals(magic, MAGIC))
+            throw new IOException("Not a mapped level file");
+        final int version = header.getInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported version of mapped level file: " + version);
+        final ByteOrder byteOrder = header.getInt() == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        final int bufferCount = header.getInt();
+        final int descriptionLength = header.getInt();
+        final long descriptionOffset = header.getLong();
+        final byte[] description = new byte[descriptionLength];
+        header.position((int) descriptionOffset);
+        header.get(description);
+        final Node levelNode = (Node) binaryImporter.load(description);
+        final BufferDataFinder finder = new BufferDataFinder();
+        levelNode.acceptVisitor(finder, true);
+        if (finder.bufferDataList.size() != bufferCount)
+            throw new IOException("The description of the level expects " + finder.bufferDataList.size()
+                    + " buffers but the file contains " + bufferCount + " buffers");
+        for (int bufferIndex = 0; bufferIndex < bufferCount; bufferIndex++) {
+            final int tableEntryOffset = HEADER_SIZE + TABLE_ENTRY_SIZE * bufferIndex;
+            final int type = header.getInt(tableEntryOffset);
+            final int elementCount = header.getInt(tableEntryOffset + 4);
+            final int offset = (int) header.getLong(tableEntryOffset + 8);
+            final AbstractBufferData<?> bufferData = finder.bufferDataList.get(bufferIndex);
+            if (type == 0 && bufferData instanceof FloatBufferData)
+                ((FloatBufferData) bufferData).setBuffer(
+                        content.slice(offset, elementCount * Float.BYTES).order(byteOrder).asFloatBuffer());
+            else if (type == 1 && bufferData instanceof ByteBufferData)
+                ((ByteBufferData) bufferData).setBuffer(content.slice(offset, elementCount).order(byteOrder));
+            else if (type == 2 && bufferData instanceof ShortBufferData)
+                ((ShortBufferData) bufferData).setBuffer(
+                        content.slice(offset, elementCount * Short.BYTES).order(byteOrder).asShortBuffer());
+            else if (type == 3 && bufferData instanceof IntBufferData)
+                ((IntBufferData) bufferData)
+                        .setBuffer(content.slice(offset, elementCount * Integer.BYTES).order(byteOrder).asIntBuffer());
+            else
+                throw new IOException("The type " + type + " of the buffer " + bufferIndex + " doesn't match "
+                        + bufferData.getClass().getName());
+        }
+        // the vertex counts have been computed with the empty buffers
+        for (final MeshData meshData : finder.meshDataList)
+            meshData.updateVertexCount();
+        return (levelNode);
+    }
+}
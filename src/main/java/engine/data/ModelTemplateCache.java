@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.data;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.ardor3d.extension.model.util.KeyframeController;
+import com.ardor3d.extension.model.util.KeyframeController.PointInTime;
+import com.ardor3d.math.Transform;
+import com.ardor3d.math.type.ReadOnlyTransform;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.util.export.binary.BinaryImporter;
+
+import engine.misc.KeyframeStore;
+import engine.misc.NodeHelper;
+import engine.telemetry.DirectMemoryLedger;
+
+/**
+ * Cache of the templates of the animated models, shared by all levels. The
+ * templates are imported and transformed once, they are identified by their
+ * resource names and by the transforms applied to their vertices. The least
+ * recently used templates are evicted when the size of their buffers exceeds
+ * the memory budget. A template bigger than the budget isn't cached. The
+ * instances created from an evicted template remain valid. The buffers of
+ * the templates are recorded in the ledger as owned by no level. This cache
+ * mustn't be used by several threads at the same time.
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public final class ModelTemplateCache {
+
+    /** default memory budget in bytes */
+    public static final long DEFAULT_BUDGET_IN_BYTES = 64L * 1024L * 1024L;
+
+    /**
+     * Key of a template
+     */
+    private static final class TemplateKey {
+
+        private final String resourceName;
+
+        private final Transform transform;
+
+        private TemplateKey(final String resourceName, final ReadOnlyTransform transform) {
+            super();
+            this.resourceName = resourceName;
+            this.transform = new Transform(transform);
+        }
+
+        @Override
+        public int hashCode() {
+            return (Objects.hash(resourceName, transform));
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            final boolean result;
+            if (o == this)
+                result = true;
+            else if (o == null || !(o instanceof TemplateKey))
+                result = false;
+            else {
+                final TemplateKey templateKey = (TemplateKey) o;
+                result = resourceName.equals(templateKey.resourceName) && transform.equals(templateKey.transform);
+            }
+            return (result);
+        }
+    }
+
+    /**
+     * Cached template
+     */
+    private static final class TemplateEntry {
+
+        private final KeyframeStore keyframeStore;
+
+        private final long sizeInBytes;
+
+        private TemplateEntry(final KeyframeStore keyframeStore) {
+            super();
+            this.keyframeStore = keyframeStore;
+            this.sizeInBytes = keyframeStore.getSizeInBytes();
+        }
+    }
+
+    /** importer of the models */
+    private final BinaryImporter binaryImporter;
+    /** cached templates from the least recently used to the most recently used */
+    private final LinkedHashMap<TemplateKey, TemplateEntry> entries;
+    /** memory budget in bytes */
+    private long budgetInBytes;
+    /** size of the buffers of the cached templates in bytes */
+    private long sizeInBytes;
+    /** count of templates found in the cache */
+    private long hitCount;
+    /** count of imported templates */
+    private long missCount;
+    /** count of evicted templates */
+    private long evictionCount;
+
+    /**
+     * Constructor
+     * 
+     * @param budgetInBytes
+     *            memory budget in bytes, zero disables the cache
+     */
+    public ModelTemplateCache(final long budgetInBytes) {
+        super();
+        binaryImporter = new BinaryImporter();
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+        setBudgetInBytes(budgetInBytes);
+    }
+
+    public long getBudgetInBytes() {
+        return (budgetInBytes);
+    }
+
+    /**
+     * Sets the memory budget, evicts the least recently used templates if
+     * necessary
+     * 
+     * @param budgetInBytes
+     *            memory budget in bytes, zero disables the cache
+     */
+    public void setBudgetInBytes(final long budgetInBytes) {
+        if (budgetInBytes < 0)
+            throw new IllegalArgumentException("The memory budget must be positive");
+        this.budgetInBytes = budgetInBytes;
+        evict(0);
+    }
+
+    /**
+     * Returns the store of the keyframes of an animated model, imports and
+     * transforms its template if it isn't in the cache
+     * 
+     * @param resourceName
+     *            name of the resource of the model
+     * @param transform
+     *            transform applied to the vertices of the template and of its
+     *            keyframes
+     * @return the store of the keyframes of the model
+     * @throws IOException
+     *             if the model can't be imported
+     */
+    public KeyframeStore getKeyframeStore(final String resourceName, final ReadOnlyTransform transform)
+            throws IOException {
+        final TemplateKey templateKey = new TemplateKey(resourceName, transform);
+        TemplateEntry templateEntry = entries.get(templateKey);
+        if (templateEntry == null) {
+            missCount++;
+            templateEntry = new TemplateEntry(new KeyframeStore(importTemplate(resourceName, transform)));
+            if (templateEntry.sizeInBytes <= budgetInBytes) {
+                evict(templateEntry.sizeInBytes);
+                entries.put(templateKey, templateEntry);
+                sizeInBytes += templateEntry.sizeInBytes;
+            }
+        } else
+            hitCount++;
+        return (templateEntry.keyframeStore);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Mesh importTemplate(final String resourceName, final ReadOnlyTransform transform) throws IOException {
+        final URL url = getClass().getResource(resourceName);
+        if (url == null)
+            throw new IOException("Resource " + resourceName + " not found");
+        final Mesh template = (Mesh) binaryImporter.load(url);
+        // the transform of the mesh mustn't be polluted by the initial
+        // rotation and scale as it is used to know the orientation of the model
+        template.setTransform(transform);
+        NodeHelper.applyTransformToMeshData(template);
+        template.updateModelBound();
+        template.updateWorldBound(true);
+        final KeyframeController<Mesh> keyframeController = (KeyframeController<Mesh>) template.getController(0);
+        for (PointInTime pit : keyframeController._keyframes) {
+            pit._newShape.setTransform(transform);
+            NodeHelper.applyTransformToMeshData(pit._newShape);
+            pit._newShape.updateModelBound();
+            pit._newShape.updateWorldBound(true);
+        }
+        // the template belongs to the cache, not to the level whose enemies
+        // use it
+        final DirectMemoryLedger.Scope scope = DirectMemoryLedger.getInstance().openScope(null, resourceName);
+        try {
+            Level.recordDirectBuffers(template);
+            for (PointInTime pit : keyframeController._keyframes)
+                if (pit._newShape != null)
+                    Level.recordDirectBuffers(pit._newShape);
+        } finally {
+            scope.close();
+        }
+        return (template);
+    }
+
+    /**
+     * Evicts the least recently used templates until the cache can store the
+     * given size within its budget
+     * 
+     * @param requiredSizeInBytes
+     *            size to make room for in bytes
+     */
+    private void evict(final long requiredSizeInBytes) {
+        final Iterator<Map.Entry<TemplateKey, TemplateEntry>> entryIterator = entries.entrySet().iterator();
+        while (sizeInBytes + requiredSizeInBytes > budgetInBytes && entryIterator.hasNext()) {
+            sizeInBytes -= entryIterator.next().getValue().sizeInBytes;
+            entryIterator.remove();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Removes all templates from the cache
+     */
+    public void clear() {
+        entries.clear();
+        sizeInBytes = 0;
+    }
+
+    public int size() {
+        return (entries.size());
+    }
+
+    public long getSizeInBytes() {
+        return (sizeInBytes);
+    }
+
+    public long getHitCount() {
+        return (hitCount);
+    }
+
+    public long getMissCount() {
+        return (missCount);
+    }
+
+    public long getEvictionCount() {
+        return (evictionCount);
+    }
+}
@@ -17,6 +17,8 @@
  */
 package engine.data;
 
+import java.util.Set;
+
 import engine.statemachine.GameStatistics;
 
 /**
@@ -43,6 +45,14 @@ public abstract class Objective {
 
     public abstract ObjectiveStatus getStatus(final GameStatistics gameStats);
 
+    /**
+     * Returns the counters used to compute the status, the status is computed
+     * again only when one of them changes
+     * 
+     * @return the counters used to compute the status
+     */
+    public abstract Set<Statistic> getDependencies();
+
     /**
      * Returns the description
      * 
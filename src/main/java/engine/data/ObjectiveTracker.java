@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import engine.statemachine.GameStatistics;
+
+/**
+ * Tracker of the statuses of the objectives of a level. Each objective
+ * subscribes to the counters it depends on, its status is computed again only
+ * after a change of one of them. Nothing is computed when nothing happens.
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public final class ObjectiveTracker {
+
+    /**
+     * Listener marking an objective as stale when one of its counters changes
+     */
+    private final class ObjectiveDependencyListener implements StatisticListener {
+
+        private final int objectiveIndex;
+
+        private ObjectiveDependencyListener(final int objectiveIndex) {
+            super();
+            this.objectiveIndex = objectiveIndex;
+        }
+
+        @Override
+        public void statisticChanged(final Statistic statistic, final int previousValue, final int currentValue) {
+            if (!staleFlags[objectiveIndex]) {
+                staleFlags[objectiveIndex] = true;
+                staleObjectiveCount++;
+            }
+        }
+    }
+
+    /** tracked objectives */
+    private final List<Objective> objectives;
+    /** statistics used to compute the statuses */
+    private final GameStatistics gameStats;
+    /** publishers of the counters */
+    private final StatisticChangeSupport[] publishers;
+    /** listeners of the objectives */
+    private final ObjectiveDependencyListener[] listeners;
+    /** latest computed statuses */
+    private final ObjectiveStatus[] statuses;
+    /** flags indicating whether the statuses must be computed again */
+    private final boolean[] staleFlags;
+    /** count of objectives whose statuses must be computed again */
+    private int staleObjectiveCount;
+
+    /**
+     * Constructor, computes the initial statuses and subscribes to the
+     * counters
+     * 
+     * @param objectives
+     *            tracked objectives
+     * @param gameStats
+     *            statistics used to compute the statuses
+     * @param publishers
+     *            publishers of the counters the objectives may depend on
+     */
+    public ObjectiveTracker(final Collection<Objective> objectives, final GameStatistics gameStats,
+            final StatisticChangeSupport... publishers) {
+        super();
+        this.objectives = new ArrayList<>(objectives);
+        this.gameStats = gameStats;
+        this.publishers = publishers;
+        final int objectiveCount = this.objectives.size();
+        listeners = new ObjectiveDependencyListener[objectiveCount];
+        statuses = new ObjectiveStatus[objectiveCount];
+        staleFlags = new boolean[objectiveCount];
+        for (int objectiveIndex = 0; objectiveIndex < objectiveCount; objectiveIndex++) {
+            final Objective objective = this.objectives.get(objectiveIndex);
+            statuses[objectiveIndex] = objective.getStatus(gameStats);
+            listeners[objectiveIndex] = new ObjectiveDependencyListener(objectiveIndex);
+            for (final Statistic statistic : objective.getDependencies())
+                for (final StatisticChangeSupport publisher : publishers)
+                    publisher.addListener(statistic, listeners[objectiveIndex]);
+        }
+    }
+
+    /**
+     * Tells whether some counters have changed since the latest update
+     * 
+     * @return <code>true</code> if some statuses must be computed again
+     */
+    public boolean hasStaleObjectives() {
+        return (staleObjectiveCount > 0);
+    }
+
+    /**
+     * Computes again the statuses of the objectives whose counters have changed
+     * 
+     * @param updatedObjectives
+     *            list into which the objectives whose statuses have changed
+     *            are added
+     * @return the count of objectives whose statuses have changed
+     */
+    public int update(final List<Objective> updatedObjectives) {
+        int updatedObjectiveCount = 0;
+        for (int objectiveIndex = 0; staleObjectiveCount > 0 && objectiveIndex < staleFlags.length; objectiveIndex++)
+            if (staleFlags[objectiveIndex]) {
+                staleFlags[objectiveIndex] = false;
+                staleObjectiveCount--;
+                final Objective objective = objectives.get(objectiveIndex);
+                final ObjectiveStatus currentStatus = objective.getStatus(gameStats);
+                if (currentStatus != statuses[objectiveIndex]) {
+                    statuses[objectiveIndex] = currentStatus;
+                    updatedObjectives.add(objective);
+                    updatedObjectiveCount++;
+                }
+            }
+        return (updatedObjectiveCount);
+    }
+
+    /**
+     * Returns the latest computed status of an objective
+     * 
+     * @param objective
+     *            tracked objective
+     * @return the latest computed status
+     */
+    public ObjectiveStatus getStatus(final Objective objective) {
+        final int objectiveIndex = objectives.indexOf(objective);
+        if (objectiveIndex == -1)
+            throw new IllegalArgumentException("The objective " + objective.getDescription() + " isn't tracked");
+        return (statuses[objectiveIndex]);
+    }
+
+    /**
+     * Unsubscribes from the counters, this tracker is no longer updated
+     */
+    public void dispose() {
+        for (int objectiveIndex = 0; objectiveIndex < listeners.length; objectiveIndex++)
+            for (final Statistic statistic : objectives.get(objectiveIndex).getDependencies())
+                for (final StatisticChangeSupport publisher : publishers)
+                    publisher.removeListener(statistic, listeners[objectiveIndex]);
+    }
+}
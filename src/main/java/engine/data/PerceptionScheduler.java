@@ -0,0 +1,247 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.data;
+
+import java.util.Arrays;
+
+/**
+ * Scheduler of the perception checks (line of sight between the enemies and
+ * the player). It spreads the checks across the frames so that the enemies
+ * whose timers expire together don't all cast their rays during the same
+ * frame. A check is due once its interval has elapsed since the latest one,
+ * this interval is longer for the enemies far from the player and for those
+ * whose line of sight to the player was occluded during their latest check. The most overdue
+ * checks are performed first, the nearest enemies first when several checks
+ * are equally overdue, within a maximum count of rays per frame. The other
+ * due checks are deferred to the next frames.
+ *
+ * @author Julien Gouesse
+ *
+ */
+public final class PerceptionScheduler {
+
+    /**
+     * maximum count of rays cast by a single check, the sweep of the line of
+     * sight and the two picks
+     */
+    public static final int RAYCASTS_PER_CHECK = 3;
+    /** interval between two checks of a near enemy who can see the player */
+    private static final long BASE_INTERVAL_IN_NANOS = 1000000000L;
+    /** distance beyond which an enemy is considered as far */
+    private static final double FAR_DISTANCE = 20.0;
+    /** maximum count of rays cast per frame */
+    private int maxRaycastsPerFrame;
+    /** indices of the enemies whose checks are due during this frame */
+    private int[] candidates;
+    /** due times of the candidates */
+    private long[] candidateDueTimes;
+    /** distances between the candidates and the player */
+    private double[] candidateDistances;
+    /** count of candidates */
+    private int candidateCount;
+    /** count of candidates selected during this frame */
+    private int scheduledCount;
+    /** count of rays cast during this frame */
+    private int frameRaycastCount;
+    /** current time in nanoseconds */
+    private long now;
+    /** total count of performed checks */
+    private long performedCheckCount;
+    /**
+     * total count of deferrals, a check deferred during several frames is
+     * counted once per frame
+     */
+    private long deferredCheckCount;
+    /** total count of cast rays */
+    private long raycastCount;
+
+    /**
+     * Constructor
+     *
+     * @param maxRaycastsPerFrame
+     *            maximum count of rays cast per frame
+     */
+    public PerceptionScheduler(final int maxRaycastsPerFrame) {
+        super();
+        setMaxRaycastsPerFrame(maxRaycastsPerFrame);
+        candidates = new int[16];
+        candidateDueTimes = new long[16];
+        candidateDistances = new double[16];
+    }
+
+    public int getMaxRaycastsPerFrame() {
+        return (maxRaycastsPerFrame);
+    }
+
+    public void setMaxRaycastsPerFrame(final int maxRaycastsPerFrame) {
+        if (maxRaycastsPerFrame <= 0)
+            throw new IllegalArgumentException("The maximum count of raycasts per frame must be strictly positive");
+        this.maxRaycastsPerFrame = maxRaycastsPerFrame;
+    }
+
+    /**
+     * Computes the interval between two checks of an enemy
+     *
+     * @param distance
+     *            distance between the enemy and the player
+     * @param playerSeen
+     *            <code>true</code> if nothing occluded the player from the
+     *            enemy during its latest check
+     * @return the interval in nanoseconds
+     */
+    public long getInterval(final double distance, final boolean playerSeen) {
+        long interval = BASE_INTERVAL_IN_NANOS;
+        if (distance > FAR_DISTANCE)
+            interval *= 2;
+        if (!playerSeen)
+            interval *= 2;
+        return (interval);
+    }
+
+    /**
+     * Starts a new frame, forgets the previous candidates
+     *
+     * @param now
+     *            current time in nanoseconds
+     */
+    public void beginFrame(final long now) {
+        this.now = now;
+        candidateCount = 0;
+        scheduledCount = 0;
+        frameRaycastCount = 0;
+    }
+
+    /**
+     * Submits an enemy, it becomes a candidate if its check is due
+     *
+     * @param enemyIndex
+     *            index of the enemy
+     * @param latestCheckTime
+     *            time of its latest check in nanoseconds,
+     *            {@link EnemyTable#NEVER} if it has never been checked
+     * @param distance
+     *            distance between the enemy and the player
+     * @param playerSeen
+     *            <code>true</code> if nothing occluded the player from the
+     *            enemy during its latest check
+     */
+    public void offer(final int enemyIndex, final long latestCheckTime, final double distance,
+            final boolean playerSeen) {
+        final long dueTime = latestCheckTime == EnemyTable.NEVER ? Long.MIN_VALUE
+                : latestCheckTime + getInterval(distance, playerSeen);
+        if (dueTime <= now) {
+            if (candidateCount == candidates.length) {
+                final int newCapacity = candidates.length * 2;
+                candidates = Arrays.copyOf(candidates, newCapacity);
+                candidateDueTimes = Arrays.copyOf(candidateDueTimes, newCapacity);
+                candidateDistances = Arrays.copyOf(candidateDistances, newCapacity);
+            }
+            candidates[candidateCount] = enemyIndex;
+            candidateDueTimes[candidateCount] = dueTime;
+            candidateDistances[candidateCount] = distance;
+            candidateCount++;
+        }
+    }
+
+    /**
+     * Selects the candidates whose checks are performed during this frame,
+     * puts them at the beginning of the candidates by priority. The others are
+     * counted as deferred
+     *
+     * @return the count of selected candidates
+     */
+    public int schedule() {
+        // the first check is always allowed so that a budget smaller than the
+        // cost of a check doesn't starve the enemies
+        final int maxCheckCount = Math.max(1, maxRaycastsPerFrame / RAYCASTS_PER_CHECK);
+        scheduledCount = Math.min(candidateCount, maxCheckCount);
+        // partial selection sort, the budget is small
+        for (int rank = 0; rank < scheduledCount; rank++) {
+            int best = rank;
+            for (int index = rank + 1; index < candidateCount; index++)
+                if (candidateDueTimes[index] < candidateDueTimes[best]
+                        || (candidateDueTimes[index] == candidateDueTimes[best]
+                                && candidateDistances[index] < candidateDistances[best]))
+                    best = index;
+            if (best != rank) {
+                final int enemyIndex = candidates[rank];
+                candidates[rank] = candidates[best];
+                candidates[best] = enemyIndex;
+                final long dueTime = candidateDueTimes[rank];
+                candidateDueTimes[rank] = candidateDueTimes[best];
+                candidateDueTimes[best] = dueTime;
+                final double distance = candidateDistances[rank];
+                candidateDistances[rank] = candidateDistances[best];
+                candidateDistances[best] = distance;
+            }
+        }
+        deferredCheckCount += candidateCount - scheduledCount;
+        return (scheduledCount);
+    }
+
+    /**
+     * Returns the index of an enemy selected during this frame
+     *
+     * @param rank
+     *            rank of the enemy, lower than the value returned by
+     *            {@link #schedule()}
+     * @return the index of the enemy
+     */
+    public int getScheduledEnemyIndex(final int rank) {
+        if (rank < 0 || rank >= scheduledCount)
+            throw new IndexOutOfBoundsException("Invalid rank " + rank);
+        return (candidates[rank]);
+    }
+
+    /**
+     * Records a performed check
+     *
+     * @param checkRaycastCount
+     *            count of rays cast by this check
+     */
+    public void reportCheck(final int checkRaycastCount) {
+        performedCheckCount++;
+        frameRaycastCount += checkRaycastCount;
+        raycastCount += checkRaycastCount;
+    }
+
+    public int getFrameRaycastCount() {
+        return (frameRaycastCount);
+    }
+
+    public long getPerformedCheckCount() {
+        return (performedCheckCount);
+    }
+
+    public long getDeferredCheckCount() {
+        return (deferredCheckCount);
+    }
+
+    public long getRaycastCount() {
+        return (raycastCount);
+    }
+
+    /**
+     * Resets the counters
+     */
+    public void resetCounters() {
+        performedCheckCount = 0;
+        deferredCheckCount = 0;
+        raycastCount = 0;
+    }
+}
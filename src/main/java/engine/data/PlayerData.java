@@ -39,6 +39,8 @@ import engine.weaponry.WeaponFactory;
 
 /**
  * Data model of the player. It contains some operations for these data too.
+ * The changes of the health and of the count of collected objects are
+ * published to the listeners subscribed to them.
  * 
  * @author Julien Gouesse
  * 
@@ -55,6 +57,10 @@ public class PlayerData {
     public static final int NO_UID = -1;
     /** current health */
     private int health;
+    /** count of collected objects */
+    private int collectedObjectsCount;
+    /** publisher of the changes of the health and of the collected objects */
+    private final StatisticChangeSupport statisticChangeSupport;
     /** flag indicating whether the player can be damaged */
     private boolean invincible;
     /**
@@ -104,6 +110,7 @@ public class PlayerData {
         this.cameraNode = cameraNode;
         this.weaponFactory = weaponFactory;
         health = maxHealth;
+        statisticChangeSupport = new StatisticChangeSupport();
         invincible = false;
         weaponInUse = null;
         dualWeaponUseEnabled = false;
@@ -135,9 +142,28 @@ public class PlayerData {
                 result = 0;
         } else
             result = 0;
+        if (result > 0) {
+            collectedObjectsCount++;
+            statisticChangeSupport.fireStatisticChanged(Statistic.COLLECTED_OBJECTS_COUNT, collectedObjectsCount - 1,
+                    collectedObjectsCount);
+        }
         return (result);
     }
 
+    public int getCollectedObjectsCount() {
+        return (collectedObjectsCount);
+    }
+
+    /**
+     * Returns the publisher of the changes of the health and of the count of
+     * collected objects
+     * 
+     * @return the publisher of the changes of the counters of the player
+     */
+    public StatisticChangeSupport getStatisticChangeSupport() {
+        return (statisticChangeSupport);
+    }
+
     protected int collectWeapon(final Node collectible, final WeaponUserData weaponUserData) {
         final boolean result;
         final Weapon weapon = weaponUserData.getWeapon();
@@ -182,6 +208,7 @@ public class PlayerData {
         int oldHealth = health;
         if (!invincible && damage > 0)
             health = Math.max(0, health - damage);
+        statisticChangeSupport.fireStatisticChanged(Statistic.HEALTH, oldHealth, health);
         return (oldHealth - health);
     }
 
@@ -196,6 +223,7 @@ public class PlayerData {
         final int oldHealth = health;
         if (amount > 0)
             health = Math.min(maxHealth, health + amount);
+        statisticChangeSupport.fireStatisticChanged(Statistic.HEALTH, oldHealth, health);
         return (health - oldHealth);
     }
 
@@ -219,7 +247,14 @@ public class PlayerData {
 
     public void respawn() {
         // resets the health
+        final int oldHealth = health;
         health = maxHealth;
+        statisticChangeSupport.fireStatisticChanged(Statistic.HEALTH, oldHealth, health);
+        // resets the count of collected objects
+        final int oldCollectedObjectsCount = collectedObjectsCount;
+        collectedObjectsCount = 0;
+        statisticChangeSupport.fireStatisticChanged(Statistic.COLLECTED_OBJECTS_COUNT, oldCollectedObjectsCount,
+                collectedObjectsCount);
         // unselects the weapon(s)
         unselectWeaponInUse(true);
         // drives all weapons unavailable
@@ -18,25 +18,28 @@
 package engine.data;
 
 import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyVector3;
 
 /**
+ * Initial state of a projectile. It can be set again to reuse it for another
+ * projectile, the vectors are then copied into the existing ones
  * 
  * @author Julien Gouesse
  *
  */
 public class ProjectileData {
 
-    private final String originator;
+    private String originator;
 
     private final Vector3 initialLocation;
 
-    private final double initialSpeed;
+    private double initialSpeed;
 
-    private final double initialAcceleration;
+    private double initialAcceleration;
 
     private final Vector3 initialDirection;
 
-    private final long initialTimeInNanos;
+    private long initialTimeInNanos;
 
     public ProjectileData(final String originator, final Vector3 initialLocation, final double initialSpeed,
             final double initialAcceleration, final Vector3 initialDirection, final long initialTimeInNanos) {
@@ -48,6 +51,39 @@ public class ProjectileData {
         this.initialTimeInNanos = initialTimeInNanos;
     }
 
+    /**
+     * Constructor of a projectile data to be set later
+     */
+    public ProjectileData() {
+        this(null, new Vector3(), 0, 0, new Vector3(), 0);
+    }
+
+    /**
+     * Sets the initial state, the vectors are copied
+     * 
+     * @param originator
+     *            name of the spatial that launched the projectile
+     * @param initialLocation
+     *            initial location
+     * @param initialSpeed
+     *            initial speed
+     * @param initialAcceleration
+     *            initial acceleration
+     * @param initialDirection
+     *            initial direction
+     * @param initialTimeInNanos
+     *            initial time in nanoseconds
+     */
+    public void set(final String originator, final ReadOnlyVector3 initialLocation, final double initialSpeed,
+            final double initialAcceleration, final ReadOnlyVector3 initialDirection, final long initialTimeInNanos) {
+        this.originator = originator;
+        this.initialLocation.set(initialLocation);
+        this.initialSpeed = initialSpeed;
+        this.initialAcceleration = initialAcceleration;
+        this.initialDirection.set(initialDirection);
+        this.initialTimeInNanos = initialTimeInNanos;
+    }
+
     public String getOriginator() {
         return (originator);
     }
@@ -0,0 +1,251 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.data;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.math.type.ReadOnlyTransform;
+import com.ardor3d.math.type.ReadOnlyVector3;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.MeshData;
+import com.ardor3d.scenegraph.Node;
+
+import engine.misc.ApplicativeTimer;
+import engine.misc.NodeHelper;
+
+/**
+ * Bounded pool of projectiles. The nodes, their meshes, their controllers and
+ * their data are created once and recycled when the projectiles are removed
+ * so that firing allocates nothing in steady state. The active projectiles are
+ * kept in their order of creation. When all pooled projectiles are active, a
+ * temporary projectile is created and dropped on release, it is counted as an
+ * overflow, the capacity should then be increased.
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public final class ProjectilePool {
+
+    /** default maximum count of pooled projectiles */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /** maximum count of pooled projectiles */
+    private final int capacity;
+    /** timer used by the controllers */
+    private final ApplicativeTimer timer;
+    /** vertex buffer shared by the meshes */
+    private final FloatBuffer vertexBuffer;
+    /** free pooled nodes */
+    private final Node[] freeNodes;
+    /** data of the free pooled nodes */
+    private final ProjectileData[] freeData;
+    /** count of free pooled nodes */
+    private int freeCount;
+    /** count of created pooled nodes */
+    private int createdCount;
+    /** active nodes in their order of creation */
+    private Node[] activeNodes;
+    /** data of the active nodes */
+    private ProjectileData[] activeData;
+    /** flags indicating whether the active nodes are pooled */
+    private boolean[] activePooledFlags;
+    /** count of active nodes */
+    private int activeCount;
+    /** maximum count of active projectiles since the latest reset */
+    private int highWaterMark;
+    /** count of temporary projectiles created since the latest reset */
+    private long overflowCount;
+
+    /**
+     * Constructor, no projectile is created until {@link #preallocate()} or
+     * {@link #acquire} is called
+     * 
+     * @param capacity
+     *            maximum count of pooled projectiles
+     * @param timer
+     *            timer used by the controllers
+     * @param vertexBuffer
+     *            vertex buffer shared by the meshes
+     */
+    public ProjectilePool(final int capacity, final ApplicativeTimer timer, final FloatBuffer vertexBuffer) {
+        super();
+        if (capacity <= 0)
+            throw new IllegalArgumentException("The capacity must be strictly positive");
+        this.capacity = capacity;
+        this.timer = timer;
+        this.vertexBuffer = vertexBuffer;
+        freeNodes = new Node[capacity];
+        freeData = new ProjectileData[capacity];
+        activeNodes = new Node[capacity];
+        activeData = new ProjectileData[capacity];
+        activePooledFlags = new boolean[capacity];
+    }
+
+    /**
+     * Creates all pooled projectiles not created yet
+     */
+    public void preallocate() {
+        while (createdCount < capacity) {
+            final ProjectileData projectileData = new ProjectileData();
+            freeNodes[freeCount] = createNode("Projectile#" + createdCount, projectileData);
+            freeData[freeCount] = projectileData;
+            freeCount++;
+            createdCount++;
+        }
+    }
+
+    private Node createNode(final String name, final ProjectileData projectileData) {
+        final Node projectileNode = new Node(name);
+        NodeHelper.setModelBound(projectileNode, BoundingBox.class);
+        // TODO support several kinds of projectile with different sizes
+        final Mesh projectileMesh = new Mesh("Mesh@" + name);
+        final MeshData projectileMeshData = new MeshData();
+        projectileMeshData.setVertexBuffer(vertexBuffer);
+        projectileMesh.setMeshData(projectileMeshData);
+        projectileNode.attachChild(projectileMesh);
+        projectileNode.addController(new ProjectileController(timer, projectileData));
+        return (projectileNode);
+    }
+
+    /**
+     * Takes a projectile from the pool and sets its initial state. The caller
+     * attaches it to the scenegraph
+     * 
+     * @param originator
+     *            name of the spatial that launched the projectile
+     * @param transform
+     *            initial transform, the projectile moves along the third
+     *            column of its rotation
+     * @param initialLocation
+     *            initial location
+     * @param initialSpeed
+     *            initial speed
+     * @param initialAcceleration
+     *            initial acceleration
+     * @param initialTimeInNanos
+     *            initial time in nanoseconds
+     * @return the node of the projectile
+     */
+    public Node acquire(final String originator, final ReadOnlyTransform transform,
+            final ReadOnlyVector3 initialLocation, final double initialSpeed, final double initialAcceleration,
+            final long initialTimeInNanos) {
+        if (freeCount == 0 && createdCount < capacity)
+            preallocate();
+        final Node projectileNode;
+        final ProjectileData projectileData;
+        final boolean pooled = freeCount > 0;
+        if (pooled) {
+            freeCount--;
+            projectileNode = freeNodes[freeCount];
+            projectileData = freeData[freeCount];
+            freeNodes[freeCount] = null;
+            freeData[freeCount] = null;
+        } else {
+            projectileData = new ProjectileData();
+            projectileNode = createNode("TemporaryProjectile#" + overflowCount, projectileData);
+            overflowCount++;
+        }
+        projectileNode.setTransform(transform);
+        projectileNode.setTranslation(initialLocation);
+        projectileData.set(originator, initialLocation, initialSpeed, initialAcceleration,
+                transform.getMatrix().getColumn(2, projectileData.getInitialDirection()), initialTimeInNanos);
+        if (activeCount == activeNodes.length) {
+            final int newLength = activeNodes.length * 2;
+            activeNodes = Arrays.copyOf(activeNodes, newLength);
+            activeData = Arrays.copyOf(activeData, newLength);
+            activePooledFlags = Arrays.copyOf(activePooledFlags, newLength);
+        }
+        activeNodes[activeCount] = projectileNode;
+        activeData[activeCount] = projectileData;
+        activePooledFlags[activeCount] = pooled;
+        activeCount++;
+        highWaterMark = Math.max(highWaterMark, activeCount);
+        return (projectileNode);
+    }
+
+    /**
+     * Puts back the oldest active projectiles into the pool and detaches them
+     * from their parents
+     * 
+     * @param count
+     *            count of projectiles to release
+     */
+    public void releaseOldest(final int count) {
+        final int releasedCount = Math.min(count, activeCount);
+        for (int index = 0; index < releasedCount; index++) {
+            final Node projectileNode = activeNodes[index];
+            if (projectileNode.getParent() != null)
+                projectileNode.getParent().detachChild(projectileNode);
+            if (activePooledFlags[index]) {
+                freeNodes[freeCount] = projectileNode;
+                freeData[freeCount] = activeData[index];
+                freeCount++;
+            }
+        }
+        // keeps the order of creation of the remaining ones
+        System.arraycopy(activeNodes, releasedCount, activeNodes, 0, activeCount - releasedCount);
+        System.arraycopy(activeData, releasedCount, activeData, 0, activeCount - releasedCount);
+        System.arraycopy(activePooledFlags, releasedCount, activePooledFlags, 0, activeCount - releasedCount);
+        for (int index = activeCount - releasedCount; index < activeCount; index++) {
+            activeNodes[index] = null;
+            activeData[index] = null;
+        }
+        activeCount -= releasedCount;
+    }
+
+    /**
+     * Puts back all active projectiles into the pool
+     */
+    public void releaseAll() {
+        releaseOldest(activeCount);
+    }
+
+    public int getActiveCount() {
+        return (activeCount);
+    }
+
+    public Node getActiveNode(final int index) {
+        return (activeNodes[index]);
+    }
+
+    public ProjectileData getActiveData(final int index) {
+        return (activeData[index]);
+    }
+
+    public int getCapacity() {
+        return (capacity);
+    }
+
+    public int getHighWaterMark() {
+        return (highWaterMark);
+    }
+
+    public long getOverflowCount() {
+        return (overflowCount);
+    }
+
+    /**
+     * Resets the high-water mark and the count of overflows
+     */
+    public void resetCounters() {
+        highWaterMark = activeCount;
+        overflowCount = 0;
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.data;
+
+/**
+ * Counter of a game whose changes are published to the listeners, for example
+ * to evaluate the objectives only when their inputs change
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public enum Statistic {
+    /** count of enemies in the level */
+    ENEMIES_COUNT,
+    /** count of killed enemies */
+    KILLED_ENEMIES_COUNT,
+    /** count of teleporters used by the player */
+    USED_TELEPORTERS_COUNT,
+    /** count of objects collected by the player */
+    COLLECTED_OBJECTS_COUNT,
+    /** health of the player */
+    HEALTH
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.data;
+
+import java.util.Arrays;
+
+/**
+ * Helper publishing the changes of some counters to the listeners subscribed
+ * to them. The listeners are stored by counter so that a change only notifies
+ * those depending on it, a change without any listener only costs an array
+ * read. The listeners can subscribe or unsubscribe while being notified, they
+ * are then taken into account by the next changes.
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public final class StatisticChangeSupport {
+
+    private static final StatisticListener[] noListeners = new StatisticListener[0];
+
+    /** listeners by counter (copied on write) */
+    private final StatisticListener[][] listeners;
+
+    /**
+     * Constructor
+     */
+    public StatisticChangeSupport() {
+        super();
+        listeners = new StatisticListener[Statistic.values().length][];
+        Arrays.fill(listeners, noListeners);
+    }
+
+    /**
+     * Subscribes a listener to the changes of a counter
+     * 
+     * @param statistic
+     *            counter
+     * @param listener
+     *            listener
+     */
+    public void addListener(final Statistic statistic, final StatisticListener listener) {
+        if (listener == null)
+            throw new IllegalArgumentException("The listener cannot be null");
+        final StatisticListener[] previousListeners = listeners[statistic.ordinal()];
+        final StatisticListener[] currentListeners = Arrays.copyOf(previousListeners, previousListeners.length + 1);
+        currentListeners[previousListeners.length] = listener;
+        listeners[statistic.ordinal()] = currentListeners;
+    }
+
+    /**
+     * Unsubscribes a listener from the changes of a counter
+     * 
+     * @param statistic
+     *            counter
+     * @param listener
+     *            listener
+     * @return <code>true</code> if the listener was subscribed
+     */
+    public boolean removeListener(final Statistic statistic, final StatisticListener listener) {
+        final StatisticListener[] previousListeners = listeners[statistic.ordinal()];
+        for (int index = 0; index < previousListeners.length; index++)
+            if (previousListeners[index] == listener) {
+                final StatisticListener[] currentListeners;
+                if (previousListeners.length == 1)
+                    currentListeners = noListeners;
+                else {
+                    currentListeners = new StatisticListener[previousListeners.length - 1];
+                    System.arraycopy(previousListeners, 0, currentListeners, 0, index);
+                    System.arraycopy(previousListeners, index + 1, currentListeners, index,
+                            currentListeners.length - index);
+                }
+                listeners[statistic.ordinal()] = currentListeners;
+                return (true);
+            }
+        return (false);
+    }
+
+    /**
+     * Notifies the listeners of a counter if its value has changed
+     * 
+     * @param statistic
+     *            counter
+     * @param previousValue
+     *            value before the change
+     * @param currentValue
+     *            value after the change
+     */
+    public void fireStatisticChanged(final Statistic statistic, final int previousValue, final int currentValue) {
+        if (previousValue != currentValue)
+            for (final StatisticListener listener : listeners[statistic.ordinal()])
+                listener.statisticChanged(statistic, previousValue, currentValue);
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.data;
+
+/**
+ * Listener notified when a counter of a game changes
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public interface StatisticListener {
+
+    /**
+     * Called when a counter changes
+     * 
+     * @param statistic
+     *            changed counter
+     * @param previousValue
+     *            value before the change
+     * @param currentValue
+     *            value after the change
+     */
+    public void statisticChanged(final Statistic statistic, final int previousValue, final int currentValue);
+}
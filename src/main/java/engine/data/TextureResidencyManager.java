@@ -0,0 +1,297 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.data;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.ardor3d.image.Image;
+import com.ardor3d.image.Texture;
+import com.ardor3d.renderer.state.RenderState.StateType;
+import com.ardor3d.renderer.state.TextureState;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.util.TextureKey;
+import com.ardor3d.util.TextureManager;
+
+import engine.misc.SimpleDeallocationHelper;
+
+/**
+ * Manager of the decoded images of the textures, shared by all levels. It
+ * records the size of the decoded image of each texture key and keeps the
+ * total under a memory budget by evicting the CPU-side copies of the least
+ * recently used textures already uploaded to the graphics card. An evicted
+ * texture remains usable as long as its OpenGL texture isn't deleted, its key
+ * is removed from the cache of the texture manager so that the next load
+ * decodes its image again. The images of the textures not uploaded yet are
+ * never evicted. The images released by the garbage collector are forgotten.
+ * This manager mustn't be used by several threads at the same time, it's
+ * normally used on the rendering thread.
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public final class TextureResidencyManager {
+
+    /** default memory budget in bytes */
+    public static final long DEFAULT_BUDGET_IN_BYTES = 128L * 1024L * 1024L;
+
+    /**
+     * Recorded decoded image of a texture
+     */
+    private static final class ImageEntry {
+
+        private final WeakReference<Image> image;
+
+        private final long sizeInBytes;
+
+        private ImageEntry(final Image image) {
+            super();
+            this.image = new WeakReference<>(image);
+            this.sizeInBytes = getSizeInBytes(image);
+        }
+    }
+
+    /** helper used to release the native memory of the evicted images */
+    private final SimpleDeallocationHelper deallocationHelper;
+    /**
+     * recorded images by texture key from the least recently used to the most
+     * recently used
+     */
+    private final LinkedHashMap<TextureKey, ImageEntry> entries;
+    /** memory budget in bytes */
+    private long budgetInBytes;
+    /** size of the recorded images in bytes */
+    private long residentSizeInBytes;
+    /** highest size of the recorded images in bytes */
+    private long residentSizeHighWaterMark;
+    /** count of textures whose image was already recorded */
+    private long hitCount;
+    /** count of textures whose image has just been decoded */
+    private long missCount;
+    /** count of evicted images */
+    private long evictionCount;
+    /** size of the evicted images in bytes */
+    private long evictedSizeInBytes;
+
+    /**
+     * Constructor
+     * 
+     * @param budgetInBytes
+     *            memory budget in bytes, zero evicts all images once uploaded
+     * @param deallocationHelper
+     *            helper used to release the native memory of the evicted
+     *            images, can be null
+     */
+    public TextureResidencyManager(final long budgetInBytes, final SimpleDeallocationHelper deallocationHelper) {
+        super();
+        this.deallocationHelper = deallocationHelper;
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+        setBudgetInBytes(budgetInBytes);
+    }
+
+    public long getBudgetInBytes() {
+        return (budgetInBytes);
+    }
+
+    /**
+     * Sets the memory budget, it's enforced by
+     * {@link #enforceBudget(Object)}
+     * 
+     * @param budgetInBytes
+     *            memory budget in bytes, zero evicts all images once uploaded
+     */
+    public void setBudgetInBytes(final long budgetInBytes) {
+        if (budgetInBytes < 0)
+            throw new IllegalArgumentException("The memory budget must be positive");
+        this.budgetInBytes = budgetInBytes;
+    }
+
+    /**
+     * Computes the size of the data of an image
+     * 
+     * @param image
+     *            image
+     * @return the size of its data in bytes
+     */
+    public static long getSizeInBytes(final Image image) {
+        long sizeInBytes = 0;
+        if (image != null && image.getDataSize() >= 1)
+            for (final ByteBuffer data : image.getData())
+                if (data != null)
+                    sizeInBytes += data.capacity();
+        return (sizeInBytes);
+    }
+
+    /**
+     * Records the images of the textures of a spatial and of its descendants
+     * 
+     * @param spatial
+     *            spatial
+     */
+    public void register(final Spatial spatial) {
+        spatial.acceptVisitor(visitedSpatial -> {
+            final TextureState textureState = (TextureState) visitedSpatial.getLocalRenderState(StateType.Texture);
+            if (textureState != null)
+                for (int textureUnit = 0; textureUnit <= textureState.getMaxTextureIndexUsed(); textureUnit++) {
+                    final Texture texture = textureState.getTexture(textureUnit);
+                    if (texture != null)
+                        register(texture);
+                }
+        }, false);
+    }
+
+    /**
+     * Records the image of a texture
+     * 
+     * @param texture
+     *            texture
+     */
+    public void register(final Texture texture) {
+        final TextureKey textureKey = texture.getTextureKey();
+        final Image image = texture.getImage();
+        if (textureKey != null && image != null && image.getDataSize() >= 1) {
+            final ImageEntry imageEntry = entries.get(textureKey);
+            if (imageEntry != null && imageEntry.image.get() == image)
+                hitCount++;
+            else {
+                missCount++;
+                if (imageEntry != null)
+                    residentSizeInBytes -= imageEntry.sizeInBytes;
+                final ImageEntry newImageEntry = new ImageEntry(image);
+                entries.put(textureKey, newImageEntry);
+                residentSizeInBytes += newImageEntry.sizeInBytes;
+                residentSizeHighWaterMark = Math.max(residentSizeHighWaterMark, residentSizeInBytes);
+            }
+        }
+    }
+
+    /**
+     * Forgets the image of a texture, typically when the texture is deleted
+     * 
+     * @param texture
+     *            texture
+     */
+    public void unregister(final Texture texture) {
+        final TextureKey textureKey = texture.getTextureKey();
+        if (textureKey != null) {
+            final ImageEntry imageEntry = entries.get(textureKey);
+            if (imageEntry != null && imageEntry.image.get() == texture.getImage()) {
+                entries.remove(textureKey);
+                residentSizeInBytes -= imageEntry.sizeInBytes;
+            }
+        }
+    }
+
+    /**
+     * Forgets the images released by the garbage collector
+     */
+    private void purge() {
+        final Iterator<ImageEntry> entryIterator = entries.values().iterator();
+        while (entryIterator.hasNext()) {
+            final ImageEntry imageEntry = entryIterator.next();
+            if (imageEntry.image.get() == null) {
+                residentSizeInBytes -= imageEntry.sizeInBytes;
+                entryIterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Evicts the images of the least recently used textures already uploaded
+     * to the graphics card until the size of the recorded images fits into
+     * the budget
+     * 
+     * @param glContextRep
+     *            object representing the OpenGL context into which the
+     *            textures are uploaded
+     * @return the count of evicted images
+     */
+    public int enforceBudget(final Object glContextRep) {
+        purge();
+        int evictedImageCount = 0;
+        final Iterator<Map.Entry<TextureKey, ImageEntry>> entryIterator = entries.entrySet().iterator();
+        while (residentSizeInBytes > budgetInBytes && entryIterator.hasNext()) {
+            final Map.Entry<TextureKey, ImageEntry> entry = entryIterator.next();
+            final TextureKey textureKey = entry.getKey();
+            final Integer textureId = textureKey.getTextureIdForContext(glContextRep);
+            if (textureId != null && textureId.intValue() != 0 && !textureKey.isDirty(glContextRep)) {
+                final ImageEntry imageEntry = entry.getValue();
+                final Image image = imageEntry.image.get();
+                if (image != null) {
+                    // the image is shared by the clones of the texture, empties
+                    // it so that no clone keeps its data and so that its
+                    // buffers aren't released twice when the texture is deleted
+                    final ArrayList<ByteBuffer> imageData = new ArrayList<>(image.getData());
+                    image.setData(new ArrayList<ByteBuffer>());
+                    if (deallocationHelper != null)
+                        for (final ByteBuffer data : imageData)
+                            if (data != null)
+                                deallocationHelper.deallocate(data);
+                }
+                // the next load of this texture has to decode its image
+                TextureManager.removeFromCache(textureKey);
+                entryIterator.remove();
+                residentSizeInBytes -= imageEntry.sizeInBytes;
+                evictedSizeInBytes += imageEntry.sizeInBytes;
+                evictionCount++;
+                evictedImageCount++;
+            }
+        }
+        return (evictedImageCount);
+    }
+
+    /**
+     * Forgets all recorded images without releasing them
+     */
+    public void clear() {
+        entries.clear();
+        residentSizeInBytes = 0;
+    }
+
+    public int size() {
+        return (entries.size());
+    }
+
+    public long getResidentSizeInBytes() {
+        return (residentSizeInBytes);
+    }
+
+    public long getResidentSizeHighWaterMark() {
+        return (residentSizeHighWaterMark);
+    }
+
+    public long getHitCount() {
+        return (hitCount);
+    }
+
+    public long getMissCount() {
+        return (missCount);
+    }
+
+    public long getEvictionCount() {
+        return (evictionCount);
+    }
+
+    public long getEvictedSizeInBytes() {
+        return (evictedSizeInBytes);
+    }
+}
@@ -20,7 +20,9 @@ package engine.misc;
 import com.ardor3d.util.ReadOnlyTimer;
 
 /**
- * Timer that can be paused
+ * Timer that can be paused. It uses the system time by default, it can use
+ * another timer as a time source, for example to follow a simulation advancing
+ * with a fixed time step
  * 
  * @author Julien Gouesse
  *
@@ -30,6 +32,8 @@ public class ApplicativeTimer implements ReadOnlyTimer {
     private static final long TIMER_RESOLUTION = 1000000000L;
 
     private static final double INVERSE_TIMER_RESOLUTION = 1.0 / TIMER_RESOLUTION;
+    /** time source, <code>null</code> if the system time is used */
+    private final ReadOnlyTimer timeSource;
     /** internal absolute time reference used as the start of this timer */
     private long startTime;
     /**
@@ -55,10 +59,22 @@ public class ApplicativeTimer implements ReadOnlyTimer {
     private double timePerFrame;
 
     /**
-     * Default constructor, starts this timer immediately
+     * Default constructor, starts this timer immediately, uses the system time
      */
     public ApplicativeTimer() {
+        this(null);
+    }
+
+    /**
+     * Constructor, starts this timer immediately
+     * 
+     * @param timeSource
+     *            timer used as a time source, the system time is used if it is
+     *            <code>null</code>
+     */
+    public ApplicativeTimer(final ReadOnlyTimer timeSource) {
         super();
+        this.timeSource = timeSource;
         startTime = getSystemNanoTime();
         pauseEnabled = false;
         pausePreviouslyEnabled = false;
@@ -212,7 +228,13 @@ public class ApplicativeTimer implements ReadOnlyTimer {
     }
 
     private final long getSystemNanoTime() {
-        final long rawSystemNanoTime = System.nanoTime();
+        final long rawSystemNanoTime;
+        if (timeSource == null)
+            rawSystemNanoTime = System.nanoTime();
+        else if (timeSource.getResolution() == TIMER_RESOLUTION)
+            rawSystemNanoTime = timeSource.getTime();
+        else
+            rawSystemNanoTime = (long) (timeSource.getTime() * (TIMER_RESOLUTION / (double) timeSource.getResolution()));
         return (rawSystemNanoTime);
     }
 }
@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.misc;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Resolver of the direct byte buffers owning the native memory of some direct
+ * NIO buffers. It computes once per concrete buffer class a method handle
+ * returning the buffer contained in the instances of this class (the viewed
+ * or the sliced buffer), caches it in a class value and then follows the
+ * chain of these handles without any reflective call. It can be used by
+ * several threads.
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public final class DeallocatableBufferResolver {
+
+    /**
+     * Resolution of a concrete buffer class
+     */
+    private static final class BufferClassResolution {
+
+        /**
+         * handle returning the buffer contained in an instance of the class,
+         * null if none
+         */
+        private final MethodHandle attachmentGetter;
+
+        /**
+         * flag indicating whether an instance containing no buffer owns its
+         * native memory
+         */
+        private final boolean deallocatable;
+
+        private BufferClassResolution(final MethodHandle attachmentGetter, final boolean deallocatable) {
+            super();
+            this.attachmentGetter = attachmentGetter;
+            this.deallocatable = deallocatable;
+        }
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(DeallocatableBufferResolver.class.getName());
+    /** type of the handles returning the contained buffers */
+    private static final MethodType attachmentGetterType = MethodType.methodType(Object.class, Buffer.class);
+    /** handle ignoring the contained objects that aren't buffers */
+    private static final MethodHandle bufferFilter;
+
+    static {
+        try {
+            bufferFilter = MethodHandles.lookup().findStatic(DeallocatableBufferResolver.class, "filterBuffer",
+                    MethodType.methodType(Object.class, Object.class));
+        } catch (final NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final ClassValue<BufferClassResolution> resolutions;
+
+    /**
+     * Constructor of a resolver relying on the method "attachment" of the
+     * direct buffers of OpenJDK and Oracle Java
+     */
+    public DeallocatableBufferResolver() {
+        super();
+        resolutions = new ClassValue<>() {
+            @Override
+            protected BufferClassResolution computeValue(final Class<?> bufferClass) {
+                MethodHandle attachmentGetter = null;
+                try {
+                    final Method attachmentMethod = bufferClass.getMethod("attachment");
+                    attachmentMethod.setAccessible(true);
+                    attachmentGetter = MethodHandles.lookup().unreflect(attachmentMethod).asType(attachmentGetterType);
+                } catch (final NoSuchMethodException nsme) {
+                    // the instances of this class contain no buffer
+                } catch (final IllegalAccessException | RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to find the attachment of the class " + bufferClass.getName(), e);
+                }
+                final boolean deallocatable = ByteBuffer.class.isAssignableFrom(bufferClass)
+                        && (bufferClass.getName().equals("java.nio.DirectByteBuffer")
+                                || Arrays.stream(bufferClass.getInterfaces()).map(Class::getName)
+                                        .anyMatch("sun.nio.ch.DirectBuffer"::equals));
+                return (new BufferClassResolution(attachmentGetter, deallocatable));
+            }
+        };
+    }
+
+    /**
+     * Constructor of a resolver relying on the fields found by a deallocation
+     * helper
+     * 
+     * @param attachmentOrByteBufferFieldMap
+     *            fields containing the buffers by buffer class
+     * @param deallocatableBufferClassSet
+     *            classes of the buffers owning their native memory
+     */
+    public DeallocatableBufferResolver(final Map<Class<?>, Field> attachmentOrByteBufferFieldMap,
+            final Set<Class<?>> deallocatableBufferClassSet) {
+        super();
+        // copies the maps as they can be modified later
+        final Map<Class<?>, Field> fieldMap = attachmentOrByteBufferFieldMap == null ? new HashMap<>()
+                : new HashMap<>(attachmentOrByteBufferFieldMap);
+        final Set<Class<?>> classSet = deallocatableBufferClassSet == null ? new HashSet<>()
+                : new HashSet<>(deallocatableBufferClassSet);
+        resolutions = new ClassValue<>() {
+            @Override
+            protected BufferClassResolution computeValue(final Class<?> bufferClass) {
+                MethodHandle attachmentGetter = null;
+                final Field attachmentOrByteBufferField = fieldMap.get(bufferClass);
+                if (attachmentOrByteBufferField != null)
+                    try {
+                        attachmentOrByteBufferField.setAccessible(true);
+                        // an instance containing something else than a buffer
+                        // is considered as containing nothing
+                        attachmentGetter = MethodHandles.filterReturnValue(MethodHandles.lookup()
+                                .unreflectGetter(attachmentOrByteBufferField).asType(attachmentGetterType),
+                                bufferFilter);
+                    } catch (final IllegalAccessException | RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Failed to access the field " + attachmentOrByteBufferField.getName()
+                                + " of the class " + bufferClass.getName(), e);
+                    }
+                final boolean deallocatable = ByteBuffer.class.isAssignableFrom(bufferClass)
+                        && classSet.contains(bufferClass);
+                if (attachmentGetter == null && !deallocatable)
+                    LOGGER.warning("No deallocatable buffer can be found for the instances of the class "
+                            + bufferClass.getName());
+                return (new BufferClassResolution(attachmentGetter, deallocatable));
+            }
+        };
+    }
+
+    /**
+     * Finds the direct byte buffer owning the native memory of a buffer
+     * 
+     * @param buffer
+     *            buffer
+     * @return the direct byte buffer owning its native memory, null if the
+     *         buffer isn't direct or if this byte buffer can't be found
+     */
+    public ByteBuffer findDeallocatableBuffer(final Buffer buffer) {
+        ByteBuffer deallocatableBuffer = null;
+        Buffer currentBuffer = buffer;
+        while (currentBuffer != null && currentBuffer.isDirect()) {
+            final BufferClassResolution resolution = resolutions.get(currentBuffer.getClass());
+            final Object attachment = resolution.attachmentGetter == null ? null
+                    : getAttachment(resolution.attachmentGetter, currentBuffer);
+            if (attachment instanceof Buffer)
+                currentBuffer = (Buffer) attachment;
+            else {
+                if (attachment == null && resolution.deallocatable)
+                    deallocatableBuffer = (ByteBuffer) currentBuffer;
+                currentBuffer = null;
+            }
+        }
+        return (deallocatableBuffer);
+    }
+
+    private static Object filterBuffer(final Object attachment) {
+        return (attachment instanceof Buffer ? attachment : null);
+    }
+
+    private static Object getAttachment(final MethodHandle attachmentGetter, final Buffer buffer) {
+        try {
+            return ((Object) attachmentGetter.invokeExact(buffer));
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable t) {
+            throw new RuntimeException("Failed to get the attachment of a buffer", t);
+        }
+    }
+}
@@ -12,6 +12,8 @@
  */
 package engine.misc;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -34,6 +36,9 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import engine.telemetry.DeallocationEvent;
+import engine.telemetry.DirectMemoryLedger;
+
 /**
  * Helper to deallocate memory on the native heap allocated during the creation
  * of a direct byte buffer. It supports numerous virtual machines including
@@ -84,9 +89,8 @@ public class DeallocationHelper {
 
         private Method cleanerCleanOrRunMethod;
         
-        private Object unsafeObject;
-        
-        private Method invokeCleanerMethod;
+        /** handle of Unsafe.invokeCleaner bound to the unsafe object */
+        private MethodHandle invokeCleanerHandle;
 
         public OracleSunOpenJdkDeallocator() {
             super();
@@ -96,12 +100,12 @@ public class DeallocationHelper {
                     final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
                     final Field theUnsafeField = unsafeClass.getDeclaredField("theUnsafe");
                     theUnsafeField.setAccessible(true);
-                    unsafeObject = theUnsafeField.get(null);
-                    invokeCleanerMethod = unsafeClass.getMethod("invokeCleaner", java.nio.ByteBuffer.class);
-                    invokeCleanerMethod.setAccessible(true);
+                    final Object unsafeObject = theUnsafeField.get(null);
+                    final Method invokeCleanerMethod = unsafeClass.getMethod("invokeCleaner", java.nio.ByteBuffer.class);
+                    // the handle avoids the reflective call at each deallocation
+                    invokeCleanerHandle = MethodHandles.lookup().unreflect(invokeCleanerMethod).bindTo(unsafeObject);
                 } catch (final Throwable t) {
-                    unsafeObject = null;
-                    invokeCleanerMethod = null;
+                    invokeCleanerHandle = null;
                     final Class<?> directByteBufferClass = Class.forName("java.nio.DirectByteBuffer");
                     final Method localDirectByteBufferCleanerMethod = directByteBufferClass
                             .getDeclaredMethod("cleaner");
@@ -121,7 +125,7 @@ public class DeallocationHelper {
                     localDirectByteBufferCleanerMethod.setAccessible(true);
                     localCleanerCleanOrRunMethod.setAccessible(true);
                     cleanerCleanOrRunMethod = localCleanerCleanOrRunMethod;
-                    directByteBufferCleanerMethod = localCleanerCleanOrRunMethod;
+                    directByteBufferCleanerMethod = localDirectByteBufferCleanerMethod;
                 }
             } catch (final Throwable t) {
                 LOGGER.log(Level.WARNING, "The initialization of the deallocator for Oracle Java, Sun Java and OpenJDK has failed", t);
@@ -141,11 +145,12 @@ public class DeallocationHelper {
                 } catch (final IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
                     LOGGER.log(Level.WARNING, "The deallocation of a direct NIO buffer has failed", e);
                 }
-            } else if (unsafeObject != null && invokeCleanerMethod != null) {
+            } else if (invokeCleanerHandle != null) {
                 try {
-                    invokeCleanerMethod.invoke(unsafeObject, directByteBuffer);
-                } catch (final IllegalAccessException | InvocationTargetException e) {
-                    LOGGER.log(Level.WARNING, "The deallocation of a direct NIO buffer has failed", e);
+                    invokeCleanerHandle.invokeExact(directByteBuffer);
+                    success = true;
+                } catch (final Throwable t) {
+                    LOGGER.log(Level.WARNING, "The deallocation of a direct NIO buffer has failed", t);
                 }
             }
             return (success);
@@ -262,6 +267,9 @@ public class DeallocationHelper {
 
     private Deallocator deallocator;
 
+    /** resolver of the deallocatable buffers built from the fields and the classes above */
+    private DeallocatableBufferResolver resolver;
+
     /**
      * Default constructor
      */
@@ -673,12 +681,35 @@ public class DeallocationHelper {
             deallocator = null;
         } else
             deallocator = null;
+        resolver = new DeallocatableBufferResolver(attachmentOrByteBufferFieldMap, deallocatableBufferClassSet);
         // final cleanup
         for (final Buffer bufferToDelete : buffersToDelete)
             deallocate(bufferToDelete);
     }
 
-    public ByteBuffer findDeallocatableBuffer(Buffer buffer) {
+    /**
+     * Finds the direct byte buffer owning the native memory of a buffer, the
+     * accessors of the contained buffers are resolved only once per class
+     * 
+     * @param buffer
+     *            buffer
+     * @return the direct byte buffer owning its native memory, null if none
+     */
+    public ByteBuffer findDeallocatableBuffer(final Buffer buffer) {
+        return (resolver.findDeallocatableBuffer(buffer));
+    }
+
+    /**
+     * Finds the direct byte buffer owning the native memory of a buffer with
+     * the reflection API at each call, it's slower than
+     * {@link #findDeallocatableBuffer(Buffer)} but it takes into account the
+     * changes of the fields of the instances
+     * 
+     * @param buffer
+     *            buffer
+     * @return the direct byte buffer owning its native memory, null if none
+     */
+    public ByteBuffer findDeallocatableBufferReflectively(Buffer buffer) {
         final ByteBuffer deallocatableDirectByteBuffer;
         // looks only for the direct buffers
         if (buffer != null && buffer.isDirect()) {// looks for any contained
@@ -719,7 +750,7 @@ public class DeallocationHelper {
                 }
             } else {// the passed buffer contains another buffer, looks for a
                     // deallocatable buffer inside it
-                deallocatableDirectByteBuffer = findDeallocatableBuffer(attachmentBufferOrByteBuffer);
+                deallocatableDirectByteBuffer = findDeallocatableBufferReflectively(attachmentBufferOrByteBuffer);
             }
         } else {// there is no need to clean the heap based buffers
             deallocatableDirectByteBuffer = null;
@@ -729,9 +760,14 @@ public class DeallocationHelper {
 
     public void deallocate(final Buffer buffer) {
         if (deallocator != null) {
+            final DeallocationEvent event = new DeallocationEvent(this);
+            event.begin();
             final ByteBuffer deallocatableBuffer = findDeallocatableBuffer(buffer);
-            if (deallocatableBuffer != null)
-                deallocator.run(deallocatableBuffer);
+            final boolean deallocated = deallocatableBuffer != null && deallocator.run(deallocatableBuffer);
+            if (deallocated)
+                DirectMemoryLedger.getInstance().recordDeallocation(deallocatableBuffer);
+            event.setBuffer(buffer, deallocatableBuffer, deallocated);
+            event.commit();
         }
     }
 
@@ -749,6 +785,7 @@ public class DeallocationHelper {
 
     public void setAttachmentOrByteBufferFieldMap(Map<Class<?>, Field> attachmentOrByteBufferFieldMap) {
         this.attachmentOrByteBufferFieldMap = attachmentOrByteBufferFieldMap;
+        resolver = new DeallocatableBufferResolver(attachmentOrByteBufferFieldMap, deallocatableBufferClassSet);
     }
 
     public Set<Class<?>> getDeallocatableBufferClassSet() {
@@ -757,5 +794,6 @@ public class DeallocationHelper {
 
     public void setDeallocatableBufferClassSet(Set<Class<?>> deallocatableBufferClassSet) {
         this.deallocatableBufferClassSet = deallocatableBufferClassSet;
+        resolver = new DeallocatableBufferResolver(attachmentOrByteBufferFieldMap, deallocatableBufferClassSet);
     }
 }
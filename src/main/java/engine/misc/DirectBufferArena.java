@@ -0,0 +1,405 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.misc;
+
+import java.lang.ref.Cleaner;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ardor3d.image.Image;
+import com.ardor3d.image.Texture;
+import com.ardor3d.renderer.state.RenderState.StateType;
+import com.ardor3d.renderer.state.TextureState;
+import com.ardor3d.scenegraph.AbstractBufferData;
+import com.ardor3d.scenegraph.FloatBufferData;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.MeshData;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.util.TextureKey;
+import com.ardor3d.util.TextureManager;
+
+/**
+ * Arena of direct NIO buffers whose native memory is released at once and
+ * immediately when it's closed. The buffers are slices of large blocks
+ * acquired from a slab pool, the blocks are given back to the pool rather
+ * than left to the garbage collector so that the next arenas reuse them. The
+ * arena is typically scoped to a level, it's closed when the level is
+ * unloaded. The buffers mustn't be used once the arena is closed, as their
+ * blocks are recycled, the calls accessing them silently read or overwrite
+ * the data of the next arenas. The images of the textures moved into the
+ * arena are emptied when it's closed. The blocks of an arena that isn't
+ * closed are released by the garbage collector. This arena can be used by
+ * several threads.
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public final class DirectBufferArena implements AutoCloseable {
+
+    /**
+     * Size of the blocks of an arena counted in the total, it's removed from
+     * the total when the arena is closed or collected
+     */
+    private static final class Reservation implements Runnable {
+
+        private long sizeInBytes;
+
+        private synchronized void add(final long sizeInBytes) {
+            this.sizeInBytes += sizeInBytes;
+            totalReservedSizeInBytes.addAndGet(sizeInBytes);
+        }
+
+        @Override
+        public synchronized void run() {
+            totalReservedSizeInBytes.addAndGet(-sizeInBytes);
+            sizeInBytes = 0;
+        }
+    }
+
+    /** default size of a block in bytes */
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+    /** alignment of the buffers in bytes */
+    private static final int ALIGNMENT = 8;
+    /** size of the blocks of all open arenas in bytes */
+    private static final AtomicLong totalReservedSizeInBytes = new AtomicLong();
+    /** cleaner updating the total when an arena that isn't closed is collected */
+    private static final Cleaner cleaner = Cleaner.create();
+    /** resolver looking for the buffers owning the native memory of the moved buffers */
+    private static final DeallocatableBufferResolver resolver = new DeallocatableBufferResolver();
+    /** size of the blocks of this arena counted in the total */
+    private final Reservation reservation;
+    /** action removing the blocks of this arena from the total */
+    private final Cleaner.Cleanable cleanable;
+    /** pool providing the blocks */
+    private final SlabBufferPool pool;
+    /** size of a block in bytes */
+    private final int blockSize;
+    /** allocated blocks */
+    private final ArrayList<ByteBuffer> blocks;
+    /** images of the textures whose data have been moved into this arena */
+    private final ArrayList<Image> images;
+    /** keys of the textures whose images have been moved into this arena */
+    private final ArrayList<TextureKey> textureKeys;
+    /** block in which the next buffers are allocated, null if none */
+    private ByteBuffer currentBlock;
+    /** offset of the next buffer in the current block */
+    private int currentOffset;
+    /** size of the allocated blocks in bytes */
+    private long reservedSizeInBytes;
+    /** size of the allocated buffers in bytes */
+    private long usedSizeInBytes;
+    /** count of allocated buffers */
+    private long bufferCount;
+    /** flag indicating whether this arena is closed */
+    private boolean closed;
+
+    /**
+     * Constructor
+     */
+    public DirectBufferArena() {
+        this(DEFAULT_BLOCK_SIZE, SlabBufferPool.getInstance());
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param blockSize
+     *            size of a block in bytes, the bigger buffers get their own
+     *            blocks
+     * @param pool
+     *            pool providing the blocks
+     */
+    public DirectBufferArena(final int blockSize, final SlabBufferPool pool) {
+        super();
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("The size of a block must be strictly positive");
+        this.blockSize = blockSize;
+        this.pool = pool;
+        blocks = new ArrayList<>();
+        images = new ArrayList<>();
+        textureKeys = new ArrayList<>();
+        reservation = new Reservation();
+        cleanable = cleaner.register(this, reservation);
+    }
+
+    /**
+     * Allocates a direct byte buffer in the native byte order
+     * 
+     * @param capacity
+     *            capacity of the buffer in bytes
+     * @return the new buffer, its content is undefined as the blocks are
+     *         recycled
+     */
+    public synchronized ByteBuffer allocate(final int capacity) {
+        if (closed)
+            throw new IllegalStateException("The arena is closed");
+        if (capacity < 0)
+            throw new IllegalArgumentException("The capacity must be positive");
+        final ByteBuffer block;
+        final int offset;
+        if (capacity > blockSize / 4) {
+            // a big buffer gets its own block so that the current one isn't
+            // wasted
+            block = allocateBlock(capacity);
+            offset = 0;
+        } else {
+            if (currentBlock == null || currentOffset + capacity > currentBlock.capacity()) {
+                currentBlock = allocateBlock(blockSize);
+                currentOffset = 0;
+            }
+            block = currentBlock;
+            offset = currentOffset;
+            currentOffset = Math.min(currentBlock.capacity(), (offset + capacity + ALIGNMENT - 1) & -ALIGNMENT);
+        }
+        usedSizeInBytes += capacity;
+        bufferCount++;
+        return (block.slice(offset, capacity).order(ByteOrder.nativeOrder()));
+    }
+
+    private ByteBuffer allocateBlock(final int capacity) {
+        // the whole block is usable, its capacity is the size of its class
+        final ByteBuffer block = pool.acquireBlock(capacity).clear();
+        blocks.add(block);
+        reservedSizeInBytes += block.capacity();
+        reservation.add(block.capacity());
+        return (block);
+    }
+
+    public FloatBuffer allocateFloatBuffer(final int capacity) {
+        return (allocate(capacity * Float.BYTES).asFloatBuffer());
+    }
+
+    public IntBuffer allocateIntBuffer(final int capacity) {
+        return (allocate(capacity * Integer.BYTES).asIntBuffer());
+    }
+
+    public ShortBuffer allocateShortBuffer(final int capacity) {
+        return (allocate(capacity * Short.BYTES).asShortBuffer());
+    }
+
+    /**
+     * Copies a direct buffer into this arena
+     * 
+     * @param buffer
+     *            buffer to copy, its position and its limit are kept
+     * @return the copy whose position and limit are those of the buffer
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Buffer> T copy(final T buffer) {
+        final Buffer copy;
+        final int capacity = buffer.capacity();
+        if (buffer instanceof FloatBuffer)
+            copy = allocateFloatBuffer(capacity).put(((FloatBuffer) buffer).duplicate().clear());
+        else if (buffer instanceof IntBuffer)
+            copy = allocateIntBuffer(capacity).put(((IntBuffer) buffer).duplicate().clear());
+        else if (buffer instanceof ShortBuffer)
+            copy = allocateShortBuffer(capacity).put(((ShortBuffer) buffer).duplicate().clear());
+        else if (buffer instanceof ByteBuffer)
+            copy = allocate(capacity).put(((ByteBuffer) buffer).duplicate().clear());
+        else
+            throw new IllegalArgumentException("Unsupported buffer type " + buffer.getClass().getName());
+        copy.limit(buffer.limit()).position(buffer.position());
+        return ((T) copy);
+    }
+
+    /**
+     * Moves the direct buffers of the meshes of a spatial and of its
+     * descendants into this arena. The buffers owning the native memory of the
+     * previous buffers are released as soon as all their views are copied so
+     * that the peak of memory doesn't exceed the size of the moved buffers by
+     * more than a single buffer. The buffers shared by several meshes remain
+     * shared. It must be called before the upload of these buffers, the
+     * previous buffers mustn't be referenced elsewhere
+     * 
+     * @param spatial
+     *            spatial
+     */
+    public void moveMeshBuffers(final Spatial spatial) {
+        final List<AbstractBufferData<?>> bufferDataList = new ArrayList<>();
+        spatial.acceptVisitor(visitedSpatial -> {
+            if (visitedSpatial instanceof Mesh) {
+                final MeshData meshData = ((Mesh) visitedSpatial).getMeshData();
+                bufferDataList.add(meshData.getVertexCoords());
+                bufferDataList.add(meshData.getNormalCoords());
+                bufferDataList.add(meshData.getColorCoords());
+                bufferDataList.add(meshData.getFogCoords());
+                bufferDataList.add(meshData.getTangentCoords());
+                bufferDataList.addAll(meshData.getTextureCoords());
+                bufferDataList.add(meshData.getIndices());
+            }
+        }, false);
+        // counts the distinct views of each buffer owning native memory
+        final IdentityHashMap<Buffer, Buffer> copies = new IdentityHashMap<>();
+        final IdentityHashMap<ByteBuffer, int[]> viewCounts = new IdentityHashMap<>();
+        for (final AbstractBufferData<?> bufferData : bufferDataList)
+            if (isMovable(bufferData))
+                copies.put(bufferData.getBuffer(), null);
+        for (final Buffer buffer : copies.keySet()) {
+            final ByteBuffer deallocatableBuffer = resolver.findDeallocatableBuffer(buffer);
+            if (deallocatableBuffer != null)
+                viewCounts.computeIfAbsent(deallocatableBuffer, b -> new int[1])[0]++;
+        }
+        for (final AbstractBufferData<?> bufferData : bufferDataList)
+            if (isMovable(bufferData))
+                moveBuffer(bufferData, copies, viewCounts);
+    }
+
+    private static boolean isMovable(final AbstractBufferData<?> bufferData) {
+        return (bufferData != null && bufferData.getBuffer() != null && bufferData.getBuffer().isDirect());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Buffer> void moveBuffer(final AbstractBufferData<T> bufferData,
+            final IdentityHashMap<Buffer, Buffer> copies, final IdentityHashMap<ByteBuffer, int[]> viewCounts) {
+        final T buffer = bufferData.getBuffer();
+        T copy = (T) copies.get(buffer);
+        if (copy == null) {
+            copy = copy(buffer);
+            copies.put(buffer, copy);
+            releaseView(buffer, viewCounts);
+        }
+        bufferData.setBuffer(copy);
+    }
+
+    /**
+     * Releases the buffer owning the native memory of a copied view once all
+     * its views are copied, unless it's a block of an arena
+     */
+    private void releaseView(final Buffer view, final IdentityHashMap<ByteBuffer, int[]> viewCounts) {
+        final ByteBuffer deallocatableBuffer = resolver.findDeallocatableBuffer(view);
+        if (deallocatableBuffer != null) {
+            final int[] viewCount = viewCounts.get(deallocatableBuffer);
+            if (--viewCount[0] == 0 && !pool.isBlock(deallocatableBuffer))
+                pool.release(deallocatableBuffer);
+        }
+    }
+
+    /**
+     * Moves the data of the images of the textures of a spatial and of its
+     * descendants into this arena, the buffers owning the native memory of the
+     * previous data are released at once. The images already in an arena and
+     * the image of the default texture are left untouched. The images are shared with the cache of the texture
+     * manager, their textures are removed from this cache and their images
+     * are emptied when this arena is closed. It must be called before the
+     * upload of these textures
+     * 
+     * @param spatial
+     *            spatial
+     */
+    public void moveTextureImages(final Spatial spatial) {
+        final IdentityHashMap<Image, Image> visitedImages = new IdentityHashMap<>();
+        spatial.acceptVisitor(visitedSpatial -> {
+            final TextureState textureState = (TextureState) visitedSpatial.getLocalRenderState(StateType.Texture);
+            if (textureState != null)
+                for (int textureUnit = 0; textureUnit <= textureState.getMaxTextureIndexUsed(); textureUnit++) {
+                    final Texture texture = textureState.getTexture(textureUnit);
+                    final Image image = texture == null ? null : texture.getImage();
+                    // the image of the default texture is shared by all
+                    // textures whose image can't be loaded
+                    if (image != null && image != TextureState.getDefaultTextureImage()
+                            && visitedImages.put(image, image) == null)
+                        moveImage(texture.getTextureKey(), image);
+                }
+        }, false);
+    }
+
+    private void moveImage(final TextureKey textureKey, final Image image) {
+        final List<ByteBuffer> data = image.getData();
+        final ArrayList<ByteBuffer> dataCopies = new ArrayList<>(data.size());
+        final IdentityHashMap<ByteBuffer, int[]> viewCounts = new IdentityHashMap<>();
+        for (final ByteBuffer buffer : data)
+            if (buffer != null && buffer.isDirect()) {
+                final ByteBuffer deallocatableBuffer = resolver.findDeallocatableBuffer(buffer);
+                // the image belongs to another arena
+                if (deallocatableBuffer == null || pool.isBlock(deallocatableBuffer))
+                    return;
+                viewCounts.computeIfAbsent(deallocatableBuffer, b -> new int[1])[0]++;
+            }
+        for (final ByteBuffer buffer : data)
+            if (buffer != null && buffer.isDirect()) {
+                dataCopies.add(copy(buffer));
+                releaseView(buffer, viewCounts);
+            } else
+                dataCopies.add(buffer);
+        if (!viewCounts.isEmpty()) {
+            image.setData(dataCopies);
+            synchronized (this) {
+                images.add(image);
+                if (textureKey != null)
+                    textureKeys.add(textureKey);
+            }
+        }
+    }
+
+    /**
+     * Gives back the blocks of all buffers of this arena to the pool, empties
+     * the images of the moved textures
+     */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            // the images of the cache of the texture manager mustn't keep
+            // their data once the blocks are recycled
+            for (final TextureKey textureKey : textureKeys)
+                TextureManager.removeFromCache(textureKey);
+            textureKeys.clear();
+            for (final Image image : images)
+                image.setData(new ArrayList<>());
+            images.clear();
+            for (final ByteBuffer block : blocks)
+                pool.release(block);
+            blocks.clear();
+            currentBlock = null;
+            cleanable.clean();
+        }
+    }
+
+    public synchronized boolean isClosed() {
+        return (closed);
+    }
+
+    public synchronized long getReservedSizeInBytes() {
+        return (closed ? 0 : reservedSizeInBytes);
+    }
+
+    public synchronized long getUsedSizeInBytes() {
+        return (closed ? 0 : usedSizeInBytes);
+    }
+
+    public synchronized long getBufferCount() {
+        return (bufferCount);
+    }
+
+    /**
+     * Returns the size of the blocks of all open arenas
+     * 
+     * @return the size of the blocks of all open arenas in bytes
+     */
+    public static long getTotalReservedSizeInBytes() {
+        return (totalReservedSizeInBytes.get());
+    }
+}
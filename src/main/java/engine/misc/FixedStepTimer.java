@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.misc;
+
+import com.ardor3d.util.ReadOnlyTimer;
+
+/**
+ * Timer of a simulation advancing with a fixed time step. It doesn't read any
+ * clock, its time only increases when a step is performed, which makes the
+ * simulation deterministic and independent from the rendering
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public final class FixedStepTimer implements ReadOnlyTimer {
+
+    private static final long TIMER_RESOLUTION = 1000000000L;
+
+    private static final double INVERSE_TIMER_RESOLUTION = 1.0 / TIMER_RESOLUTION;
+    /** duration of a step in nanoseconds */
+    private final long stepDuration;
+    /** elapsed time in nanoseconds */
+    private long elapsedTime;
+    /** count of performed steps */
+    private long stepCount;
+
+    /**
+     * Constructor
+     * 
+     * @param stepRate
+     *            count of steps per second
+     */
+    public FixedStepTimer(final int stepRate) {
+        super();
+        if (stepRate <= 0)
+            throw new IllegalArgumentException("The step rate must be strictly positive");
+        stepDuration = TIMER_RESOLUTION / stepRate;
+    }
+
+    /**
+     * Performs a step, the time increases by the duration of a step
+     */
+    public final void step() {
+        elapsedTime += stepDuration;
+        stepCount++;
+    }
+
+    /**
+     * Resets the time and the count of steps
+     */
+    public final void reset() {
+        elapsedTime = 0L;
+        stepCount = 0L;
+    }
+
+    /**
+     * Returns the duration of a step
+     * 
+     * @return the duration of a step in nanoseconds
+     */
+    public final long getStepDuration() {
+        return (stepDuration);
+    }
+
+    /**
+     * Returns the count of steps performed since the creation or the latest
+     * reset of this timer
+     * 
+     * @return the count of steps
+     */
+    public final long getStepCount() {
+        return (stepCount);
+    }
+
+    @Override
+    public long getTime() {
+        return (elapsedTime);
+    }
+
+    @Override
+    public double getTimeInSeconds() {
+        return (elapsedTime * INVERSE_TIMER_RESOLUTION);
+    }
+
+    @Override
+    public long getResolution() {
+        return (TIMER_RESOLUTION);
+    }
+
+    @Override
+    public double getFrameRate() {
+        return (TIMER_RESOLUTION / (double) stepDuration);
+    }
+
+    @Override
+    public double getTimePerFrame() {
+        return (stepDuration * INVERSE_TIMER_RESOLUTION);
+    }
+}
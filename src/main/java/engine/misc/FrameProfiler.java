@@ -0,0 +1,419 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.misc;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Profiler measuring the time spent in some scopes of the main loop and of the
+ * game logic. The scopes are fixed so that the measurements are stored in
+ * arrays indexed by their ordinals. The time spent in each scope during a
+ * frame is kept in a fixed-size ring buffer to compute the minimum, the average
+ * and the 99th percentile over the latest frames and to dump them. Nothing is
+ * allocated while measuring. When it's disabled, entering or leaving a scope
+ * only tests a flag. It mustn't be used by several threads at the same time.
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public final class FrameProfiler {
+
+    /**
+     * Profiled scope
+     */
+    public enum Scope {
+        /** input triggers and scheduled tasks of the state machines */
+        INPUT("input"),
+        /** movement of the player and collisions with the level */
+        MOVEMENT("player collision"),
+        /** broad phase and collection of the objects near the player */
+        COLLECTIBLES("collectibles"),
+        /** teleporters near the player */
+        TELEPORTERS("teleporters"),
+        /** collisions between the projectiles and the opponents */
+        PROJECTILES("projectiles"),
+        /** animations and perception checks of the enemies */
+        ENEMIES("enemy AI"),
+        /** statuses of the objectives */
+        OBJECTIVES("objectives"),
+        /** state machine of the player */
+        PLAYER_STATE_MACHINE("player state machine"),
+        /** interpolation of the keyframes of the animated meshes */
+        ANIMATIONS("keyframe interpolation"),
+        /** streaming of the tiles of the chunked levels */
+        STREAMING("level streaming"),
+        /**
+         * update of the scenegraph (controllers, transforms, bounds), it
+         * includes the scopes of the game logic run by the controllers
+         */
+        SCENEGRAPH("updateGeometricState"),
+        /** rendering */
+        RENDERING("draw");
+
+        private final String label;
+
+        private Scope(final String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return (label);
+        }
+    }
+
+    /** default count of frames kept in the ring buffers */
+    public static final int DEFAULT_FRAME_CAPACITY = 600;
+
+    private static final Scope[] scopes = Scope.values();
+
+    /** flag indicating whether the measurements are enabled */
+    private boolean enabled;
+    /** start times of the current measurements in nanoseconds, 0 if none */
+    private final long[] startTimes;
+    /** total times spent in the scopes in nanoseconds */
+    private final long[] totalTimes;
+    /** count of measurements of the scopes */
+    private final long[] measurementCounts;
+    /** times spent in the scopes during the current frame in nanoseconds */
+    private final long[] currentFrameTimes;
+    /** ring buffers of the times spent in the scopes per frame, by scope */
+    private final long[][] frameTimes;
+    /** ring buffer of the durations of the frames */
+    private final long[] frameDurations;
+    /** index of the slot of the next frame in the ring buffers */
+    private int nextFrameIndex;
+    /** count of frames in the ring buffers */
+    private int frameCount;
+    /** end time of the latest frame in nanoseconds, 0 if none */
+    private long latestFrameEndTime;
+    /** buffer used to compute the percentiles */
+    private final long[] selectionBuffer;
+
+    /**
+     * Constructor, the profiler is disabled
+     */
+    public FrameProfiler() {
+        this(DEFAULT_FRAME_CAPACITY);
+    }
+
+    /**
+     * Constructor, the profiler is disabled
+     * 
+     * @param frameCapacity
+     *            count of frames kept in the ring buffers
+     */
+    public FrameProfiler(final int frameCapacity) {
+        super();
+        if (frameCapacity <= 0)
+            throw new IllegalArgumentException("The frame capacity must be strictly positive");
+        final int scopeCount = scopes.length;
+        startTimes = new long[scopeCount];
+        totalTimes = new long[scopeCount];
+        measurementCounts = new long[scopeCount];
+        currentFrameTimes = new long[scopeCount];
+        frameTimes = new long[scopeCount][frameCapacity];
+        frameDurations = new long[frameCapacity];
+        selectionBuffer = new long[frameCapacity];
+    }
+
+    public boolean isEnabled() {
+        return (enabled);
+    }
+
+    public void setEnabled(final boolean enabled) {
+        if (this.enabled != enabled) {
+            this.enabled = enabled;
+            // the frame in progress is incomplete
+            for (int scopeIndex = 0; scopeIndex < scopes.length; scopeIndex++) {
+                startTimes[scopeIndex] = 0;
+                currentFrameTimes[scopeIndex] = 0;
+            }
+            latestFrameEndTime = 0;
+        }
+    }
+
+    /**
+     * Enters a scope
+     * 
+     * @param scope
+     *            entered scope
+     */
+    public void begin(final Scope scope) {
+        if (enabled)
+            startTimes[scope.ordinal()] = System.nanoTime();
+    }
+
+    /**
+     * Leaves a scope, the time spent since entering it is added to its total
+     * and to the time of the current frame
+     * 
+     * @param scope
+     *            left scope
+     */
+    public void end(final Scope scope) {
+        if (enabled) {
+            final int scopeIndex = scope.ordinal();
+            // ignores the scopes entered while this profiler was disabled
+            if (startTimes[scopeIndex] != 0) {
+                final long duration = System.nanoTime() - startTimes[scopeIndex];
+                totalTimes[scopeIndex] += duration;
+                currentFrameTimes[scopeIndex] += duration;
+                measurementCounts[scopeIndex]++;
+                startTimes[scopeIndex] = 0;
+            }
+        }
+    }
+
+    /**
+     * Ends the current frame, stores the times spent in the scopes during this
+     * frame into the ring buffers
+     */
+    public void endFrame() {
+        if (enabled) {
+            final long now = System.nanoTime();
+            for (int scopeIndex = 0; scopeIndex < scopes.length; scopeIndex++) {
+                frameTimes[scopeIndex][nextFrameIndex] = currentFrameTimes[scopeIndex];
+                currentFrameTimes[scopeIndex] = 0;
+            }
+            frameDurations[nextFrameIndex] = latestFrameEndTime == 0 ? 0 : now - latestFrameEndTime;
+            latestFrameEndTime = now;
+            nextFrameIndex = (nextFrameIndex + 1) % frameDurations.length;
+            frameCount = Math.min(frameCount + 1, frameDurations.length);
+        }
+    }
+
+    /**
+     * Returns the total time spent in a scope
+     * 
+     * @param scope
+     *            scope
+     * @return the total time in nanoseconds
+     */
+    public long getTotalTime(final Scope scope) {
+        return (totalTimes[scope.ordinal()]);
+    }
+
+    /**
+     * Returns the count of measurements of a scope
+     * 
+     * @param scope
+     *            scope
+     * @return the count of measurements
+     */
+    public long getMeasurementCount(final Scope scope) {
+        return (measurementCounts[scope.ordinal()]);
+    }
+
+    /**
+     * Returns the count of frames in the ring buffers
+     * 
+     * @return the count of frames in the ring buffers
+     */
+    public int getFrameCount() {
+        return (frameCount);
+    }
+
+    public int getFrameCapacity() {
+        return (frameDurations.length);
+    }
+
+    /**
+     * Returns the minimum time spent in a scope per frame over the frames in
+     * the ring buffers
+     * 
+     * @param scope
+     *            scope
+     * @return the minimum time in nanoseconds
+     */
+    public long getMinimumFrameTime(final Scope scope) {
+        return (getMinimum(frameTimes[scope.ordinal()]));
+    }
+
+    /**
+     * Returns the average time spent in a scope per frame over the frames in
+     * the ring buffers
+     * 
+     * @param scope
+     *            scope
+     * @return the average time in nanoseconds
+     */
+    public double getAverageFrameTime(final Scope scope) {
+        return (getAverage(frameTimes[scope.ordinal()]));
+    }
+
+    /**
+     * Returns a percentile of the time spent in a scope per frame over the
+     * frames in the ring buffers
+     * 
+     * @param scope
+     *            scope
+     * @param percentile
+     *            percentile between 0 and 100, for example 99
+     * @return the percentile in nanoseconds
+     */
+    public long getPercentileFrameTime(final Scope scope, final double percentile) {
+        return (getPercentile(frameTimes[scope.ordinal()], percentile));
+    }
+
+    /**
+     * Returns the average duration of the frames in the ring buffers
+     * 
+     * @return the average duration in nanoseconds
+     */
+    public double getAverageFrameDuration() {
+        return (getAverage(frameDurations));
+    }
+
+    /**
+     * Returns a percentile of the durations of the frames in the ring buffers
+     * 
+     * @param percentile
+     *            percentile between 0 and 100, for example 99
+     * @return the percentile in nanoseconds
+     */
+    public long getPercentileFrameDuration(final double percentile) {
+        return (getPercentile(frameDurations, percentile));
+    }
+
+    private long getMinimum(final long[] values) {
+        long minimum = 0;
+        for (int frameIndex = 0; frameIndex < frameCount; frameIndex++)
+            if (frameIndex == 0 || values[frameIndex] < minimum)
+                minimum = values[frameIndex];
+        return (minimum);
+    }
+
+    private double getAverage(final long[] values) {
+        long sum = 0;
+        for (int frameIndex = 0; frameIndex < frameCount; frameIndex++)
+            sum += values[frameIndex];
+        return (frameCount == 0 ? 0 : sum / (double) frameCount);
+    }
+
+    private long getPercentile(final long[] values, final double percentile) {
+        if (frameCount == 0)
+            return (0);
+        System.arraycopy(values, 0, selectionBuffer, 0, frameCount);
+        final int rank = Math.min(frameCount - 1,
+                Math.max(0, (int) Math.ceil(percentile / 100.0 * frameCount) - 1));
+        // quickselect, it doesn't allocate anything unlike a sort
+        int left = 0, right = frameCount - 1;
+        while (left < right) {
+            final long pivot = selectionBuffer[(left + right) >>> 1];
+            int i = left, j = right;
+            while (i <= j) {
+                while (selectionBuffer[i] < pivot)
+                    i++;
+                while (selectionBuffer[j] > pivot)
+                    j--;
+                if (i <= j) {
+                    final long value = selectionBuffer[i];
+                    selectionBuffer[i] = selectionBuffer[j];
+                    selectionBuffer[j] = value;
+                    i++;
+                    j--;
+                }
+            }
+            if (rank <= j)
+                right = j;
+            else if (rank >= i)
+                left = i;
+            else
+                break;
+        }
+        return (selectionBuffer[rank]);
+    }
+
+    /**
+     * Appends a breakdown of the scopes (minimum, average and 99th percentile
+     * in milliseconds) with one line per scope measured during the latest
+     * frames
+     * 
+     * @param builder
+     *            builder into which the breakdown is appended
+     */
+    public void appendBreakdown(final StringBuilder builder) {
+        builder.append("scope: min/avg/p99 ms");
+        for (final Scope scope : scopes) {
+            if (getAverageFrameTime(scope) > 0) {
+                builder.append('\n').append(scope.getLabel()).append(": ");
+                appendMilliseconds(builder, getMinimumFrameTime(scope));
+                builder.append('/');
+                appendMilliseconds(builder, getAverageFrameTime(scope));
+                builder.append('/');
+                appendMilliseconds(builder, getPercentileFrameTime(scope, 99));
+            }
+        }
+    }
+
+    private static void appendMilliseconds(final StringBuilder builder, final double nanoseconds) {
+        // two decimals without any formatter
+        final long hundredths = Math.round(nanoseconds / 10000.0);
+        builder.append(hundredths / 100).append('.');
+        final long decimals = hundredths % 100;
+        if (decimals < 10)
+            builder.append('0');
+        builder.append(decimals);
+    }
+
+    /**
+     * Writes the times spent in the scopes during the latest frames as comma
+     * separated values, one line per frame from the oldest to the newest, in
+     * microseconds
+     * 
+     * @param out
+     *            output
+     * @param maxFrameCount
+     *            maximum count of frames to write
+     * @throws IOException
+     *             if the output fails
+     */
+    public void writeCsv(final Appendable out, final int maxFrameCount) throws IOException {
+        out.append("frame,frame duration");
+        for (final Scope scope : scopes)
+            out.append(',').append(scope.getLabel());
+        out.append('\n');
+        final int writtenFrameCount = Math.min(Math.max(0, maxFrameCount), frameCount);
+        final int capacity = frameDurations.length;
+        for (int frame = 0; frame < writtenFrameCount; frame++) {
+            final int frameIndex = (nextFrameIndex - writtenFrameCount + frame + capacity) % capacity;
+            out.append(Integer.toString(frame)).append(',')
+                    .append(String.format(Locale.ENGLISH, "%.3f", Double.valueOf(frameDurations[frameIndex] / 1000.0)));
+            for (int scopeIndex = 0; scopeIndex < scopes.length; scopeIndex++)
+                out.append(',').append(String.format(Locale.ENGLISH, "%.3f",
+                        Double.valueOf(frameTimes[scopeIndex][frameIndex] / 1000.0)));
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Resets all measurements
+     */
+    public void reset() {
+        for (int scopeIndex = 0; scopeIndex < scopes.length; scopeIndex++) {
+            startTimes[scopeIndex] = 0;
+            totalTimes[scopeIndex] = 0;
+            measurementCounts[scopeIndex] = 0;
+            currentFrameTimes[scopeIndex] = 0;
+        }
+        nextFrameIndex = 0;
+        frameCount = 0;
+        latestFrameEndTime = 0;
+    }
+}
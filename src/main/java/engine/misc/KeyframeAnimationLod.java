@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.misc;
+
+import com.ardor3d.bounding.BoundingVolume;
+import com.ardor3d.renderer.Camera;
+import com.ardor3d.renderer.Camera.FrustumIntersect;
+import com.ardor3d.scenegraph.Spatial;
+
+import engine.misc.FrameProfiler.Scope;
+
+/**
+ * Policy of level of detail of the keyframe animations used by
+ * {@link LodKeyframeController}. The interpolation of a mesh outside the view
+ * frustum is skipped, the elapsed time is applied once it becomes visible
+ * again. The interpolation is performed at a lower rate beyond a first
+ * distance from the camera. Beyond a second distance, the mesh snaps to the
+ * nearest keyframe and is updated only when this keyframe changes. The time
+ * spent in interpolating is measured in the scope {@link Scope#ANIMATIONS} of
+ * the frame profiler.
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public final class KeyframeAnimationLod {
+
+    /**
+     * Tier of level of detail
+     */
+    public enum Tier {
+        /** interpolated at each update */
+        FULL,
+        /** interpolated at a lower rate */
+        REDUCED,
+        /** snapped to the nearest keyframe */
+        SNAPPED,
+        /** not interpolated */
+        CULLED
+    }
+
+    /** default distance beyond which the update rate is lowered */
+    public static final double DEFAULT_REDUCED_DISTANCE = 15.0;
+    /** default distance beyond which the meshes snap to the keyframes */
+    public static final double DEFAULT_SNAPPED_DISTANCE = 40.0;
+    /** default minimum time between two updates at a lower rate in seconds */
+    public static final double DEFAULT_REDUCED_UPDATE_INTERVAL = 1.0 / 15.0;
+    /** camera used to know whether the meshes are visible */
+    private final Camera camera;
+    /** profiler measuring the time spent in interpolating */
+    private final FrameProfiler frameProfiler;
+    /** flag indicating whether the level of detail is used */
+    private boolean enabled;
+    /** distance beyond which the update rate is lowered */
+    private double reducedDistance;
+    /** distance beyond which the meshes snap to the keyframes */
+    private double snappedDistance;
+    /** minimum time between two updates at a lower rate in seconds */
+    private double reducedUpdateInterval;
+    /** total count of interpolations */
+    private long interpolationCount;
+    /** total count of skipped interpolations */
+    private long skippedInterpolationCount;
+
+    /**
+     * Constructor
+     * 
+     * @param camera
+     *            camera used to know whether the meshes are visible
+     * @param frameProfiler
+     *            profiler measuring the time spent in interpolating
+     */
+    public KeyframeAnimationLod(final Camera camera, final FrameProfiler frameProfiler) {
+        super();
+        this.camera = camera;
+        this.frameProfiler = frameProfiler;
+        enabled = true;
+        setDistances(DEFAULT_REDUCED_DISTANCE, DEFAULT_SNAPPED_DISTANCE);
+        setReducedUpdateInterval(DEFAULT_REDUCED_UPDATE_INTERVAL);
+    }
+
+    public boolean isEnabled() {
+        return (enabled);
+    }
+
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getReducedDistance() {
+        return (reducedDistance);
+    }
+
+    public double getSnappedDistance() {
+        return (snappedDistance);
+    }
+
+    /**
+     * Sets the distances of the tiers
+     * 
+     * @param reducedDistance
+     *            distance beyond which the update rate is lowered
+     * @param snappedDistance
+     *            distance beyond which the meshes snap to the keyframes, not
+     *            lower than the previous one
+     */
+    public void setDistances(final double reducedDistance, final double snappedDistance) {
+        if (reducedDistance < 0 || snappedDistance < reducedDistance)
+            throw new IllegalArgumentException(
+                    "The distances must be positive and the snapped distance mustn't be lower than the reduced distance");
+        this.reducedDistance = reducedDistance;
+        this.snappedDistance = snappedDistance;
+    }
+
+    public double getReducedUpdateInterval() {
+        return (reducedUpdateInterval);
+    }
+
+    public void setReducedUpdateInterval(final double reducedUpdateInterval) {
+        if (!(reducedUpdateInterval >= 0))
+            throw new IllegalArgumentException("The update interval must be positive");
+        this.reducedUpdateInterval = reducedUpdateInterval;
+    }
+
+    /**
+     * Returns the tier of a mesh, depending on its visibility and on its
+     * distance to the camera
+     * 
+     * @param spatial
+     *            animated mesh
+     * @return the tier of the mesh
+     */
+    public Tier getTier(final Spatial spatial) {
+        final Tier tier;
+        final BoundingVolume worldBound = spatial.getWorldBound();
+        if (!enabled || worldBound == null)
+            tier = Tier.FULL;
+        else {
+            // the plane state is kept as is so that this test doesn't disturb
+            // the culling performed during the rendering
+            final int planeState = camera.getPlaneState();
+            camera.setPlaneState(0);
+            final boolean outside = camera.contains(worldBound) == FrustumIntersect.Outside;
+            camera.setPlaneState(planeState);
+            if (outside)
+                tier = Tier.CULLED;
+            else {
+                final double distance = worldBound.distanceTo(camera.getLocation());
+                if (distance < reducedDistance)
+                    tier = Tier.FULL;
+                else if (distance < snappedDistance)
+                    tier = Tier.REDUCED;
+                else
+                    tier = Tier.SNAPPED;
+            }
+        }
+        return (tier);
+    }
+
+    /**
+     * Records the beginning of an interpolation
+     */
+    void beginInterpolation() {
+        interpolationCount++;
+        frameProfiler.begin(Scope.ANIMATIONS);
+    }
+
+    /**
+     * Records the end of an interpolation
+     */
+    void endInterpolation() {
+        frameProfiler.end(Scope.ANIMATIONS);
+    }
+
+    /**
+     * Records a skipped interpolation
+     */
+    void skipInterpolation() {
+        skippedInterpolationCount++;
+    }
+
+    public long getInterpolationCount() {
+        return (interpolationCount);
+    }
+
+    public long getSkippedInterpolationCount() {
+        return (skippedInterpolationCount);
+    }
+
+    /**
+     * Resets the counters
+     */
+    public void resetCounters() {
+        interpolationCount = 0;
+        skippedInterpolationCount = 0;
+    }
+}
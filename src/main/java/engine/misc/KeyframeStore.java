@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.misc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import com.ardor3d.extension.model.util.KeyframeController;
+import com.ardor3d.extension.model.util.KeyframeController.PointInTime;
+import com.ardor3d.scenegraph.AbstractBufferData;
+import com.ardor3d.scenegraph.FloatBufferData;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.MeshData;
+import com.ardor3d.util.geom.BufferUtils;
+
+/**
+ * Store of the keyframes of an animated model (MD2) shared by all its
+ * instances. The keyframes are kept once per model, each instance owns only
+ * its controller and the buffers of its interpolated pose (vertices, normals,
+ * colors if any and texture coordinates if they are interpolated), the other
+ * geometric data (indices, texture coordinates, ...) are shared too. The
+ * keyframes mustn't be modified once the store is created, the controllers of
+ * the instances mustn't be given any new keyframe.
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public final class KeyframeStore {
+
+    /** model whose first controller holds the keyframes */
+    private final Mesh template;
+    /** controller of the model, its settings are copied into the instances */
+    private final KeyframeController<Mesh> templateController;
+    /** keyframes shared by the controllers of the instances */
+    private final ArrayList<PointInTime> keyframes;
+
+    /**
+     * Constructor
+     * 
+     * @param template
+     *            model whose first controller holds the keyframes, it shouldn't
+     *            be attached to the scenegraph
+     */
+    @SuppressWarnings("unchecked")
+    public KeyframeStore(final Mesh template) {
+        super();
+        if (template.getControllerCount() == 0 || !(template.getController(0) instanceof KeyframeController))
+            throw new IllegalArgumentException("The mesh " + template.getName() + " has no keyframe controller");
+        templateController = (KeyframeController<Mesh>) template.getController(0);
+        if (templateController._keyframes == null || templateController._keyframes.isEmpty())
+            throw new IllegalArgumentException("The mesh " + template.getName() + " has no keyframe");
+        this.template = template;
+        this.keyframes = templateController._keyframes;
+    }
+
+    /**
+     * Returns the count of keyframes
+     * 
+     * @return the count of keyframes
+     */
+    public int getKeyframeCount() {
+        return (keyframes.size());
+    }
+
+    /**
+     * Returns the size of the buffers of the template and of the keyframes
+     * 
+     * @return the size of the buffers of the template and of the keyframes in
+     *         bytes
+     */
+    public long getSizeInBytes() {
+        final Set<AbstractBufferData<?>> bufferDataSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        addBufferData(template.getMeshData(), bufferDataSet);
+        for (final PointInTime keyframe : keyframes)
+            if (keyframe._newShape != null)
+                addBufferData(keyframe._newShape.getMeshData(), bufferDataSet);
+        long sizeInBytes = 0;
+        for (final AbstractBufferData<?> bufferData : bufferDataSet)
+            sizeInBytes += (long) bufferData.getBufferCapacity() * bufferData.getByteCount();
+        return (sizeInBytes);
+    }
+
+    private static void addBufferData(final MeshData meshData, final Set<AbstractBufferData<?>> bufferDataSet) {
+        if (meshData != null) {
+            bufferDataSet.add(meshData.getVertexCoords());
+            bufferDataSet.add(meshData.getNormalCoords());
+            bufferDataSet.add(meshData.getColorCoords());
+            bufferDataSet.add(meshData.getFogCoords());
+            bufferDataSet.add(meshData.getTangentCoords());
+            bufferDataSet.addAll(meshData.getTextureCoords());
+            bufferDataSet.add(meshData.getIndices());
+            bufferDataSet.remove(null);
+        }
+    }
+
+    /**
+     * Returns the data of the buffers owned by an instance, i.e those of its
+     * pose, the others are shared with the template
+     * 
+     * @param instance
+     *            instance created by this store
+     * @return the data of the buffers of the pose of the instance
+     */
+    public List<FloatBufferData> getPoseBufferData(final Mesh instance) {
+        final MeshData meshData = instance.getMeshData();
+        final List<FloatBufferData> poseBufferDataList = new ArrayList<>();
+        poseBufferDataList.add(meshData.getVertexCoords());
+        poseBufferDataList.add(meshData.getNormalCoords());
+        poseBufferDataList.add(meshData.getColorCoords());
+        if (templateController.isInterpTex())
+            poseBufferDataList.addAll(meshData.getTextureCoords());
+        poseBufferDataList.removeIf(Objects::isNull);
+        return (poseBufferDataList);
+    }
+
+    /**
+     * Creates an instance of the model, it is animated by its own controller
+     * driven by the shared keyframes
+     * 
+     * @return a new instance of the model
+     */
+    public Mesh createInstance() {
+        return (createInstance(null));
+    }
+
+    /**
+     * Creates an instance of the model, it is animated by its own controller
+     * driven by the shared keyframes
+     * 
+     * @param lod
+     *            policy of level of detail of the animation, <code>null</code>
+     *            if the instance is always interpolated
+     * @return a new instance of the model
+     */
+    public Mesh createInstance(final KeyframeAnimationLod lod) {
+        // removes the controller in order to avoid it both in the template and
+        // in the instance
+        template.removeController(templateController);
+        final Mesh instance;
+        try {
+            instance = template.makeCopy(true);
+        } finally {
+            template.addController(templateController);
+        }
+        instance.setMeshData(createPoseMeshData(template.getMeshData()));
+        final KeyframeController<Mesh> controller = lod == null ? new KeyframeController<>()
+                : new LodKeyframeController(lod);
+        controller.setRepeatType(templateController.getRepeatType());
+        controller.setMinTime(templateController.getMinTime());
+        controller.setMaxTime(templateController.getMaxTime());
+        controller.setSpeed(templateController.getSpeed());
+        controller.setActive(templateController.isActive());
+        controller.setCurTime(templateController.getCurTime());
+        controller.setInterpTex(templateController.isInterpTex());
+        controller.shallowSetMorphMesh(instance);
+        controller.setUpdateBounding(templateController.isUpdateBounding());
+        controller.setBlendTime(templateController.getBlendTime());
+        controller._keyframes = keyframes;
+        instance.addController(controller);
+        return (instance);
+    }
+
+    /**
+     * Creates the data of a pose, the buffers written by the controller are
+     * copied, the others are shared with the template
+     * 
+     * @param templateMeshData
+     *            data of the template
+     * @return the data of a pose
+     */
+    private MeshData createPoseMeshData(final MeshData templateMeshData) {
+        final MeshData poseMeshData = new MeshData();
+        poseMeshData.setVertexCoords(copy(templateMeshData.getVertexCoords()));
+        poseMeshData.setNormalCoords(copy(templateMeshData.getNormalCoords()));
+        poseMeshData.setColorCoords(copy(templateMeshData.getColorCoords()));
+        poseMeshData.setFogCoords(templateMeshData.getFogCoords());
+        poseMeshData.setTangentCoords(templateMeshData.getTangentCoords());
+        final List<FloatBufferData> textureCoordsList = templateMeshData.getTextureCoords();
+        for (int unit = 0; unit < textureCoordsList.size(); unit++) {
+            final FloatBufferData textureCoords = textureCoordsList.get(unit);
+            poseMeshData.setTextureCoords(templateController.isInterpTex() ? copy(textureCoords) : textureCoords,
+                    unit);
+        }
+        poseMeshData.setIndices(templateMeshData.getIndices());
+        poseMeshData.setIndexModes(templateMeshData.getIndexModes());
+        poseMeshData.setIndexLengths(templateMeshData.getIndexLengths());
+        return (poseMeshData);
+    }
+
+    private static FloatBufferData copy(final FloatBufferData bufferData) {
+        return (bufferData == null ? null
+                : new FloatBufferData(BufferUtils.clone(bufferData.getBuffer()), bufferData.getValuesPerTuple()));
+    }
+}
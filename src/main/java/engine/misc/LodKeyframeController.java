@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.misc;
+
+import com.ardor3d.extension.model.util.KeyframeController;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.controller.ComplexSpatialController.RepeatType;
+
+import engine.misc.KeyframeAnimationLod.Tier;
+
+/**
+ * Keyframe controller whose interpolation depends on a level of detail policy.
+ * The time elapsed while the interpolation is skipped is kept and applied
+ * during the next interpolation so that the animation doesn't slow down. The
+ * current time returned by this controller includes this pending time, it
+ * assumes that the animation plays forward. The keyframes are expected at
+ * integer times like in the MD2 models.
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public final class LodKeyframeController extends KeyframeController<Mesh> {
+
+    private static final long serialVersionUID = 1L;
+
+    /** policy of level of detail */
+    private final transient KeyframeAnimationLod lod;
+    /** elapsed time not applied yet in seconds */
+    private double pendingTime;
+    /**
+     * offset added to the current time to land on the nearest keyframe, it is
+     * removed before the next interpolation
+     */
+    private double snapOffset;
+    /** time of the keyframe shown by the mesh, NaN if it isn't snapped */
+    private double snappedKeyframeTime;
+
+    /**
+     * Constructor
+     * 
+     * @param lod
+     *            policy of level of detail
+     */
+    public LodKeyframeController(final KeyframeAnimationLod lod) {
+        super();
+        this.lod = lod;
+        snappedKeyframeTime = Double.NaN;
+    }
+
+    @Override
+    public void update(final double time, final Mesh caller) {
+        pendingTime += time;
+        final Tier tier = lod.getTier(caller);
+        final boolean skipped;
+        switch (tier) {
+            case CULLED:
+                skipped = true;
+                break;
+            case REDUCED:
+                skipped = pendingTime < lod.getReducedUpdateInterval();
+                break;
+            case SNAPPED:
+                // the direction isn't known when cycling
+                skipped = getRepeatType() != RepeatType.CYCLE
+                        && Math.rint(getCurTime()) == snappedKeyframeTime;
+                break;
+            default:
+                skipped = false;
+        }
+        if (skipped)
+            lod.skipInterpolation();
+        else {
+            // removes the previous snapping
+            final double currentTime = super.getCurTime() - snapOffset;
+            snapOffset = 0;
+            snappedKeyframeTime = Double.NaN;
+            if (tier == Tier.SNAPPED && getRepeatType() != RepeatType.CYCLE) {
+                final double targetTime = currentTime + pendingTime * getSpeed();
+                snapOffset = Math.rint(targetTime) - targetTime;
+                snappedKeyframeTime = Math.rint(targetTime);
+            }
+            super.setCurTime(currentTime + snapOffset);
+            final double elapsedTime = pendingTime;
+            pendingTime = 0;
+            lod.beginInterpolation();
+            super.update(elapsedTime, caller);
+            lod.endInterpolation();
+            if (!Double.isNaN(snappedKeyframeTime) && Math.abs(super.getCurTime() - snappedKeyframeTime) > 1e-6) {
+                // the animation has been wrapped, the offset is meaningless
+                snapOffset = 0;
+                snappedKeyframeTime = Double.NaN;
+            }
+        }
+    }
+
+    @Override
+    public double getCurTime() {
+        return (super.getCurTime() - snapOffset + pendingTime * getSpeed());
+    }
+
+    @Override
+    public void setCurTime(final double time) {
+        pendingTime = 0;
+        snapOffset = 0;
+        snappedKeyframeTime = Double.NaN;
+        super.setCurTime(time);
+    }
+}
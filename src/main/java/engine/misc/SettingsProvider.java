@@ -38,6 +38,36 @@ public class SettingsProvider {
 
     public static final int UNCHANGED_SIZE = 0;
 
+    /** simulation rate of the legacy mode, the simulation advances once per rendered frame */
+    public static final int VARIABLE_SIMULATION_RATE = 0;
+
+    /** render rate without limit */
+    public static final int UNLIMITED_RENDER_RATE = 0;
+
+    /** default maximum count of simulation steps performed before rendering a frame */
+    public static final int DEFAULT_MAX_CATCH_UP_STEPS = 5;
+
+    /** default memory budget of the cache of the model templates in megabytes */
+    public static final int DEFAULT_MODEL_TEMPLATE_CACHE_BUDGET = 64;
+
+    /** default distance under which the tiles of the chunked levels are loaded */
+    public static final int DEFAULT_LEVEL_STREAMING_RADIUS = 128;
+
+    /** default memory budget of the preload of the next level in megabytes */
+    public static final int DEFAULT_LEVEL_PRELOAD_BUDGET = 256;
+
+    /** default maximum memory footprint of the level kept in memory in megabytes */
+    public static final int DEFAULT_RESIDENT_LEVEL_CEILING = 512;
+
+    /** default memory budget of the decoded images of the textures in megabytes */
+    public static final int DEFAULT_TEXTURE_IMAGE_BUDGET = 128;
+
+    /** default size of the free direct buffers kept per size class in megabytes */
+    public static final int DEFAULT_BUFFER_POOL_RETENTION = 32;
+
+    /** default maximum count of rays cast per frame by the perception of the enemies */
+    public static final int DEFAULT_PERCEPTION_RAYCASTS_PER_FRAME = 6;
+
     private static final Logger LOGGER = Logger.getLogger(SettingsProvider.class.getName());
 
     private static final String[] trueStrings = { Boolean.TRUE.toString(), "on", "1", "enabled", "activated" };
@@ -76,6 +106,51 @@ public class SettingsProvider {
     /** sound enabled */
     private boolean soundEnabled;
 
+    /** maximum count of rays cast per frame by the perception of the enemies */
+    private int perceptionRaycastsPerFrame;
+
+    /** count of fixed simulation steps per second */
+    private int simulationRate;
+
+    /** maximum count of rendered frames per second */
+    private int renderRate;
+
+    /** maximum count of simulation steps performed before rendering a frame */
+    private int maxCatchUpSteps;
+
+    /** frame profiler enabled */
+    private boolean frameProfilerEnabled;
+
+    /** level of detail of the animations enabled */
+    private boolean animationLodEnabled;
+
+    /** memory budget of the cache of the model templates in megabytes */
+    private int modelTemplateCacheBudget;
+
+    /**
+     * distance under which the tiles of the chunked levels are loaded, zero if
+     * the streaming is disabled
+     */
+    private int levelStreamingRadius;
+
+    /** memory budget of the preload of the next level in megabytes */
+    private int levelPreloadBudget;
+
+    /** latest played level kept in memory to restart it quickly */
+    private boolean residentLevelEnabled;
+
+    /** maximum memory footprint of the level kept in memory in megabytes */
+    private int residentLevelCeiling;
+
+    /** memory budget of the decoded images of the textures in megabytes */
+    private int textureImageBudget;
+
+    /** size of the free direct buffers kept per size class in megabytes */
+    private int bufferPoolRetention;
+
+    /** stack traces of the direct buffers kept in the ledger */
+    private boolean directMemoryAllocationTraceEnabled;
+
     /**
      * Constructor, the configuration file "config" is put into a sub-directory
      * in the user's home directory named .programShortName
@@ -140,6 +215,91 @@ public class SettingsProvider {
         screenRotation = readIntPropertyValue(properties, "SCREEN_ROTATION", Integer.valueOf(0), screenRotations);
         // sound enabled
         soundEnabled = readBooleanPropertyValue(properties, "SOUND", Boolean.TRUE);
+        // maximum count of rays cast per frame by the perception of the enemies
+        perceptionRaycastsPerFrame = readIntPropertyValue(properties, "PERCEPTION_RAYCASTS_PER_FRAME",
+                Integer.valueOf(DEFAULT_PERCEPTION_RAYCASTS_PER_FRAME), null);
+        if (perceptionRaycastsPerFrame <= 0) {
+            LOGGER.log(Level.WARNING, "Value " + perceptionRaycastsPerFrame
+                    + " rejected for the property PERCEPTION_RAYCASTS_PER_FRAME, set to the default value");
+            perceptionRaycastsPerFrame = DEFAULT_PERCEPTION_RAYCASTS_PER_FRAME;
+        }
+        // count of fixed simulation steps per second
+        simulationRate = readIntPropertyValue(properties, "SIMULATION_RATE",
+                Integer.valueOf(VARIABLE_SIMULATION_RATE), null);
+        if (simulationRate < 0) {
+            LOGGER.log(Level.WARNING,
+                    "Value " + simulationRate + " rejected for the property SIMULATION_RATE, set to the default value");
+            simulationRate = VARIABLE_SIMULATION_RATE;
+        }
+        // maximum count of rendered frames per second
+        renderRate = readIntPropertyValue(properties, "RENDER_RATE", Integer.valueOf(UNLIMITED_RENDER_RATE), null);
+        if (renderRate < 0) {
+            LOGGER.log(Level.WARNING,
+                    "Value " + renderRate + " rejected for the property RENDER_RATE, set to the default value");
+            renderRate = UNLIMITED_RENDER_RATE;
+        }
+        // maximum count of simulation steps performed before rendering a frame
+        maxCatchUpSteps = readIntPropertyValue(properties, "MAX_CATCH_UP_STEPS",
+                Integer.valueOf(DEFAULT_MAX_CATCH_UP_STEPS), null);
+        if (maxCatchUpSteps <= 0) {
+            LOGGER.log(Level.WARNING, "Value " + maxCatchUpSteps
+                    + " rejected for the property MAX_CATCH_UP_STEPS, set to the default value");
+            maxCatchUpSteps = DEFAULT_MAX_CATCH_UP_STEPS;
+        }
+        // frame profiler
+        frameProfilerEnabled = readBooleanPropertyValue(properties, "FRAME_PROFILER", Boolean.FALSE);
+        // level of detail of the animations
+        animationLodEnabled = readBooleanPropertyValue(properties, "ANIMATION_LOD", Boolean.TRUE);
+        // memory budget of the cache of the model templates
+        modelTemplateCacheBudget = readIntPropertyValue(properties, "MODEL_TEMPLATE_CACHE_BUDGET",
+                Integer.valueOf(DEFAULT_MODEL_TEMPLATE_CACHE_BUDGET), null);
+        if (modelTemplateCacheBudget < 0) {
+            LOGGER.log(Level.WARNING, "Value " + modelTemplateCacheBudget
+                    + " rejected for the property MODEL_TEMPLATE_CACHE_BUDGET, set to the default value");
+            modelTemplateCacheBudget = DEFAULT_MODEL_TEMPLATE_CACHE_BUDGET;
+        }
+        // distance under which the tiles of the chunked levels are loaded
+        levelStreamingRadius = readIntPropertyValue(properties, "LEVEL_STREAMING_RADIUS",
+                Integer.valueOf(DEFAULT_LEVEL_STREAMING_RADIUS), null);
+        if (levelStreamingRadius < 0) {
+            LOGGER.log(Level.WARNING, "Value " + levelStreamingRadius
+                    + " rejected for the property LEVEL_STREAMING_RADIUS, set to the default value");
+            levelStreamingRadius = DEFAULT_LEVEL_STREAMING_RADIUS;
+        }
+        // memory budget of the preload of the next level
+        levelPreloadBudget = readIntPropertyValue(properties, "LEVEL_PRELOAD_BUDGET",
+                Integer.valueOf(DEFAULT_LEVEL_PRELOAD_BUDGET), null);
+        if (levelPreloadBudget < 0) {
+            LOGGER.log(Level.WARNING, "Value " + levelPreloadBudget
+                    + " rejected for the property LEVEL_PRELOAD_BUDGET, set to the default value");
+            levelPreloadBudget = DEFAULT_LEVEL_PRELOAD_BUDGET;
+        }
+        residentLevelEnabled = readBooleanPropertyValue(properties, "RESIDENT_LEVEL", Boolean.FALSE);
+        // maximum memory footprint of the level kept in memory
+        residentLevelCeiling = readIntPropertyValue(properties, "RESIDENT_LEVEL_CEILING",
+                Integer.valueOf(DEFAULT_RESIDENT_LEVEL_CEILING), null);
+        if (residentLevelCeiling < 0) {
+            LOGGER.log(Level.WARNING, "Value " + residentLevelCeiling
+                    + " rejected for the property RESIDENT_LEVEL_CEILING, set to the default value");
+            residentLevelCeiling = DEFAULT_RESIDENT_LEVEL_CEILING;
+        }
+        // memory budget of the decoded images of the textures
+        textureImageBudget = readIntPropertyValue(properties, "TEXTURE_IMAGE_BUDGET",
+                Integer.valueOf(DEFAULT_TEXTURE_IMAGE_BUDGET), null);
+        if (textureImageBudget < 0) {
+            LOGGER.log(Level.WARNING, "Value " + textureImageBudget
+                    + " rejected for the property TEXTURE_IMAGE_BUDGET, set to the default value");
+            textureImageBudget = DEFAULT_TEXTURE_IMAGE_BUDGET;
+        }
+        bufferPoolRetention = readIntPropertyValue(properties, "BUFFER_POOL_RETENTION",
+                Integer.valueOf(DEFAULT_BUFFER_POOL_RETENTION), null);
+        if (bufferPoolRetention < 0) {
+            LOGGER.log(Level.WARNING, "Value " + bufferPoolRetention
+                    + " rejected for the property BUFFER_POOL_RETENTION, set to the default value");
+            bufferPoolRetention = DEFAULT_BUFFER_POOL_RETENTION;
+        }
+        directMemoryAllocationTraceEnabled = readBooleanPropertyValue(properties, "DIRECT_MEMORY_ALLOCATION_TRACES",
+                Boolean.FALSE);
     }
 
     private Locale readLocalePropertyValue(final Properties properties, final String propertyKey,
@@ -303,6 +463,180 @@ public class SettingsProvider {
         this.screenHeight = screenHeight;
     }
 
+    public int getPerceptionRaycastsPerFrame() {
+        return (perceptionRaycastsPerFrame);
+    }
+
+    public void setPerceptionRaycastsPerFrame(final int perceptionRaycastsPerFrame) {
+        this.perceptionRaycastsPerFrame = perceptionRaycastsPerFrame;
+    }
+
+    /**
+     * Returns the count of fixed simulation steps per second
+     * 
+     * @return the count of fixed simulation steps per second,
+     *         {@link #VARIABLE_SIMULATION_RATE} if the simulation advances once
+     *         per rendered frame with a variable time step
+     */
+    public int getSimulationRate() {
+        return (simulationRate);
+    }
+
+    public void setSimulationRate(final int simulationRate) {
+        this.simulationRate = simulationRate;
+    }
+
+    public boolean isFixedTimeStepEnabled() {
+        return (simulationRate != VARIABLE_SIMULATION_RATE);
+    }
+
+    /**
+     * Returns the maximum count of rendered frames per second
+     * 
+     * @return the maximum count of rendered frames per second,
+     *         {@link #UNLIMITED_RENDER_RATE} if there is no limit
+     */
+    public int getRenderRate() {
+        return (renderRate);
+    }
+
+    public void setRenderRate(final int renderRate) {
+        this.renderRate = renderRate;
+    }
+
+    public int getMaxCatchUpSteps() {
+        return (maxCatchUpSteps);
+    }
+
+    public void setMaxCatchUpSteps(final int maxCatchUpSteps) {
+        this.maxCatchUpSteps = maxCatchUpSteps;
+    }
+
+    public boolean isFrameProfilerEnabled() {
+        return (frameProfilerEnabled);
+    }
+
+    public void setFrameProfilerEnabled(final boolean frameProfilerEnabled) {
+        this.frameProfilerEnabled = frameProfilerEnabled;
+    }
+
+    public boolean isAnimationLodEnabled() {
+        return (animationLodEnabled);
+    }
+
+    public void setAnimationLodEnabled(final boolean animationLodEnabled) {
+        this.animationLodEnabled = animationLodEnabled;
+    }
+
+    /**
+     * Returns the memory budget of the cache of the model templates
+     * 
+     * @return the memory budget of the cache of the model templates in
+     *         megabytes, zero if the cache is disabled
+     */
+    public int getModelTemplateCacheBudget() {
+        return (modelTemplateCacheBudget);
+    }
+
+    public void setModelTemplateCacheBudget(final int modelTemplateCacheBudget) {
+        this.modelTemplateCacheBudget = modelTemplateCacheBudget;
+    }
+
+    /**
+     * Returns the distance under which the tiles of the chunked levels are
+     * loaded
+     * 
+     * @return the distance under which the tiles of the chunked levels are
+     *         loaded, zero if the streaming is disabled and the chunked levels
+     *         are loaded as a whole
+     */
+    public int getLevelStreamingRadius() {
+        return (levelStreamingRadius);
+    }
+
+    public void setLevelStreamingRadius(final int levelStreamingRadius) {
+        this.levelStreamingRadius = levelStreamingRadius;
+    }
+
+    /**
+     * Returns the memory budget of the preload of the next level
+     * 
+     * @return the memory budget of the preload of the next level in
+     *         megabytes, zero if the preload is disabled
+     */
+    public int getLevelPreloadBudget() {
+        return (levelPreloadBudget);
+    }
+
+    public void setLevelPreloadBudget(final int levelPreloadBudget) {
+        this.levelPreloadBudget = levelPreloadBudget;
+    }
+
+    public boolean isResidentLevelEnabled() {
+        return (residentLevelEnabled);
+    }
+
+    public void setResidentLevelEnabled(final boolean residentLevelEnabled) {
+        this.residentLevelEnabled = residentLevelEnabled;
+    }
+
+    /**
+     * Returns the maximum memory footprint of the level kept in memory, a
+     * bigger level is unloaded as usual
+     * 
+     * @return the maximum memory footprint of the level kept in memory in
+     *         megabytes
+     */
+    public int getResidentLevelCeiling() {
+        return (residentLevelCeiling);
+    }
+
+    public void setResidentLevelCeiling(final int residentLevelCeiling) {
+        this.residentLevelCeiling = residentLevelCeiling;
+    }
+
+    /**
+     * Returns the memory budget of the decoded images of the textures, the
+     * images of the textures already uploaded to the graphics card are evicted
+     * beyond it
+     * 
+     * @return the memory budget of the decoded images of the textures in
+     *         megabytes
+     */
+    public int getTextureImageBudget() {
+        return (textureImageBudget);
+    }
+
+    public void setTextureImageBudget(final int textureImageBudget) {
+        this.textureImageBudget = textureImageBudget;
+    }
+
+    public int getBufferPoolRetention() {
+        return (bufferPoolRetention);
+    }
+
+    public void setBufferPoolRetention(final int bufferPoolRetention) {
+        this.bufferPoolRetention = bufferPoolRetention;
+    }
+
+    public boolean isDirectMemoryAllocationTraceEnabled() {
+        return (directMemoryAllocationTraceEnabled);
+    }
+
+    public void setDirectMemoryAllocationTraceEnabled(final boolean directMemoryAllocationTraceEnabled) {
+        this.directMemoryAllocationTraceEnabled = directMemoryAllocationTraceEnabled;
+    }
+
+    /**
+     * Returns the directory containing the configuration file, the other files
+     * written by the program can be put into it
+     * 
+     * @return the directory containing the configuration file
+     */
+    public File getConfigDirectory() {
+        return (configFile.getAbsoluteFile().getParentFile());
+    }
+
     /**
      * Saves the settings in the configuration file
      */
@@ -315,6 +649,20 @@ public class SettingsProvider {
         properties.put("SCREEN_HEIGHT", Integer.toString(screenHeight));
         properties.put("SCREEN_ROTATION", Integer.toString(screenRotation));
         properties.put("SOUND", Boolean.toString(soundEnabled));
+        properties.put("PERCEPTION_RAYCASTS_PER_FRAME", Integer.toString(perceptionRaycastsPerFrame));
+        properties.put("SIMULATION_RATE", Integer.toString(simulationRate));
+        properties.put("RENDER_RATE", Integer.toString(renderRate));
+        properties.put("MAX_CATCH_UP_STEPS", Integer.toString(maxCatchUpSteps));
+        properties.put("FRAME_PROFILER", Boolean.toString(frameProfilerEnabled));
+        properties.put("ANIMATION_LOD", Boolean.toString(animationLodEnabled));
+        properties.put("MODEL_TEMPLATE_CACHE_BUDGET", Integer.toString(modelTemplateCacheBudget));
+        properties.put("LEVEL_STREAMING_RADIUS", Integer.toString(levelStreamingRadius));
+        properties.put("LEVEL_PRELOAD_BUDGET", Integer.toString(levelPreloadBudget));
+        properties.put("RESIDENT_LEVEL", Boolean.toString(residentLevelEnabled));
+        properties.put("RESIDENT_LEVEL_CEILING", Integer.toString(residentLevelCeiling));
+        properties.put("TEXTURE_IMAGE_BUDGET", Integer.toString(textureImageBudget));
+        properties.put("BUFFER_POOL_RETENTION", Integer.toString(bufferPoolRetention));
+        properties.put("DIRECT_MEMORY_ALLOCATION_TRACES", Boolean.toString(directMemoryAllocationTraceEnabled));
         try {
             final File parentDir = configFile.getParentFile();
             if (!parentDir.exists())
@@ -17,62 +17,42 @@
  */
 package engine.misc;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
-import jdk.incubator.foreign.MemorySegment;
+import engine.telemetry.DeallocationEvent;
 
 /**
  * Simple helper to deallocate memory on the native heap allocated during the creation
- * of a direct byte buffer. It supports only OpenJDK and Oracle Java >= 14
+ * of a direct byte buffer. The buffer owning the native memory is released to the
+ * slab pool which keeps it for the next acquisitions only if it provided it, the
+ * other buffers are freed at once. The slices of the blocks of the arenas are left untouched, the arenas release their
+ * blocks when they're closed
  * 
  * @author Julien Gouesse
  */
 public class SimpleDeallocationHelper {
     
-    private static final Logger LOGGER = Logger.getLogger(SimpleDeallocationHelper.class.getName());
+    /** resolver looking for the attachments of the buffers, shared by all helpers */
+    private static final DeallocatableBufferResolver resolver = new DeallocatableBufferResolver();
 
     public SimpleDeallocationHelper() {
         super();
     }
     
     public final ByteBuffer findDeallocatableBuffer(final Buffer buffer) {
-        final ByteBuffer result;
-        if (buffer == null || !buffer.isDirect()) {
-            result = null;
-        } else if (buffer.getClass().getName().equals("java.nio.DirectByteBuffer") || Arrays.stream(buffer.getClass().getInterfaces()).map(Class::getName).anyMatch("sun.nio.ch.DirectBuffer"::equals)) {
-            Object attachment = null;
-            try {
-                final Method attachmentMethod = buffer.getClass().getMethod("attachment");
-                attachmentMethod.setAccessible(true);
-                attachment = attachmentMethod.invoke(buffer);
-            } catch (final InvocationTargetException | NoSuchMethodException | IllegalAccessException | IllegalArgumentException e) {
-                LOGGER.log(Level.WARNING, "Failed to find the attachment", e);
-            }
-            if (attachment == null) {
-                result = (ByteBuffer) buffer;
-            } else if (attachment instanceof Buffer) {
-                result = findDeallocatableBuffer((Buffer) attachment);
-            } else {
-                result = null;
-            }
-        } else {
-            result = null;
-        }
-        return result;
+        return resolver.findDeallocatableBuffer(buffer);
     }
     
     public void deallocate(final Buffer buffer) {
+        final DeallocationEvent event = new DeallocationEvent(this);
+        event.begin();
         final ByteBuffer deallocatableBuffer = findDeallocatableBuffer(buffer);
-        if (deallocatableBuffer != null) {
-            // marks the segment "not alive"
-            MemorySegment.ofByteBuffer(deallocatableBuffer).close();
-            //TODO get the memory address and free it by using the C linker (requires Java >= 16)
-        }
+        final SlabBufferPool pool = SlabBufferPool.getInstance();
+        final boolean deallocated = deallocatableBuffer != null && !pool.isBlock(deallocatableBuffer);
+        if (deallocated)
+            pool.release(deallocatableBuffer);
+        event.setBuffer(buffer, deallocatableBuffer, deallocated);
+        event.commit();
     }
 }
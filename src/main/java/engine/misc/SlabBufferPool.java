@@ -0,0 +1,431 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.misc;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+
+import engine.telemetry.DirectMemoryLedger;
+
+/**
+ * Pool of direct byte buffers sorted by size classes (powers of two). A
+ * released buffer is kept in the pool of its class up to a retention cap and
+ * it's reused by the next acquisitions of this class, the others are released
+ * at once with the deallocator of OpenJDK. The buffers bigger than the
+ * biggest class aren't pooled. The pool keeps only weak references to the
+ * acquired buffers, those that are never released are left to the garbage
+ * collector. It accepts the release of the direct buffers that it didn't
+ * provide, they're freed at once and never kept. The blocks acquired by the arenas are shared by several owners,
+ * they're released only by their arenas. The acquisitions and the releases
+ * are recorded in the ledger of the direct buffers. This pool limits the
+ * fragmentation of the native heap and the pressure on the cleaner of the
+ * virtual machine when the levels are loaded and unloaded several times. It
+ * can be used by several threads.
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public final class SlabBufferPool {
+
+    /**
+     * Weak reference to a buffer provided or kept by the pool, chained with
+     * the other buffers having the same identity hash code
+     */
+    private static final class PooledBuffer extends WeakReference<ByteBuffer> {
+
+        private final int identityHashCode;
+
+        private final int sizeClass;
+
+        /** flag indicating whether the buffer is an arena block */
+        private boolean block;
+
+        /** flag indicating whether the buffer is in the pool of its class */
+        private boolean free;
+
+        private PooledBuffer next;
+
+        private PooledBuffer(final ByteBuffer buffer, final ReferenceQueue<ByteBuffer> queue, final int sizeClass) {
+            super(buffer, queue);
+            identityHashCode = System.identityHashCode(buffer);
+            this.sizeClass = sizeClass;
+        }
+    }
+
+    /** binary logarithm of the size of the smallest class */
+    public static final int MIN_SIZE_CLASS_SHIFT = 12;
+    /** binary logarithm of the size of the biggest class */
+    public static final int MAX_SIZE_CLASS_SHIFT = 26;
+    /** default retention cap of each class in bytes */
+    public static final long DEFAULT_RETENTION_CAP_IN_BYTES = 32L * 1024L * 1024L;
+    /** deallocator used to release the buffers that aren't kept */
+    private static final DeallocationHelper.Deallocator deallocator = new DeallocationHelper.OracleSunOpenJdkDeallocator();
+    /** pool shared by the arenas */
+    private static final SlabBufferPool instance = new SlabBufferPool(DEFAULT_RETENTION_CAP_IN_BYTES);
+    /** free buffers by class */
+    private final ArrayDeque<ByteBuffer>[] freeBuffers;
+    /** acquired and free buffers by identity hash code */
+    private final HashMap<Integer, PooledBuffer> pooledBuffers;
+    /** queue of the acquired buffers collected without having been released */
+    private final ReferenceQueue<ByteBuffer> collectedBufferQueue;
+    /** counts of acquisitions by class */
+    private final long[] acquisitionCounts;
+    /** counts of acquisitions served by a free buffer by class */
+    private final long[] hitCounts;
+    /** counts of acquired buffers not released yet by class */
+    private final int[] acquiredCounts;
+    /** count of acquisitions too big to be pooled */
+    private long unpooledAcquisitionCount;
+    /** count of released buffers that the pool didn't provide */
+    private long foreignReleaseCount;
+    /** maximum size of the free buffers of each class in bytes */
+    private long retentionCapInBytes;
+
+    /**
+     * Constructor
+     * 
+     * @param retentionCapInBytes
+     *            maximum size of the free buffers of each class in bytes, zero
+     *            disables the pooling
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public SlabBufferPool(final long retentionCapInBytes) {
+        super();
+        final int sizeClassCount = MAX_SIZE_CLASS_SHIFT - MIN_SIZE_CLASS_SHIFT + 1;
+        freeBuffers = new ArrayDeque[sizeClassCount];
+        for (int sizeClass = 0; sizeClass < sizeClassCount; sizeClass++)
+            freeBuffers[sizeClass] = new ArrayDeque<>();
+        pooledBuffers = new HashMap<>();
+        collectedBufferQueue = new ReferenceQueue<>();
+        acquisitionCounts = new long[sizeClassCount];
+        hitCounts = new long[sizeClassCount];
+        acquiredCounts = new int[sizeClassCount];
+        setRetentionCapInBytes(retentionCapInBytes);
+    }
+
+    /**
+     * Returns the pool shared by the arenas
+     * 
+     * @return the pool shared by the arenas
+     */
+    public static SlabBufferPool getInstance() {
+        return (instance);
+    }
+
+    public synchronized long getRetentionCapInBytes() {
+        return (retentionCapInBytes);
+    }
+
+    /**
+     * Sets the retention cap, releases the free buffers beyond it
+     * 
+     * @param retentionCapInBytes
+     *            maximum size of the free buffers of each class in bytes, zero
+     *            disables the pooling
+     */
+    public synchronized void setRetentionCapInBytes(final long retentionCapInBytes) {
+        if (retentionCapInBytes < 0)
+            throw new IllegalArgumentException("The retention cap must be positive");
+        this.retentionCapInBytes = retentionCapInBytes;
+        for (int sizeClass = 0; sizeClass < freeBuffers.length; sizeClass++)
+            while (freeBuffers[sizeClass].size() > getMaxFreeBufferCount(sizeClass))
+                deallocateFreeBuffer(freeBuffers[sizeClass].pop());
+    }
+
+    public int getSizeClassCount() {
+        return (freeBuffers.length);
+    }
+
+    /**
+     * Returns the size of the buffers of a class
+     * 
+     * @param sizeClass
+     *            index of the class
+     * @return the size of the buffers of this class in bytes
+     */
+    public int getSizeClassCapacity(final int sizeClass) {
+        return (1 << (MIN_SIZE_CLASS_SHIFT + sizeClass));
+    }
+
+    /**
+     * Returns the class of the buffers able to contain a given count of bytes
+     * 
+     * @param capacity
+     *            count of bytes
+     * @return the index of the class, -1 if this count is too big to be pooled
+     */
+    public int getSizeClass(final int capacity) {
+        final int shift = capacity <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(capacity - 1);
+        return (shift > MAX_SIZE_CLASS_SHIFT ? -1 : Math.max(0, shift - MIN_SIZE_CLASS_SHIFT));
+    }
+
+    private int getMaxFreeBufferCount(final int sizeClass) {
+        return ((int) Math.min(Integer.MAX_VALUE, retentionCapInBytes / getSizeClassCapacity(sizeClass)));
+    }
+
+    /**
+     * Acquires a direct byte buffer in the native byte order, its content is
+     * undefined. It's released by {@link #release(ByteBuffer)}, typically by
+     * the deallocation helper when the buffer is deleted
+     * 
+     * @param capacity
+     *            minimum capacity of the buffer in bytes
+     * @return a buffer whose capacity is the size of its class and whose limit
+     *         is the requested capacity
+     */
+    public synchronized ByteBuffer acquire(final int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("The capacity must be positive");
+        expungeCollectedBuffers();
+        final int sizeClass = getSizeClass(capacity);
+        ByteBuffer buffer;
+        PooledBuffer pooledBuffer;
+        if (sizeClass == -1) {
+            unpooledAcquisitionCount++;
+            buffer = ByteBuffer.allocateDirect(capacity);
+            pooledBuffer = addPooledBuffer(buffer, sizeClass);
+        } else {
+            acquisitionCounts[sizeClass]++;
+            acquiredCounts[sizeClass]++;
+            buffer = freeBuffers[sizeClass].poll();
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(getSizeClassCapacity(sizeClass));
+                pooledBuffer = addPooledBuffer(buffer, sizeClass);
+            } else {
+                hitCounts[sizeClass]++;
+                pooledBuffer = findPooledBuffer(buffer);
+                pooledBuffer.free = false;
+            }
+        }
+        pooledBuffer.block = false;
+        buffer.clear().limit(capacity);
+        // the buffer belongs to its acquirer until its release
+        DirectMemoryLedger.getInstance().recordAllocation(buffer);
+        return (buffer.order(ByteOrder.nativeOrder()));
+    }
+
+    /**
+     * Acquires a block whose slices are used by several owners, it's released
+     * only by its acquirer, the deallocation helpers leave it untouched
+     * 
+     * @param capacity
+     *            minimum capacity of the block in bytes
+     * @return a block whose capacity is the size of its class and whose limit
+     *         is the requested capacity
+     */
+    public synchronized ByteBuffer acquireBlock(final int capacity) {
+        final ByteBuffer block = acquire(capacity);
+        findPooledBuffer(block).block = true;
+        return (block);
+    }
+
+    /**
+     * Tells whether a buffer is a block acquired by
+     * {@link #acquireBlock(int)} and not released yet
+     * 
+     * @param buffer
+     *            direct byte buffer owning its native memory
+     * @return <code>true</code> if the buffer is an acquired block
+     */
+    public synchronized boolean isBlock(final ByteBuffer buffer) {
+        final PooledBuffer pooledBuffer = findPooledBuffer(buffer);
+        return (pooledBuffer != null && pooledBuffer.block && !pooledBuffer.free);
+    }
+
+    /**
+     * Releases a direct buffer, it mustn't be used anymore. The buffer can
+     * come from this pool or from elsewhere, in the latter case it must own
+     * its native memory, it's freed at once and it's never kept. A buffer
+     * already in the pool is ignored
+     * 
+     * @param buffer
+     *            direct byte buffer owning its native memory
+     */
+    public synchronized void release(final ByteBuffer buffer) {
+        if (!buffer.isDirect())
+            throw new IllegalArgumentException("The buffer isn't direct");
+        expungeCollectedBuffers();
+        final PooledBuffer pooledBuffer = findPooledBuffer(buffer);
+        if (pooledBuffer == null) {
+            foreignReleaseCount++;
+            DirectMemoryLedger.getInstance().recordDeallocation(buffer);
+            deallocator.run(buffer);
+        } else if (!pooledBuffer.free) {
+            DirectMemoryLedger.getInstance().recordDeallocation(buffer);
+            final int sizeClass = pooledBuffer.sizeClass;
+            if (sizeClass != -1)
+                acquiredCounts[sizeClass]--;
+            if (sizeClass != -1 && freeBuffers[sizeClass].size() < getMaxFreeBufferCount(sizeClass)) {
+                pooledBuffer.free = true;
+                pooledBuffer.block = false;
+                freeBuffers[sizeClass].push(buffer);
+            } else {
+                removePooledBuffer(pooledBuffer);
+                deallocator.run(buffer);
+            }
+        }
+    }
+
+    /**
+     * Releases all free buffers
+     */
+    public synchronized void trim() {
+        for (final ArrayDeque<ByteBuffer> sizeClassFreeBuffers : freeBuffers)
+            while (!sizeClassFreeBuffers.isEmpty())
+                deallocateFreeBuffer(sizeClassFreeBuffers.pop());
+    }
+
+    private void deallocateFreeBuffer(final ByteBuffer buffer) {
+        removePooledBuffer(findPooledBuffer(buffer));
+        deallocator.run(buffer);
+    }
+
+    private PooledBuffer addPooledBuffer(final ByteBuffer buffer, final int sizeClass) {
+        final PooledBuffer pooledBuffer = new PooledBuffer(buffer, collectedBufferQueue, sizeClass);
+        final Integer key = Integer.valueOf(pooledBuffer.identityHashCode);
+        pooledBuffer.next = pooledBuffers.get(key);
+        pooledBuffers.put(key, pooledBuffer);
+        return (pooledBuffer);
+    }
+
+    private PooledBuffer findPooledBuffer(final ByteBuffer buffer) {
+        PooledBuffer pooledBuffer = pooledBuffers.get(Integer.valueOf(System.identityHashCode(buffer)));
+        while (pooledBuffer != null && pooledBuffer.get() != buffer)
+            pooledBuffer = pooledBuffer.next;
+        return (pooledBuffer);
+    }
+
+    private void removePooledBuffer(final PooledBuffer pooledBuffer) {
+        final Integer key = Integer.valueOf(pooledBuffer.identityHashCode);
+        PooledBuffer previous = null;
+        PooledBuffer current = pooledBuffers.get(key);
+        while (current != null && current != pooledBuffer) {
+            previous = current;
+            current = current.next;
+        }
+        if (current != null) {
+            if (previous != null)
+                previous.next = current.next;
+            else if (current.next != null)
+                pooledBuffers.put(key, current.next);
+            else
+                pooledBuffers.remove(key);
+        }
+    }
+
+    /**
+     * Forgets the acquired buffers collected by the garbage collector without
+     * having been released
+     */
+    private void expungeCollectedBuffers() {
+        PooledBuffer pooledBuffer;
+        while ((pooledBuffer = (PooledBuffer) collectedBufferQueue.poll()) != null) {
+            removePooledBuffer(pooledBuffer);
+            // the free buffers are referenced by the pool, they can't be
+            // collected
+            if (pooledBuffer.sizeClass != -1)
+                acquiredCounts[pooledBuffer.sizeClass]--;
+        }
+    }
+
+    public synchronized int getFreeBufferCount(final int sizeClass) {
+        return (freeBuffers[sizeClass].size());
+    }
+
+    public synchronized int getAcquiredBufferCount(final int sizeClass) {
+        expungeCollectedBuffers();
+        return (acquiredCounts[sizeClass]);
+    }
+
+    public synchronized long getAcquisitionCount(final int sizeClass) {
+        return (acquisitionCounts[sizeClass]);
+    }
+
+    public synchronized long getHitCount(final int sizeClass) {
+        return (hitCounts[sizeClass]);
+    }
+
+    /**
+     * Returns the ratio of the acquisitions of a class served by a free buffer
+     * 
+     * @param sizeClass
+     *            index of the class
+     * @return the hit rate between 0 and 1, 0 if there is no acquisition
+     */
+    public synchronized double getHitRate(final int sizeClass) {
+        return (acquisitionCounts[sizeClass] == 0 ? 0 : hitCounts[sizeClass] / (double) acquisitionCounts[sizeClass]);
+    }
+
+    public synchronized long getUnpooledAcquisitionCount() {
+        return (unpooledAcquisitionCount);
+    }
+
+    public synchronized long getForeignReleaseCount() {
+        return (foreignReleaseCount);
+    }
+
+    /**
+     * Returns the size of the free buffers
+     * 
+     * @return the size of the free buffers in bytes
+     */
+    public synchronized long getFreeSizeInBytes() {
+        long freeSizeInBytes = 0;
+        for (int sizeClass = 0; sizeClass < freeBuffers.length; sizeClass++)
+            freeSizeInBytes += freeBuffers[sizeClass].size() * (long) getSizeClassCapacity(sizeClass);
+        return (freeSizeInBytes);
+    }
+
+    /**
+     * Resets the counters of acquisitions
+     */
+    public synchronized void resetCounters() {
+        Arrays.fill(acquisitionCounts, 0);
+        Arrays.fill(hitCounts, 0);
+        unpooledAcquisitionCount = 0;
+        foreignReleaseCount = 0;
+    }
+
+    /**
+     * Describes the occupancy and the hit rate of the classes used so far, one
+     * line per class
+     * 
+     * @return the description of the classes used so far
+     */
+    public synchronized String getReport() {
+        expungeCollectedBuffers();
+        final StringBuilder builder = new StringBuilder();
+        for (int sizeClass = 0; sizeClass < freeBuffers.length; sizeClass++)
+            if (acquisitionCounts[sizeClass] > 0 || !freeBuffers[sizeClass].isEmpty())
+                builder.append(String.format(Locale.ENGLISH,
+                        "%d KB: %d acquired, %d free, %d acquisitions, hit rate %.1f%%%n",
+                        Integer.valueOf(getSizeClassCapacity(sizeClass) / 1024),
+                        Integer.valueOf(acquiredCounts[sizeClass]), Integer.valueOf(freeBuffers[sizeClass].size()),
+                        Long.valueOf(acquisitionCounts[sizeClass]), Double.valueOf(getHitRate(sizeClass) * 100)));
+        if (foreignReleaseCount > 0)
+            builder.append(foreignReleaseCount).append(" released buffers not provided by the pool")
+                    .append(System.lineSeparator());
+        return (builder.toString());
+    }
+}
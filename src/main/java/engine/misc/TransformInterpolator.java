@@ -0,0 +1,216 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.misc;
+
+import java.util.Arrays;
+
+import com.ardor3d.math.Matrix3;
+import com.ardor3d.math.Quaternion;
+import com.ardor3d.math.Transform;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyTransform;
+import com.ardor3d.renderer.Camera;
+import com.ardor3d.scenegraph.Spatial;
+
+/**
+ * Interpolator of the transforms of some spatials and of the frame of a camera
+ * between the latest two simulation steps. It's used when the simulation
+ * advances with a fixed time step in order to render a frame between two steps
+ * without running the simulation: the transforms are interpolated just before
+ * the rendering and restored just after it. It doesn't allocate anything once
+ * its arrays are big enough, it mustn't be used by several threads at the same
+ * time.
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public final class TransformInterpolator {
+
+    /** spatials whose transforms are interpolated */
+    private Spatial[] spatials;
+    /** transforms of the spatials before the latest step */
+    private Transform[] previousTransforms;
+    /** transforms of the spatials after the latest step */
+    private Transform[] currentTransforms;
+    /** count of spatials */
+    private int spatialCount;
+    /** camera whose frame is interpolated, <code>null</code> if none */
+    private Camera camera;
+    /** location of the camera before the latest step */
+    private final Vector3 previousCameraLocation;
+    /** axes of the camera before the latest step */
+    private final Matrix3 previousCameraAxes;
+    /** location of the camera after the latest step */
+    private final Vector3 currentCameraLocation;
+    /** axes of the camera after the latest step */
+    private final Matrix3 currentCameraAxes;
+    /** flag indicating whether the current transforms are being rendered */
+    private boolean interpolated;
+
+    private final Quaternion previousRotation;
+
+    private final Quaternion currentRotation;
+
+    private final Quaternion interpolatedRotation;
+
+    private final Matrix3 rotation;
+
+    private final Vector3 vector;
+
+    /**
+     * Constructor
+     */
+    public TransformInterpolator() {
+        super();
+        spatials = new Spatial[0];
+        previousTransforms = new Transform[0];
+        currentTransforms = new Transform[0];
+        previousCameraLocation = new Vector3();
+        previousCameraAxes = new Matrix3();
+        currentCameraLocation = new Vector3();
+        currentCameraAxes = new Matrix3();
+        previousRotation = new Quaternion();
+        currentRotation = new Quaternion();
+        interpolatedRotation = new Quaternion();
+        rotation = new Matrix3();
+        vector = new Vector3();
+    }
+
+    /**
+     * Forgets the spatials and the camera, it must be called before storing
+     * the transforms before a step
+     */
+    public void clear() {
+        if (interpolated)
+            restore();
+        Arrays.fill(spatials, 0, spatialCount, null);
+        spatialCount = 0;
+        camera = null;
+    }
+
+    /**
+     * Stores the transform of a spatial before a step
+     * 
+     * @param spatial
+     *            spatial whose transform will be interpolated
+     */
+    public void storePreviousTransform(final Spatial spatial) {
+        if (spatialCount == spatials.length) {
+            final int newCapacity = Math.max(8, spatials.length * 2);
+            spatials = Arrays.copyOf(spatials, newCapacity);
+            previousTransforms = Arrays.copyOf(previousTransforms, newCapacity);
+            currentTransforms = Arrays.copyOf(currentTransforms, newCapacity);
+            for (int index = spatialCount; index < newCapacity; index++) {
+                previousTransforms[index] = new Transform();
+                currentTransforms[index] = new Transform();
+            }
+        }
+        spatials[spatialCount] = spatial;
+        previousTransforms[spatialCount].set(spatial.getTransform());
+        spatialCount++;
+    }
+
+    /**
+     * Stores the frame of a camera before a step
+     * 
+     * @param camera
+     *            camera whose frame will be interpolated
+     */
+    public void storePreviousCameraFrame(final Camera camera) {
+        this.camera = camera;
+        previousCameraLocation.set(camera.getLocation());
+        previousCameraAxes.fromAxes(camera.getLeft(), camera.getUp(), camera.getDirection());
+    }
+
+    /**
+     * Replaces the transforms and the camera frame by their interpolations
+     * between the latest two steps, the world transforms and the world bounds
+     * are updated too
+     * 
+     * @param alpha
+     *            interpolation factor, 0 for the previous step, 1 for the
+     *            latest step
+     */
+    public void interpolate(final double alpha) {
+        if (interpolated)
+            restore();
+        interpolated = true;
+        // stores the camera frame first as a camera node updates its camera
+        // when its world transform is updated
+        if (camera != null) {
+            currentCameraLocation.set(camera.getLocation());
+            currentCameraAxes.fromAxes(camera.getLeft(), camera.getUp(), camera.getDirection());
+        }
+        // updates the local transforms first, the children use the world
+        // transforms of their parents
+        for (int index = 0; index < spatialCount; index++) {
+            final Spatial spatial = spatials[index];
+            final ReadOnlyTransform previousTransform = previousTransforms[index];
+            final Transform currentTransform = currentTransforms[index];
+            currentTransform.set(spatial.getTransform());
+            if (previousTransform.isRotationMatrix() && currentTransform.isRotationMatrix()) {
+                previousRotation.fromRotationMatrix(previousTransform.getMatrix());
+                currentRotation.fromRotationMatrix(currentTransform.getMatrix());
+                Quaternion.slerp(previousRotation, currentRotation, alpha, interpolatedRotation)
+                        .toRotationMatrix(rotation);
+                spatial.setRotation(rotation);
+                spatial.setScale(previousTransform.getScale().lerp(currentTransform.getScale(), alpha, vector));
+            }
+            spatial.setTranslation(
+                    previousTransform.getTranslation().lerp(currentTransform.getTranslation(), alpha, vector));
+        }
+        updateWorldTransforms();
+        if (camera != null) {
+            previousRotation.fromRotationMatrix(previousCameraAxes);
+            currentRotation.fromRotationMatrix(currentCameraAxes);
+            Quaternion.slerp(previousRotation, currentRotation, alpha, interpolatedRotation).toRotationMatrix(rotation);
+            camera.setFrame(previousCameraLocation.lerp(currentCameraLocation, alpha, vector), rotation);
+        }
+    }
+
+    /**
+     * Restores the transforms and the camera frame of the latest step
+     */
+    public void restore() {
+        if (interpolated) {
+            interpolated = false;
+            for (int index = 0; index < spatialCount; index++)
+                spatials[index].setTransform(currentTransforms[index]);
+            updateWorldTransforms();
+            if (camera != null)
+                camera.setFrame(currentCameraLocation, currentCameraAxes);
+        }
+    }
+
+    private void updateWorldTransforms() {
+        for (int index = 0; index < spatialCount; index++) {
+            final Spatial spatial = spatials[index];
+            spatial.updateWorldTransform(true);
+            spatial.updateWorldBound(true);
+        }
+    }
+
+    /**
+     * Returns the count of spatials whose transforms are interpolated
+     * 
+     * @return the count of spatials
+     */
+    public int getSpatialCount() {
+        return (spatialCount);
+    }
+}
@@ -22,6 +22,7 @@ import java.nio.Buffer;
 import com.ardor3d.image.Image;
 import com.ardor3d.image.Texture;
 import com.ardor3d.renderer.jogl.JoglRenderer;
+import com.ardor3d.renderer.state.TextureState;
 import com.ardor3d.scenegraph.AbstractBufferData;
 import engine.misc.SimpleDeallocationHelper;
 
@@ -55,7 +56,9 @@ public class ReliableRenderer extends JoglRenderer {
     public void deleteTexture(final Texture texture) {
         super.deleteTexture(texture);
         final Image image = texture.getImage();
-        if (image != null && image.getDataSize() >= 1) {
+        // the image of the default texture is shared by all textures whose
+        // image can't be loaded
+        if (image != null && image != TextureState.getDefaultTextureImage() && image.getDataSize() >= 1) {
             for (Buffer data : image.getData()) {
                 deleteBuffer(data);
             }
@@ -17,10 +17,13 @@
  */
 package engine.service;
 
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.util.Properties;
+import java.util.concurrent.locks.LockSupport;
 import com.jogamp.opengl.GLAutoDrawable;
 import com.jogamp.opengl.GLRunnable;
 import com.ardor3d.annotation.MainThread;
@@ -59,10 +62,16 @@ import com.jogamp.newt.event.WindowEvent;
 import com.jogamp.newt.opengl.GLWindow;
 import engine.integration.DesktopIntegration;
 import engine.integration.DesktopIntegration.OS;
+import engine.misc.FixedStepTimer;
+import engine.misc.FrameProfiler;
+import engine.misc.FrameProfiler.Scope;
 import engine.misc.LocalizedMessageProvider;
 import engine.misc.SettingsProvider;
 import engine.renderer.ReliableCanvasRenderer;
 import engine.statemachine.ScenegraphStateMachine;
+import engine.telemetry.FrameEvent;
+import engine.telemetry.FramePhaseEvent;
+import engine.telemetry.FramePhaseEvent.Phase;
 
 /**
  * General entry point of a game created by the editor
@@ -122,6 +131,21 @@ public final class Ardor3DGameServiceProvider implements Scene {
     /** main timer */
     private final Timer timer;
 
+    /**
+     * timer of the simulation advancing with a fixed time step,
+     * <code>null</code> if the simulation advances once per rendered frame
+     */
+    private final FixedStepTimer simulationTimer;
+
+    /**
+     * minimum duration of a rendered frame in nanoseconds, 0 if the render
+     * rate is unlimited
+     */
+    private final long minFrameDuration;
+
+    /** profiler of the main loop and of the game logic */
+    private final FrameProfiler frameProfiler;
+
     /** root of our scene */
     private final Node root;
 
@@ -306,6 +330,16 @@ public final class Ardor3DGameServiceProvider implements Scene {
         gameRelease = getPropertyValue(versioningProperties, "game-release");
         // scene stuff
         timer = new Timer();
+        if (settingsProvider.isFixedTimeStepEnabled())
+            simulationTimer = new FixedStepTimer(settingsProvider.getSimulationRate());
+        else
+            simulationTimer = null;
+        if (settingsProvider.getRenderRate() == SettingsProvider.UNLIMITED_RENDER_RATE)
+            minFrameDuration = 0;
+        else
+            minFrameDuration = 1000000000L / settingsProvider.getRenderRate();
+        frameProfiler = new FrameProfiler();
+        frameProfiler.setEnabled(settingsProvider.isFrameProfilerEnabled());
         root = new Node("root node of the game");
         final int primaryMonitorRequestedWidth = settingsProvider.getScreenWidth();
         final int primaryMonitorRequestedHeight = settingsProvider.getScreenHeight();
@@ -346,18 +380,158 @@ public final class Ardor3DGameServiceProvider implements Scene {
      */
     private final void start() {
         init();
+        if (simulationTimer == null)
+            runWithVariableTimeStep();
+        else
+            runWithFixedTimeStep();
+        if (frameProfiler.isEnabled())
+            dumpFrameProfile();
+    }
 
+    /**
+     * Writes the measurements of the latest frames into a CSV file in the
+     * directory of the configuration file
+     */
+    private final void dumpFrameProfile() {
+        final File profileFile = new File(settingsProvider.getConfigDirectory(), "frame-profile.csv");
+        try {
+            profileFile.getParentFile().mkdirs();
+            try (final FileWriter fileWriter = new FileWriter(profileFile)) {
+                frameProfiler.writeCsv(fileWriter, frameProfiler.getFrameCount());
+            }
+        } catch (IOException ioe) {
+            throw new RuntimeException("Failed in writing the frame profile into " + profileFile.getAbsolutePath(),
+                    ioe);
+        }
+    }
+
+    /**
+     * Runs the main loop, the simulation advances once per rendered frame by
+     * the duration of the previous frame
+     */
+    private final void runWithVariableTimeStep() {
+        long frameIndex = 0;
         // runs in this same thread
         while (!canvas.isClosing()) {
+            final FrameEvent frameEvent = new FrameEvent(frameIndex);
+            frameEvent.begin();
+            final long frameStartTime = System.nanoTime();
             timer.update();
-            updateLogicalLayer(timer);
+            updateLogicalLayer(timer, frameIndex);
             // updates controllers/render states/transforms/bounds for rootNode
+            final FramePhaseEvent updateEvent = new FramePhaseEvent(Phase.UPDATE_GEOMETRIC_STATE, frameIndex);
+            updateEvent.begin();
+            frameProfiler.begin(Scope.SCENEGRAPH);
             root.updateGeometricState(timer.getTimePerFrame(), true);
-            canvas.draw(null);
+            frameProfiler.end(Scope.SCENEGRAPH);
+            updateEvent.commit();
+            draw(frameIndex);
+            frameProfiler.endFrame();
+            waitForNextFrame(frameStartTime, frameIndex);
+            frameEvent.commit();
+            frameIndex++;
             // Thread.yield();
         }
     }
 
+    /**
+     * Runs the main loop, the simulation advances with a fixed time step as
+     * many times as needed to catch up with the elapsed time (within a maximum
+     * count of steps), the transforms are interpolated between the latest two
+     * steps to render a frame
+     */
+    private final void runWithFixedTimeStep() {
+        final long stepDuration = simulationTimer.getStepDuration();
+        // allows enough steps per frame to keep up with the simulation rate
+        // when the render rate is lower
+        final int maxCatchUpSteps;
+        if (minFrameDuration == 0)
+            maxCatchUpSteps = settingsProvider.getMaxCatchUpSteps();
+        else
+            maxCatchUpSteps = Math.max(settingsProvider.getMaxCatchUpSteps(),
+                    (int) ((minFrameDuration + stepDuration - 1) / stepDuration));
+        long accumulator = 0;
+        long previousFrameStartTime = System.nanoTime();
+        long frameIndex = 0;
+        // runs in this same thread
+        while (!canvas.isClosing()) {
+            final FrameEvent frameEvent = new FrameEvent(frameIndex);
+            frameEvent.begin();
+            final long frameStartTime = System.nanoTime();
+            timer.update();
+            accumulator += frameStartTime - previousFrameStartTime;
+            previousFrameStartTime = frameStartTime;
+            int stepCount = 0;
+            while (accumulator >= stepDuration && stepCount < maxCatchUpSteps) {
+                scenegraphStateMachine.storePreviousTransforms();
+                simulationTimer.step();
+                updateLogicalLayer(simulationTimer, frameIndex);
+                // updates controllers/render states/transforms/bounds for
+                // rootNode
+                final FramePhaseEvent updateEvent = new FramePhaseEvent(Phase.UPDATE_GEOMETRIC_STATE, frameIndex);
+                updateEvent.begin();
+                frameProfiler.begin(Scope.SCENEGRAPH);
+                root.updateGeometricState(simulationTimer.getTimePerFrame(), true);
+                frameProfiler.end(Scope.SCENEGRAPH);
+                updateEvent.commit();
+                accumulator -= stepDuration;
+                stepCount++;
+            }
+            // drops the delay that can't be caught up (after a loading or a
+            // very slow frame), the simulation slows down instead of
+            // performing more and more steps per frame
+            if (accumulator >= stepDuration)
+                accumulator %= stepDuration;
+            final FramePhaseEvent interpolationEvent = new FramePhaseEvent(Phase.INTERPOLATION, frameIndex);
+            interpolationEvent.begin();
+            scenegraphStateMachine.interpolateTransforms(accumulator / (double) stepDuration);
+            interpolationEvent.commit();
+            draw(frameIndex);
+            frameProfiler.endFrame();
+            scenegraphStateMachine.restoreTransforms();
+            waitForNextFrame(frameStartTime, frameIndex);
+            frameEvent.setStepCount(stepCount);
+            frameEvent.commit();
+            frameIndex++;
+        }
+    }
+
+    /**
+     * Renders the scene
+     * 
+     * @param frameIndex
+     *            index of the current frame
+     */
+    private final void draw(final long frameIndex) {
+        final FramePhaseEvent drawEvent = new FramePhaseEvent(Phase.DRAW, frameIndex);
+        drawEvent.begin();
+        frameProfiler.begin(Scope.RENDERING);
+        canvas.draw(null);
+        frameProfiler.end(Scope.RENDERING);
+        drawEvent.commit();
+    }
+
+    /**
+     * Waits until the end of the minimum duration of a frame if the render
+     * rate is limited
+     * 
+     * @param frameStartTime
+     *            start time of the current frame in nanoseconds
+     * @param frameIndex
+     *            index of the current frame
+     */
+    private final void waitForNextFrame(final long frameStartTime, final long frameIndex) {
+        if (minFrameDuration > 0) {
+            final FramePhaseEvent waitEvent = new FramePhaseEvent(Phase.WAIT, frameIndex);
+            waitEvent.begin();
+            final long nextFrameStartTime = frameStartTime + minFrameDuration;
+            long remainingTime;
+            while ((remainingTime = nextFrameStartTime - System.nanoTime()) > 0)
+                LockSupport.parkNanos(remainingTime);
+            waitEvent.commit();
+        }
+    }
+
     /**
      * Initializes our scene.
      */
@@ -420,13 +594,19 @@ public final class Ardor3DGameServiceProvider implements Scene {
         scenegraphStateMachine = new ScenegraphStateMachine(root, canvas, physicalLayer, mouseManager,
                 toggleScreenModeAction, launchRunnable, uninstallRunnable, gameShortName, gameLongName,
                 gameIntroductionSubtitle, gameRecommendedDownloadUrl, gameVersion, gameRelease, readmeContent, 
-                null, null, 0, localizedMessageProvider, settingsProvider);
+                null, null, 0, localizedMessageProvider, settingsProvider, simulationTimer,
+                frameProfiler);
     }
 
-    private final void updateLogicalLayer(final ReadOnlyTimer timer) {
+    private final void updateLogicalLayer(final ReadOnlyTimer timer, final long frameIndex) {
+        final FramePhaseEvent inputEvent = new FramePhaseEvent(Phase.INPUT, frameIndex);
+        inputEvent.begin();
         // checks and executes any input triggers, if we are concerned with
         // input
+        frameProfiler.begin(Scope.INPUT);
         scenegraphStateMachine.updateLogicalLayer(timer);
+        frameProfiler.end(Scope.INPUT);
+        inputEvent.commit();
     }
 
     @Override
@@ -58,11 +58,25 @@ public final class SoundManager {
     private float latestMasterVolume;
 
     public SoundManager() {
+        this(true);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param soundSystemEnabled
+     *            <code>false</code> if no sound system has to be initialized,
+     *            for example when running without any window, in this case
+     *            this sound manager is silent
+     */
+    public SoundManager(final boolean soundSystemEnabled) {
         try {
-            try {
-                soundSystem = new ExtendedSoundSystem(LibraryJOAL.class);
-            } catch (SoundSystemException sseOpenAL) {
-                System.out.println("The initialization of the sound manager (based on JOAL) failed: " + sseOpenAL);
+            if (soundSystemEnabled) {
+                try {
+                    soundSystem = new ExtendedSoundSystem(LibraryJOAL.class);
+                } catch (SoundSystemException sseOpenAL) {
+                    System.out.println("The initialization of the sound manager (based on JOAL) failed: " + sseOpenAL);
+                }
             }
             if (soundSystem != null)
                 SoundSystemConfig.setCodec("ogg", CodecJOrbis.class);
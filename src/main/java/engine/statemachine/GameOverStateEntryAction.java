@@ -31,8 +31,11 @@ import se.hiflyer.fettle.StateMachine;
  */
 public class GameOverStateEntryAction extends ScenegraphStateEntryAction {
 
-    public GameOverStateEntryAction() {
+    private final GameState gameState;
+
+    public GameOverStateEntryAction(final GameState gameState) {
         super();
+        this.gameState = gameState;
     }
 
     @Override
@@ -48,6 +51,8 @@ public class GameOverStateEntryAction extends ScenegraphStateEntryAction {
         gameOverState.setLatestNextPlayableLevelIdentifier(latestNextPlayableLevelIdentifier);
         gameOverState.setGameStatistics(gameStats);
         gameOverState.setObjectives(objectives);
+        // the player is likely to go to the next playable level if any
+        gameState.preloadLevel(latestNextPlayableLevelIdentifier);
         super.onTransition(from, to, cause, args, stateMachine);
     }
 }
@@ -21,8 +21,7 @@ import java.net.URL;
 import java.nio.FloatBuffer;
 import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -33,6 +32,7 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 
 import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.bounding.BoundingVolume;
 import com.ardor3d.bounding.CollisionTree;
 import com.ardor3d.bounding.CollisionTreeManager;
 import com.ardor3d.extension.model.util.KeyframeController;
@@ -78,6 +78,7 @@ import com.ardor3d.scenegraph.event.DirtyType;
 import com.ardor3d.scenegraph.extension.CameraNode;
 import com.ardor3d.scenegraph.shape.Box;
 import com.ardor3d.scenegraph.visitor.Visitor;
+import com.ardor3d.ui.text.BMText;
 import com.ardor3d.ui.text.BasicText;
 import com.ardor3d.util.GameTaskQueue;
 import com.ardor3d.util.GameTaskQueueManager;
@@ -85,18 +86,29 @@ import com.ardor3d.util.ReadOnlyTimer;
 import com.ardor3d.util.TextureManager;
 import com.ardor3d.util.geom.BufferUtils;
 
+import engine.collision.BoundingBoxTree;
+import engine.collision.CollisionGrid;
+import engine.collision.HitScanTree;
+import engine.collision.SpatialHashGrid;
 import engine.data.Enemy;
-import engine.data.EnemyData;
 import engine.data.EnemyFactory;
+import engine.data.EnemyTable;
 import engine.data.Level;
 import engine.data.LevelFactory;
+import engine.data.LevelPreloader;
+import engine.data.LevelStreamingManager;
+import engine.data.ModelTemplateCache;
+import engine.data.TextureResidencyManager;
 import engine.data.Objective;
 import engine.data.ObjectiveStatus;
+import engine.data.ObjectiveTracker;
+import engine.data.PerceptionScheduler;
 import engine.data.PlayerData;
 import engine.data.ProfileData;
-import engine.data.ProjectileController;
 import engine.data.ProjectileData;
+import engine.data.ProjectilePool;
 import engine.data.SkyboxFactory;
+import engine.data.Statistic;
 import engine.data.common.AmmunitionBox;
 import engine.data.common.AmmunitionBoxFactory;
 import engine.data.common.Medikit;
@@ -110,8 +122,16 @@ import engine.input.ActionMap;
 import engine.input.ExtendedFirstPersonControl;
 import engine.input.MouseAndKeyboardSettings;
 import engine.misc.ApplicativeTimer;
+import engine.misc.DirectBufferArena;
+import engine.misc.FrameProfiler;
+import engine.misc.FrameProfiler.Scope;
+import engine.misc.KeyframeAnimationLod;
 import engine.misc.MD2FrameSet;
 import engine.misc.NodeHelper;
+import engine.misc.SettingsProvider;
+import engine.misc.SimpleDeallocationHelper;
+import engine.misc.SlabBufferPool;
+import engine.misc.TransformInterpolator;
 import engine.sound.SoundManager;
 import engine.taskmanagement.TaskManager;
 import engine.weaponry.Ammunition;
@@ -141,10 +161,17 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
     private final ArrayList<Node> collectibleObjectsList;
     /** list of teleporters */
     private final ArrayList<Node> teleportersList;
+    /** broad phase used to find the objects that can be picked up */
+    private final SpatialHashGrid<Node> collectibleObjectsGrid;
+    /** broad phase used to find the teleporters */
+    private final SpatialHashGrid<Node> teleportersGrid;
     /** text label showing the ammunition */
     private final BasicText ammoTextLabel;
-    /** text label showing the frame rate */
-    private final BasicText fpsTextLabel;
+    /**
+     * text label showing the frame rate and the breakdown of the frame
+     * profiler when it's enabled
+     */
+    private final BasicText frameProfilerTextLabel;
     /** text label showing the health */
     private final BasicText healthTextLabel;
     /** text label of the head-up display */
@@ -169,20 +196,71 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
     private final LevelFactory levelFactory;
     /** timer that can be paused and used to measure the elapsed time */
     private final ApplicativeTimer timer;
+    /** interpolator of the transforms rendered between two simulation steps */
+    private final TransformInterpolator transformInterpolator;
+    /** profiler of the main loop and of the game logic */
+    private final FrameProfiler frameProfiler;
 
     private final TaskManager taskManager;
 
-    private final Map<Node, ProjectileData> projectilesMap;
+    /** pool of the projectiles launched by the player and by the enemies */
+    private final ProjectilePool projectilePool;
 
     private final Random random;
 
-    private final HashMap<Mesh, EnemyData> enemiesDataMap;
+    /** dense table of the enemies */
+    private final EnemyTable enemyTable;
 
-    private final HashMap<EnemyData, Long> enemiesLatestDetection;
+    /** scheduler of the perception checks of the enemies */
+    private final PerceptionScheduler perceptionScheduler;
 
-    private Long latestPlayerDeath;
+    /** level of detail of the animations of the enemies */
+    private final KeyframeAnimationLod animationLod;
+
+    /** cache of the templates of the animated models, kept between levels */
+    private final ModelTemplateCache modelTemplateCache;
+
+    /** manager of the decoded images of the textures */
+    private final TextureResidencyManager textureResidencyManager;
+
+    /** distance under which the tiles of the chunked levels are loaded, zero if the streaming is disabled */
+    private final int levelStreamingRadius;
+
+    /** preloader of the level likely to be played next */
+    private final LevelPreloader levelPreloader;
 
-    private final ProjectileDataOpponentsComparator projectileDataOpponentsComparator;
+    /** flag indicating whether the latest played level is kept in memory to restart it quickly */
+    private final boolean residentLevelEnabled;
+
+    /** maximum memory footprint of a level kept in memory in bytes */
+    private final long residentLevelCeiling;
+
+    /**
+     * latest played level kept in memory with its scenegraph, its GPU
+     * resources and its collision volumes, null if none. It remains set while
+     * it is played again
+     */
+    private Level residentLevel;
+
+    /** count of levels started with the resident level */
+    private int residentLevelHitCount;
+
+    /** count of movements of the player resolved against the collision volumes */
+    private long collisionVolumeMovementCount;
+
+    /**
+     * flag indicating whether the movements of the player resolved against
+     * the collision volumes are checked, for debugging purposes
+     */
+    private boolean collisionVolumePenetrationChecked;
+
+    /**
+     * count of movements of the player resolved against the collision volumes
+     * that ended inside a volume, only when they're checked
+     */
+    private long collisionVolumePenetrationCount;
+
+    private Long latestPlayerDeath;
 
     private ExtendedFirstPersonControl fpsc;
 
@@ -227,6 +305,15 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
 
     private static String enemyShotgunShotSampleIdentifier = null;
 
+    /** size of the cells of the broad phase used for the static objects */
+    private static final double broadPhaseCellSize = 2.0;
+
+    /**
+     * half extents of the box used to sweep the player against the collision
+     * volumes, in the frame of the map (the applicate is the height)
+     */
+    private static final ReadOnlyVector3 playerHalfExtents = new Vector3(0.2, 0.2, 0.4);
+
     private WireframeState wireframeState;
 
     private Vector3 previousPosition = new Vector3();
@@ -234,7 +321,8 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
     /** data of the profile */
     private final ProfileData profileData;
 
-    private HashMap<Objective, ObjectiveStatus> previousObjectivesStatusesMap;
+    /** tracker of the statuses of the objectives of the current level */
+    private ObjectiveTracker objectiveTracker;
 
     private Level level;
 
@@ -287,6 +375,14 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
      * @param customMouseAndKeyboardSettings
      * @param profileData
      *            data of the profile
+     * @param settingsProvider
+     *            provider of settings
+     * @param simulationTimer
+     *            timer of the simulation advancing with a fixed time step,
+     *            <code>null</code> if the simulation advances once per
+     *            rendered frame
+     * @param frameProfiler
+     *            profiler of the main loop and of the game logic
      */
     public GameState(final NativeCanvas canvas, final PhysicalLayer physicalLayer,
             final TransitionTriggerAction<ScenegraphState, String> toPauseMenuTriggerAction,
@@ -295,7 +391,9 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
             final TriggerAction toggleScreenModeAction, final SoundManager soundManager, final TaskManager taskManager,
             final MouseManager mouseManager, final ActionMap defaultActionMap, final ActionMap customActionMap,
             final MouseAndKeyboardSettings defaultMouseAndKeyboardSettings,
-            final MouseAndKeyboardSettings customMouseAndKeyboardSettings, final ProfileData profileData) {
+            final MouseAndKeyboardSettings customMouseAndKeyboardSettings, final ProfileData profileData,
+            final SettingsProvider settingsProvider, final ReadOnlyTimer simulationTimer,
+            final FrameProfiler frameProfiler) {
         super(soundManager, new LogicalLayer(), new Node(), canvas.getCanvasRenderer().getCamera());
         this.mouseManager = mouseManager;
         this.physicalLayer = physicalLayer;
@@ -309,14 +407,19 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
         this.customMouseAndKeyboardSettings = customMouseAndKeyboardSettings;
         this.profileData = profileData;
         random = new Random();
-        projectileDataOpponentsComparator = new ProjectileDataOpponentsComparator();
-        enemiesDataMap = new HashMap<>();
-        enemiesLatestDetection = new HashMap<>();
+        enemyTable = new EnemyTable();
+        perceptionScheduler = new PerceptionScheduler(settingsProvider.getPerceptionRaycastsPerFrame());
         this.taskManager = taskManager;
-        timer = new ApplicativeTimer();
+        timer = new ApplicativeTimer(simulationTimer);
+        transformInterpolator = new TransformInterpolator();
+        this.frameProfiler = frameProfiler;
         collectibleObjectsList = new ArrayList<>();
-        projectilesMap = new HashMap<>();
+        final FloatBuffer projectileVertexBuffer = BufferUtils.createFloatBuffer(6);
+        projectileVertexBuffer.put(-0.1f).put(-0.1f).put(-0.1f).put(0.1f).put(0.1f).put(0.1f).rewind();
+        projectilePool = new ProjectilePool(ProjectilePool.DEFAULT_CAPACITY, timer, projectileVertexBuffer);
         teleportersList = new ArrayList<>();
+        collectibleObjectsGrid = new SpatialHashGrid<>(broadPhaseCellSize);
+        teleportersGrid = new SpatialHashGrid<>(broadPhaseCellSize);
         // initializes the factories, the build-in ammo and the build-in weapons
         teleporterFactory = initializeTeleporterFactory();
         medikitFactory = initializeMedikitFactory();
@@ -328,6 +431,18 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
         levelFactory = initializeLevelFactory();
         this.canvas = canvas;
         final Camera cam = canvas.getCanvasRenderer().getCamera();
+        animationLod = new KeyframeAnimationLod(cam, frameProfiler);
+        animationLod.setEnabled(settingsProvider.isAnimationLodEnabled());
+        modelTemplateCache = new ModelTemplateCache(settingsProvider.getModelTemplateCacheBudget() * 1024L * 1024L);
+        textureResidencyManager = new TextureResidencyManager(
+                settingsProvider.getTextureImageBudget() * 1024L * 1024L, new SimpleDeallocationHelper());
+        // the blocks of the arenas of the levels are recycled through this pool
+        SlabBufferPool.getInstance().setRetentionCapInBytes(settingsProvider.getBufferPoolRetention() * 1024L * 1024L);
+        levelStreamingRadius = settingsProvider.getLevelStreamingRadius();
+        levelPreloader = new LevelPreloader(settingsProvider.getLevelPreloadBudget() * 1024L * 1024L,
+                levelStreamingRadius);
+        residentLevelEnabled = settingsProvider.isResidentLevelEnabled();
+        residentLevelCeiling = settingsProvider.getResidentLevelCeiling() * 1024L * 1024L;
         // creates a node that follows the camera
         playerNode = new PlayerCameraNode("player", cam);
         playerNode.getSceneHints().setRenderBucketType(RenderBucketType.PostBucket);
@@ -346,13 +461,6 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
         // builds the player data
         playerData = new PlayerData(playerNode, ammunitionFactory, weaponFactory, ammunitionMaxCountMap, true) {
 
-            private final FloatBuffer projectileVertexBuffer;
-
-            {
-                projectileVertexBuffer = BufferUtils.createFloatBuffer(6);
-                projectileVertexBuffer.put(-0.1f).put(-0.1f).put(-0.1f).put(0.1f).put(0.1f).put(0.1f).rewind();
-            }
-
             @Override
             public Map.Entry<Integer, Integer> attack() {
                 final Map.Entry<Integer, Integer> consumedAmmunitionOrKnockCounts = super.attack();
@@ -391,39 +499,16 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
             private final void createProjectile(final Spatial weaponSpatial) {
                 // uses the world bound of the primary weapon to compute the
                 // initial position of the shot
-                final Vector3 initialLocation = new Vector3(weaponSpatial.getWorldBound().getCenter());
-                final String originator = playerNode.getName();
-                final double initialSpeed = 350.0 / 1000000000.0;
-                final double initialAcceleration = 0;
-                final Vector3 initialDirection = weaponSpatial.getWorldTransform().getMatrix().getColumn(2, null);
-                final long initialTimeInNanos = timer.getElapsedTimeInNanoseconds();
-                final ProjectileData projectileData = new ProjectileData(originator, initialLocation, initialSpeed,
-                        initialAcceleration, initialDirection, initialTimeInNanos);
-                final Node projectileNode = new Node(projectileData.toString());
-                NodeHelper.setModelBound(projectileNode, BoundingBox.class);
-                projectileNode.setTransform(weaponSpatial.getWorldTransform());
-                projectileNode.setTranslation(initialLocation);
                 // TODO use the correct node
                 // final WeaponUserData
                 // weaponUserData=(WeaponUserData)((Node)weaponSpatial).getUserData();
                 // final Weapon weapon=weaponUserData.getWeapon();
-                Mesh projectileMesh = createProjectileMesh(null, projectileData);
-                projectileNode.attachChild(projectileMesh);
-                projectileNode.addController(new ProjectileController(timer, projectileData));
-                // stores it for a further use
-                projectilesMap.put(projectileNode, projectileData);
+                final Node projectileNode = projectilePool.acquire(playerNode.getName(),
+                        weaponSpatial.getWorldTransform(), weaponSpatial.getWorldBound().getCenter(),
+                        350.0 / 1000000000.0, 0, timer.getElapsedTimeInNanoseconds());
                 getRoot().attachChild(projectileNode);
             }
 
-            private Mesh createProjectileMesh(final Weapon weapon, final ProjectileData projectileData) {
-                // TODO support several kinds of projectile with different sizes
-                Mesh projectileMesh = new Mesh("Mesh@" + projectileData.toString());
-                MeshData projectileMeshData = new MeshData();
-                projectileMeshData.setVertexBuffer(projectileVertexBuffer);
-                projectileMesh.setMeshData(projectileMeshData);
-                return (projectileMesh);
-            }
-
             @Override
             public int reload() {
                 final int reloadedAmmoCount = super.reload();
@@ -439,7 +524,7 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
         playerWithStateMachine = new LogicalPlayer(playerData);
         // initializes all text displays
         ammoTextLabel = initializeAmmunitionTextLabel();
-        fpsTextLabel = initializeFpsTextLabel();
+        frameProfilerTextLabel = initializeFrameProfilerTextLabel();
         healthTextLabel = initializeHealthTextLabel();
         headUpDisplayLabel = initializeHeadUpDisplayLabel();
         objectivesDisplayLabel = initializeObjectivesDisplayLabel();
@@ -535,19 +620,64 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
         NodeHelper.setModelBound(playerNode, BoundingBox.class);
         playerNode.addController(new SpatialController<>() {
 
-            private final FloatBuffer projectileVertexBuffer;
+            private final CollisionResults collisionResults = new BoundingCollisionResults();
 
-            {
-                projectileVertexBuffer = BufferUtils.createFloatBuffer(6);
-                projectileVertexBuffer.put(-0.1f).put(-0.1f).put(-0.1f).put(0.1f).put(0.1f).put(0.1f).rewind();
-            }
+            private final Vector3 correctPosition = new Vector3();
 
-            private final CollisionResults collisionResults = new BoundingCollisionResults();
+            private final Vector3 playerStartPosition = new Vector3();
+
+            private final Vector3 playerEndPosition = new Vector3();
+
+            private final ArrayList<Node> collectibleObjectsCandidates = new ArrayList<>();
+
+            private final ArrayList<Node> teleportersCandidates = new ArrayList<>();
+
+            private final HitScanTree<Spatial> hitScanTree = new HitScanTree<>();
+
+            private final Vector3 projectileDirection = new Vector3();
+
+            private final Vector3 lineOfSightStart = new Vector3();
+
+            private final Vector3 lineOfSightDisplacement = new Vector3();
+
+            /**
+             * count of the oldest projectiles checked during the current
+             * frame, they are removed once checked
+             */
+            private int checkedProjectileCount;
 
             private boolean wasBeingTeleported = false;
 
             // private long previouslyMeasuredElapsedTime=-1;
 
+            /**
+             * Tells whether nothing occludes the player from an enemy, it
+             * uses the collision volumes or the collision grid of the level,
+             * the player is never occluded in a level without any of them
+             *
+             * @param enemyPosition
+             *            position of the enemy
+             * @return <code>true</code> if the player isn't occluded
+             */
+            private final boolean isLineOfSightFree(final ReadOnlyVector3 enemyPosition) {
+                final ReadOnlyVector3 playerPosition = playerNode.getTranslation();
+                final BoundingBoxTree collisionVolumeTree = level.getCollisionVolumeTree();
+                final boolean lineOfSightFree;
+                if (collisionVolumeTree != null) {
+                    // in the frame of the map, at mid-height of the floor
+                    lineOfSightStart.set(enemyPosition.getX(), enemyPosition.getZ(), 0.5);
+                    lineOfSightDisplacement.set(playerPosition.getX() - enemyPosition.getX(),
+                            playerPosition.getZ() - enemyPosition.getZ(), 0);
+                    collisionVolumeTree.sweep(lineOfSightStart, Vector3.ZERO, lineOfSightDisplacement);
+                    lineOfSightFree = collisionVolumeTree.getLatestHitBoxIndex() == -1;
+                } else {
+                    final CollisionGrid collisionGrid = level.getCollisionGrid();
+                    lineOfSightFree = collisionGrid == null || collisionGrid.isSegmentFree(enemyPosition.getX(),
+                            enemyPosition.getZ(), playerPosition.getX(), playerPosition.getZ());
+                }
+                return (lineOfSightFree);
+            }
+
             @SuppressWarnings("unchecked")
             @Override
             public void update(double timeSinceLastCall, Spatial caller) {
@@ -561,89 +691,46 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
                  * previouslyMeasuredElapsedTime; previouslyMeasuredElapsedTime=
                  * absoluteElapsedTimeInNanoseconds;
                  */
+                frameProfiler.begin(Scope.MOVEMENT);
                 // retrieves the data from the camera
                 final Camera cam = ContextManager.getCurrentContext().getCurrentCamera();
                 // temporary avoids to move on Y
                 cam.setLocation(cam.getLocation().getX(), 0.5, cam.getLocation().getZ());
                 // FIXME remove this temporary system
-                double playerStartX = previousPosition.getX();
-                double playerStartZ = previousPosition.getZ();
-                double playerEndX = cam.getLocation().getX();
-                double playerEndZ = cam.getLocation().getZ();
-                double playerX, playerZ;
-                double distance = previousPosition.distance(cam.getLocation());
-                final int stepCount = (int) Math.ceil(distance / 0.2);
-                double stepX = stepCount == 0 ? 0 : (playerEndX - playerStartX) / stepCount;
-                double stepZ = stepCount == 0 ? 0 : (playerEndZ - playerStartZ) / stepCount;
-                boolean collisionFound = false;
-                double correctX = playerStartX, correctZ = playerStartZ;
-                int tmpX, tmpZ;
-                /*
-                 * final List<BoundingBox>
-                 * boundingBoxList=level.getCollisionVolumes();
-                 * if(boundingBoxList!=null&&!boundingBoxList.isEmpty()) {final
-                 * BoundingBox
-                 * playerBoundingBox=(BoundingBox)playerMesh.getModelBound();
-                 * //TODO for(final BoundingBox boundingBox:boundingBoxList)
-                 * if(playerBoundingBox.intersects(boundingBox)) {
-                 * 
-                 * } } else {//no collision, nothing to prevent the player from
-                 * moving correctX=playerEndX; correctZ=playerEndZ; }
-                 */
+                final double playerStartX = previousPosition.getX();
+                final double playerStartZ = previousPosition.getZ();
+                final double playerEndX = cam.getLocation().getX();
+                final double playerEndZ = cam.getLocation().getZ();
+                final double distance = previousPosition.distance(cam.getLocation());
+                final double correctX, correctZ;
                 // temporary hack to disable collisions in some levels
-                final boolean[][] collisionMap = level.getCollisionMap();
-                for (int i = 1; i <= stepCount && !collisionFound; i++) {
-                    playerX = playerStartX + (stepX * i);
-                    playerZ = playerStartZ + (stepZ * i);
-                    for (int z = 0; z < 2 && !collisionFound; z++)
-                        for (int x = 0; x < 2 && !collisionFound; x++) {
-                            tmpX = (int) (playerX - 0.2 + (x * 0.4));
-                            tmpZ = (int) (playerZ - 0.2 + (z * 0.4));
-                            if (collisionMap != null && 0 <= tmpX && tmpX < collisionMap.length && 0 <= tmpZ
-                                    && tmpZ < collisionMap[tmpX].length)
-                                collisionFound = collisionMap[tmpX][tmpZ];
-                            else
-                                collisionFound = false;
-                        }
-                    if (!collisionFound) {
-                        correctX = playerX;
-                        correctZ = playerZ;
-                    } else if (stepX != 0 && stepZ != 0) {
-                        collisionFound = false;
-                        playerZ = playerStartZ + (stepZ * (i - 1));
-                        for (int z = 0; z < 2 && !collisionFound; z++)
-                            for (int x = 0; x < 2 && !collisionFound; x++) {
-                                tmpX = (int) (playerX - 0.2 + (x * 0.4));
-                                tmpZ = (int) (playerZ - 0.2 + (z * 0.4));
-                                if (collisionMap != null && 0 <= tmpX && tmpX < collisionMap.length && 0 <= tmpZ
-                                        && tmpZ < collisionMap[tmpX].length)
-                                    collisionFound = collisionMap[tmpX][tmpZ];
-                                else
-                                    collisionFound = false;
-                            }
-                        if (!collisionFound) {
-                            correctX = playerX;
-                            correctZ = playerZ;
-                        } else {
-                            collisionFound = false;
-                            playerX = playerStartX + (stepX * (i - 1));
-                            playerZ = playerStartZ + (stepZ * i);
-                            for (int z = 0; z < 2 && !collisionFound; z++)
-                                for (int x = 0; x < 2 && !collisionFound; x++) {
-                                    tmpX = (int) (playerX - 0.2 + (x * 0.4));
-                                    tmpZ = (int) (playerZ - 0.2 + (z * 0.4));
-                                    if (collisionMap != null && 0 <= tmpX && tmpX < collisionMap.length && 0 <= tmpZ
-                                            && tmpZ < collisionMap[tmpX].length)
-                                        collisionFound = collisionMap[tmpX][tmpZ];
-                                    else
-                                        collisionFound = false;
-                                }
-                            if (!collisionFound) {
-                                correctX = playerX;
-                                correctZ = playerZ;
-                            }
-                        }
-                    }
+                final BoundingBoxTree collisionVolumeTree = level.getCollisionVolumeTree();
+                final CollisionGrid collisionGrid = level.getCollisionGrid();
+                if (collisionVolumeTree != null) {
+                    // sweeps the bounding box of the player against the
+                    // collision volumes of the level, in the frame of the map
+                    playerStartPosition.set(playerStartX, playerStartZ, 0.5);
+                    playerEndPosition.set(playerEndX, playerEndZ, 0.5);
+                    collisionVolumeTree.resolveMovement(playerStartPosition, playerHalfExtents, playerEndPosition,
+                            correctPosition);
+                    collisionVolumeMovementCount++;
+                    // checks that the player didn't get into a volume, only
+                    // when debugging as it costs another query
+                    if (collisionVolumePenetrationChecked
+                            && collisionVolumeTree.intersects(correctPosition, playerHalfExtents))
+                        collisionVolumePenetrationCount++;
+                    correctX = correctPosition.getX();
+                    correctZ = correctPosition.getY();
+                } else if (collisionGrid != null) {
+                    final int stepCount = (int) Math.ceil(distance / CollisionGrid.STEP_LENGTH);
+                    collisionGrid.resolveMovement(playerStartX, playerStartZ, playerEndX, playerEndZ, stepCount,
+                            correctPosition);
+                    correctX = correctPosition.getX();
+                    correctZ = correctPosition.getZ();
+                } else {// no collision, nothing to prevent the player from
+                        // moving
+                    correctX = playerEndX;
+                    correctZ = playerEndZ;
                 }
                 // updates the current location
                 playerNode.setTranslation(correctX, 0.5, correctZ);
@@ -657,9 +744,35 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
                 cam.setLocation(playerNode.getTranslation());
                 if (level.getSkyboxModel() != null)
                     level.getSkyboxModel().setTranslation(playerNode.getTranslation());
+                frameProfiler.end(Scope.MOVEMENT);
+                frameProfiler.begin(Scope.COLLECTIBLES);
+                // keeps only the objects and the teleporters near the player
+                final double playerMinX, playerMinZ, playerMaxX, playerMaxZ;
+                final BoundingVolume playerWorldBound = playerNode.getWorldBound();
+                if (playerWorldBound instanceof BoundingBox) {
+                    final BoundingBox playerBoundingBox = (BoundingBox) playerWorldBound;
+                    // the world bound may not include the latest translation
+                    // yet
+                    final double xExtent = playerBoundingBox.getXExtent() + distance;
+                    final double zExtent = playerBoundingBox.getZExtent() + distance;
+                    playerMinX = playerBoundingBox.getCenter().getX() - xExtent;
+                    playerMinZ = playerBoundingBox.getCenter().getZ() - zExtent;
+                    playerMaxX = playerBoundingBox.getCenter().getX() + xExtent;
+                    playerMaxZ = playerBoundingBox.getCenter().getZ() + zExtent;
+                } else {
+                    playerMinX = correctX - broadPhaseCellSize;
+                    playerMinZ = correctZ - broadPhaseCellSize;
+                    playerMaxX = correctX + broadPhaseCellSize;
+                    playerMaxZ = correctZ + broadPhaseCellSize;
+                }
+                collectibleObjectsCandidates.clear();
+                collectibleObjectsGrid.query(playerMinX, playerMinZ, playerMaxX, playerMaxZ,
+                        collectibleObjectsCandidates);
+                teleportersCandidates.clear();
+                teleportersGrid.query(playerMinX, playerMinZ, playerMaxX, playerMaxZ, teleportersCandidates);
                 // checks if any object is collected
-                for (int i = collectibleObjectsList.size() - 1, collectedSubElementsCount; i >= 0; i--) {
-                    final Node collectibleNode = collectibleObjectsList.get(i);
+                for (int i = collectibleObjectsCandidates.size() - 1, collectedSubElementsCount; i >= 0; i--) {
+                    final Node collectibleNode = collectibleObjectsCandidates.get(i);
                     PickingUtil.findCollisions(collectibleNode, playerNode, collisionResults);
                     if (collisionResults.getNumber() > 0) {// tries to collect
                                                            // the object (update
@@ -671,7 +784,8 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
                                                             // the list of
                                                             // collectible
                                                             // objects
-                            collectibleObjectsList.remove(i);
+                            collectibleObjectsList.remove(collectibleNode);
+                            collectibleObjectsGrid.remove(collectibleNode);
                             if (collectibleNode.getParent() != null)
                                 // detach this object from its parent so that it
                                 // is no more visible
@@ -696,10 +810,12 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
                     }
                     collisionResults.clear();
                 }
+                frameProfiler.end(Scope.COLLECTIBLES);
+                frameProfiler.begin(Scope.TELEPORTERS);
                 // checks if any teleporter is used
                 boolean hasCollision = false;
-                for (int i = teleportersList.size() - 1; i >= 0 && !hasCollision; i--) {
-                    final Node teleporterNode = teleportersList.get(i);
+                for (int i = teleportersCandidates.size() - 1; i >= 0 && !hasCollision; i--) {
+                    final Node teleporterNode = teleportersCandidates.get(i);
                     PickingUtil.findCollisions(teleporterNode, playerNode, collisionResults);
                     hasCollision = collisionResults.getNumber() > 0;
                     collisionResults.clear();
@@ -718,6 +834,7 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
                         if (!wasBeingTeleported) {// the player enters a
                                                   // teleporter
                             wasBeingTeleported = true;
+                            gameStats.setUsedTeleportersCount(gameStats.getUsedTeleportersCount() + 1);
                             TeleporterUserData teleporterUserData = (TeleporterUserData) teleporterNode.getUserData();
                             final Vector3 teleporterDestination = teleporterUserData.getDestination();
                             final String teleporterDestinationLevelIdentifier = teleporterUserData
@@ -771,181 +888,165 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
                 // if the player is not on any teleporter
                 if (!hasCollision)
                     wasBeingTeleported = false;
+                frameProfiler.end(Scope.TELEPORTERS);
+                frameProfiler.begin(Scope.PROJECTILES);
                 // handles the collisions between enemies and projectiles
-                HashSet<Node> projectilesToRemove = new HashSet<>();
-                ArrayList<EnemyData> editedEnemiesData = new ArrayList<>();
-                // filters data to keep only the valid opponents
-                final List<Spatial> reachableOpponents = new ArrayList<>();
-                for (Spatial child : getRoot().getChildren()) {
-                    if ((enemiesDataMap.keySet().contains(child) || child.equals(playerNode)))
-                        reachableOpponents.add(child);
+                enemyTable.clearHitFlags();
+                // builds the acceleration structure over the valid opponents
+                hitScanTree.clear();
+                for (int enemyIndex = 0; enemyIndex < enemyTable.size(); enemyIndex++) {
+                    final Mesh enemyMesh = enemyTable.getMesh(enemyIndex);
+                    if (enemyMesh.getParent() == getRoot())
+                        hitScanTree.add(enemyMesh, enemyMesh.getWorldBound());
                 }
-                for (Entry<Node, ProjectileData> projectileEntry : projectilesMap.entrySet()) {
-                    final Node projectileNode = projectileEntry.getKey();
-                    final ProjectileData projectileData = projectileEntry.getValue();
-                    hasCollision = false;
+                if (playerNode.getParent() == getRoot())
+                    hitScanTree.add(playerNode, playerNode.getWorldBound());
+                hitScanTree.build();
+                // the projectiles launched after this check are checked during
+                // the next frame
+                checkedProjectileCount = projectilePool.getActiveCount();
+                for (int projectileIndex = 0; projectileIndex < checkedProjectileCount; projectileIndex++) {
+                    final Node projectileNode = projectilePool.getActiveNode(projectileIndex);
+                    final ProjectileData projectileData = projectilePool.getActiveData(projectileIndex);
                     // prevents the originator from committing a suicide
                     final Spatial originator = getRoot().getChild(projectileData.getOriginator());
-                    reachableOpponents.remove(originator);
-                    // sorts the opponents to perform a collision check on the
-                    // closest one
-                    projectileDataOpponentsComparator.setProjectileData(projectileData);
-                    Collections.sort(reachableOpponents, projectileDataOpponentsComparator);
-                    projectileDataOpponentsComparator.setProjectileData(null);
-                    for (Spatial child : reachableOpponents) {
-                        if (enemiesDataMap.keySet().contains(child)) {
-                            Ray3 ray = new Ray3(projectileNode.getTranslation(),
-                                    projectileNode.getTransform().getMatrix().getColumn(2, null));
-                            BoundingPickResults results = new BoundingPickResults();
-                            PickingUtil.findPick(child, ray, results);
-                            hasCollision = results.getNumber() > 0;
-                            results.clear();
-                            if (hasCollision) {
-                                /**
-                                 * TODO - Create a data model (for the enemy)
-                                 * containing the current state, the health, the
-                                 * ammunition, ... As a first step, it should be
-                                 * very limited. On the long term, it will have
-                                 * to be homogeneous with the data model used
-                                 * for the player so that any enemy can behave
-                                 * like a bot in the arena mode - Create another
-                                 * controller to modify the view depending on
-                                 * the changes in the data model
-                                 */
-                                // attempts to kill this enemy
-                                final EnemyData soldierData = enemiesDataMap.get(child);
-                                editedEnemiesData.add(soldierData);
-                                final KeyframeController<Mesh> soldierKeyframeController = (KeyframeController<Mesh>) child
-                                        .getController(0);
-                                if (soldierData.isAlive()) {
-                                    soldierData.decreaseHealth(25);
-                                    // stops at the last frame of the set in the
-                                    // supplied time frame
-                                    soldierKeyframeController.setRepeatType(RepeatType.CLAMP);
-                                    // selects randomly the death kind
-                                    final int localFrameIndex;
-                                    if (soldierData.isAlive())
-                                        localFrameIndex = 3 + random.nextInt(3);
-                                    else {
-                                        localFrameIndex = random.nextInt(3);
-                                        gameStats.setKilledEnemiesCount(gameStats.getKilledEnemiesCount() + 1);
-                                    }
-                                    final MD2FrameSet frameSet;
-                                    switch (localFrameIndex) {
-                                    case 0:
-                                        frameSet = MD2FrameSet.DEATH_FALLFORWARD;
-                                        break;
-                                    case 1:
-                                        frameSet = MD2FrameSet.DEATH_FALLBACK;
-                                        break;
-                                    case 2:
-                                        frameSet = MD2FrameSet.DEATH_FALLBACKSLOW;
-                                        break;
-                                    case 3:
-                                        frameSet = MD2FrameSet.PAIN_A;
-                                        break;
-                                    case 4:
-                                        frameSet = MD2FrameSet.PAIN_B;
-                                        break;
-                                    case 5:
-                                        frameSet = MD2FrameSet.PAIN_C;
-                                        break;
-                                    default:
-                                        frameSet = null;
-                                    }
-                                    if (frameSet != null) {
-                                        soldierKeyframeController.setSpeed(frameSet.getFramesPerSecond());
-                                        soldierKeyframeController.setCurTime(frameSet.getFirstFrameIndex());
-                                        soldierKeyframeController.setMinTime(frameSet.getFirstFrameIndex());
-                                        soldierKeyframeController.setMaxTime(frameSet.getLastFrameIndex());
-                                        final Mesh soldierWeaponMesh = (Mesh) getRoot()
-                                                .getChild((getRoot().getChildren().indexOf(child) + 1));
-                                        if (localFrameIndex >= 3) {
-                                            final KeyframeController<Mesh> soldierWeaponKeyframeController = (KeyframeController<Mesh>) soldierWeaponMesh
-                                                    .getController(0);
-                                            soldierWeaponKeyframeController.setSpeed(frameSet.getFramesPerSecond());
-                                            soldierWeaponKeyframeController.setCurTime(frameSet.getFirstFrameIndex());
-                                            soldierWeaponKeyframeController.setMinTime(frameSet.getFirstFrameIndex());
-                                            soldierWeaponKeyframeController.setMaxTime(frameSet.getLastFrameIndex());
-                                        } else {
-                                            // there are only 173 frames for weapons
-                                            soldierWeaponMesh.setVisible(false);
-                                        }
+                    // finds the nearest opponent hit by the projectile
+                    projectileNode.getTransform().getMatrix().getColumn(2, projectileDirection);
+                    final int hitOpponentIndex = hitScanTree.castRay(projectileNode.getTranslation(),
+                            projectileDirection, originator);
+                    if (hitOpponentIndex != -1) {
+                        final Spatial child = hitScanTree.getTarget(hitOpponentIndex);
+                        final int soldierIndex = enemyTable.indexOf(child);
+                        if (soldierIndex != -1) {
+                            /**
+                             * TODO - Create a data model (for the enemy)
+                             * containing the current state, the health, the
+                             * ammunition, ... As a first step, it should be
+                             * very limited. On the long term, it will have
+                             * to be homogeneous with the data model used
+                             * for the player so that any enemy can behave
+                             * like a bot in the arena mode - Create another
+                             * controller to modify the view depending on
+                             * the changes in the data model
+                             */
+                            // attempts to kill this enemy
+                            enemyTable.setHit(soldierIndex, true);
+                            final KeyframeController<Mesh> soldierKeyframeController = (KeyframeController<Mesh>) child
+                                    .getController(0);
+                            if (enemyTable.isAlive(soldierIndex)) {
+                                enemyTable.decreaseHealth(soldierIndex, 25);
+                                // stops at the last frame of the set in the
+                                // supplied time frame
+                                soldierKeyframeController.setRepeatType(RepeatType.CLAMP);
+                                // selects randomly the death kind
+                                final int localFrameIndex;
+                                if (enemyTable.isAlive(soldierIndex))
+                                    localFrameIndex = 3 + random.nextInt(3);
+                                else {
+                                    localFrameIndex = random.nextInt(3);
+                                    gameStats.setKilledEnemiesCount(gameStats.getKilledEnemiesCount() + 1);
+                                }
+                                final MD2FrameSet frameSet;
+                                switch (localFrameIndex) {
+                                case 0:
+                                    frameSet = MD2FrameSet.DEATH_FALLFORWARD;
+                                    break;
+                                case 1:
+                                    frameSet = MD2FrameSet.DEATH_FALLBACK;
+                                    break;
+                                case 2:
+                                    frameSet = MD2FrameSet.DEATH_FALLBACKSLOW;
+                                    break;
+                                case 3:
+                                    frameSet = MD2FrameSet.PAIN_A;
+                                    break;
+                                case 4:
+                                    frameSet = MD2FrameSet.PAIN_B;
+                                    break;
+                                case 5:
+                                    frameSet = MD2FrameSet.PAIN_C;
+                                    break;
+                                default:
+                                    frameSet = null;
+                                }
+                                if (frameSet != null) {
+                                    enemyTable.setAnimation(soldierIndex, frameSet);
+                                    soldierKeyframeController.setSpeed(frameSet.getFramesPerSecond());
+                                    soldierKeyframeController.setCurTime(frameSet.getFirstFrameIndex());
+                                    soldierKeyframeController.setMinTime(frameSet.getFirstFrameIndex());
+                                    soldierKeyframeController.setMaxTime(frameSet.getLastFrameIndex());
+                                    final Mesh soldierWeaponMesh = enemyTable.getWeaponMesh(soldierIndex);
+                                    if (localFrameIndex >= 3) {
+                                        final KeyframeController<Mesh> soldierWeaponKeyframeController = (KeyframeController<Mesh>) soldierWeaponMesh
+                                                .getController(0);
+                                        soldierWeaponKeyframeController.setSpeed(frameSet.getFramesPerSecond());
+                                        soldierWeaponKeyframeController.setCurTime(frameSet.getFirstFrameIndex());
+                                        soldierWeaponKeyframeController.setMinTime(frameSet.getFirstFrameIndex());
+                                        soldierWeaponKeyframeController.setMaxTime(frameSet.getLastFrameIndex());
+                                    } else {
+                                        // there are only 173 frames for weapons
+                                        soldierWeaponMesh.setVisible(false);
                                     }
-                                    // plays a sound if the enemy is not dead
-                                    final double healthFactor = Math.max(0.0d,
-                                            Math.min((double) soldierData.getHealth(), 100.0d)) / 100.0d;
-                                    // FIXME store the identifier into another
-                                    // data structure within this state
-                                    final Enemy enemy = enemyFactory.get("SOLDIER");
-                                    final int painSoundSampleCount = enemy.getPainSoundSampleCount();
-                                    final int painSoundSampleIndex = painSoundSampleCount - 1
-                                            - Math.max(0,
-                                                    Math.min(
-                                                            (int) Math.rint(Math.floor(
-                                                                    healthFactor * (double) painSoundSampleCount)),
-                                                    painSoundSampleCount - 1));
-                                    final String painSoundSampleIdentifier = enemy
-                                            .getPainSoundSampleIdentifier(painSoundSampleIndex);
-                                    getSoundManager().play(false, false, painSoundSampleIdentifier);
                                 }
-                                // FIXME only remove the projectile if it
-                                // doesn't pass through the enemy
-                                projectilesToRemove.add(projectileNode);
-                                break;
+                                // plays a sound if the enemy is not dead
+                                final double healthFactor = Math.max(0.0d,
+                                        Math.min((double) enemyTable.getHealth(soldierIndex), 100.0d)) / 100.0d;
+                                // FIXME store the identifier into another
+                                // data structure within this state
+                                final Enemy enemy = enemyFactory.get("SOLDIER");
+                                final int painSoundSampleCount = enemy.getPainSoundSampleCount();
+                                final int painSoundSampleIndex = painSoundSampleCount - 1
+                                        - Math.max(0,
+                                                Math.min(
+                                                        (int) Math.rint(Math.floor(
+                                                                healthFactor * (double) painSoundSampleCount)),
+                                                painSoundSampleCount - 1));
+                                final String painSoundSampleIdentifier = enemy
+                                        .getPainSoundSampleIdentifier(painSoundSampleIndex);
+                                getSoundManager().play(false, false, painSoundSampleIdentifier);
                             }
-                        } else if (child.equals(playerNode)) {
-                            Ray3 ray = new Ray3(projectileNode.getTranslation(),
-                                    projectileNode.getTransform().getMatrix().getColumn(2, null));
-                            BoundingPickResults results = new BoundingPickResults();
-                            PickingUtil.findPick(child, ray, results);
-                            hasCollision = results.getNumber() > 0;
-                            results.clear();
-                            if (hasCollision) {
-                                if (playerData.isAlive()) {
-                                    playerData.decreaseHealth(10);
-                                    final double healthFactor = Math.max(0.0d,
-                                            Math.min((double) playerData.getHealth(), 100.0d)) / 100.0d;
-                                    final int painSoundSampleIndex = painSoundSampleIdentifiers.length - 1
-                                            - Math.max(0,
-                                                    Math.min(
-                                                            (int) Math.rint(Math.floor(healthFactor
-                                                                    * (double) painSoundSampleIdentifiers.length)),
-                                                    painSoundSampleIdentifiers.length - 1));
-                                    getSoundManager().play(false, false,
-                                            painSoundSampleIdentifiers[painSoundSampleIndex]);
-                                }
-                                // FIXME only remove the projectile if it
-                                // doesn't pass through the player
-                                projectilesToRemove.add(projectileNode);
-                                break;
+                            // FIXME only remove the projectile if it
+                            // doesn't pass through the enemy
+                        } else if (child == playerNode) {
+                            if (playerData.isAlive()) {
+                                playerData.decreaseHealth(10);
+                                final double healthFactor = Math.max(0.0d,
+                                        Math.min((double) playerData.getHealth(), 100.0d)) / 100.0d;
+                                final int painSoundSampleIndex = painSoundSampleIdentifiers.length - 1
+                                        - Math.max(0,
+                                                Math.min(
+                                                        (int) Math.rint(Math.floor(healthFactor
+                                                                * (double) painSoundSampleIdentifiers.length)),
+                                                painSoundSampleIdentifiers.length - 1));
+                                getSoundManager().play(false, false,
+                                        painSoundSampleIdentifiers[painSoundSampleIndex]);
                             }
+                            // FIXME only remove the projectile if it
+                            // doesn't pass through the player
                         }
                     }
-                    // resets the list of opponents
-                    reachableOpponents.add(originator);
                 }
                 // FIXME only remove "infinite" rays
                 // as all projectiles are designed with rays, they shouldn't
-                // stay in the data model any longer
-                projectilesToRemove.addAll(projectilesMap.keySet());
+                // stay in the data model any longer, the checked projectiles
+                // are removed below
+                frameProfiler.end(Scope.PROJECTILES);
+                frameProfiler.begin(Scope.ENEMIES);
                 // FIXME move this logic into a state machine
-                for (Entry<Mesh, EnemyData> enemyEntry : enemiesDataMap.entrySet()) {
-                    final EnemyData enemyData = enemyEntry.getValue();
-                    if (!editedEnemiesData.contains(enemyData) && enemyData.isAlive()) {
-                        final Mesh enemyMesh = enemyEntry.getKey();
-                        //FIXME use getParent()?
-                        final Mesh enemyWeaponMesh = (Mesh) getRoot()
-                                .getChild((getRoot().getChildren().indexOf(enemyMesh) + 1));
+                perceptionScheduler.beginFrame(absoluteElapsedTimeInNanoseconds);
+                for (int enemyIndex = 0; enemyIndex < enemyTable.size(); enemyIndex++) {
+                    if (!enemyTable.isHit(enemyIndex) && enemyTable.isAlive(enemyIndex)) {
+                        final Mesh enemyMesh = enemyTable.getMesh(enemyIndex);
+                        final Mesh enemyWeaponMesh = enemyTable.getWeaponMesh(enemyIndex);
                         final KeyframeController<Mesh> enemyKeyframeController = (KeyframeController<Mesh>) enemyMesh
                                 .getController(0);
                         final KeyframeController<Mesh> enemyWeaponKeyframeController = (KeyframeController<Mesh>) enemyWeaponMesh
                                 .getController(0);
                         // if this enemy is not yet idle and if he has finished
                         // his latest animation
-                        if (/* enemyKeyframeController.isRepeatTypeClamp()&& */
-                        enemyKeyframeController.getMaxTime() != MD2FrameSet.STAND.getLastFrameIndex()) {
+                        if (enemyTable.getAnimation(enemyIndex) != MD2FrameSet.STAND) {
                             if (enemyKeyframeController.getCurTime() > enemyKeyframeController.getMaxTime()) {
+                                enemyTable.setAnimation(enemyIndex, MD2FrameSet.STAND);
                                 enemyKeyframeController.setRepeatType(RepeatType.WRAP);
                                 // uses the "stand" animation
                                 enemyKeyframeController.setSpeed(MD2FrameSet.STAND.getFramesPerSecond());
@@ -959,89 +1060,112 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
                                 enemyWeaponKeyframeController.setMinTime(MD2FrameSet.STAND.getFirstFrameIndex());
                                 enemyWeaponKeyframeController.setMaxTime(MD2FrameSet.STAND.getLastFrameIndex());
                             }
-                        } else {
-                            Long latestDetectionObj = enemiesLatestDetection.get(enemyData);
-                            if ((latestDetectionObj == null
-                                    || absoluteElapsedTimeInNanoseconds - latestDetectionObj.longValue() >= 1000000000)
-                                    && playerData.isAlive()) {
-                                enemiesLatestDetection.put(enemyData, Long.valueOf(absoluteElapsedTimeInNanoseconds));
-                                // checks whether the player is in front of this
-                                // enemy (defensive behavior)
-                                final Ray3 fromPlayerToEnemyRay = new Ray3(playerNode.getTranslation(),
-                                        playerNode.getTransform().getMatrix().getColumn(2, null));
-                                final BoundingPickResults results = new BoundingPickResults();
-                                PickingUtil.findPick(enemyMesh, fromPlayerToEnemyRay, results);
-                                hasCollision = results.getNumber() > 0;
-                                results.clear();
-                                if (hasCollision) {
-                                    final Ray3 fromEnemyToPlayerRay = new Ray3(enemyMesh.getTranslation(), 
-                                            enemyMesh.getTransform().getMatrix().getColumn(2, null));
-                                    PickingUtil.findPick(playerNode, fromEnemyToPlayerRay, results);
-                                    hasCollision = results.getNumber() > 0;
-                                    results.clear();
-                                    // checks whether this enemy is in front of the player
-                                    if (hasCollision) {
-                                        //TODO this enemy should remember that this player is a threat for him
-                                        // it's worth opening fire
-                                        // uses the "attack" animation
-                                        final MD2FrameSet frameSet = MD2FrameSet.ATTACK;
-                                        enemyKeyframeController.setRepeatType(RepeatType.CLAMP);
-                                        enemyKeyframeController.setSpeed(frameSet.getFramesPerSecond());
-                                        enemyKeyframeController.setCurTime(frameSet.getFirstFrameIndex());
-                                        enemyKeyframeController.setMinTime(frameSet.getFirstFrameIndex());
-                                        enemyKeyframeController.setMaxTime(frameSet.getLastFrameIndex());
-
-                                        enemyWeaponKeyframeController.setRepeatType(RepeatType.CLAMP);
-                                        enemyWeaponKeyframeController.setSpeed(frameSet.getFramesPerSecond());
-                                        enemyWeaponKeyframeController.setCurTime(frameSet.getFirstFrameIndex());
-                                        enemyWeaponKeyframeController.setMinTime(frameSet.getFirstFrameIndex());
-                                        enemyWeaponKeyframeController.setMaxTime(frameSet.getLastFrameIndex());
-
-                                        // creates a new projectile
-                                        createEnemyProjectile(enemyData, enemyMesh, enemyWeaponMesh);
-                                        getSoundManager().play(false, false, enemyShotgunShotSampleIdentifier);
-                                    } else {
-                                        final MD2FrameSet frameSet = MD2FrameSet.RUN;
-                                        enemyKeyframeController.setRepeatType(RepeatType.CLAMP);
-                                        enemyKeyframeController.setSpeed(frameSet.getFramesPerSecond());
-                                        enemyKeyframeController.setCurTime(frameSet.getFirstFrameIndex());
-                                        enemyKeyframeController.setMinTime(frameSet.getFirstFrameIndex());
-                                        enemyKeyframeController.setMaxTime(frameSet.getLastFrameIndex());
-
-                                        enemyWeaponKeyframeController.setRepeatType(RepeatType.CLAMP);
-                                        enemyWeaponKeyframeController.setSpeed(frameSet.getFramesPerSecond());
-                                        enemyWeaponKeyframeController.setCurTime(frameSet.getFirstFrameIndex());
-                                        enemyWeaponKeyframeController.setMinTime(frameSet.getFirstFrameIndex());
-                                        enemyWeaponKeyframeController.setMaxTime(frameSet.getLastFrameIndex());
-                                        
-                                        // previous enemy direction, extracts the forward vector of the rotation matrix
-                                        final Vector3 previousEnemyDirection = enemyMesh.getTransform().getMatrix().getColumn(2, null).normalizeLocal();
-                                        // vector from the enemy to the player
-                                        final Vector3 nextEnemyDirection = playerNode.getTranslation().subtract(enemyMesh.getTranslation(), null).normalizeLocal();
-                                        // rotation from the previous direction to the next direction
-                                        final Quaternion fromPreviousToNextEnemyDirectionRotation = new Quaternion().fromVectorToVector(previousEnemyDirection, nextEnemyDirection);
-                                        // previous rotation
-                                        final Quaternion startQuat = new Quaternion().fromRotationMatrix(enemyMesh.getRotation());
-                                        // next rotation
-                                        final Quaternion endQuat = startQuat.multiply(fromPreviousToNextEnemyDirectionRotation, null);
-                                        // current rotation
-                                        //TODO start rotating here and use SLERP step by step in the next frames instead of rotating completely now
-                                        final Quaternion currentQuat = Quaternion.slerp(startQuat, endQuat, 1.0, null);
-                                        // current rotation as a matrix
-                                        final Matrix3 enemyFacingPlayerMatrix = currentQuat.toRotationMatrix((Matrix3) null);
-                                        // applies the current rotation to the enemy and to his weapon
-                                        enemyMesh.setRotation(enemyFacingPlayerMatrix);
-                                        enemyWeaponMesh.setRotation(enemyFacingPlayerMatrix);
-                                    }
-                                }
-                            }
+                        } else if (playerData.isAlive()) {
+                            // submits the perception check, it will be
+                            // performed later if it's due
+                            perceptionScheduler.offer(enemyIndex, enemyTable.getLatestDetectionTime(enemyIndex),
+                                    enemyMesh.getTranslation().distance(playerNode.getTranslation()),
+                                    enemyTable.isPlayerSeen(enemyIndex));
                         }
                     }
                 }
-                for (Node projectileToRemove : projectilesToRemove) {
-                    projectilesMap.remove(projectileToRemove);
-                    getRoot().detachChild(projectileToRemove);
+                // performs the most urgent perception checks within the budget
+                // of this frame, the others are deferred
+                final int scheduledCheckCount = perceptionScheduler.schedule();
+                for (int checkRank = 0; checkRank < scheduledCheckCount; checkRank++) {
+                    final int enemyIndex = perceptionScheduler.getScheduledEnemyIndex(checkRank);
+                    final Mesh enemyMesh = enemyTable.getMesh(enemyIndex);
+                    final Mesh enemyWeaponMesh = enemyTable.getWeaponMesh(enemyIndex);
+                    final KeyframeController<Mesh> enemyKeyframeController = (KeyframeController<Mesh>) enemyMesh
+                            .getController(0);
+                    final KeyframeController<Mesh> enemyWeaponKeyframeController = (KeyframeController<Mesh>) enemyWeaponMesh
+                            .getController(0);
+                    enemyTable.setLatestDetectionTime(enemyIndex, absoluteElapsedTimeInNanoseconds);
+                    // checks whether the player is in front of this
+                    // enemy (defensive behavior)
+                    final Ray3 fromPlayerToEnemyRay = new Ray3(playerNode.getTranslation(),
+                            playerNode.getTransform().getMatrix().getColumn(2, null));
+                    final BoundingPickResults results = new BoundingPickResults();
+                    PickingUtil.findPick(enemyMesh, fromPlayerToEnemyRay, results);
+                    hasCollision = results.getNumber() > 0;
+                    results.clear();
+                    // the next check is delayed if this enemy can't see the
+                    // player, wherever the player looks at
+                    enemyTable.setPlayerSeen(enemyIndex, isLineOfSightFree(enemyMesh.getTranslation()));
+                    // the sweep of the line of sight counts as a ray
+                    if (!hasCollision)
+                        perceptionScheduler.reportCheck(2);
+                    else {
+                        final Ray3 fromEnemyToPlayerRay = new Ray3(enemyMesh.getTranslation(), 
+                                enemyMesh.getTransform().getMatrix().getColumn(2, null));
+                        PickingUtil.findPick(playerNode, fromEnemyToPlayerRay, results);
+                        hasCollision = results.getNumber() > 0;
+                        results.clear();
+                        perceptionScheduler.reportCheck(3);
+                        // checks whether this enemy is in front of the player
+                        if (hasCollision) {
+                            //TODO this enemy should remember that this player is a threat for him
+                            // it's worth opening fire
+                            // uses the "attack" animation
+                            final MD2FrameSet frameSet = MD2FrameSet.ATTACK;
+                            enemyTable.setAnimation(enemyIndex, frameSet);
+                            enemyKeyframeController.setRepeatType(RepeatType.CLAMP);
+                            enemyKeyframeController.setSpeed(frameSet.getFramesPerSecond());
+                            enemyKeyframeController.setCurTime(frameSet.getFirstFrameIndex());
+                            enemyKeyframeController.setMinTime(frameSet.getFirstFrameIndex());
+                            enemyKeyframeController.setMaxTime(frameSet.getLastFrameIndex());
+
+                            enemyWeaponKeyframeController.setRepeatType(RepeatType.CLAMP);
+                            enemyWeaponKeyframeController.setSpeed(frameSet.getFramesPerSecond());
+                            enemyWeaponKeyframeController.setCurTime(frameSet.getFirstFrameIndex());
+                            enemyWeaponKeyframeController.setMinTime(frameSet.getFirstFrameIndex());
+                            enemyWeaponKeyframeController.setMaxTime(frameSet.getLastFrameIndex());
+
+                            // creates a new projectile
+                            createEnemyProjectile(enemyMesh, enemyWeaponMesh);
+                            getSoundManager().play(false, false, enemyShotgunShotSampleIdentifier);
+                        } else {
+                            final MD2FrameSet frameSet = MD2FrameSet.RUN;
+                            enemyTable.setAnimation(enemyIndex, frameSet);
+                            enemyKeyframeController.setRepeatType(RepeatType.CLAMP);
+                            enemyKeyframeController.setSpeed(frameSet.getFramesPerSecond());
+                            enemyKeyframeController.setCurTime(frameSet.getFirstFrameIndex());
+                            enemyKeyframeController.setMinTime(frameSet.getFirstFrameIndex());
+                            enemyKeyframeController.setMaxTime(frameSet.getLastFrameIndex());
+
+                            enemyWeaponKeyframeController.setRepeatType(RepeatType.CLAMP);
+                            enemyWeaponKeyframeController.setSpeed(frameSet.getFramesPerSecond());
+                            enemyWeaponKeyframeController.setCurTime(frameSet.getFirstFrameIndex());
+                            enemyWeaponKeyframeController.setMinTime(frameSet.getFirstFrameIndex());
+                            enemyWeaponKeyframeController.setMaxTime(frameSet.getLastFrameIndex());
+                            
+                            // previous enemy direction, extracts the forward vector of the rotation matrix
+                            final Vector3 previousEnemyDirection = enemyMesh.getTransform().getMatrix().getColumn(2, null).normalizeLocal();
+                            // vector from the enemy to the player
+                            final Vector3 nextEnemyDirection = playerNode.getTranslation().subtract(enemyMesh.getTranslation(), null).normalizeLocal();
+                            // rotation from the previous direction to the next direction
+                            final Quaternion fromPreviousToNextEnemyDirectionRotation = new Quaternion().fromVectorToVector(previousEnemyDirection, nextEnemyDirection);
+                            // previous rotation
+                            final Quaternion startQuat = new Quaternion().fromRotationMatrix(enemyMesh.getRotation());
+                            // next rotation
+                            final Quaternion endQuat = startQuat.multiply(fromPreviousToNextEnemyDirectionRotation, null);
+                            // current rotation
+                            //TODO start rotating here and use SLERP step by step in the next frames instead of rotating completely now
+                            final Quaternion currentQuat = Quaternion.slerp(startQuat, endQuat, 1.0, null);
+                            // current rotation as a matrix
+                            final Matrix3 enemyFacingPlayerMatrix = currentQuat.toRotationMatrix((Matrix3) null);
+                            // applies the current rotation to the enemy and to his weapon
+                            enemyMesh.setRotation(enemyFacingPlayerMatrix);
+                            enemyWeaponMesh.setRotation(enemyFacingPlayerMatrix);
+                        }
+                    }
                 }
+                frameProfiler.end(Scope.ENEMIES);
+                frameProfiler.begin(Scope.PROJECTILES);
+                // puts back the checked projectiles into the pool
+                projectilePool.releaseOldest(checkedProjectileCount);
+                checkedProjectileCount = 0;
+                frameProfiler.end(Scope.PROJECTILES);
                 if (playerData.isAlive()) {
                     fpsc.setKeyRotateSpeed(customMouseAndKeyboardSettings.getKeyRotateSpeed());
                     fpsc.setMouseRotateSpeed(customMouseAndKeyboardSettings.getMouseRotateSpeed());
@@ -1073,95 +1197,60 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
                         }
                     }
                 }
-                // looks for any changes in the objectives statuses
-                final List<Objective> updatedObjectives = new ArrayList<>();
-                for (Objective objective : level.getObjectives()) {
-                    // retrieves the previous and current objective statuses
-                    final ObjectiveStatus previousObjectiveStatus = previousObjectivesStatusesMap.get(objective);
-                    final ObjectiveStatus currentObjectiveStatus = objective.getStatus(gameStats);
-                    // if the objective status has just changed
-                    if (previousObjectiveStatus != currentObjectiveStatus) {
-                        updatedObjectives.add(objective);
-                        // updates the map
-                        previousObjectivesStatusesMap.put(objective, currentObjectiveStatus);
-                    }
-                }
-                if (!updatedObjectives.isEmpty()) {
-                    final StringBuilder builder = new StringBuilder();
-                    if (updatedObjectives.size() == 1)
-                        builder.append("Updated objective:");
-                    else
-                        builder.append("Updated objectives:");
-                    boolean allObjectivesAreCompleted = true;
-                    for (Objective objective : updatedObjectives) {
-                        builder.append("\n");
-                        builder.append(objective.getDescription());
-                        builder.append(": ");
-                        final ObjectiveStatus status = previousObjectivesStatusesMap.get(objective);
-                        builder.append(status.toString());
-                        if (status != ObjectiveStatus.COMPLETED && allObjectivesAreCompleted)
-                            allObjectivesAreCompleted = false;
-                    }
-                    // updates the panel
-                    objectivesDisplayLabel.setText(builder.toString());
-                    if (allObjectivesAreCompleted) {
-                        // plays a sound as all updated objectives are completed
-                        getSoundManager().play(false, false, victory0SoundSampleIdentifier);
+                frameProfiler.begin(Scope.OBJECTIVES);
+                // computes the statuses of the objectives only when the
+                // counters they depend on have changed
+                if (objectiveTracker.hasStaleObjectives()) {
+                    final List<Objective> updatedObjectives = new ArrayList<>();
+                    if (objectiveTracker.update(updatedObjectives) > 0) {
+                        final StringBuilder builder = new StringBuilder();
+                        if (updatedObjectives.size() == 1)
+                            builder.append("Updated objective:");
+                        else
+                            builder.append("Updated objectives:");
+                        boolean allObjectivesAreCompleted = true;
+                        for (Objective objective : updatedObjectives) {
+                            builder.append("\n");
+                            builder.append(objective.getDescription());
+                            builder.append(": ");
+                            final ObjectiveStatus status = objectiveTracker.getStatus(objective);
+                            builder.append(status.toString());
+                            if (status != ObjectiveStatus.COMPLETED && allObjectivesAreCompleted)
+                                allObjectivesAreCompleted = false;
+                        }
+                        // updates the panel
+                        objectivesDisplayLabel.setText(builder.toString());
+                        if (allObjectivesAreCompleted) {
+                            // plays a sound as all updated objectives are completed
+                            getSoundManager().play(false, false, victory0SoundSampleIdentifier);
+                            // the player is likely to go to the next level
+                            preloadLevel(level.getNextLevelIdentifier());
+                        }
                     }
                 }
+                frameProfiler.end(Scope.OBJECTIVES);
+                frameProfiler.begin(Scope.PLAYER_STATE_MACHINE);
                 // updates the state machine of the player
                 playerWithStateMachine.updateLogicalLayer(timer);
+                frameProfiler.end(Scope.PLAYER_STATE_MACHINE);
+                final LevelStreamingManager streamingManager = level.getStreamingManager();
+                if (streamingManager != null) {
+                    frameProfiler.begin(Scope.STREAMING);
+                    // attaches the loaded tiles and detaches the far ones
+                    streamingManager.update(playerNode.getTranslation());
+                    frameProfiler.end(Scope.STREAMING);
+                }
             }
 
-            private void createEnemyProjectile(EnemyData enemyData, Mesh enemyMesh, Mesh enemyWeaponMesh) {
-                final Vector3 initialLocation = new Vector3(enemyWeaponMesh.getWorldBound().getCenter());
-                final String originator = enemyMesh.getName();
-                final double initialSpeed = 350.0 / 1000000000.0;
-                final double initialAcceleration = 0;
-                final Vector3 initialDirection = enemyWeaponMesh.getWorldTransform().getMatrix().getColumn(2, null);
-                final long initialTimeInNanos = timer.getElapsedTimeInNanoseconds();
-                final ProjectileData projectileData = new ProjectileData(originator, initialLocation, initialSpeed,
-                        initialAcceleration, initialDirection, initialTimeInNanos);
-                final Node projectileNode = new Node(projectileData.toString());
-                NodeHelper.setModelBound(projectileNode, BoundingBox.class);
-                projectileNode.setTransform(enemyWeaponMesh.getWorldTransform());
-                projectileNode.setTranslation(initialLocation);
-                final Mesh projectileMesh = createProjectileMesh(null, projectileData);
-                projectileNode.attachChild(projectileMesh);
-                projectileNode.addController(new ProjectileController(timer, projectileData));
-                // stores it for a further use
-                projectilesMap.put(projectileNode, projectileData);
+            private void createEnemyProjectile(Mesh enemyMesh, Mesh enemyWeaponMesh) {
+                final Node projectileNode = projectilePool.acquire(enemyMesh.getName(),
+                        enemyWeaponMesh.getWorldTransform(), enemyWeaponMesh.getWorldBound().getCenter(),
+                        350.0 / 1000000000.0, 0, timer.getElapsedTimeInNanoseconds());
                 getRoot().attachChild(projectileNode);
             }
-
-            private Mesh createProjectileMesh(final Weapon weapon, final ProjectileData projectileData) {
-                // TODO support several kinds of projectile with different sizes
-                Mesh projectileMesh = new Mesh("Mesh@" + projectileData.toString());
-                MeshData projectileMeshData = new MeshData();
-                projectileMeshData.setVertexBuffer(projectileVertexBuffer);
-                projectileMesh.setMeshData(projectileMeshData);
-                return (projectileMesh);
-            }
         });
     }
 
-    private static final class ProjectileDataOpponentsComparator implements Comparator<Spatial> {
-
-        private ProjectileData projectileData;
-
-        @Override
-        public int compare(final Spatial opponent0, final Spatial opponent1) {
-            final double distance0 = opponent0.getWorldTranslation().distance(projectileData.getInitialLocation());
-            final double distance1 = opponent1.getWorldTranslation().distance(projectileData.getInitialLocation());
-            final int compareFactor = distance0 == distance1 ? 0 : distance0 < distance1 ? -1 : 1;
-            return (compareFactor);
-        }
-
-        public void setProjectileData(final ProjectileData projectileData) {
-            this.projectileData = projectileData;
-        }
-    }
-
     /**
      * logical entity allowing to manipulate a player used as a link between the
      * state machine and the player data
@@ -1436,10 +1525,12 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
         return (ammoTextLabel);
     }
 
-    private final BasicText initializeFpsTextLabel() {
-        final BasicText fpsTextLabel = BasicText.createDefaultTextLabel("FPS display", "");
-        fpsTextLabel.setTranslation(new Vector3(0, 20, 0));
-        fpsTextLabel.addController(new SpatialController<>() {
+    private final BasicText initializeFrameProfilerTextLabel() {
+        final BasicText frameProfilerTextLabel = BasicText.createDefaultTextLabel("Frame profiler display", "");
+        frameProfilerTextLabel.setTranslation(new Vector3(0, 20, 0));
+        frameProfilerTextLabel.addController(new SpatialController<>() {
+
+            private final StringBuilder builder = new StringBuilder();
 
             private double period;
 
@@ -1448,9 +1539,27 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
             @Override
             public final void update(double timePerFrame, Spatial caller) {
                 if (period > 1) {
-                    final int framesPerSecond = (int) Math
-                            .round(frameCount > 0 && period > 0 ? frameCount / period : 0);
-                    fpsTextLabel.setText(" " + framesPerSecond + " FPS");
+                    builder.setLength(0);
+                    if (frameProfiler.isEnabled() && frameProfiler.getFrameCount() > 0) {
+                        // uses the durations of the rendered frames, the
+                        // simulation can advance several times per frame
+                        final double averageFrameDuration = frameProfiler.getAverageFrameDuration();
+                        builder.append(' ').append(
+                                averageFrameDuration > 0 ? Math.round(1000000000.0 / averageFrameDuration) : 0);
+                        builder.append(" FPS\n");
+                        frameProfiler.appendBreakdown(builder);
+                        // the breakdown is too long to be under the other
+                        // labels, it's shown in the top left corner
+                        frameProfilerTextLabel.setAlign(BMText.Align.NorthWest);
+                        frameProfilerTextLabel.setTranslation(0, playerNode.getCamera().getHeight(), 0);
+                    } else {
+                        final int framesPerSecond = (int) Math
+                                .round(frameCount > 0 && period > 0 ? frameCount / period : 0);
+                        builder.append(' ').append(framesPerSecond).append(" FPS");
+                        frameProfilerTextLabel.setAlign(BMText.Align.SouthWest);
+                        frameProfilerTextLabel.setTranslation(0, 20, 0);
+                    }
+                    frameProfilerTextLabel.setText(builder.toString());
                     period = timePerFrame;
                     frameCount = 1;
                 } else {
@@ -1459,7 +1568,7 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
                 }
             }
         });
-        return (fpsTextLabel);
+        return (frameProfilerTextLabel);
     }
 
     private final BasicText initializeHealthTextLabel() {
@@ -1668,13 +1777,198 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
 
     protected void setLevelIdentifier(final String levelIdentifier) {
         final Level level = levelFactory.get(levelIdentifier);
+        if (residentLevel == level)
+            residentLevelHitCount++;
+        else if (residentLevel != null) {
+            // evicts the resident level as another level is played, its
+            // textures first as its models are removed with its buffers
+            performTexturesDataCleanup(residentLevel);
+            performDirectNioBuffersCleanup(residentLevel);
+            residentLevel = null;
+        }
+        // keeps the preloaded data of this level, releases the others
+        levelPreloader.commit(level);
         this.level = level;
     }
 
+    /**
+     * Requests the preload of a level likely to be played next
+     *
+     * @param levelIdentifier
+     *            identifier of the level, can be null
+     */
+    public void preloadLevel(final String levelIdentifier) {
+        final Level nextLevel = levelIdentifier == null ? null : levelFactory.get(levelIdentifier);
+        // the data of the level being played mustn't be released by a
+        // cancellation
+        if (nextLevel != null && (nextLevel != level || level.getMainModel() == null) && nextLevel != residentLevel)
+            levelPreloader.request(nextLevel);
+    }
+
+    /**
+     * Requests the preload of the level the most likely to be played from the
+     * main menu, i.e the latest unlocked level
+     */
+    public void preloadLatestUnlockedLevel() {
+        for (int levelIndex = levelFactory.getSize() - 1; levelIndex >= 0; levelIndex--) {
+            final String levelIdentifier = levelFactory.get(levelIndex).getIdentifier();
+            if (profileData.containsUnlockedLevelIdentifier(levelIdentifier)) {
+                preloadLevel(levelIdentifier);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the preloader of the level likely to be played next, it gives
+     * access to the counters of hits, misses and cancellations
+     *
+     * @return the preloader of the level likely to be played next
+     */
+    public LevelPreloader getLevelPreloader() {
+        return (levelPreloader);
+    }
+
+    /**
+     * Returns the count of levels started with the level kept in memory, i.e
+     * the restarts of the latest played level that didn't reload it
+     *
+     * @return the count of levels started with the level kept in memory
+     */
+    public int getResidentLevelHitCount() {
+        return (residentLevelHitCount);
+    }
+
+    /**
+     * Returns the count of movements of the player resolved against the
+     * collision volumes of the level
+     *
+     * @return the count of movements of the player resolved against the
+     *         collision volumes
+     */
+    public long getCollisionVolumeMovementCount() {
+        return (collisionVolumeMovementCount);
+    }
+
+    public boolean isCollisionVolumePenetrationChecked() {
+        return (collisionVolumePenetrationChecked);
+    }
+
+    /**
+     * Enables or disables the check of the movements of the player resolved
+     * against the collision volumes, it costs another query per movement and
+     * it's intended for debugging
+     *
+     * @param collisionVolumePenetrationChecked
+     *            <code>true</code> to count the movements that end inside a
+     *            volume
+     */
+    public void setCollisionVolumePenetrationChecked(final boolean collisionVolumePenetrationChecked) {
+        this.collisionVolumePenetrationChecked = collisionVolumePenetrationChecked;
+    }
+
+    /**
+     * Returns the count of movements of the player resolved against the
+     * collision volumes that ended inside a volume when they're checked, it
+     * should remain zero
+     *
+     * @return the count of movements of the player that ended inside a
+     *         collision volume
+     */
+    public long getCollisionVolumePenetrationCount() {
+        return (collisionVolumePenetrationCount);
+    }
+
     public String getLevelLabel() {
         return (level.getLabel());
     }
 
+    /**
+     * Returns the scheduler of the perception checks, it gives access to the
+     * counters of performed and deferred checks
+     *
+     * @return the scheduler of the perception checks
+     */
+    public PerceptionScheduler getPerceptionScheduler() {
+        return (perceptionScheduler);
+    }
+
+    /**
+     * Returns the level of detail of the animations of the enemies, it gives
+     * access to the counters of performed and skipped interpolations
+     *
+     * @return the level of detail of the animations of the enemies
+     */
+    public KeyframeAnimationLod getAnimationLod() {
+        return (animationLod);
+    }
+
+    /**
+     * Returns the cache of the templates of the animated models, it gives
+     * access to the counters of hits, misses and evictions
+     *
+     * @return the cache of the templates of the animated models
+     */
+    public ModelTemplateCache getModelTemplateCache() {
+        return (modelTemplateCache);
+    }
+
+    public TextureResidencyManager getTextureResidencyManager() {
+        return (textureResidencyManager);
+    }
+
+    /**
+     * Returns the streaming manager of the current level, it gives access to
+     * the resident bytes and to the latencies of the tiles
+     *
+     * @return the streaming manager of the current level, null if it isn't
+     *         chunked or if the streaming is disabled
+     */
+    public LevelStreamingManager getLevelStreamingManager() {
+        return (level == null ? null : level.getStreamingManager());
+    }
+
+    /**
+     * Returns the pool of the projectiles
+     *
+     * @return the pool of the projectiles
+     */
+    public ProjectilePool getProjectilePool() {
+        return (projectilePool);
+    }
+
+    /**
+     * Returns the profiler of the main loop and of the game logic
+     *
+     * @return the profiler of the main loop and of the game logic
+     */
+    public FrameProfiler getFrameProfiler() {
+        return (frameProfiler);
+    }
+
+    @Override
+    public void storePreviousTransforms() {
+        transformInterpolator.clear();
+        // the camera and the enemies are the only moving objects rendered
+        // long enough to make the steps visible
+        transformInterpolator.storePreviousCameraFrame(playerNode.getCamera());
+        transformInterpolator.storePreviousTransform(playerNode);
+        for (int enemyIndex = 0; enemyIndex < enemyTable.size(); enemyIndex++) {
+            transformInterpolator.storePreviousTransform(enemyTable.getMesh(enemyIndex));
+            transformInterpolator.storePreviousTransform(enemyTable.getWeaponMesh(enemyIndex));
+        }
+    }
+
+    @Override
+    public void interpolateTransforms(final double alpha) {
+        transformInterpolator.interpolate(alpha);
+    }
+
+    @Override
+    public void restoreTransforms() {
+        transformInterpolator.restore();
+    }
+
     /**
      * loads the sound samples
      */
@@ -1956,8 +2250,31 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
     }
     
     private final void loadLevelModel() {
-        final Node levelMainModel = level.loadMainModel();
-        if ("1".equals(level.getIdentifier())) {
+        // the main model of a resident level already contains the posters
+        final boolean resident = level == residentLevel;
+        final Node levelMainModel = level.loadMainModel(levelStreamingRadius);
+        final LevelStreamingManager streamingManager = level.getStreamingManager();
+        if (streamingManager != null) {
+            if (!resident) {
+                final Renderer renderer = canvas.getCanvasRenderer().getRenderer();
+                // deletes the VBOs and the textures of the detached tiles on
+                // the rendering thread
+                streamingManager.setTileDisposer(tileNode -> GameTaskQueueManager
+                        .getManager(canvas.getCanvasRenderer().getRenderContext()).getQueue(GameTaskQueue.RENDER)
+                        .enqueue(new Callable<Void>() {
+                            @Override
+                            public Void call() throws Exception {
+                                tileNode.acceptVisitor(new VBODeleterVisitor(renderer), false);
+                                tileNode.acceptVisitor(new TextureDeleterVisitor(renderer, textureResidencyManager),
+                                        false);
+                                return null;
+                            }
+                        }));
+            }
+            // loads the tiles around the initial location of the player
+            streamingManager.preload(currentCamLocation);
+        }
+        if ("1".equals(level.getIdentifier()) && !resident) {
             // adds the posters into the level
             final Box butWhatDoesThePoliceItBurstsTheEyesPoster = loadPoster("Mais_que_fait_la_police_ca_crève_les_yeux.png", 0.5, 0.5, 0.01, (float) 0.6767578125, (float) 0.6767578125);
             butWhatDoesThePoliceItBurstsTheEyesPoster.setTranslation(new Vector3(115.5, 0.5, 214.01));
@@ -1975,11 +2292,13 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
     }
 
     private final void performInitialBasicSetup() {
-        if ("0".equals(level.getIdentifier()) || "1".equals(level.getIdentifier())) {
-            // the two first levels use a collision map
+        level.readCollisionVolumes();
+        if (level.getCollisionVolumeTree() == null
+                && ("0".equals(level.getIdentifier()) || "1".equals(level.getIdentifier()))) {
+            // the two first levels use a collision map when they have no
+            // collision volumes
             level.readCollisionMap();
         }
-        level.readCollisionVolumes();
         // FIXME it should not be hard-coded
         // TODO get the location from the argument of the transition
         switch (level.getIdentifier()) {
@@ -2014,7 +2333,7 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
         // attaches the ammunition display node
         getRoot().attachChild(ammoTextLabel);
         // attaches the FPS display node
-        getRoot().attachChild(fpsTextLabel);
+        getRoot().attachChild(frameProfilerTextLabel);
         // attaches the health display node
         getRoot().attachChild(healthTextLabel);
         // attaches the HUD node
@@ -2040,20 +2359,32 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
     }
 
     private final void performTerminalBasicCleanup() {
-        if (level.getMainModel() != null)
-            level.getMainModel().detachAllChildren();
-        if (level.getSkyboxModel() != null)
-            level.getSkyboxModel().detachAllChildren();
+        if (level != residentLevel) {
+            if (level.getMainModel() != null)
+                level.getMainModel().detachAllChildren();
+            if (level.getSkyboxModel() != null)
+                level.getSkyboxModel().detachAllChildren();
+        }
         // clears the list of objects that can be picked up
         collectibleObjectsList.clear();
         // clears the list of teleporters
         teleportersList.clear();
+        // clears the broad phase
+        collectibleObjectsGrid.clear();
+        teleportersGrid.clear();
         // clears the data model used for the enemies
-        enemiesDataMap.clear();
-        enemiesLatestDetection.clear();
+        enemyTable.clear();
+        perceptionScheduler.resetCounters();
+        animationLod.resetCounters();
+        transformInterpolator.clear();
+        // puts back the remaining projectiles into the pool
+        projectilePool.releaseAll();
         // removes all previously attached children
         getRoot().detachAllChildren();
-        previousObjectivesStatusesMap = null;
+        if (objectiveTracker != null) {
+            objectiveTracker.dispose();
+            objectiveTracker = null;
+        }
         toPauseMenuTriggerAction.arguments.setObjectives(null);
         toPauseMenuTriggerActionForExitConfirm.arguments.setObjectives(null);
         toGameOverTriggerAction.arguments.setObjectives(null);
@@ -2073,6 +2404,41 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
             else
                 return (ObjectiveStatus.UNCOMPLETED);
         }
+
+        @Override
+        public Set<Statistic> getDependencies() {
+            return (EnumSet.of(Statistic.ENEMIES_COUNT, Statistic.KILLED_ENEMIES_COUNT));
+        }
+    }
+
+    /**
+     * Adds a static node into a broad phase, at the position passed to the
+     * level, with a footprint big enough to contain its bounds
+     *
+     * @param grid
+     *            broad phase
+     * @param node
+     *            static node
+     */
+    private static void addIntoBroadPhase(final SpatialHashGrid<Node> grid, final Node node) {
+        node.updateGeometricState(0, true);
+        final ReadOnlyVector3 position = node.getTranslation();
+        double radius = 0;
+        final BoundingVolume worldBound = node.getWorldBound();
+        if (worldBound != null) {
+            final ReadOnlyVector3 boundCenter = worldBound.getCenter();
+            final double xRadius, zRadius;
+            if (worldBound instanceof BoundingBox) {
+                xRadius = ((BoundingBox) worldBound).getXExtent();
+                zRadius = ((BoundingBox) worldBound).getZExtent();
+            } else {
+                xRadius = worldBound.getRadius();
+                zRadius = xRadius;
+            }
+            radius = Math.max(Math.abs(boundCenter.getX() - position.getX()) + xRadius,
+                    Math.abs(boundCenter.getZ() - position.getZ()) + zRadius);
+        }
+        grid.add(node, position.getX(), position.getZ(), radius);
     }
 
     private final void performTerminalBasicSetup() {
@@ -2081,13 +2447,22 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
             NodeHelper.setModelBound(collectible, BoundingBox.class);
         for (Node currentTeleporter : teleportersList)
             NodeHelper.setModelBound(currentTeleporter, BoundingBox.class);
+        // fills the broad phase with the static objects
+        for (Node collectible : collectibleObjectsList)
+            addIntoBroadPhase(collectibleObjectsGrid, collectible);
+        for (Node currentTeleporter : teleportersList)
+            addIntoBroadPhase(teleportersGrid, currentTeleporter);
+        // creates the projectiles before the first shot
+        projectilePool.preallocate();
+        projectilePool.resetCounters();
         // resets the timer at the end of all long operations performed while
         // loading
         timer.reset();
         if (level.getSkyboxModel() != null)
             level.getSkyboxModel().setTranslation(currentCamLocation);
-        gameStats.setEnemiesCount(enemiesDataMap.size());
-        previousObjectivesStatusesMap = new HashMap<>();
+        gameStats.setEnemiesCount(enemyTable.size());
+        objectiveTracker = new ObjectiveTracker(level.getObjectives(), gameStats,
+                gameStats.getStatisticChangeSupport(), playerData.getStatisticChangeSupport());
         toPauseMenuTriggerAction.arguments.setObjectives(level.getObjectives());
         toPauseMenuTriggerActionForExitConfirm.arguments.setObjectives(level.getObjectives());
         toGameOverTriggerAction.arguments.setObjectives(level.getObjectives());
@@ -2099,7 +2474,6 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
             else
                 builder.append("Objectives:");
             for (Objective objective : level.getObjectives()) {
-                previousObjectivesStatusesMap.put(objective, objective.getStatus(gameStats));
                 builder.append("\n");
                 builder.append(objective.getDescription());
             }
@@ -2114,7 +2488,7 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
         // detaches the ammunition display node
         getRoot().detachChild(ammoTextLabel);
         // detaches the FPS display node
-        getRoot().detachChild(fpsTextLabel);
+        getRoot().detachChild(frameProfilerTextLabel);
         // detaches the health display node
         getRoot().detachChild(healthTextLabel);
         // detaches the HUD node
@@ -2230,8 +2604,11 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
 
     /**
      * unloads direct NIO buffers
+     *
+     * @param disposedLevel
+     *            level whose spatials are disposed
      */
-    private final void performDirectNioBuffersCleanup() {
+    private final void performDirectNioBuffersCleanup(final Level disposedLevel) {
         // stores the spatials whose direct NIO buffers need to be disposed
         final HashSet<Spatial> disposableSpatials = new HashSet<>();
         // gets the renderer
@@ -2240,7 +2617,10 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
         // TODO use templates to create weapons and do the same than above with
         // them (get them from the list of collectible objects and from the
         // camera node)
-        disposableSpatials.addAll(level.removeDisposableSpatials());
+        disposableSpatials.addAll(disposedLevel.removeDisposableSpatials());
+        // the native memory of the buffers of the main model can be released
+        // only once they are no longer used
+        final DirectBufferArena bufferArena = disposedLevel.removeBufferArena();
         // performs the destruction with a single callable
         GameTaskQueueManager.getManager(canvas.getCanvasRenderer().getRenderContext()).getQueue(GameTaskQueue.RENDER)
                 .enqueue(new Callable<Void>() {
@@ -2248,12 +2628,20 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
                     public Void call() throws Exception {
                         // builds the visitor
                         final VBODeleterVisitor deleter = new VBODeleterVisitor(renderer);
-                        // runs it on all disposable spatials
-                        for (Spatial spatial : disposableSpatials)
+                        // the tiles detached by the streaming manager aren't
+                        // visited by the cleanup of the textures of the level
+                        final TextureDeleterVisitor textureDeleter = new TextureDeleterVisitor(renderer,
+                                textureResidencyManager);
+                        // runs them on all disposable spatials
+                        for (Spatial spatial : disposableSpatials) {
                             spatial.acceptVisitor(deleter, false);
+                            spatial.acceptVisitor(textureDeleter, false);
+                        }
                         // clears the list of disposable spatials as it is now
                         // useless
                         disposableSpatials.clear();
+                        if (bufferArena != null)
+                            bufferArena.close();
                         return null;
                     }
                 });
@@ -2263,9 +2651,13 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
 
         private final Renderer renderer;
 
-        private TextureDeleterVisitor(final Renderer renderer) {
+        private final TextureResidencyManager textureResidencyManager;
+
+        private TextureDeleterVisitor(final Renderer renderer,
+                final TextureResidencyManager textureResidencyManager) {
             super();
             this.renderer = renderer;
+            this.textureResidencyManager = textureResidencyManager;
         }
 
         @Override
@@ -2280,9 +2672,18 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
                 for (int textureUnit = 0; textureUnit < textureState.getMaxTextureIndexUsed(); textureUnit++) {
                     final Texture texture = textureState.getTexture(textureUnit);
                     if (texture != null) {
+                        textureResidencyManager.unregister(texture);
                         // deletes the OpenGL identifier of the texture and
                         // releases the native memory of its direct NIO buffer
                         renderer.deleteTexture(texture);
+                        // the image is shared with the cache of the texture
+                        // manager, the next load of this texture has to decode
+                        // its image again
+                        if (texture.getTextureKey() != null)
+                            TextureManager.removeFromCache(texture.getTextureKey());
+                        if (texture.getImage() != null
+                                && texture.getImage() != TextureState.getDefaultTextureImage())
+                            texture.getImage().setData(new ArrayList<>());
                     }
                 }
                 // removes the textures from the texture state
@@ -2295,23 +2696,27 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
 
     /**
      * unloads the textures
+     *
+     * @param disposedLevel
+     *            level whose textures are disposed
      */
-    private final void performTexturesDataCleanup() {
+    private final void performTexturesDataCleanup(final Level disposedLevel) {
         // stores the spatials whose textures need to be disposed
         final HashSet<Spatial> disposableSpatials = new HashSet<>();
         // gets the renderer
         final Renderer renderer = canvas.getCanvasRenderer().getRenderer();
-        if (level.getMainModel() != null)
-            disposableSpatials.add(level.getMainModel());
-        if (level.getSkyboxModel() != null)
-            disposableSpatials.add(level.getSkyboxModel());
+        if (disposedLevel.getMainModel() != null)
+            disposableSpatials.add(disposedLevel.getMainModel());
+        if (disposedLevel.getSkyboxModel() != null)
+            disposableSpatials.add(disposedLevel.getSkyboxModel());
         // performs the destruction with a single callable
         GameTaskQueueManager.getManager(canvas.getCanvasRenderer().getRenderContext()).getQueue(GameTaskQueue.RENDER)
                 .enqueue(new Callable<Void>() {
                     @Override
                     public Void call() throws Exception {
                         // builds the visitor
-                        final TextureDeleterVisitor deleter = new TextureDeleterVisitor(renderer);
+                        final TextureDeleterVisitor deleter = new TextureDeleterVisitor(renderer,
+                                textureResidencyManager);
                         // runs it on all disposable spatials
                         for (Spatial spatial : disposableSpatials)
                             spatial.acceptVisitor(deleter, false);
@@ -2366,18 +2771,17 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
     }
 
     private final void loadEnemies() {
-        final List<Mesh> enemyMeshes = level.loadEnemyModels(enemyFactory);
+        final List<Mesh> enemyMeshes = level.loadEnemyModels(enemyFactory, animationLod, modelTemplateCache);
         if (enemyMeshes != null && !enemyMeshes.isEmpty()) {// TODO separate the
                                                             // body and the
                                                             // weapon(s)
-            boolean isEnemyWeaponMesh = false;
-            for (final Mesh enemyMesh : enemyMeshes) {
+            // the weapon of an enemy follows the enemy itself
+            for (int meshIndex = 0; meshIndex + 1 < enemyMeshes.size(); meshIndex += 2) {
+                final Mesh enemyMesh = enemyMeshes.get(meshIndex);
+                final Mesh enemyWeaponMesh = enemyMeshes.get(meshIndex + 1);
                 getRoot().attachChild(enemyMesh);
-                if (!isEnemyWeaponMesh) {
-                    final EnemyData enemyData = new EnemyData();
-                    enemiesDataMap.put(enemyMesh, enemyData);
-                }
-                isEnemyWeaponMesh = !isEnemyWeaponMesh;
+                getRoot().attachChild(enemyWeaponMesh);
+                enemyTable.add(enemyMesh, enemyWeaponMesh);
             }
         }
     }
@@ -2390,6 +2794,10 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
             @Override
             public Void call() throws Exception {
                 TextureManager.preloadCache(renderer);
+                // records the decoded images and evicts those of the uploaded
+                // textures beyond the budget
+                textureResidencyManager.register(getRoot());
+                textureResidencyManager.enforceBudget(renderContext.getGlContextRep());
                 return null;
             }
         });
@@ -2411,13 +2819,20 @@ public final class GameState extends ScenegraphStateWithCustomCameraParameters {
         taskManager.enqueueTask(new Runnable() {
             @Override
             public final void run() {
-                performDirectNioBuffersCleanup();
+                // keeps the level in memory if possible to restart it quickly
+                if (residentLevelEnabled && level.getLoadedDataSizeInBytes() <= residentLevelCeiling)
+                    residentLevel = level;
+                else {
+                    residentLevel = null;
+                    performDirectNioBuffersCleanup(level);
+                }
             }
         });
         taskManager.enqueueTask(new Runnable() {
             @Override
             public final void run() {
-                performTexturesDataCleanup();
+                if (level != residentLevel)
+                    performTexturesDataCleanup(level);
             }
         });
         taskManager.enqueueTask(new Runnable() {
@@ -17,8 +17,12 @@
  */
 package engine.statemachine;
 
+import engine.data.Statistic;
+import engine.data.StatisticChangeSupport;
+
 /**
- * Statistics of a game, brings together the score, the end status, ...
+ * Statistics of a game, brings together the score, the end status, ... The
+ * changes of the counters are published to the listeners subscribed to them
  * 
  * @author Julien Gouesse
  *
@@ -31,12 +35,26 @@ public class GameStatistics {
 
     private int killedEnemiesCount;
 
+    private int usedTeleportersCount;
+
+    private final StatisticChangeSupport statisticChangeSupport;
+
     /**
      * Constructor
      */
     public GameStatistics() {
         super();
+        statisticChangeSupport = new StatisticChangeSupport();
+    }
 
+    /**
+     * Returns the publisher of the changes of the counters (enemies count,
+     * killed enemies count, used teleporters count)
+     * 
+     * @return the publisher of the changes of the counters
+     */
+    public StatisticChangeSupport getStatisticChangeSupport() {
+        return (statisticChangeSupport);
     }
 
     public MissionStatus getMissionStatus() {
@@ -73,7 +91,9 @@ public class GameStatistics {
     public void setEnemiesCount(final int enemiesCount) {
         if (enemiesCount < 0)
             throw new IllegalArgumentException("The enemies count cannot be negative");
+        final int previousEnemiesCount = this.enemiesCount;
         this.enemiesCount = enemiesCount;
+        statisticChangeSupport.fireStatisticChanged(Statistic.ENEMIES_COUNT, previousEnemiesCount, enemiesCount);
     }
 
     public int getKilledEnemiesCount() {
@@ -83,7 +103,23 @@ public class GameStatistics {
     public void setKilledEnemiesCount(final int killedEnemiesCount) {
         if (killedEnemiesCount < 0)
             throw new IllegalArgumentException("The killed enemies count cannot be negative");
+        final int previousKilledEnemiesCount = this.killedEnemiesCount;
         this.killedEnemiesCount = killedEnemiesCount;
+        statisticChangeSupport.fireStatisticChanged(Statistic.KILLED_ENEMIES_COUNT, previousKilledEnemiesCount,
+                killedEnemiesCount);
+    }
+
+    public int getUsedTeleportersCount() {
+        return (usedTeleportersCount);
+    }
+
+    public void setUsedTeleportersCount(final int usedTeleportersCount) {
+        if (usedTeleportersCount < 0)
+            throw new IllegalArgumentException("The used teleporters count cannot be negative");
+        final int previousUsedTeleportersCount = this.usedTeleportersCount;
+        this.usedTeleportersCount = usedTeleportersCount;
+        statisticChangeSupport.fireStatisticChanged(Statistic.USED_TELEPORTERS_COUNT, previousUsedTeleportersCount,
+                usedTeleportersCount);
     }
 
     // TODO weapon of choice, shot total, kill total, head hits, body hits, limb
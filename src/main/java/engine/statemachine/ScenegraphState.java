@@ -52,6 +52,31 @@ public class ScenegraphState {
     public void init() {
     }
 
+    /**
+     * Stores the transforms interpolated during the rendering before a
+     * simulation step with a fixed time step, does nothing by default
+     */
+    public void storePreviousTransforms() {
+    }
+
+    /**
+     * Interpolates the transforms between the latest two simulation steps
+     * before the rendering, does nothing by default
+     * 
+     * @param alpha
+     *            interpolation factor, 0 for the previous step, 1 for the
+     *            latest step
+     */
+    public void interpolateTransforms(final double alpha) {
+    }
+
+    /**
+     * Restores the transforms of the latest simulation step after the
+     * rendering, does nothing by default
+     */
+    public void restoreTransforms() {
+    }
+
     public final boolean isEnabled() {
         return (this.enabled);
     }
@@ -30,15 +30,20 @@ import com.ardor3d.scenegraph.Node;
 import com.ardor3d.util.ReadOnlyTimer;
 
 import se.hiflyer.fettle.Action;
+import se.hiflyer.fettle.Arguments;
 import se.hiflyer.fettle.BasicConditions;
+import se.hiflyer.fettle.StateMachine;
 import engine.data.ProfileData;
 import engine.input.ActionMap;
 import engine.input.MouseAndKeyboardSettings;
 import engine.misc.FontStore;
+import engine.misc.FrameProfiler;
 import engine.misc.LocalizedMessageProvider;
 import engine.misc.SettingsProvider;
 import engine.sound.SoundManager;
 import engine.taskmanagement.TaskManager;
+import engine.telemetry.DirectMemoryLedger;
+import engine.telemetry.StateTransitionEvent;
 
 /**
  * state machine handling the main states of the scenegraph
@@ -48,9 +53,71 @@ import engine.taskmanagement.TaskManager;
  */
 public class ScenegraphStateMachine extends StateMachineWithScheduler<ScenegraphState, String> {
 
+    /**
+     * Exit action starting the flight recorder event of a transition before
+     * running the exit action of a state
+     */
+    private final class TransitionEventExitAction implements Action<ScenegraphState, String> {
+
+        private final Action<ScenegraphState, String> exitAction;
+
+        private TransitionEventExitAction(final Action<ScenegraphState, String> exitAction) {
+            this.exitAction = exitAction;
+        }
+
+        @Override
+        public void onTransition(final ScenegraphState from, final ScenegraphState to, final String event,
+                final Arguments args, final StateMachine<ScenegraphState, String> stateMachine) {
+            pendingTransitionEvent = new StateTransitionEvent();
+            pendingTransitionEvent.begin();
+            if (exitAction != null)
+                exitAction.onTransition(from, to, event, args, stateMachine);
+        }
+    }
+
+    /**
+     * Entry action running the entry action of a state and then committing the
+     * flight recorder event of the transition
+     */
+    private final class TransitionEventEntryAction implements Action<ScenegraphState, String> {
+
+        private final Action<ScenegraphState, String> entryAction;
+
+        private TransitionEventEntryAction(final Action<ScenegraphState, String> entryAction) {
+            this.entryAction = entryAction;
+        }
+
+        @Override
+        public void onTransition(final ScenegraphState from, final ScenegraphState to, final String event,
+                final Arguments args, final StateMachine<ScenegraphState, String> stateMachine) {
+            // the initial state has no exit action
+            final StateTransitionEvent transitionEvent;
+            if (pendingTransitionEvent == null) {
+                transitionEvent = new StateTransitionEvent();
+                transitionEvent.begin();
+            } else
+                transitionEvent = pendingTransitionEvent;
+            // the entry action can cause another transition
+            pendingTransitionEvent = null;
+            // the direct buffers recorded from now on are created in this
+            // state
+            DirectMemoryLedger.getInstance().setCurrentStateName(to == null ? null : to.getClass().getSimpleName());
+            if (entryAction != null)
+                entryAction.onTransition(from, to, event, args, stateMachine);
+            transitionEvent.setTransition(from, to, event);
+            transitionEvent.commit();
+        }
+    }
+
     /** switch node used to show only the nodes of a single state */
     private final StateMachineSwitchNode switchNode;
 
+    /**
+     * flight recorder event of the transition in progress between the exit
+     * action of the previous state and the entry action of the next state
+     */
+    private StateTransitionEvent pendingTransitionEvent;
+
     private final TaskManager taskManager;
 
     private final FontStore fontStore;
@@ -101,6 +168,12 @@ public class ScenegraphStateMachine extends StateMachineWithScheduler<Scenegraph
      *            provider of localized messages
      * @param settingsProvider
      *            provider of settings
+     * @param simulationTimer
+     *            timer of the simulation advancing with a fixed time step,
+     *            <code>null</code> if the simulation advances once per
+     *            rendered frame
+     * @param frameProfiler
+     *            profiler of the main loop and of the game logic
      */
     public ScenegraphStateMachine(final Node parent, final NativeCanvas canvas, final PhysicalLayer physicalLayer,
             final MouseManager mouseManager, final TriggerAction toggleScreenModeAction, final Runnable launchRunnable,
@@ -109,7 +182,8 @@ public class ScenegraphStateMachine extends StateMachineWithScheduler<Scenegraph
             final String gameVersion, final String gameRelease, final String readmeContent,
             final ActionMap defaultActionMap, final MouseAndKeyboardSettings defaultMouseAndKeyboardSettings,
             final int firstUnlockedLevelIndex, final LocalizedMessageProvider localizedMessageProvider,
-            final SettingsProvider settingsProvider) {
+            final SettingsProvider settingsProvider, final ReadOnlyTimer simulationTimer,
+            final FrameProfiler frameProfiler) {
         super(ScenegraphState.class, String.class, new ScenegraphState());
         profileData = new ProfileData();
         profileData.load();
@@ -118,6 +192,8 @@ public class ScenegraphStateMachine extends StateMachineWithScheduler<Scenegraph
         soundManager = new SoundManager();
         final boolean soundEnabled = settingsProvider.isSoundEnabled();
         soundManager.setEnabled(soundEnabled);
+        DirectMemoryLedger.getInstance()
+                .setAllocationTraceRecorded(settingsProvider.isDirectMemoryAllocationTraceEnabled());
         if (defaultMouseAndKeyboardSettings == null) {
             this.defaultMouseAndKeyboardSettings = new MouseAndKeyboardSettings();
             this.defaultMouseAndKeyboardSettings.setKeyRotateSpeed(2.2);
@@ -296,7 +372,8 @@ public class ScenegraphStateMachine extends StateMachineWithScheduler<Scenegraph
         final GameState gameState = new GameState(canvas, physicalLayer, gameToPauseMenuTriggerAction,
                 gameToPauseMenuTriggerActionForExitConfirm, gameToGameOverTriggerAction, toggleScreenModeAction,
                 soundManager, taskManager, mouseManager, this.defaultActionMap, this.customActionMap,
-                this.defaultMouseAndKeyboardSettings, this.customMouseAndKeyboardSettings, profileData);
+                this.defaultMouseAndKeyboardSettings, this.customMouseAndKeyboardSettings, profileData,
+                settingsProvider, simulationTimer, frameProfiler);
         final LoadingDisplayState loadingDisplayState = new LoadingDisplayState(canvas, physicalLayer,
                 loadingDisplayToGameTriggerAction, loadingDisplayToUnloadingDisplayTriggerAction, soundManager,
                 taskManager, new StateInitializationRunnable<>(gameState), fontStore, localizedMessageProvider);
@@ -320,7 +397,8 @@ public class ScenegraphStateMachine extends StateMachineWithScheduler<Scenegraph
         addState(contentRatingSystemState, new ScenegraphStateEntryAction(), new ScenegraphStateExitAction());
         addState(initializationState, new ScenegraphStateEntryAction(), new ScenegraphStateExitAction());
         addState(introductionState, new ScenegraphStateEntryAction(), new ScenegraphStateExitAction());
-        addState(mainMenuState, new ScenegraphStateEntryAction(), new ScenegraphStateExitAction());
+        // uses an entry action to preload the level likely to be played
+        addState(mainMenuState, new MainMenuStateEntryAction(gameState), new ScenegraphStateExitAction());
         // uses an entry action to get the level index and pass it to the game
         // state
         addState(loadingDisplayState, new LoadingDisplayStateEntryAction(gameState), new ScenegraphStateExitAction());
@@ -328,12 +406,12 @@ public class ScenegraphStateMachine extends StateMachineWithScheduler<Scenegraph
         addState(pauseMenuState, new PauseMenuStateEntryAction(), new ScenegraphStateExitAction());
         // gets the figures from the argument of the transition in the entry
         // action and pass it to the game over state
-        addState(gameOverState, new GameOverStateEntryAction(), new GameOverStateExitAction());
+        addState(gameOverState, new GameOverStateEntryAction(gameState), new GameOverStateExitAction());
         addState(unloadingDisplayState,
                 new UnloadingDisplayStateEntryAction(scheduler, noPendingTaskCondition,
                         unloadingDisplayToExitGameTriggerAction, unloadingDisplayToMainMenuTriggerAction,
                         unloadingDisplayToLoadingDisplayTriggerAction),
-                new ScenegraphStateExitAction());
+                new UnloadingDisplayStateExitAction());
         addState(exitGameState, new ScenegraphStateEntryAction(), new ScenegraphStateExitAction());
         // adds all transitions between states to the transition model
         transitionModel.addTransition(initialState, contentRatingSystemState,
@@ -405,7 +483,7 @@ public class ScenegraphStateMachine extends StateMachineWithScheduler<Scenegraph
     @Override
     protected void addState(final ScenegraphState state, Action<ScenegraphState, String> entryAction,
             Action<ScenegraphState, String> exitAction) {
-        super.addState(state, entryAction, exitAction);
+        super.addState(state, new TransitionEventEntryAction(entryAction), new TransitionEventExitAction(exitAction));
         switchNode.attachChild(state.getRoot());
     }
 
@@ -424,4 +502,29 @@ public class ScenegraphStateMachine extends StateMachineWithScheduler<Scenegraph
         internalStateMachine.getCurrentState().getLogicalLayer().checkTriggers(timer.getTimePerFrame());
         super.updateLogicalLayer(timer);
     }
+
+    /**
+     * Stores the transforms of the current state before a simulation step
+     */
+    public void storePreviousTransforms() {
+        internalStateMachine.getCurrentState().storePreviousTransforms();
+    }
+
+    /**
+     * Interpolates the transforms of the current state before the rendering
+     * 
+     * @param alpha
+     *            interpolation factor, 0 for the previous step, 1 for the
+     *            latest step
+     */
+    public void interpolateTransforms(final double alpha) {
+        internalStateMachine.getCurrentState().interpolateTransforms(alpha);
+    }
+
+    /**
+     * Restores the transforms of the current state after the rendering
+     */
+    public void restoreTransforms() {
+        internalStateMachine.getCurrentState().restoreTransforms();
+    }
 }
@@ -22,6 +22,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map.Entry;
 
+import engine.telemetry.ScheduledTaskExecutionEvent;
+
 /**
  * Tool executing scheduled tasks by taking into account their conditions, their
  * delays and their execution count. It postpones the execution of a task when
@@ -87,6 +89,14 @@ public class Scheduler<S> {
         unschedulableTasks.add(scheduledTask);
     }
 
+    private void run(final ScheduledTask<S> scheduledTask, final boolean postponed) {
+        final Runnable runnable = scheduledTask.getRunnable();
+        final ScheduledTaskExecutionEvent event = new ScheduledTaskExecutionEvent(scheduledTask, runnable, postponed);
+        event.begin();
+        runnable.run();
+        event.commit();
+    }
+
     /**
      * Updates this scheduler by using the supplied states and the elapsed time
      * since the last frame
@@ -125,7 +135,7 @@ public class Scheduler<S> {
                                                                                          // run
                                                                                          // immediately
                 if (scheduledTask.getTimeOffsetInSeconds() == 0) {// runs it now
-                    scheduledTask.getRunnable().run();
+                    run(scheduledTask, false);
                     executedTasks.add(scheduledTask);
                 } else {// runs it later
                     queuedTasks.put(scheduledTask, Double.valueOf(scheduledTask.getTimeOffsetInSeconds()));
@@ -143,7 +153,7 @@ public class Scheduler<S> {
             final double currentRemainingTime = previousRemainingTime - timePerFrame;
             // if there is no remaining time
             if (currentRemainingTime <= 0) {// runs it now
-                queuedTask.getRunnable().run();
+                run(queuedTask, true);
                 executedTasks.add(queuedTask);
                 // removes it from the queued tasks as it does not need to be
                 // queued anymore
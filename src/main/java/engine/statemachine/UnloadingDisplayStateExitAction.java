@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.statemachine;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import engine.misc.SlabBufferPool;
+import engine.telemetry.DirectMemoryLedger;
+import se.hiflyer.fettle.Arguments;
+import se.hiflyer.fettle.StateMachine;
+
+/**
+ * Action used when exiting the unloading display state, it reports the direct
+ * buffers still outstanding once the latest level has been unloaded
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public class UnloadingDisplayStateExitAction extends ScenegraphStateExitAction {
+
+    private static final Logger LOGGER = Logger.getLogger(UnloadingDisplayStateExitAction.class.getName());
+
+    @Override
+    public void onTransition(ScenegraphState from, ScenegraphState to, String cause, Arguments args,
+            StateMachine<ScenegraphState, String> stateMachine) {
+        super.onTransition(from, to, cause, args, stateMachine);
+        // the blocks kept by the pool are free, they're no longer owned
+        LOGGER.log(Level.INFO, DirectMemoryLedger.getInstance().getReport() + "Slab pool: "
+                + (SlabBufferPool.getInstance().getFreeSizeInBytes() / 1024) + " KB of free buffers kept");
+    }
+}
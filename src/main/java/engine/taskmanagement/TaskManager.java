@@ -19,6 +19,8 @@ package engine.taskmanagement;
 
 import java.util.ArrayList;
 
+import engine.telemetry.TaskExecutionEvent;
+
 public final class TaskManager {
 
     private final ArrayList<Runnable> tasksQueue;
@@ -36,8 +38,13 @@ public final class TaskManager {
     }
 
     public final void executeFirstTask() {
-        if (!tasksQueue.isEmpty())
-            tasksQueue.remove(0).run();
+        if (!tasksQueue.isEmpty()) {
+            final Runnable task = tasksQueue.remove(0);
+            final TaskExecutionEvent event = new TaskExecutionEvent(task, tasksQueue.size());
+            event.begin();
+            task.run();
+            event.commit();
+        }
     }
 
     public final void executeAllTasks() {
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.telemetry;
+
+import java.nio.ByteBuffer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event emitted when a deallocation helper frees the native
+ * memory of a direct buffer. The stack trace is kept as it shows who released
+ * the buffer
+ * 
+ * @author Julien Gouesse
+ *
+ */
+@Name("engine.Deallocation")
+@Label("Direct Buffer Deallocation")
+@Category({ "Engine", "Memory" })
+@Description("Release of the native memory of a direct buffer by a deallocation helper")
+public final class DeallocationEvent extends Event {
+
+    @Label("Helper Class")
+    private final String helperClass;
+
+    @Label("Buffer Class")
+    private String bufferClass;
+
+    @Label("Capacity")
+    @DataAmount(DataAmount.BYTES)
+    private long capacity;
+
+    @Label("Deallocated")
+    @Description("Whether a deallocatable buffer has been found and freed")
+    private boolean deallocated;
+
+    /**
+     * Constructor
+     * 
+     * @param helper
+     *            deallocation helper
+     */
+    public DeallocationEvent(final Object helper) {
+        super();
+        this.helperClass = helper.getClass().getName();
+    }
+
+    /**
+     * Sets the freed buffer
+     * 
+     * @param buffer
+     *            buffer passed to the deallocation helper
+     * @param deallocatableBuffer
+     *            byte buffer whose memory has been freed, <code>null</code> if
+     *            none
+     * @param deallocated
+     *            <code>true</code> if the memory has been freed
+     */
+    public void setBuffer(final Object buffer, final ByteBuffer deallocatableBuffer,
+            final boolean deallocated) {
+        bufferClass = buffer == null ? null : buffer.getClass().getName();
+        capacity = deallocatableBuffer == null ? 0 : deallocatableBuffer.capacity();
+        this.deallocated = deallocated;
+    }
+}
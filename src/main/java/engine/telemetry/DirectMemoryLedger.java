@@ -0,0 +1,427 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.telemetry;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Ledger of the direct buffers, it tags each recorded buffer with its owner
+ * (level, state and asset) and marks it freed when the slab pool releases it,
+ * directly or on behalf of a deallocation helper. The buffers collected by the
+ * garbage collector without having been freed are counted apart. It allows to
+ * check that all buffers of a level are released once it's unloaded. The
+ * ledger is registered as a JMX MBean and it can be used by several threads.
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public final class DirectMemoryLedger implements DirectMemoryLedgerMXBean {
+
+    /**
+     * Owner of some direct buffers
+     */
+    public static final class Owner {
+
+        private final String levelIdentifier;
+
+        private final String stateName;
+
+        private final String assetPath;
+
+        private Owner(final String levelIdentifier, final String stateName, final String assetPath) {
+            super();
+            this.levelIdentifier = levelIdentifier;
+            this.stateName = stateName;
+            this.assetPath = assetPath;
+        }
+
+        public String getLevelIdentifier() {
+            return (levelIdentifier);
+        }
+
+        public String getStateName() {
+            return (stateName);
+        }
+
+        public String getAssetPath() {
+            return (assetPath);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            final boolean result;
+            if (o == this)
+                result = true;
+            else if (o == null || o.getClass() != getClass())
+                result = false;
+            else {
+                final Owner owner = (Owner) o;
+                result = Objects.equals(levelIdentifier, owner.levelIdentifier)
+                        && Objects.equals(stateName, owner.stateName) && Objects.equals(assetPath, owner.assetPath);
+            }
+            return (result);
+        }
+
+        @Override
+        public int hashCode() {
+            return (Objects.hash(levelIdentifier, stateName, assetPath));
+        }
+
+        @Override
+        public String toString() {
+            return ((levelIdentifier == null ? "no level" : "level " + levelIdentifier) + ", "
+                    + (stateName == null ? "no state" : stateName) + (assetPath == null ? "" : ", " + assetPath));
+        }
+    }
+
+    /**
+     * Scope during which the buffers recorded by the current thread belong to
+     * an asset of a level
+     */
+    public final class Scope implements AutoCloseable {
+
+        private final Scope previousScope;
+
+        private final String levelIdentifier;
+
+        private final String assetPath;
+
+        private Scope(final Scope previousScope, final String levelIdentifier, final String assetPath) {
+            super();
+            this.previousScope = previousScope;
+            this.levelIdentifier = levelIdentifier;
+            this.assetPath = assetPath;
+        }
+
+        @Override
+        public void close() {
+            currentScope.set(previousScope);
+        }
+    }
+
+    /**
+     * Recorded buffer, the buffer itself is weakly referenced so that the
+     * ledger doesn't prevent its collection
+     */
+    private static final class Allocation extends WeakReference<ByteBuffer> {
+
+        private final int identityHashCode;
+
+        private final Owner owner;
+
+        private final long sizeInBytes;
+
+        /** stack trace of the recording, null if not recorded */
+        private final Throwable trace;
+
+        /** next allocation with the same identity hash code */
+        private Allocation next;
+
+        private Allocation(final ByteBuffer buffer, final ReferenceQueue<ByteBuffer> queue, final Owner owner,
+                final Throwable trace) {
+            super(buffer, queue);
+            this.identityHashCode = System.identityHashCode(buffer);
+            this.owner = owner;
+            this.sizeInBytes = buffer.capacity();
+            this.trace = trace;
+        }
+    }
+
+    /**
+     * Totals of an owner
+     */
+    private static final class OwnerTotals {
+
+        private long allocatedBytes;
+
+        private long freedBytes;
+
+        private long collectedBytes;
+
+        private long outstandingBytes;
+
+        private int outstandingBufferCount;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(DirectMemoryLedger.class.getName());
+    /** maximum count of stack traces printed per owner */
+    private static final int MAX_TRACES_PER_OWNER = 3;
+    /** ledger shared by the whole program */
+    private static final DirectMemoryLedger instance = new DirectMemoryLedger();
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(instance,
+                    new ObjectName("engine.telemetry:type=DirectMemoryLedger"));
+        } catch (final JMException | SecurityException e) {
+            LOGGER.log(Level.WARNING, "Failed to register the ledger of the direct buffers as a MBean", e);
+        }
+    }
+
+    /** scopes of the threads */
+    private final ThreadLocal<Scope> currentScope;
+    /** recorded buffers by identity hash code */
+    private final HashMap<Integer, Allocation> allocations;
+    /** queue of the collected buffers */
+    private final ReferenceQueue<ByteBuffer> collectedBufferQueue;
+    /** totals by owner */
+    private final LinkedHashMap<Owner, OwnerTotals> ownerTotals;
+    /** name of the current state of the state machine, null if none */
+    private volatile String currentStateName;
+    /** flag indicating whether the stack traces of the recordings are kept */
+    private boolean allocationTraceRecorded;
+
+    private DirectMemoryLedger() {
+        super();
+        currentScope = new ThreadLocal<>();
+        allocations = new HashMap<>();
+        collectedBufferQueue = new ReferenceQueue<>();
+        ownerTotals = new LinkedHashMap<>();
+    }
+
+    public static DirectMemoryLedger getInstance() {
+        return (instance);
+    }
+
+    public String getCurrentStateName() {
+        return (currentStateName);
+    }
+
+    /**
+     * Sets the name of the current state, it's put into the owners of the
+     * buffers recorded later
+     * 
+     * @param currentStateName
+     *            name of the current state
+     */
+    public void setCurrentStateName(final String currentStateName) {
+        this.currentStateName = currentStateName;
+    }
+
+    /**
+     * Opens a scope during which the buffers recorded by the current thread
+     * belong to an asset of a level, it must be closed by the same thread
+     * 
+     * @param levelIdentifier
+     *            identifier of the level
+     * @param assetPath
+     *            path of the asset
+     * @return the new scope
+     */
+    public Scope openScope(final String levelIdentifier, final String assetPath) {
+        final Scope scope = new Scope(currentScope.get(), levelIdentifier, assetPath);
+        currentScope.set(scope);
+        return (scope);
+    }
+
+    @Override
+    public synchronized boolean isAllocationTraceRecorded() {
+        return (allocationTraceRecorded);
+    }
+
+    @Override
+    public synchronized void setAllocationTraceRecorded(final boolean allocationTraceRecorded) {
+        this.allocationTraceRecorded = allocationTraceRecorded;
+    }
+
+    /**
+     * Records a direct buffer, it belongs to the scope of the current thread
+     * 
+     * @param buffer
+     *            direct byte buffer owning its native memory
+     * @return <code>true</code> if the buffer has been recorded,
+     *         <code>false</code> if it was already recorded or if it isn't
+     *         direct
+     */
+    public boolean recordAllocation(final ByteBuffer buffer) {
+        boolean recorded = false;
+        if (buffer != null && buffer.isDirect()) {
+            final Scope scope = currentScope.get();
+            final Owner owner = scope == null ? new Owner(null, currentStateName, null)
+                    : new Owner(scope.levelIdentifier, currentStateName, scope.assetPath);
+            synchronized (this) {
+                expungeCollectedAllocations();
+                if (findAllocation(buffer) == null) {
+                    final Allocation allocation = new Allocation(buffer, collectedBufferQueue, owner,
+                            allocationTraceRecorded ? new Throwable("Allocation of " + buffer.capacity() + " bytes")
+                                    : null);
+                    final Integer key = Integer.valueOf(allocation.identityHashCode);
+                    allocation.next = allocations.get(key);
+                    allocations.put(key, allocation);
+                    final OwnerTotals totals = ownerTotals.computeIfAbsent(owner, o -> new OwnerTotals());
+                    totals.allocatedBytes += allocation.sizeInBytes;
+                    totals.outstandingBytes += allocation.sizeInBytes;
+                    totals.outstandingBufferCount++;
+                    recorded = true;
+                }
+            }
+        }
+        return (recorded);
+    }
+
+    /**
+     * Marks a recorded buffer freed
+     * 
+     * @param buffer
+     *            direct byte buffer owning its native memory
+     * @return <code>true</code> if the buffer was recorded
+     */
+    public synchronized boolean recordDeallocation(final ByteBuffer buffer) {
+        expungeCollectedAllocations();
+        final Allocation allocation = buffer == null ? null : findAllocation(buffer);
+        if (allocation != null) {
+            removeAllocation(allocation);
+            final OwnerTotals totals = ownerTotals.get(allocation.owner);
+            totals.freedBytes += allocation.sizeInBytes;
+            totals.outstandingBytes -= allocation.sizeInBytes;
+            totals.outstandingBufferCount--;
+        }
+        return (allocation != null);
+    }
+
+    private Allocation findAllocation(final ByteBuffer buffer) {
+        Allocation allocation = allocations.get(Integer.valueOf(System.identityHashCode(buffer)));
+        while (allocation != null && allocation.get() != buffer)
+            allocation = allocation.next;
+        return (allocation);
+    }
+
+    private void removeAllocation(final Allocation allocation) {
+        final Integer key = Integer.valueOf(allocation.identityHashCode);
+        Allocation previous = null;
+        Allocation current = allocations.get(key);
+        while (current != null && current != allocation) {
+            previous = current;
+            current = current.next;
+        }
+        if (current != null) {
+            if (previous != null)
+                previous.next = current.next;
+            else if (current.next != null)
+                allocations.put(key, current.next);
+            else
+                allocations.remove(key);
+        }
+    }
+
+    private void expungeCollectedAllocations() {
+        Allocation allocation;
+        while ((allocation = (Allocation) collectedBufferQueue.poll()) != null) {
+            removeAllocation(allocation);
+            final OwnerTotals totals = ownerTotals.get(allocation.owner);
+            totals.collectedBytes += allocation.sizeInBytes;
+            totals.outstandingBytes -= allocation.sizeInBytes;
+            totals.outstandingBufferCount--;
+        }
+    }
+
+    @Override
+    public synchronized long getOutstandingBytes() {
+        expungeCollectedAllocations();
+        return (ownerTotals.values().stream().mapToLong(totals -> totals.outstandingBytes).sum());
+    }
+
+    @Override
+    public synchronized int getOutstandingBufferCount() {
+        expungeCollectedAllocations();
+        return (ownerTotals.values().stream().mapToInt(totals -> totals.outstandingBufferCount).sum());
+    }
+
+    @Override
+    public synchronized long getAllocatedBytes() {
+        return (ownerTotals.values().stream().mapToLong(totals -> totals.allocatedBytes).sum());
+    }
+
+    @Override
+    public synchronized long getFreedBytes() {
+        return (ownerTotals.values().stream().mapToLong(totals -> totals.freedBytes).sum());
+    }
+
+    @Override
+    public synchronized long getCollectedBytes() {
+        expungeCollectedAllocations();
+        return (ownerTotals.values().stream().mapToLong(totals -> totals.collectedBytes).sum());
+    }
+
+    @Override
+    public synchronized Map<String, Long> getOutstandingBytesByOwner() {
+        expungeCollectedAllocations();
+        final Map<String, Long> outstandingBytesByOwner = new LinkedHashMap<>();
+        for (final Map.Entry<Owner, OwnerTotals> entry : ownerTotals.entrySet())
+            if (entry.getValue().outstandingBufferCount > 0)
+                outstandingBytesByOwner.put(entry.getKey().toString(),
+                        Long.valueOf(entry.getValue().outstandingBytes));
+        return (outstandingBytesByOwner);
+    }
+
+    /**
+     * Describes the outstanding buffers grouped by owner, with the stack
+     * traces of some of them if they are recorded
+     * 
+     * @return the report
+     */
+    public synchronized String getReport() {
+        expungeCollectedAllocations();
+        final StringBuilder builder = new StringBuilder();
+        builder.append("Direct buffers: ").append(getAllocatedBytes() / 1024).append(" KB recorded, ")
+                .append(getFreedBytes() / 1024).append(" KB freed, ").append(getCollectedBytes() / 1024)
+                .append(" KB collected, ").append(getOutstandingBytes() / 1024).append(" KB outstanding in ")
+                .append(getOutstandingBufferCount()).append(" buffers").append(System.lineSeparator());
+        final HashMap<Owner, ArrayList<Throwable>> tracesByOwner = new HashMap<>();
+        if (allocationTraceRecorded)
+            for (Allocation allocation : allocations.values())
+                for (; allocation != null; allocation = allocation.next)
+                    if (allocation.trace != null) {
+                        final ArrayList<Throwable> traces = tracesByOwner.computeIfAbsent(allocation.owner,
+                                o -> new ArrayList<>());
+                        if (traces.size() < MAX_TRACES_PER_OWNER)
+                            traces.add(allocation.trace);
+                    }
+        ownerTotals.entrySet().stream().filter(entry -> entry.getValue().outstandingBufferCount > 0)
+                .sorted((entry1, entry2) -> Long.compare(entry2.getValue().outstandingBytes,
+                        entry1.getValue().outstandingBytes))
+                .forEach(entry -> {
+                    final OwnerTotals totals = entry.getValue();
+                    builder.append("  ").append(entry.getKey()).append(": ").append(totals.outstandingBytes / 1024)
+                            .append(" KB outstanding in ").append(totals.outstandingBufferCount)
+                            .append(" buffers (").append(totals.freedBytes / 1024).append(" KB freed, ")
+                            .append(totals.collectedBytes / 1024).append(" KB collected)")
+                            .append(System.lineSeparator());
+                    for (final Throwable trace : tracesByOwner.getOrDefault(entry.getKey(), new ArrayList<>())) {
+                        builder.append("    ").append(trace.getMessage()).append(System.lineSeparator());
+                        for (final StackTraceElement element : trace.getStackTrace())
+                            if (!element.getClassName().equals(DirectMemoryLedger.class.getName()))
+                                builder.append("      at ").append(element).append(System.lineSeparator());
+                    }
+                });
+        return (builder.toString());
+    }
+}
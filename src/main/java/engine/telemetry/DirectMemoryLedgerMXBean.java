@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.telemetry;
+
+import java.util.Map;
+
+/**
+ * Management interface of the ledger of the direct buffers, it exposes the
+ * totals so that they can be monitored with JMX
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public interface DirectMemoryLedgerMXBean {
+
+    /**
+     * Returns the size of the recorded buffers neither freed nor collected
+     * 
+     * @return the size of the outstanding buffers in bytes
+     */
+    long getOutstandingBytes();
+
+    int getOutstandingBufferCount();
+
+    long getAllocatedBytes();
+
+    long getFreedBytes();
+
+    /**
+     * Returns the size of the recorded buffers collected by the garbage
+     * collector without having been freed explicitly
+     * 
+     * @return the size of the collected buffers in bytes
+     */
+    long getCollectedBytes();
+
+    /**
+     * Returns the size of the outstanding buffers grouped by owner
+     * 
+     * @return the size of the outstanding buffers in bytes by owner
+     */
+    Map<String, Long> getOutstandingBytesByOwner();
+
+    boolean isAllocationTraceRecorded();
+
+    void setAllocationTraceRecorded(boolean allocationTraceRecorded);
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event emitted for each iteration of the main loop, the
+ * phases of the frame are recorded as {@link FramePhaseEvent}
+ * 
+ * @author Julien Gouesse
+ *
+ */
+@Name("engine.Frame")
+@Label("Frame")
+@Category({ "Engine", "Main Loop" })
+@Description("Iteration of the main loop")
+@StackTrace(false)
+public final class FrameEvent extends Event {
+
+    @Label("Frame Index")
+    private final long frameIndex;
+
+    @Label("Simulation Step Count")
+    @Description("Count of simulation steps performed during this frame")
+    private int stepCount;
+
+    /**
+     * Constructor
+     * 
+     * @param frameIndex
+     *            index of the frame
+     */
+    public FrameEvent(final long frameIndex) {
+        super();
+        this.frameIndex = frameIndex;
+        this.stepCount = 1;
+    }
+
+    public void setStepCount(final int stepCount) {
+        this.stepCount = stepCount;
+    }
+}
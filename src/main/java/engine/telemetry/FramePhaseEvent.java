@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event emitted for each phase of an iteration of the main
+ * loop
+ * 
+ * @author Julien Gouesse
+ *
+ */
+@Name("engine.FramePhase")
+@Label("Frame Phase")
+@Category({ "Engine", "Main Loop" })
+@Description("Phase of an iteration of the main loop")
+@StackTrace(false)
+public final class FramePhaseEvent extends Event {
+
+    /**
+     * Phase of an iteration of the main loop
+     */
+    public enum Phase {
+        /** input triggers and scheduled tasks of the state machines */
+        INPUT,
+        /** update of the controllers, of the transforms and of the bounds */
+        UPDATE_GEOMETRIC_STATE,
+        /** interpolation of the transforms between two simulation steps */
+        INTERPOLATION,
+        /** rendering */
+        DRAW,
+        /** wait limiting the render rate */
+        WAIT
+    }
+
+    @Label("Phase")
+    private final String phase;
+
+    @Label("Frame Index")
+    private final long frameIndex;
+
+    /**
+     * Constructor
+     * 
+     * @param phase
+     *            phase
+     * @param frameIndex
+     *            index of the frame
+     */
+    public FramePhaseEvent(final Phase phase, final long frameIndex) {
+        super();
+        this.phase = phase.name();
+        this.frameIndex = frameIndex;
+    }
+}
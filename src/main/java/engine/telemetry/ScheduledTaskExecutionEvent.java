@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event emitted when a scheduler runs a scheduled task
+ * 
+ * @author Julien Gouesse
+ *
+ */
+@Name("engine.ScheduledTaskExecution")
+@Label("Scheduled Task Execution")
+@Category({ "Engine", "State Machine" })
+@Description("Execution of the runnable of a task scheduled in a state machine")
+@StackTrace(false)
+public final class ScheduledTaskExecutionEvent extends Event {
+
+    @Label("Task Class")
+    private final String taskClass;
+
+    @Label("Runnable Class")
+    private final String runnableClass;
+
+    @Label("Postponed")
+    @Description("Whether the execution has been postponed by the time offset of the task")
+    private final boolean postponed;
+
+    /**
+     * Constructor
+     * 
+     * @param task
+     *            executed task
+     * @param runnable
+     *            runnable of the task
+     * @param postponed
+     *            <code>true</code> if the execution has been postponed by the
+     *            time offset of the task
+     */
+    public ScheduledTaskExecutionEvent(final Object task, final Runnable runnable, final boolean postponed) {
+        super();
+        this.taskClass = task.getClass().getName();
+        this.runnableClass = runnable.getClass().getName();
+        this.postponed = postponed;
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event emitted when the scenegraph state machine goes from a
+ * state to another one, its duration includes the exit action of the previous
+ * state and the entry action of the next state
+ * 
+ * @author Julien Gouesse
+ *
+ */
+@Name("engine.StateTransition")
+@Label("State Transition")
+@Category({ "Engine", "State Machine" })
+@Description("Transition between two states of the scenegraph state machine")
+@StackTrace(false)
+public final class StateTransitionEvent extends Event {
+
+    @Label("Source State")
+    private String sourceState;
+
+    @Label("Target State")
+    private String targetState;
+
+    @Label("Event")
+    @Description("Event that caused the transition")
+    private String transitionEvent;
+
+    public StateTransitionEvent() {
+        super();
+    }
+
+    /**
+     * Sets the states and the event of the transition
+     * 
+     * @param source
+     *            state before the transition
+     * @param target
+     *            state after the transition
+     * @param event
+     *            event that caused the transition
+     */
+    public void setTransition(final Object source, final Object target, final Object event) {
+        sourceState = source == null ? null : source.getClass().getSimpleName();
+        targetState = target == null ? null : target.getClass().getSimpleName();
+        transitionEvent = event == null ? null : event.toString();
+    }
+}
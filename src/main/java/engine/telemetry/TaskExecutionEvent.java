@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.telemetry;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event emitted when a task manager runs a task, for example
+ * while loading or unloading a level
+ * 
+ * @author Julien Gouesse
+ *
+ */
+@Name("engine.TaskExecution")
+@Label("Task Execution")
+@Category({ "Engine", "Loading" })
+@Description("Execution of a task enqueued in a task manager")
+@StackTrace(false)
+public final class TaskExecutionEvent extends Event {
+
+    @Label("Task Class")
+    private final String taskClass;
+
+    @Label("Remaining Task Count")
+    @Description("Count of tasks still enqueued after this one")
+    private final int remainingTaskCount;
+
+    /**
+     * Constructor
+     * 
+     * @param task
+     *            executed task
+     * @param remainingTaskCount
+     *            count of tasks still enqueued after this one
+     */
+    public TaskExecutionEvent(final Runnable task, final int remainingTaskCount) {
+        super();
+        this.taskClass = task.getClass().getName();
+        this.remainingTaskCount = remainingTaskCount;
+    }
+}
@@ -34,7 +34,6 @@ import javax.imageio.ImageIO;
 import com.ardor3d.bounding.BoundingBox;
 import com.ardor3d.scenegraph.Mesh;
 import com.ardor3d.scenegraph.Node;
-import com.ardor3d.util.export.Savable;
 
 import jfpsm.ArrayHelper.Vector2i;
 import jfpsm.CuboidParameters.Orientation;
@@ -122,13 +121,20 @@ public class GameFilesGenerator {
      *            project
      * @param destFile
      *            file containing the geometry of the level
+     * @param destMappedFile
+     *            file containing the geometry of the level in a format that
+     *            the engine can map into memory
      * @param destCollisionFile
      *            file containing the bounding volumes of the level
+     * @param destPackedCollisionFile
+     *            file containing the bounding volumes of the level packed into
+     *            arrays
      * 
      * @throws Exception
      */
     final void writeLevel(final FloorSet level, final int levelIndex, final Project project, final File destFile,
-            final File destCollisionFile) throws Exception {
+            final File destMappedFile, final File destCollisionFile, final File destPackedCollisionFile)
+            throws Exception {
         boolean success = true;
         // create the file used to store a level if it does not yet exist
         if (!destFile.exists()) {
@@ -476,10 +482,16 @@ public class GameFilesGenerator {
                 // "+(System.currentTimeMillis()-time)/1000.0f+" seconds");
             } else
                 System.out.println("[WARNING]Export into the file " + destFile.getName() + " not successful!");
+            System.out.println("[INFO] JFPSM attempts to write the level into the file " + destMappedFile.getName());
+            // writes the level into a file that the engine can map into memory
+            if (EngineServiceProvider.getInstance().writeMappedLevelIntoFile(levelNode, destMappedFile))
+                System.out.println("[INFO] Export into the file " + destMappedFile.getName() + " successful");
+            else
+                System.out.println("[WARNING]Export into the file " + destMappedFile.getName() + " not successful!");
             System.out.println("[INFO] JFPSM attempts to write the bounding boxes of the level into the file "
                     + destCollisionFile.getName());
             // computes the bounding boxes
-            final List<Savable> boundingBoxList = new ArrayList<>();
+            final List<BoundingBox> boundingBoxList = new ArrayList<>();
             int validFloorIndex = 0;
             for (final AbsoluteVolumeParameters[][] floorVolumeElements : volumeElementsList)
                 if (floorVolumeElements != null) {
@@ -528,6 +540,14 @@ public class GameFilesGenerator {
                         .println("[INFO] Elapsed time: " + (System.currentTimeMillis() - time) / 1000.0f + " seconds");
             } else
                 System.out.println("[WARNING]Export into the file " + destCollisionFile.getName() + " not successful!");
+            System.out.println("[INFO] JFPSM attempts to write the packed bounding boxes of the level into the file "
+                    + destPackedCollisionFile.getName());
+            if (EngineServiceProvider.getInstance().writeBoundingBoxesIntoPackedFile(boundingBoxList,
+                    destPackedCollisionFile))
+                System.out.println("[INFO] Export into the file " + destPackedCollisionFile.getName() + " successful");
+            else
+                System.out.println(
+                        "[WARNING]Export into the file " + destPackedCollisionFile.getName() + " not successful!");
         }
     }
 
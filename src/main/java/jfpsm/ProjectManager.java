@@ -1011,14 +1011,17 @@ public final class ProjectManager extends EntityManager {
             // prevents the user from leaving the application during an export
             projectManager.setQuitEnabled(false);
             ArrayList<String> filenamesList = new ArrayList<>();
-            File levelFile, levelCollisionFile;
+            File levelFile, mappedLevelFile, levelCollisionFile, packedLevelCollisionFile;
             int levelIndex = 0;
             for (FloorSet level : levelsList) {
                 levelFile = new File(projectManager.createRawDataPath(level.getName() + ".abin"));
+                mappedLevelFile = new File(projectManager.createRawDataPath(level.getName() + ".mlvl"));
                 levelCollisionFile = new File(projectManager.createRawDataPath(level.getName() + ".collision.abin"));
+                packedLevelCollisionFile = new File(
+                        projectManager.createRawDataPath(level.getName() + ".collision.pcol"));
                 try {
                     projectManager.gameFilesGenerator.writeLevel(level, levelIndex, project, levelFile,
-                            levelCollisionFile);
+                            mappedLevelFile, levelCollisionFile, packedLevelCollisionFile);
                 } catch (Throwable throwable) {
                     projectManager.displayErrorMessage(throwable, false);
                 }
@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package jfpsm.conversion;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.math.type.ReadOnlyVector3;
+import com.ardor3d.renderer.state.RenderState;
+import com.ardor3d.renderer.state.RenderState.StateType;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.visitor.Visitor;
+import com.ardor3d.util.export.binary.BinaryImporter;
+import com.ardor3d.util.resource.ResourceLocatorTool;
+import com.ardor3d.util.resource.SimpleResourceLocator;
+import com.ardor3d.util.resource.URLResourceSource;
+
+import jfpsm.service.MappedLevelExporter;
+
+/**
+ * Converter of an Ardor3D binary level into a chunked level. The meshes are
+ * split into square tiles on the horizontal plane (X and Z) according to the
+ * center of their bounds, each tile is written into its own mapped level file
+ * and a manifest lists the tiles with their bounds. The layout of the manifest
+ * (big endian) is:
+ * <ul>
+ * <li>header: magic number, version, size of a tile, count of tiles</li>
+ * <li>for each tile: coordinates of the tile in the grid, minimum and maximum
+ * of its bounds, name of its file relative to the manifest (modified UTF-8)
+ * and size of this file in bytes</li>
+ * </ul>
+ * This format must be kept in sync with
+ * <code>engine.data.ChunkedLevelLayout</code>
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public class ArdorToChunkedLevelConverter {
+
+    /** extension of the manifests */
+    public static final String FILE_EXTENSION = ".chunks";
+
+    /** default size of a tile */
+    public static final float DEFAULT_TILE_SIZE = 64;
+
+    private static final byte[] MAGIC = "TUERCHNK".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int VERSION = 1;
+
+    private static final class MeshFinder implements Visitor {
+
+        private final List<Mesh> meshes;
+
+        private MeshFinder() {
+            super();
+            meshes = new ArrayList<>();
+        }
+
+        @Override
+        public void visit(final Spatial spatial) {
+            if (spatial instanceof Mesh)
+                meshes.add((Mesh) spatial);
+        }
+    }
+
+    private static final class Tile {
+
+        private final int tileX;
+
+        private final int tileZ;
+
+        private final Node node;
+
+        private final Vector3 min;
+
+        private final Vector3 max;
+
+        private Tile(final int tileX, final int tileZ, final String levelName) {
+            super();
+            this.tileX = tileX;
+            this.tileZ = tileZ;
+            this.node = new Node(levelName + "_" + tileX + "_" + tileZ);
+            this.min = new Vector3(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+            this.max = new Vector3(Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY);
+        }
+
+        private void add(final Mesh mesh, final BoundingBox worldBounds) {
+            node.attachChild(mesh);
+            final ReadOnlyVector3 center = worldBounds.getCenter();
+            min.set(Math.min(min.getX(), center.getX() - worldBounds.getXExtent()),
+                    Math.min(min.getY(), center.getY() - worldBounds.getYExtent()),
+                    Math.min(min.getZ(), center.getZ() - worldBounds.getZExtent()));
+            max.set(Math.max(max.getX(), center.getX() + worldBounds.getXExtent()),
+                    Math.max(max.getY(), center.getY() + worldBounds.getYExtent()),
+                    Math.max(max.getZ(), center.getZ() + worldBounds.getZExtent()));
+        }
+    }
+
+    public ArdorToChunkedLevelConverter() {
+        super();
+    }
+
+    /**
+     * Splits a level into tiles and writes them with their manifest
+     * 
+     * @param levelNode
+     *            root node of the level, its meshes are moved into the tiles
+     * @param tileSize
+     *            size of a tile
+     * @param manifestFile
+     *            destination file of the manifest, the files of the tiles are
+     *            written into the same directory
+     * @return the count of tiles
+     * @throws IOException
+     *             if a file cannot be written
+     */
+    public int convert(final Node levelNode, final float tileSize, final File manifestFile) throws IOException {
+        if (!(tileSize > 0))
+            throw new IllegalArgumentException("The tile size must be strictly positive");
+        final String manifestFilename = manifestFile.getName();
+        final String levelName = manifestFilename.endsWith(FILE_EXTENSION)
+                ? manifestFilename.substring(0, manifestFilename.length() - FILE_EXTENSION.length())
+                : manifestFilename;
+        levelNode.updateGeometricState(0, true);
+        final MeshFinder finder = new MeshFinder();
+        levelNode.acceptVisitor(finder, true);
+        // sorts the tiles by coordinates so that the manifest is stable
+        final Map<Long, Tile> tiles = new TreeMap<>();
+        for (final Mesh mesh : finder.meshes) {
+            if (mesh.getMeshData().getVertexBuffer() == null)
+                continue;
+            // computes the bounds in world space as the mesh is moved under a
+            // tile
+            final BoundingBox modelBounds = new BoundingBox();
+            modelBounds.computeFromPoints(mesh.getMeshData().getVertexBuffer());
+            final BoundingBox worldBounds = (BoundingBox) modelBounds.transform(mesh.getWorldTransform(),
+                    new BoundingBox());
+            final int tileX = (int) Math.floor(worldBounds.getCenter().getX() / tileSize);
+            final int tileZ = (int) Math.floor(worldBounds.getCenter().getZ() / tileSize);
+            final Long tileKey = Long.valueOf((((long) tileX) << 32) | (tileZ & 0xFFFFFFFFL));
+            Tile tile = tiles.get(tileKey);
+            if (tile == null) {
+                tile = new Tile(tileX, tileZ, levelName);
+                tiles.put(tileKey, tile);
+            }
+            // keeps the render states inherited from the ancestors
+            for (final StateType stateType : StateType.values())
+                if (mesh.getLocalRenderState(stateType) == null)
+                    for (Node ancestor = mesh.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+                        final RenderState renderState = ancestor.getLocalRenderState(stateType);
+                        if (renderState != null) {
+                            mesh.setRenderState(renderState);
+                            break;
+                        }
+                    }
+            mesh.setTransform(mesh.getWorldTransform());
+            mesh.removeFromParent();
+            tile.add(mesh, worldBounds);
+        }
+        final MappedLevelExporter mappedLevelExporter = new MappedLevelExporter();
+        final File directory = manifestFile.getAbsoluteFile().getParentFile();
+        try (final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(manifestFile)))) {
+            out.write(MAGIC);
+            out.writeInt(VERSION);
+            out.writeFloat(tileSize);
+            out.writeInt(tiles.size());
+            for (final Tile tile : tiles.values()) {
+                final String tileFilename = levelName + "." + tile.tileX + "_" + tile.tileZ
+                        + MappedLevelExporter.FILE_EXTENSION;
+                final File tileFile = new File(directory, tileFilename);
+                mappedLevelExporter.save(tile.node, tileFile);
+                out.writeInt(tile.tileX);
+                out.writeInt(tile.tileZ);
+                out.writeFloat(tile.min.getXf());
+                out.writeFloat(tile.min.getYf());
+                out.writeFloat(tile.min.getZf());
+                out.writeFloat(tile.max.getXf());
+                out.writeFloat(tile.max.getYf());
+                out.writeFloat(tile.max.getZf());
+                out.writeUTF(tileFilename);
+                out.writeLong(tileFile.length());
+            }
+        }
+        return (tiles.size());
+    }
+
+    public void run(final String[] args) throws IOException, URISyntaxException {
+        try {
+            final SimpleResourceLocator srl = new SimpleResourceLocator(
+                    ArdorToChunkedLevelConverter.class.getResource("/abin"));
+            ResourceLocatorTool.addResourceLocator(ResourceLocatorTool.TYPE_MODEL, srl);
+        } catch (final URISyntaxException urise) {
+            urise.printStackTrace();
+        }
+        final BinaryImporter binaryImporter = new BinaryImporter();
+        float tileSize = DEFAULT_TILE_SIZE;
+        for (String arg : args) {
+            // an argument starting with "--tile-size=" changes the size of
+            // the tiles of the next levels
+            if (arg.startsWith("--tile-size=")) {
+                tileSize = Float.parseFloat(arg.substring("--tile-size=".length()));
+                continue;
+            }
+            System.out.println("Loading " + arg + " ...");
+            final URLResourceSource source = (URLResourceSource) ResourceLocatorTool
+                    .locateResource(ResourceLocatorTool.TYPE_MODEL, arg);
+            final File sourceFile = new File(source.getURL().toURI());
+            final Spatial binarySpatial = (Spatial) binaryImporter.load(sourceFile);
+            if (!(binarySpatial instanceof Node)) {
+                System.out.println(arg + " doesn't contain a node!");
+                continue;
+            }
+            final String filenameWithoutExtension = sourceFile.getAbsolutePath().substring(0,
+                    sourceFile.getAbsolutePath().lastIndexOf(".abin"));
+            System.out.println("Converting " + arg + " ...");
+            final int tileCount = convert((Node) binarySpatial, tileSize,
+                    new File(filenameWithoutExtension + FILE_EXTENSION));
+            System.out.println(arg + " successfully converted into " + tileCount + " tiles");
+        }
+    }
+
+    public static final void main(final String[] args) {
+        try {
+            final ArdorToChunkedLevelConverter converter = new ArdorToChunkedLevelConverter();
+            converter.run(args);
+        } catch (Throwable t) {
+            t.printStackTrace();
+        }
+    }
+}
@@ -17,12 +17,15 @@
  */
 package jfpsm.service;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -118,7 +121,18 @@ public class EngineServiceProvider {
         return success;
     }
 
-    public boolean writeSavableInstancesListIntoFile(final List<Savable> savablesList, final File file) {
+    public boolean writeMappedLevelIntoFile(final Node levelNode, final File file) {
+        boolean success = true;
+        try {
+            new MappedLevelExporter().save(levelNode, file);
+        } catch (IOException ioe) {
+            success = false;
+            ioe.printStackTrace();
+        }
+        return success;
+    }
+
+    public boolean writeSavableInstancesListIntoFile(final List<? extends Savable> savablesList, final File file) {
         boolean success = true;
         try (FileOutputStream fos = new FileOutputStream(file)) {
             for (Savable savable : savablesList) {
@@ -137,6 +151,43 @@ public class EngineServiceProvider {
         return success;
     }
 
+    /**
+     * Writes some bounding boxes into a packed collision volume file without
+     * spatial index, this format must be kept in sync with
+     * <code>engine.collision.PackedCollisionVolumes</code>
+     * 
+     * @param boundingBoxList
+     *            bounding boxes
+     * @param file
+     *            destination file
+     * @return <code>true</code> if the file has been successfully written
+     */
+    public boolean writeBoundingBoxesIntoPackedFile(final List<BoundingBox> boundingBoxList, final File file) {
+        boolean success = true;
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            // header: magic number, version, flags, count of boxes, count of
+            // nodes of the spatial index
+            dos.write("TUERPCOL".getBytes(StandardCharsets.US_ASCII));
+            dos.writeInt(1);
+            dos.writeInt(0);
+            dos.writeInt(boundingBoxList.size());
+            dos.writeInt(0);
+            // centers and extents of the boxes
+            for (final BoundingBox boundingBox : boundingBoxList) {
+                dos.writeFloat(boundingBox.getCenter().getXf());
+                dos.writeFloat(boundingBox.getCenter().getYf());
+                dos.writeFloat(boundingBox.getCenter().getZf());
+                dos.writeFloat((float) boundingBox.getXExtent());
+                dos.writeFloat((float) boundingBox.getYExtent());
+                dos.writeFloat((float) boundingBox.getZExtent());
+            }
+        } catch (IOException ioe) {
+            success = false;
+            ioe.printStackTrace();
+        }
+        return success;
+    }
+
     public void attachChildToNode(final Node parent, final Spatial child) {
         parent.attachChild(child);
     }
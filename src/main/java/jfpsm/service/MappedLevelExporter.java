@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package jfpsm.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.ardor3d.scenegraph.AbstractBufferData;
+import com.ardor3d.scenegraph.FloatBufferData;
+import com.ardor3d.scenegraph.Mesh;
+import com.ardor3d.scenegraph.MeshData;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.scenegraph.visitor.Visitor;
+import com.ardor3d.util.geom.BufferUtils;
+
+/**
+ * Exporter of the mapped level files. Such a file contains a compact
+ * description of the scenegraph, i.e the scenegraph whose buffers have been
+ * emptied saved with the binary exporter of Ardor3D, followed by the raw
+ * content of the buffers so that the engine can map the file into memory and
+ * give a slice of the mapped region to each mesh instead of copying its data.
+ * The layout is:
+ * <ul>
+ * <li>header (big endian): magic number, version, byte order of the buffers (0
+ * for big endian, 1 for little endian), count of buffers, length and offset of
+ * the description</li>
+ * <li>table of the buffers (big endian): type (0 for float, 1 for byte, 2 for
+ * short, 3 for int), count of elements and offset of each buffer</li>
+ * <li>description</li>
+ * <li>buffers in the native byte order of the machine that wrote the file,
+ * those at least as big as a page are page-aligned</li>
+ * </ul>
+ * The buffers are stored in the order of a depth first traversal of the
+ * scenegraph. For each mesh, they are stored in this order: vertices, normals,
+ * colors, fog coordinates, tangents, texture coordinates, indices and
+ * interleaved data, the missing ones and those already stored are skipped. This
+ * format must be kept in sync with <code>engine.data.MappedLevelImporter</code>
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public class MappedLevelExporter {
+
+    /** extension of the mapped level files */
+    public static final String FILE_EXTENSION = ".mlvl";
+
+    private static final byte[] MAGIC = "TUERMLVL".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 32;
+
+    private static final int TABLE_ENTRY_SIZE = 16;
+
+    private static final int PAGE_SIZE = 4096;
+
+    /** alignment of the buffers smaller than a page */
+    private static final int MIN_ALIGNMENT = 16;
+
+    private static final class BufferDataFinder implements Visitor {
+
+        private final List<AbstractBufferData<?>> bufferDataList;
+
+        private final Set<AbstractBufferData<?>> bufferDataSet;
+
+        private BufferDataFinder() {
+            super();
+            bufferDataList = new ArrayList<>();
+            bufferDataSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        }
+
+        @Override
+        public void visit(final Spatial spatial) {
+            if (spatial instanceof Mesh) {
+                final MeshData meshData = ((Mesh) spatial).getMeshData();
+                add(meshData.getVertexCoords());
+                add(meshData.getNormalCoords());
+                add(meshData.getColorCoords());
+                add(meshData.getFogCoords());
+                add(meshData.getTangentCoords());
+                for (final FloatBufferData textureCoords : meshData.getTextureCoords())
+                    add(textureCoords);
+                add(meshData.getIndices());
+                add(meshData.getInterleavedData());
+            }
+        }
+
+        private void add(final AbstractBufferData<?> bufferData) {
+            if (bufferData != null && bufferData.getBuffer() != null && bufferDataSet.add(bufferData))
+                bufferDataList.add(bufferData);
+        }
+    }
+
+    public MappedLevelExporter() {
+        super();
+    }
+
+    /**
+     * Writes a level into a mapped level file
+     * 
+     * @param levelNode
+     *            root node of the level, it is left unchanged
+     * @param file
+     *            destination file
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public void save(final Node levelNode, final File file) throws IOException {
+        final BufferDataFinder finder = new BufferDataFinder();
+        levelNode.acceptVisitor(finder, true);
+        final List<AbstractBufferData<?>> bufferDataList = finder.bufferDataList;
+        final int bufferCount = bufferDataList.size();
+        final Buffer[] buffers = new Buffer[bufferCount];
+        // empties the buffers so that the description contains no geometry
+        final ByteArrayOutputStream descriptionStream = new ByteArrayOutputStream();
+        try {
+            for (int bufferIndex = 0; bufferIndex < bufferCount; bufferIndex++) {
+                final AbstractBufferData<?> bufferData = bufferDataList.get(bufferIndex);
+                buffers[bufferIndex] = bufferData.getBuffer();
+                setBuffer(bufferData, createEmptyBuffer(buffers[bufferIndex]));
+            }
+            new EngineServiceProvider.DirectBinaryExporter().save(levelNode, descriptionStream);
+        } finally {
+            for (int bufferIndex = 0; bufferIndex < bufferCount; bufferIndex++)
+                if (buffers[bufferIndex] != null)
+                    setBuffer(bufferDataList.get(bufferIndex), buffers[bufferIndex]);
+        }
+        final byte[] description = descriptionStream.toByteArray();
+        final long descriptionOffset = HEADER_SIZE + TABLE_ENTRY_SIZE * (long) bufferCount;
+        final ByteBuffer header = ByteBuffer.allocate((int) descriptionOffset + description.length)
+                .order(ByteOrder.BIG_ENDIAN);
+        header.put(MAGIC).putInt(VERSION).putInt(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 0 : 1)
+                .putInt(bufferCount).putInt(description.length).putLong(descriptionOffset);
+        final long[] bufferOffsets = new long[bufferCount];
+        long offset = align(descriptionOffset + description.length, PAGE_SIZE);
+        for (int bufferIndex = 0; bufferIndex < bufferCount; bufferIndex++) {
+            final Buffer buffer = buffers[bufferIndex];
+            final int byteCount = buffer.limit() * getElementSize(buffer);
+            offset = align(offset, byteCount >= PAGE_SIZE ? PAGE_SIZE : MIN_ALIGNMENT);
+            bufferOffsets[bufferIndex] = offset;
+            header.putInt(getType(buffer)).putInt(buffer.limit()).putLong(offset);
+            offset += byteCount;
+        }
+        header.put(description).flip();
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, header, 0);
+            for (int bufferIndex = 0; bufferIndex < bufferCount; bufferIndex++)
+                writeFully(channel, toByteBuffer(buffers[bufferIndex]), bufferOffsets[bufferIndex]);
+        }
+    }
+
+    private static long align(final long offset, final int alignment) {
+        return ((offset + alignment - 1) / alignment * alignment);
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer source, final long position)
+            throws IOException {
+        long currentPosition = position;
+        while (source.hasRemaining())
+            currentPosition += channel.write(source, currentPosition);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Buffer> void setBuffer(final AbstractBufferData<T> bufferData, final Buffer buffer) {
+        bufferData.setBuffer((T) buffer);
+    }
+
+    private static Buffer createEmptyBuffer(final Buffer buffer) {
+        final Buffer emptyBuffer;
+        if (buffer instanceof FloatBuffer)
+            emptyBuffer = BufferUtils.createFloatBuffer(0);
+        else if (buffer instanceof ByteBuffer)
+            emptyBuffer = BufferUtils.createByteBuffer(0);
+        else if (buffer instanceof ShortBuffer)
+            emptyBuffer = BufferUtils.createShortBuffer(0);
+        else if (buffer instanceof IntBuffer)
+            emptyBuffer = BufferUtils.createIntBuffer(0);
+        else
+            throw new IllegalArgumentException("Unsupported buffer type " + buffer.getClass().getName());
+        return (emptyBuffer);
+    }
+
+    private static int getType(final Buffer buffer) {
+        final int type;
+        if (buffer instanceof FloatBuffer)
+            type = 0;
+        else if (buffer instanceof ByteBuffer)
+            type = 1;
+        else if (buffer instanceof ShortBuffer)
+            type = 2;
+        else if (buffer instanceof IntBuffer)
+            type = 3;
+        else
+            throw new IllegalArgumentException("Unsupported buffer type " + buffer.getClass().getName());
+        return (type);
+    }
+
+    private static int getElementSize(final Buffer buffer) {
+        final int elementSize;
+        if (buffer instanceof ByteBuffer)
+            elementSize = Byte.BYTES;
+        else if (buffer instanceof ShortBuffer)
+            elementSize = Short.BYTES;
+        else
+            elementSize = Integer.BYTES;
+        return (elementSize);
+    }
+
+    /**
+     * Copies the content of a buffer from its beginning to its limit into a
+     * byte buffer in the native byte order, the source buffer is left
+     * unchanged
+     */
+    private static ByteBuffer toByteBuffer(final Buffer buffer) {
+        final ByteBuffer byteBuffer = ByteBuffer.allocate(buffer.limit() * getElementSize(buffer))
+                .order(ByteOrder.nativeOrder());
+        if (buffer instanceof FloatBuffer)
+            byteBuffer.asFloatBuffer().put(((FloatBuffer) buffer).duplicate().rewind());
+        else if (buffer instanceof ByteBuffer)
+            byteBuffer.put(((ByteBuffer) buffer).duplicate().rewind());
+        else if (buffer instanceof ShortBuffer)
+            byteBuffer.asShortBuffer().put(((ShortBuffer) buffer).duplicate().rewind());
+        else
+            byteBuffer.asIntBuffer().put(((IntBuffer) buffer).duplicate().rewind());
+        byteBuffer.rewind();
+        return (byteBuffer);
+    }
+}
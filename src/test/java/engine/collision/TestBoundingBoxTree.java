@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.collision;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.math.Vector3;
+
+/**
+ * Headless microbenchmark of the bounding box tree, it measures the build time,
+ * the memory footprint per box and the latency of the swept box queries on
+ * synthetic levels similar to those created by JFPSM (walls occupying whole
+ * cells of a floor) and compares the results with a brute force sweep
+ *
+ * @author Julien Gouesse
+ *
+ */
+public class TestBoundingBoxTree {
+
+    private static final int QUERY_COUNT = 200000;
+
+    public static void main(String[] args) {
+        for (final int boxCount : new int[] { 10000, 50000, 100000 }) {
+            final Random random = new Random(boxCount);
+            // the walls occupy about one cell out of four
+            final int side = (int) Math.ceil(Math.sqrt(boxCount * 4.0));
+            final List<BoundingBox> boxes = new ArrayList<>(boxCount);
+            final boolean[] occupied = new boolean[side * side];
+            while (boxes.size() < boxCount) {
+                final int cellIndex = random.nextInt(side * side);
+                if (!occupied[cellIndex]) {
+                    occupied[cellIndex] = true;
+                    boxes.add(new BoundingBox(new Vector3(cellIndex % side + 0.5, 0.5, cellIndex / side + 0.5), 0.5,
+                            0.5, 0.5));
+                }
+            }
+            final long buildStartTime = System.nanoTime();
+            final BoundingBoxTree tree = new BoundingBoxTree(boxes);
+            final long buildDuration = System.nanoTime() - buildStartTime;
+            System.out.println(boxCount + " boxes: build " + (buildDuration / 1000000) + " ms, " + tree.getNodeCount()
+                    + " nodes, " + tree.getSizeInBytes() + " bytes ("
+                    + (tree.getSizeInBytes() / (double) boxCount) + " bytes/box)");
+            // prepares the queries, mostly short movements
+            final double[] queries = new double[QUERY_COUNT * 4];
+            for (int queryIndex = 0; queryIndex < QUERY_COUNT; queryIndex++) {
+                final double length = queryIndex % 10 == 0 ? random.nextDouble() * 10 : random.nextDouble() * 0.5;
+                final double angle = random.nextDouble() * 2 * Math.PI;
+                queries[queryIndex * 4] = random.nextDouble() * side;
+                queries[queryIndex * 4 + 1] = random.nextDouble() * side;
+                queries[queryIndex * 4 + 2] = length * Math.cos(angle);
+                queries[queryIndex * 4 + 3] = length * Math.sin(angle);
+            }
+            final Vector3 halfExtents = new Vector3(0.2, 0.4, 0.2);
+            final Vector3 center = new Vector3();
+            final Vector3 displacement = new Vector3();
+            // checks that the tree gives the same results than a brute force
+            // sweep on a subset of the queries
+            int mismatchCount = 0;
+            for (int queryIndex = 0; queryIndex < QUERY_COUNT / 20; queryIndex++) {
+                center.set(queries[queryIndex * 4], 0.5, queries[queryIndex * 4 + 1]);
+                displacement.set(queries[queryIndex * 4 + 2], 0, queries[queryIndex * 4 + 3]);
+                final double fraction = tree.sweep(center, halfExtents, displacement);
+                final double expectedFraction = sweepBruteForce(boxes, center, halfExtents, displacement);
+                if (Math.abs(fraction - expectedFraction) > 1e-6) {
+                    if (mismatchCount < 10)
+                        System.out.println("Mismatch from " + center + " along " + displacement + ": "
+                                + expectedFraction + " != " + fraction);
+                    mismatchCount++;
+                }
+            }
+            System.out.println("Consistency check: " + (mismatchCount == 0 ? "OK" : "NOK (" + mismatchCount + ")"));
+            // measures the latency, several times to let the JIT compiler do
+            // its job
+            final Vector3 result = new Vector3();
+            for (int runIndex = 0; runIndex < 5; runIndex++) {
+                double checksum = 0;
+                long startTime = System.nanoTime();
+                for (int queryIndex = 0; queryIndex < QUERY_COUNT; queryIndex++) {
+                    center.set(queries[queryIndex * 4], 0.5, queries[queryIndex * 4 + 1]);
+                    displacement.set(queries[queryIndex * 4 + 2], 0, queries[queryIndex * 4 + 3]);
+                    checksum += tree.sweep(center, halfExtents, displacement);
+                }
+                final long sweepDuration = System.nanoTime() - startTime;
+                startTime = System.nanoTime();
+                for (int queryIndex = 0; queryIndex < QUERY_COUNT; queryIndex++) {
+                    center.set(queries[queryIndex * 4], 0.5, queries[queryIndex * 4 + 1]);
+                    displacement.set(center.getX() + queries[queryIndex * 4 + 2], 0.5,
+                            center.getZ() + queries[queryIndex * 4 + 3]);
+                    tree.resolveMovement(center, halfExtents, displacement, result);
+                    checksum += result.getX();
+                }
+                final long resolutionDuration = System.nanoTime() - startTime;
+                System.out.println("Run " + runIndex + ": sweep " + (sweepDuration / QUERY_COUNT)
+                        + " ns/query, movement resolution " + (resolutionDuration / QUERY_COUNT)
+                        + " ns/query (checksum " + checksum + ")");
+            }
+            final int bruteForceQueryCount = QUERY_COUNT / 100;
+            final long startTime = System.nanoTime();
+            double checksum = 0;
+            for (int queryIndex = 0; queryIndex < bruteForceQueryCount; queryIndex++) {
+                center.set(queries[queryIndex * 4], 0.5, queries[queryIndex * 4 + 1]);
+                displacement.set(queries[queryIndex * 4 + 2], 0, queries[queryIndex * 4 + 3]);
+                checksum += sweepBruteForce(boxes, center, halfExtents, displacement);
+            }
+            System.out.println("Brute force: " + ((System.nanoTime() - startTime) / bruteForceQueryCount)
+                    + " ns/query (checksum " + checksum + ")");
+        }
+    }
+
+    /**
+     * Sweeps a box against all boxes of the list, the boxes overlapping the
+     * start are ignored like in the tree
+     */
+    private static double sweepBruteForce(final List<BoundingBox> boxes, final Vector3 center,
+            final Vector3 halfExtents, final Vector3 displacement) {
+        double nearestHit = 1;
+        for (final BoundingBox box : boxes) {
+            double entry = Double.NEGATIVE_INFINITY, exit = Double.POSITIVE_INFINITY;
+            boolean missed = false;
+            for (int axis = 0; axis < 3 && !missed; axis++) {
+                final double origin = center.getValue(axis);
+                final double dir = displacement.getValue(axis);
+                final double boxExtent = axis == 0 ? box.getXExtent() : axis == 1 ? box.getYExtent() : box.getZExtent();
+                final double min = (float) (box.getCenter().getValue(axis) - boxExtent) - halfExtents.getValue(axis);
+                final double max = (float) (box.getCenter().getValue(axis) + boxExtent) + halfExtents.getValue(axis);
+                if (dir == 0) {
+                    missed = origin <= min || origin >= max;
+                } else {
+                    final double near = Math.min((min - origin) / dir, (max - origin) / dir);
+                    final double far = Math.max((min - origin) / dir, (max - origin) / dir);
+                    entry = Math.max(entry, near);
+                    exit = Math.min(exit, far);
+                    missed = entry >= exit;
+                }
+            }
+            if (!missed && entry >= 0 && entry < exit && exit > 0 && entry < nearestHit)
+                nearestHit = entry;
+        }
+        return (nearestHit);
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.collision;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import com.ardor3d.math.ColorRGBA;
+import com.ardor3d.math.Vector3;
+
+/**
+ * Headless microbenchmark of the collision grid, it compares the movement
+ * resolution with the legacy step by step algorithm on the container map
+ * (results and execution times)
+ *
+ * @author Julien Gouesse
+ *
+ */
+public class TestCollisionGrid {
+
+    private static final int MOVEMENT_COUNT = 1000000;
+
+    public static void main(String[] args) throws IOException {
+        final URL mapUrl = TestCollisionGrid.class.getResource("/images/containermap.png");
+        final BufferedImage map = ImageIO.read(mapUrl);
+        final boolean[][] collisionMap = new boolean[map.getWidth()][map.getHeight()];
+        for (int y = 0; y < map.getHeight(); y++)
+            for (int x = 0; x < map.getWidth(); x++)
+                collisionMap[x][y] = map.getRGB(x, y) == ColorRGBA.BLUE.asIntARGB();
+        final CollisionGrid collisionGrid = CollisionGrid.fromArray(collisionMap);
+        System.out.println("Grid: " + collisionGrid.getWidth() + "x" + collisionGrid.getHeight());
+        // prepares some movements, from short ones (high frame rate) to long
+        // ones (frame time spikes)
+        final Random random = new Random(0);
+        final double[] movements = new double[MOVEMENT_COUNT * 4];
+        for (int movementIndex = 0; movementIndex < MOVEMENT_COUNT; movementIndex++) {
+            final double startX = random.nextDouble() * collisionGrid.getWidth();
+            final double startZ = random.nextDouble() * collisionGrid.getHeight();
+            final double length = movementIndex % 10 == 0 ? random.nextDouble() * 10 : random.nextDouble() * 0.5;
+            final double angle = random.nextDouble() * 2 * Math.PI;
+            movements[movementIndex * 4] = startX;
+            movements[movementIndex * 4 + 1] = startZ;
+            movements[movementIndex * 4 + 2] = startX + length * Math.cos(angle);
+            movements[movementIndex * 4 + 3] = startZ + length * Math.sin(angle);
+        }
+        // checks that both algorithms give the same results
+        final Vector3 legacyResult = new Vector3();
+        final Vector3 result = new Vector3();
+        int mismatchCount = 0;
+        for (int movementIndex = 0; movementIndex < MOVEMENT_COUNT; movementIndex++) {
+            final double startX = movements[movementIndex * 4];
+            final double startZ = movements[movementIndex * 4 + 1];
+            final double endX = movements[movementIndex * 4 + 2];
+            final double endZ = movements[movementIndex * 4 + 3];
+            final int stepCount = computeStepCount(startX, startZ, endX, endZ);
+            resolveMovementStepByStep(collisionMap, startX, startZ, endX, endZ, stepCount, legacyResult);
+            collisionGrid.resolveMovement(startX, startZ, endX, endZ, stepCount, result);
+            if (legacyResult.getX() != result.getX() || legacyResult.getZ() != result.getZ()) {
+                if (mismatchCount < 10)
+                    System.out.println("Mismatch from (" + startX + ", " + startZ + ") to (" + endX + ", " + endZ
+                            + "): " + legacyResult + " != " + result);
+                mismatchCount++;
+            }
+        }
+        System.out.println("Consistency check: " + (mismatchCount == 0 ? "OK" : "NOK (" + mismatchCount + ")"));
+        // measures the execution times, several times to let the JIT compiler
+        // do its job
+        for (int runIndex = 0; runIndex < 5; runIndex++) {
+            double checksum = 0;
+            long startTime = System.nanoTime();
+            for (int movementIndex = 0; movementIndex < MOVEMENT_COUNT; movementIndex++) {
+                final double startX = movements[movementIndex * 4];
+                final double startZ = movements[movementIndex * 4 + 1];
+                final double endX = movements[movementIndex * 4 + 2];
+                final double endZ = movements[movementIndex * 4 + 3];
+                resolveMovementStepByStep(collisionMap, startX, startZ, endX, endZ,
+                        computeStepCount(startX, startZ, endX, endZ), legacyResult);
+                checksum += legacyResult.getX();
+            }
+            final long legacyDuration = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            for (int movementIndex = 0; movementIndex < MOVEMENT_COUNT; movementIndex++) {
+                final double startX = movements[movementIndex * 4];
+                final double startZ = movements[movementIndex * 4 + 1];
+                final double endX = movements[movementIndex * 4 + 2];
+                final double endZ = movements[movementIndex * 4 + 3];
+                collisionGrid.resolveMovement(startX, startZ, endX, endZ,
+                        computeStepCount(startX, startZ, endX, endZ), result);
+                checksum -= result.getX();
+            }
+            final long duration = System.nanoTime() - startTime;
+            System.out.println("Run " + runIndex + ": step by step " + (legacyDuration / MOVEMENT_COUNT)
+                    + " ns/movement, grid " + (duration / MOVEMENT_COUNT) + " ns/movement (checksum " + checksum
+                    + ")");
+        }
+    }
+
+    private static int computeStepCount(final double startX, final double startZ, final double endX,
+            final double endZ) {
+        final double distance = new Vector3(startX, 0.5, startZ).distance(endX, 0.5, endZ);
+        return ((int) Math.ceil(distance / CollisionGrid.STEP_LENGTH));
+    }
+
+    /**
+     * Legacy algorithm formerly used in the game state
+     */
+    private static void resolveMovementStepByStep(final boolean[][] collisionMap, final double playerStartX,
+            final double playerStartZ, final double playerEndX, final double playerEndZ, final int stepCount,
+            final Vector3 store) {
+        double playerX, playerZ;
+        double stepX = stepCount == 0 ? 0 : (playerEndX - playerStartX) / stepCount;
+        double stepZ = stepCount == 0 ? 0 : (playerEndZ - playerStartZ) / stepCount;
+        boolean collisionFound = false;
+        double correctX = playerStartX, correctZ = playerStartZ;
+        int tmpX, tmpZ;
+        for (int i = 1; i <= stepCount && !collisionFound; i++) {
+            playerX = playerStartX + (stepX * i);
+            playerZ = playerStartZ + (stepZ * i);
+            for (int z = 0; z < 2 && !collisionFound; z++)
+                for (int x = 0; x < 2 && !collisionFound; x++) {
+                    tmpX = (int) (playerX - 0.2 + (x * 0.4));
+                    tmpZ = (int) (playerZ - 0.2 + (z * 0.4));
+                    if (collisionMap != null && 0 <= tmpX && tmpX < collisionMap.length && 0 <= tmpZ
+                            && tmpZ < collisionMap[tmpX].length)
+                        collisionFound = collisionMap[tmpX][tmpZ];
+                    else
+                        collisionFound = false;
+                }
+            if (!collisionFound) {
+                correctX = playerX;
+                correctZ = playerZ;
+            } else if (stepX != 0 && stepZ != 0) {
+                collisionFound = false;
+                playerZ = playerStartZ + (stepZ * (i - 1));
+                for (int z = 0; z < 2 && !collisionFound; z++)
+                    for (int x = 0; x < 2 && !collisionFound; x++) {
+                        tmpX = (int) (playerX - 0.2 + (x * 0.4));
+                        tmpZ = (int) (playerZ - 0.2 + (z * 0.4));
+                        if (collisionMap != null && 0 <= tmpX && tmpX < collisionMap.length && 0 <= tmpZ
+                                && tmpZ < collisionMap[tmpX].length)
+                            collisionFound = collisionMap[tmpX][tmpZ];
+                        else
+                            collisionFound = false;
+                    }
+                if (!collisionFound) {
+                    correctX = playerX;
+                    correctZ = playerZ;
+                } else {
+                    collisionFound = false;
+                    playerX = playerStartX + (stepX * (i - 1));
+                    playerZ = playerStartZ + (stepZ * i);
+                    for (int z = 0; z < 2 && !collisionFound; z++)
+                        for (int x = 0; x < 2 && !collisionFound; x++) {
+                            tmpX = (int) (playerX - 0.2 + (x * 0.4));
+                            tmpZ = (int) (playerZ - 0.2 + (z * 0.4));
+                            if (collisionMap != null && 0 <= tmpX && tmpX < collisionMap.length && 0 <= tmpZ
+                                    && tmpZ < collisionMap[tmpX].length)
+                                collisionFound = collisionMap[tmpX][tmpZ];
+                            else
+                                collisionFound = false;
+                        }
+                    if (!collisionFound) {
+                        correctX = playerX;
+                        correctZ = playerZ;
+                    }
+                }
+            }
+        }
+        store.set(correctX, store.getY(), correctZ);
+    }
+}
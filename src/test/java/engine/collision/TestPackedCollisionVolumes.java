@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.collision;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.ardor3d.bounding.BoundingBox;
+import com.ardor3d.math.Vector3;
+import com.ardor3d.util.export.binary.BinaryExporter;
+
+/**
+ * Benchmark of the loading of the collision volumes of a synthetic level
+ * containing 100000 boxes, it compares the former file format (Ardor3D binary
+ * savables written one after the other) with the packed file format with and
+ * without spatial index. The loading includes the creation of the tree
+ *
+ * @author Julien Gouesse
+ *
+ */
+public class TestPackedCollisionVolumes {
+
+    private static final int BOX_COUNT = 100000;
+
+    private static final int RUN_COUNT = 3;
+
+    private static final int QUERY_COUNT = 10000;
+
+    private interface TreeLoader {
+        public BoundingBoxTree load(final File file) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        final Random random = new Random(BOX_COUNT);
+        // the walls occupy about one cell out of four like in
+        // TestBoundingBoxTree
+        final int side = (int) Math.ceil(Math.sqrt(BOX_COUNT * 4.0));
+        final List<BoundingBox> boxes = new ArrayList<>(BOX_COUNT);
+        final boolean[] occupied = new boolean[side * side];
+        while (boxes.size() < BOX_COUNT) {
+            final int cellIndex = random.nextInt(side * side);
+            if (!occupied[cellIndex]) {
+                occupied[cellIndex] = true;
+                boxes.add(new BoundingBox(new Vector3(cellIndex % side + 0.5, 0.5, cellIndex / side + 0.5), 0.5, 0.5,
+                        0.5));
+            }
+        }
+        final File savablesFile = File.createTempFile("collision", ".abin");
+        savablesFile.deleteOnExit();
+        try (final OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(savablesFile))) {
+            final BinaryExporter binaryExporter = new BinaryExporter();
+            for (final BoundingBox box : boxes)
+                binaryExporter.save(box, outputStream);
+        }
+        final PackedCollisionVolumes packedCollisionVolumes = new PackedCollisionVolumes(boxes);
+        final File packedFile = File.createTempFile("collision", PackedCollisionVolumes.FILE_EXTENSION);
+        packedFile.deleteOnExit();
+        try (final OutputStream outputStream = new FileOutputStream(packedFile)) {
+            packedCollisionVolumes.write(outputStream, false);
+        }
+        final File indexedPackedFile = File.createTempFile("collision", PackedCollisionVolumes.FILE_EXTENSION);
+        indexedPackedFile.deleteOnExit();
+        try (final OutputStream outputStream = new FileOutputStream(indexedPackedFile)) {
+            packedCollisionVolumes.write(outputStream, true);
+        }
+        final BoundingBoxTree referenceTree = new BoundingBoxTree(boxes);
+        measure("savables", savablesFile, referenceTree, random, file -> {
+            try (final InputStream inputStream = new FileInputStream(file)) {
+                return (new BoundingBoxTree(PackedCollisionVolumes.readSavables(inputStream)));
+            }
+        });
+        measure("packed", packedFile, referenceTree, random,
+                file -> PackedCollisionVolumes.read(file.toURI().toURL()).createTree());
+        measure("packed with spatial index", indexedPackedFile, referenceTree, random,
+                file -> PackedCollisionVolumes.read(file.toURI().toURL()).createTree());
+    }
+
+    private static void measure(final String label, final File file, final BoundingBoxTree referenceTree,
+            final Random random, final TreeLoader loader) throws IOException {
+        long minDuration = Long.MAX_VALUE;
+        BoundingBoxTree tree = null;
+        for (int runIndex = 0; runIndex < RUN_COUNT; runIndex++) {
+            final long startTime = System.nanoTime();
+            tree = loader.load(file);
+            minDuration = Math.min(minDuration, System.nanoTime() - startTime);
+        }
+        // checks that the loaded tree gives the same results than the tree
+        // built from the boxes
+        final int side = (int) Math.ceil(Math.sqrt(BOX_COUNT * 4.0));
+        final Vector3 center = new Vector3();
+        final Vector3 halfExtents = new Vector3(0.2, 0.4, 0.2);
+        final Vector3 displacement = new Vector3();
+        int mismatchCount = 0;
+        for (int queryIndex = 0; queryIndex < QUERY_COUNT; queryIndex++) {
+            center.set(random.nextDouble() * side, 0.5, random.nextDouble() * side);
+            displacement.set(random.nextDouble() * 4 - 2, 0, random.nextDouble() * 4 - 2);
+            if (Math.abs(tree.sweep(center, halfExtents, displacement)
+                    - referenceTree.sweep(center, halfExtents, displacement)) > 1e-6)
+                mismatchCount++;
+        }
+        System.out.println(label + ": " + file.length() + " bytes, " + tree.getBoxCount() + " boxes loaded in "
+                + (minDuration / 1000000.0) + " ms, consistency check: "
+                + (mismatchCount == 0 ? "OK" : "NOK (" + mismatchCount + ")"));
+    }
+}
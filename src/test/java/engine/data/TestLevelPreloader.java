@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.data;
+
+/**
+ * Benchmark of the preload of the levels, it compares the time spent in
+ * loading a level when the player picks it, without and with a preload
+ * performed while he was in the menus. It checks that the data of a cancelled
+ * preload and those exceeding the budget are released, except when the
+ * cancelled level is picked during its preload
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public class TestLevelPreloader {
+
+    private static final String[][] LEVELS = new String[][] { { "0", "/abin/LID0.abin", null },
+            { "1", "/abin/LID1.abin", "/abin/LID1.collision.abin" }, { "2", "/abin/LID2.abin", null },
+            { "3", "/abin/LID3.abin", null } };
+
+    private static final long BUDGET = 256L * 1024L * 1024L;
+
+    public static void main(String[] args) throws InterruptedException {
+        for (final String[] levelData : LEVELS) {
+            // cold load
+            Level level = createLevel(levelData);
+            long startTime = System.nanoTime();
+            level.loadMainModel(0);
+            level.readCollisionVolumes();
+            final long coldDuration = System.nanoTime() - startTime;
+            // load after a preload, the player spends some time in the menus
+            level = createLevel(levelData);
+            final LevelPreloader preloader = new LevelPreloader(BUDGET, 0);
+            preloader.request(level);
+            Thread.sleep(3000);
+            preloader.commit(level);
+            startTime = System.nanoTime();
+            level.loadMainModel(0);
+            level.readCollisionVolumes();
+            final long warmDuration = System.nanoTime() - startTime;
+            // load when the player picks the level just after the request
+            level = createLevel(levelData);
+            preloader.request(level);
+            preloader.commit(level);
+            startTime = System.nanoTime();
+            level.loadMainModel(0);
+            level.readCollisionVolumes();
+            final long hastyDuration = System.nanoTime() - startTime;
+            System.out.println("Level " + levelData[0] + ": cold " + (coldDuration / 1000000) + " ms, preloaded "
+                    + (warmDuration / 1000) + " us, picked during the preload " + (hastyDuration / 1000000)
+                    + " ms, preload " + (preloader.getLatestPreloadDuration() / 1000000) + " ms for "
+                    + (preloader.getLatestPreloadSizeInBytes() / 1024) + " KB, " + preloader.getHitCount()
+                    + " hits, " + preloader.getMissCount() + " misses");
+        }
+        // another level is picked
+        final Level preloadedLevel = createLevel(LEVELS[3]);
+        final Level pickedLevel = createLevel(LEVELS[2]);
+        LevelPreloader preloader = new LevelPreloader(BUDGET, 0);
+        preloader.request(preloadedLevel);
+        preloader.commit(pickedLevel);
+        Thread.sleep(3000);
+        System.out.println("Cancellation: " + preloader.getCancellationCount() + " cancelled, "
+                + preloader.getMissCount() + " misses, data " + (preloadedLevel.getMainModel() == null
+                        && preloadedLevel.getLoadedDataSizeInBytes() == 0 ? "released" : "NOT released"));
+        // the preloaded level is picked after another request, while it's
+        // still being loaded
+        final Level firstLevel = createLevel(LEVELS[3]);
+        final Level secondLevel = createLevel(LEVELS[2]);
+        preloader = new LevelPreloader(BUDGET, 0);
+        preloader.request(firstLevel);
+        Thread.sleep(100);
+        preloader.request(secondLevel);
+        preloader.commit(firstLevel);
+        firstLevel.loadMainModel(0);
+        firstLevel.readCollisionVolumes();
+        Thread.sleep(3000);
+        System.out.println("Cancelled level picked during its preload: " + preloader.getCancellationCount()
+                + " cancelled, " + preloader.getHitCount() + " hits, data "
+                + (firstLevel.getMainModel() != null ? "kept" : "NOT kept") + ", other data "
+                + (secondLevel.getMainModel() == null ? "released" : "NOT released"));
+        // the budget is too small
+        final Level bigLevel = createLevel(LEVELS[3]);
+        preloader = new LevelPreloader(1024L * 1024L, 0);
+        preloader.request(bigLevel);
+        Thread.sleep(3000);
+        System.out.println("Budget: " + preloader.getRejectionCount() + " rejected, data "
+                + (bigLevel.getMainModel() == null ? "released" : "NOT released"));
+    }
+
+    private static Level createLevel(final String[] levelData) {
+        return (new Level("Level " + levelData[0], levelData[0], levelData[1], levelData[2], null, null, null, null,
+                null, null));
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+
+import com.ardor3d.math.Vector3;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.util.export.binary.BinaryImporter;
+
+import jfpsm.conversion.ArdorToChunkedLevelConverter;
+
+/**
+ * Benchmark of the streaming of a chunked level, it converts the Ardor3D binary
+ * file of Bagnolet into tiles, walks across the level and compares the resident
+ * bytes and the stream-in latency with the loading of the whole level. Then, it
+ * walks back and forth across the border of a tile to check that the
+ * hysteresis prevents the tiles from being loaded again and again
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public class TestLevelStreamingManager {
+
+    private static final String LEVEL_RESOURCE_NAME = "/abin/LID3.abin";
+
+    private static final double STREAMING_RADIUS = 128;
+
+    /** distance covered by the player during a frame */
+    private static final double STEP = 2;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final File directory = Files.createTempDirectory("chunks").toFile();
+        directory.deleteOnExit();
+        final URL url = TestLevelStreamingManager.class.getResource(LEVEL_RESOURCE_NAME);
+        long startTime = System.nanoTime();
+        final Node levelNode = (Node) new BinaryImporter().load(url);
+        System.out.println("Whole level: loaded in " + ((System.nanoTime() - startTime) / 1000000) + " ms");
+        final File manifestFile = new File(directory,
+                new File(ChunkedLevelLayout.getManifestResourceName(LEVEL_RESOURCE_NAME)).getName());
+        new ArdorToChunkedLevelConverter().convert(levelNode, ArdorToChunkedLevelConverter.DEFAULT_TILE_SIZE,
+                manifestFile);
+        for (final File file : directory.listFiles())
+            file.deleteOnExit();
+        final ChunkedLevelLayout layout = ChunkedLevelLayout.read(manifestFile.toURI().toURL());
+        float minX = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY;
+        float minZ = Float.POSITIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (final ChunkedLevelLayout.Tile tile : layout.getTiles()) {
+            minX = Math.min(minX, tile.getMinX());
+            maxX = Math.max(maxX, tile.getMaxX());
+            minZ = Math.min(minZ, tile.getMinZ());
+            maxZ = Math.max(maxZ, tile.getMaxZ());
+        }
+        System.out.println("Chunked level: " + layout.getTiles().size() + " tiles, "
+                + (layout.getByteSize() / 1024) + " KB");
+        final Node mainModel = new Node("main");
+        final LevelStreamingManager streamingManager = new LevelStreamingManager(layout, mainModel,
+                STREAMING_RADIUS, STREAMING_RADIUS + layout.getTileSize() / 2);
+        final Vector3 location = new Vector3(minX, 0, minZ);
+        startTime = System.nanoTime();
+        streamingManager.preload(location);
+        System.out.println("Preload: " + ((System.nanoTime() - startTime) / 1000000) + " ms, "
+                + streamingManager.getResidentTileCount() + " tiles");
+        // walks along the diagonal of the level, back and forth across the
+        // border of a tile in the middle of the level
+        final double length = Math.hypot(maxX - minX, maxZ - minZ);
+        final int frameCount = (int) Math.ceil(length / STEP);
+        long maxUpdateDuration = 0, totalUpdateDuration = 0;
+        for (int frameIndex = 0; frameIndex <= frameCount; frameIndex++) {
+            final double ratio = frameIndex / (double) frameCount;
+            location.set(minX + ratio * (maxX - minX), 0, minZ + ratio * (maxZ - minZ));
+            if (frameIndex == frameCount / 2) {
+                // the first period is ignored as the player jumps to the
+                // border
+                int streamedInTileCount = 0, streamedOutTileCount = 0;
+                final double borderX = Math.floor(location.getX() / layout.getTileSize()) * layout.getTileSize();
+                for (int backAndForthIndex = 0; backAndForthIndex < 220; backAndForthIndex++) {
+                    if (backAndForthIndex == 20) {
+                        streamedInTileCount = streamingManager.getStreamedInTileCount();
+                        streamedOutTileCount = streamingManager.getStreamedOutTileCount();
+                    }
+                    // triangle wave between -20 and +20
+                    final int phase = backAndForthIndex % 20;
+                    location.setX(borderX - 20 + 2 * STEP * (phase < 10 ? phase : 20 - phase));
+                    streamingManager.update(location);
+                    Thread.sleep(16);
+                }
+                System.out.println("Back and forth across x=" + borderX + ": "
+                        + (streamingManager.getStreamedInTileCount() - streamedInTileCount) + " tiles streamed in, "
+                        + (streamingManager.getStreamedOutTileCount() - streamedOutTileCount)
+                        + " tiles streamed out, " + streamingManager.getResidentTileCount() + " tiles resident");
+            }
+            final long updateStartTime = System.nanoTime();
+            streamingManager.update(location);
+            final long updateDuration = System.nanoTime() - updateStartTime;
+            maxUpdateDuration = Math.max(maxUpdateDuration, updateDuration);
+            totalUpdateDuration += updateDuration;
+            Thread.sleep(16);
+        }
+        System.out.println("Walk: " + frameCount + " frames, update " + (totalUpdateDuration / frameCount / 1000)
+                + " us on average, " + (maxUpdateDuration / 1000) + " us at most");
+        print(streamingManager, layout);
+        streamingManager.dispose();
+        System.out.println("Disposal: " + streamingManager.getResidentTileCount() + " tiles resident, "
+                + mainModel.getNumberOfChildren() + " tiles attached");
+    }
+
+    private static void print(final LevelStreamingManager streamingManager, final ChunkedLevelLayout layout) {
+        System.out.println("  " + streamingManager.getStreamedInTileCount() + " tiles streamed in, "
+                + streamingManager.getStreamedOutTileCount() + " streamed out, "
+                + streamingManager.getDiscardedTileCount() + " discarded, "
+                + streamingManager.getFailedTileCount() + " failed");
+        System.out.println("  resident: " + (streamingManager.getResidentByteCount() / 1024) + " KB, at most "
+                + (streamingManager.getResidentByteCountHighWaterMark() / 1024) + " KB out of "
+                + (layout.getByteSize() / 1024) + " KB");
+        System.out.println("  stream-in latency: " + (streamingManager.getAverageStreamInLatency() / 1000000)
+                + " ms on average, " + (streamingManager.getMaxStreamInLatency() / 1000000) + " ms at most");
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.List;
+
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.util.export.binary.BinaryImporter;
+
+import jfpsm.service.MappedLevelExporter;
+
+/**
+ * Benchmark of the loading of the levels, it converts the Ardor3D binary files
+ * of the levels into mapped level files and compares the load time and the
+ * memory footprint of both formats
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public class TestMappedLevelImporter {
+
+    private static final String[] LEVEL_RESOURCE_NAMES = new String[] { "/abin/LID0.abin", "/abin/LID1.abin",
+            "/abin/LID2.abin", "/abin/LID3.abin" };
+
+    private static final int RUN_COUNT = 5;
+
+    private interface LevelLoader {
+        public Node load() throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        final File directory = Files.createTempDirectory("mlvl").toFile();
+        directory.deleteOnExit();
+        for (final String resourceName : LEVEL_RESOURCE_NAMES) {
+            final URL url = TestMappedLevelImporter.class.getResource(resourceName);
+            final File mappedLevelFile = new File(directory,
+                    new File(MappedLevelImporter.getMappedResourceName(resourceName)).getName());
+            mappedLevelFile.deleteOnExit();
+            new MappedLevelExporter().save((Node) new BinaryImporter().load(url), mappedLevelFile);
+            final URL mappedLevelUrl = mappedLevelFile.toURI().toURL();
+            System.out.println(resourceName + ": " + new File(url.getFile()).length() + " bytes, "
+                    + mappedLevelFile.length() + " bytes once converted");
+            measure("binary importer", () -> (Node) new BinaryImporter().load(url));
+            measure("mapped level importer", () -> new MappedLevelImporter().load(mappedLevelUrl));
+        }
+    }
+
+    private static void measure(final String label, final LevelLoader loader) throws IOException {
+        final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans();
+        final List<BufferPoolMXBean> bufferPools = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class);
+        long minDuration = Long.MAX_VALUE, maxHeapPeak = 0, maxDirectMemory = 0, maxMappedMemory = 0;
+        for (int runIndex = 0; runIndex < RUN_COUNT; runIndex++) {
+            System.gc();
+            long heapBefore = 0, directBefore = 0, mappedBefore = 0;
+            for (final MemoryPoolMXBean pool : heapPools)
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                    heapBefore += pool.getUsage().getUsed();
+                }
+            for (final BufferPoolMXBean pool : bufferPools)
+                if ("direct".equals(pool.getName()))
+                    directBefore = pool.getMemoryUsed();
+                else if ("mapped".equals(pool.getName()))
+                    mappedBefore = pool.getMemoryUsed();
+            final long startTime = System.nanoTime();
+            final Node levelNode = loader.load();
+            minDuration = Math.min(minDuration, System.nanoTime() - startTime);
+            long heapPeak = 0;
+            for (final MemoryPoolMXBean pool : heapPools)
+                if (pool.getType() == MemoryType.HEAP)
+                    heapPeak += pool.getPeakUsage().getUsed();
+            maxHeapPeak = Math.max(maxHeapPeak, heapPeak - heapBefore);
+            for (final BufferPoolMXBean pool : bufferPools)
+                if ("direct".equals(pool.getName()))
+                    maxDirectMemory = Math.max(maxDirectMemory, pool.getMemoryUsed() - directBefore);
+                else if ("mapped".equals(pool.getName()))
+                    maxMappedMemory = Math.max(maxMappedMemory, pool.getMemoryUsed() - mappedBefore);
+            // keeps the level reachable until the end of the measurement
+            if (levelNode.getNumberOfChildren() < 0)
+                System.out.println(levelNode);
+        }
+        System.out.println("  " + label + ": " + (minDuration / 1000) + " us, heap peak "
+                + (maxHeapPeak / 1024) + " KB, direct memory " + (maxDirectMemory / 1024) + " KB, mapped memory "
+                + (maxMappedMemory / 1024) + " KB");
+    }
+}
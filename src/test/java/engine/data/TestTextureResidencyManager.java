@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.data;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+
+import javax.imageio.ImageIO;
+
+import com.ardor3d.image.Image;
+import com.ardor3d.image.ImageDataFormat;
+import com.ardor3d.image.PixelDataType;
+
+import com.ardor3d.image.Texture;
+import com.ardor3d.image.util.ImageLoader;
+import com.ardor3d.image.util.ImageLoaderUtil;
+import com.ardor3d.renderer.state.RenderState.StateType;
+import com.ardor3d.renderer.state.TextureState;
+import com.ardor3d.scenegraph.Node;
+import com.ardor3d.scenegraph.Spatial;
+import com.ardor3d.util.TextureKey;
+import com.ardor3d.util.geom.BufferUtils;
+import com.ardor3d.util.resource.ResourceLocatorTool;
+import com.ardor3d.util.resource.SimpleResourceLocator;
+
+import engine.misc.SimpleDeallocationHelper;
+
+/**
+ * Headless test of the manager of the decoded images of the textures, it loads
+ * the levels one after the other as when the player switches between them,
+ * simulates the upload of their textures and compares the size of the decoded
+ * images kept in memory without and with a budget. It checks that the evicted
+ * images are decoded again when their levels are loaded again
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public class TestTextureResidencyManager {
+
+    private static final String[][] LEVELS = new String[][] { { "0", "/abin/LID0.abin" }, { "1", "/abin/LID1.abin" },
+            { "2", "/abin/LID2.abin" }, { "3", "/abin/LID3.abin" }, { "0", "/abin/LID0.abin" } };
+
+    /** fake OpenGL context */
+    private static final Object GL_CONTEXT_REP = new Object();
+
+    private static int textureIdCount;
+
+    /**
+     * Image loader based on Image I/O, the loader of the game needs JOGL
+     */
+    private static final class ImageIOImageLoader implements ImageLoader {
+
+        @Override
+        public Image load(final InputStream is, final boolean flipped) throws IOException {
+            final BufferedImage bufferedImage = ImageIO.read(is);
+            final Image image;
+            if (bufferedImage == null)
+                image = null;
+            else {
+                final int width = bufferedImage.getWidth();
+                final int height = bufferedImage.getHeight();
+                final ByteBuffer data = BufferUtils.createByteBuffer(width * height * 4);
+                for (int y = 0; y < height; y++)
+                    for (int x = 0; x < width; x++) {
+                        final int argb = bufferedImage.getRGB(x, flipped ? height - 1 - y : y);
+                        data.put((byte) (argb >> 16)).put((byte) (argb >> 8)).put((byte) argb)
+                                .put((byte) (argb >> 24));
+                    }
+                data.flip();
+                image = new Image(ImageDataFormat.RGBA, PixelDataType.UnsignedByte, width, height, data, null);
+            }
+            return (image);
+        }
+    }
+
+    public static void main(String[] args) throws URISyntaxException {
+        ImageLoaderUtil.registerDefaultHandler(new ImageIOImageLoader());
+        // finds the textures like the game
+        ResourceLocatorTool.addResourceLocator(ResourceLocatorTool.TYPE_TEXTURE,
+                new SimpleResourceLocator(TestTextureResidencyManager.class.getResource("/images")));
+        for (final long budget : new long[] { Long.MAX_VALUE, 8L * 1024L * 1024L }) {
+            final TextureResidencyManager textureResidencyManager = new TextureResidencyManager(budget,
+                    new SimpleDeallocationHelper());
+            System.out.println("Budget: " + (budget == Long.MAX_VALUE ? "none" : (budget / 1024) + " KB"));
+            for (final String[] levelData : LEVELS) {
+                final Level level = new Level("Level " + levelData[0], levelData[0], levelData[1], null, null, null,
+                        null, null, null, null);
+                final Node mainModel = level.loadMainModel(0);
+                upload(mainModel);
+                final long previousHitCount = textureResidencyManager.getHitCount();
+                final long previousMissCount = textureResidencyManager.getMissCount();
+                textureResidencyManager.register(mainModel);
+                final int evictedImageCount = textureResidencyManager.enforceBudget(GL_CONTEXT_REP);
+                System.out.println("Level " + levelData[0] + ": "
+                        + (textureResidencyManager.getHitCount() - previousHitCount) + " hits, "
+                        + (textureResidencyManager.getMissCount() - previousMissCount) + " misses, "
+                        + evictedImageCount + " evicted, " + textureResidencyManager.size() + " images resident ("
+                        + (textureResidencyManager.getResidentSizeInBytes() / 1024) + " KB, at most "
+                        + (textureResidencyManager.getResidentSizeHighWaterMark() / 1024) + " KB), "
+                        + (textureResidencyManager.getEvictedSizeInBytes() / 1024) + " KB evicted so far");
+                // the player leaves the level
+                level.removeDisposableSpatials();
+                System.gc();
+            }
+        }
+    }
+
+    /**
+     * Simulates the upload of the textures of a spatial
+     */
+    private static void upload(final Spatial spatial) {
+        spatial.acceptVisitor(visitedSpatial -> {
+            final TextureState textureState = (TextureState) visitedSpatial.getLocalRenderState(StateType.Texture);
+            if (textureState != null)
+                for (int textureUnit = 0; textureUnit <= textureState.getMaxTextureIndexUsed(); textureUnit++) {
+                    final Texture texture = textureState.getTexture(textureUnit);
+                    if (texture != null && texture.getTextureKey() != null) {
+                        final TextureKey textureKey = texture.getTextureKey();
+                        final Integer textureId = textureKey.getTextureIdForContext(GL_CONTEXT_REP);
+                        if (textureId == null || textureId.intValue() == 0)
+                            textureKey.setTextureIdForContext(GL_CONTEXT_REP, ++textureIdCount);
+                        textureKey.setClean(GL_CONTEXT_REP);
+                    }
+                }
+        }, false);
+    }
+}
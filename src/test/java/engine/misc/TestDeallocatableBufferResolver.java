@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.misc;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Headless microbenchmark of the resolver of the deallocatable buffers, it
+ * looks for the byte buffers owning the native memory of 100000 direct
+ * buffers (byte buffers, slices and views like those of the meshes) with the
+ * reflection API and with the method handles cached per class, checks that
+ * both give the same results and then measures the whole deallocation walk.
+ * It must be run with --add-opens=java.base/java.nio=ALL-UNNAMED
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public class TestDeallocatableBufferResolver {
+
+    private static final int BUFFER_COUNT = 100000;
+
+    public static void main(String[] args) {
+        final DeallocationHelper deallocationHelper = new DeallocationHelper();
+        // the deallocator isn't selected when the vendor is unknown
+        if (deallocationHelper.getDeallocator() == null)
+            deallocationHelper.setDeallocator(new DeallocationHelper.OracleSunOpenJdkDeallocator());
+        final DeallocatableBufferResolver attachmentResolver = new DeallocatableBufferResolver();
+        final Buffer[] buffers = createBuffers();
+        int mismatchCount = 0;
+        for (final Buffer buffer : buffers) {
+            final ByteBuffer expectedBuffer = deallocationHelper.findDeallocatableBufferReflectively(buffer);
+            if (expectedBuffer == null || deallocationHelper.findDeallocatableBuffer(buffer) != expectedBuffer
+                    || attachmentResolver.findDeallocatableBuffer(buffer) != expectedBuffer)
+                mismatchCount++;
+        }
+        System.out.println("Consistency check: " + (mismatchCount == 0 ? "OK" : "NOK (" + mismatchCount + ")"));
+        // measures several times to let the JIT compiler do its job
+        for (int runIndex = 0; runIndex < 5; runIndex++) {
+            long checksum = 0;
+            long startTime = System.nanoTime();
+            for (final Buffer buffer : buffers)
+                checksum += deallocationHelper.findDeallocatableBufferReflectively(buffer).capacity();
+            final long reflectionDuration = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            for (final Buffer buffer : buffers)
+                checksum += deallocationHelper.findDeallocatableBuffer(buffer).capacity();
+            final long fieldHandleDuration = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            for (final Buffer buffer : buffers)
+                checksum += attachmentResolver.findDeallocatableBuffer(buffer).capacity();
+            final long attachmentHandleDuration = System.nanoTime() - startTime;
+            System.out.println("Run " + runIndex + ": reflection " + (reflectionDuration / BUFFER_COUNT)
+                    + " ns/buffer, field handles " + (fieldHandleDuration / BUFFER_COUNT)
+                    + " ns/buffer, attachment handles " + (attachmentHandleDuration / BUFFER_COUNT)
+                    + " ns/buffer (checksum " + checksum + ")");
+        }
+        // the whole deallocation walk, each buffer owns its native memory here
+        final Buffer[] deallocatedBuffers = createBuffers();
+        final long startTime = System.nanoTime();
+        for (final Buffer buffer : deallocatedBuffers)
+            deallocationHelper.deallocate(buffer);
+        System.out.println("Deallocation: " + ((System.nanoTime() - startTime) / BUFFER_COUNT) + " ns/buffer");
+    }
+
+    /**
+     * Creates some direct byte buffers, slices and views, a quarter of each
+     */
+    private static Buffer[] createBuffers() {
+        final Buffer[] buffers = new Buffer[BUFFER_COUNT];
+        for (int bufferIndex = 0; bufferIndex < BUFFER_COUNT; bufferIndex++) {
+            final ByteBuffer byteBuffer = ByteBuffer.allocateDirect(64 + (bufferIndex % 16) * 8)
+                    .order(ByteOrder.nativeOrder());
+            switch (bufferIndex % 4) {
+            case 0:
+                buffers[bufferIndex] = byteBuffer;
+                break;
+            case 1:
+                buffers[bufferIndex] = byteBuffer.slice(8, 32);
+                break;
+            case 2:
+                buffers[bufferIndex] = byteBuffer.asFloatBuffer();
+                break;
+            default:
+                buffers[bufferIndex] = byteBuffer.slice(8, 32).order(ByteOrder.nativeOrder()).asIntBuffer();
+                break;
+            }
+        }
+        return (buffers);
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.misc;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import engine.data.Level;
+
+/**
+ * Headless test of the arena of direct NIO buffers, it loads and unloads the
+ * level 1 fifty times and compares the native memory used by the process when
+ * the buffers of the main model are left to the garbage collector and when
+ * their arena is closed at each unload
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public class TestDirectBufferArena {
+
+    private static final int LOOP_COUNT = 50;
+
+    public static void main(String[] args) throws IOException {
+        final BufferPoolMXBean directBufferPool = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)
+                .stream().filter(bufferPool -> "direct".equals(bufferPool.getName())).findFirst().get();
+        for (final boolean arenaClosed : new boolean[] { false, true }) {
+            System.out.println(arenaClosed ? "Arena closed at each unload:" : "Buffers left to the garbage collector:");
+            long maxRss = 0;
+            for (int loopIndex = 1; loopIndex <= LOOP_COUNT; loopIndex++) {
+                final Level level = new Level("Level 1", "1", "/abin/LID1.abin", "/abin/LID1.collision.abin", null,
+                        null, null, null, null, null);
+                level.loadMainModel(0);
+                final long loadedDirectMemory = directBufferPool.getMemoryUsed();
+                level.removeDisposableSpatials();
+                final DirectBufferArena bufferArena = level.removeBufferArena();
+                if (arenaClosed)
+                    bufferArena.close();
+                final long rss = getResidentSetSize();
+                maxRss = Math.max(maxRss, rss);
+                if (loopIndex == 1 || loopIndex % 10 == 0)
+                    System.out.println("Loop " + loopIndex + ": direct memory " + (loadedDirectMemory / 1024)
+                            + " KB loaded, " + (directBufferPool.getMemoryUsed() / 1024) + " KB after the unload, "
+                            + (DirectBufferArena.getTotalReservedSizeInBytes() / 1024) + " KB in open arenas, RSS "
+                            + (rss / 1024) + " KB");
+            }
+            System.out.println("Maximum RSS: " + (maxRss / 1024) + " KB");
+            System.gc();
+        }
+    }
+
+    /**
+     * Reads the resident set size of the process, only on Linux
+     */
+    private static long getResidentSetSize() throws IOException {
+        long rss = 0;
+        if (Files.exists(Paths.get("/proc/self/status")))
+            for (final String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.US_ASCII))
+                if (line.startsWith("VmRSS:"))
+                    rss = Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+        return (rss);
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.misc;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import engine.data.Level;
+
+/**
+ * Headless test of the slab pool of direct NIO buffers, it loads and unloads
+ * the level 1 twenty times with and without pooling the blocks of its arena,
+ * then it measures the churn of small buffers with and without the pool and
+ * it checks which deleted buffers go back to the pool
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public class TestSlabBufferPool {
+
+    private static final int LOOP_COUNT = 20;
+
+    private static final int BUFFER_COUNT = 100000;
+
+    public static void main(String[] args) {
+        final SlabBufferPool pool = SlabBufferPool.getInstance();
+        for (final long retentionCapInBytes : new long[] { 0, SlabBufferPool.DEFAULT_RETENTION_CAP_IN_BYTES }) {
+            pool.setRetentionCapInBytes(retentionCapInBytes);
+            pool.resetCounters();
+            System.out.println(retentionCapInBytes == 0 ? "Without pooling:" : "With pooling:");
+            long totalLoadDuration = 0;
+            for (int loopIndex = 1; loopIndex <= LOOP_COUNT; loopIndex++) {
+                final Level level = new Level("Level 1", "1", "/abin/LID1.abin", "/abin/LID1.collision.abin", null,
+                        null, null, null, null, null);
+                final long startTime = System.nanoTime();
+                level.loadMainModel(0);
+                // skips the first load that warms up the importer
+                if (loopIndex > 1)
+                    totalLoadDuration += System.nanoTime() - startTime;
+                level.removeDisposableSpatials();
+                level.removeBufferArena().close();
+            }
+            System.out.println("Average load time: " + (totalLoadDuration / ((LOOP_COUNT - 1) * 1000000L)) + " ms");
+            System.out.print(pool.getReport());
+            System.out.println("Free buffers: " + (pool.getFreeSizeInBytes() / 1024) + " KB");
+        }
+        // churn of small buffers similar to those of the meshes
+        final SlabBufferPool churnPool = new SlabBufferPool(SlabBufferPool.DEFAULT_RETENTION_CAP_IN_BYTES);
+        final DeallocationHelper.Deallocator deallocator = new DeallocationHelper.OracleSunOpenJdkDeallocator();
+        final Random random = new Random(0);
+        final int[] capacities = new int[BUFFER_COUNT];
+        for (int bufferIndex = 0; bufferIndex < BUFFER_COUNT; bufferIndex++)
+            capacities[bufferIndex] = 64 + random.nextInt(16384);
+        final ByteBuffer[] buffers = new ByteBuffer[256];
+        for (int runIndex = 0; runIndex < 3; runIndex++) {
+            long startTime = System.nanoTime();
+            for (int bufferIndex = 0; bufferIndex < BUFFER_COUNT; bufferIndex++) {
+                final int slot = bufferIndex % buffers.length;
+                if (buffers[slot] != null)
+                    deallocator.run(buffers[slot]);
+                buffers[slot] = ByteBuffer.allocateDirect(capacities[bufferIndex]);
+            }
+            for (int slot = 0; slot < buffers.length; slot++) {
+                deallocator.run(buffers[slot]);
+                buffers[slot] = null;
+            }
+            final long unpooledDuration = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            for (int bufferIndex = 0; bufferIndex < BUFFER_COUNT; bufferIndex++) {
+                final int slot = bufferIndex % buffers.length;
+                if (buffers[slot] != null)
+                    churnPool.release(buffers[slot]);
+                buffers[slot] = churnPool.acquire(capacities[bufferIndex]);
+            }
+            for (int slot = 0; slot < buffers.length; slot++) {
+                churnPool.release(buffers[slot]);
+                buffers[slot] = null;
+            }
+            final long pooledDuration = System.nanoTime() - startTime;
+            System.out.println("Run " + runIndex + ": " + BUFFER_COUNT + " buffers, allocation and deallocation "
+                    + (unpooledDuration / BUFFER_COUNT) + " ns/buffer, pool " + (pooledDuration / BUFFER_COUNT)
+                    + " ns/buffer");
+        }
+        System.out.print(churnPool.getReport());
+        churnPool.trim();
+        // the deletion of a slice of an arena leaves its block untouched
+        final SimpleDeallocationHelper deallocationHelper = new SimpleDeallocationHelper();
+        final int blockSizeClass = pool.getSizeClass(DirectBufferArena.DEFAULT_BLOCK_SIZE);
+        final DirectBufferArena arena = new DirectBufferArena();
+        final FloatBuffer slice = arena.allocateFloatBuffer(16);
+        final int freeBlockCount = pool.getFreeBufferCount(blockSizeClass);
+        deallocationHelper.deallocate(slice);
+        System.out.println("Free blocks after the deletion of a slice: "
+                + (pool.getFreeBufferCount(blockSizeClass) - freeBlockCount) + " (expected 0)");
+        arena.close();
+        System.out.println("Free blocks after the closing of the arena: "
+                + (pool.getFreeBufferCount(blockSizeClass) - freeBlockCount) + " (expected 1)");
+        // the deletion of an acquired buffer gives it back to the pool, a
+        // foreign buffer is freed even though its capacity is the size of a
+        // class
+        final int freeBufferCount = pool.getFreeBufferCount(0);
+        deallocationHelper.deallocate(pool.acquire(1000).asFloatBuffer());
+        System.out.println("Free buffers after the deletion of an acquired buffer: "
+                + (pool.getFreeBufferCount(0) - freeBufferCount) + " (expected 1)");
+        deallocationHelper.deallocate(ByteBuffer.allocateDirect(pool.getSizeClassCapacity(0)));
+        System.out.println("Free buffers after the deletion of a foreign buffer: "
+                + (pool.getFreeBufferCount(0) - freeBufferCount) + " (expected 1)");
+    }
+}
@@ -0,0 +1,568 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.statemachine;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+import com.ardor3d.framework.CanvasRenderer;
+import com.ardor3d.framework.DisplaySettings;
+import com.ardor3d.framework.NativeCanvas;
+import com.ardor3d.framework.Scene;
+import com.ardor3d.image.Image;
+import com.ardor3d.input.GrabbedState;
+import com.ardor3d.input.Key;
+import com.ardor3d.input.KeyEvent;
+import com.ardor3d.input.KeyState;
+import com.ardor3d.input.KeyboardWrapper;
+import com.ardor3d.input.MouseButton;
+import com.ardor3d.input.MouseCursor;
+import com.ardor3d.input.MouseManager;
+import com.ardor3d.input.PhysicalLayer;
+import com.ardor3d.input.logical.DummyFocusWrapper;
+import com.ardor3d.input.logical.DummyMouseWrapper;
+import com.ardor3d.renderer.Camera;
+import com.ardor3d.renderer.ContextCapabilities;
+import com.ardor3d.renderer.ContextManager;
+import com.ardor3d.renderer.RenderContext;
+import com.ardor3d.renderer.Renderer;
+import com.ardor3d.scenegraph.extension.SwitchNode;
+import com.ardor3d.util.PeekingIterator;
+
+import engine.data.LevelStreamingManager;
+import engine.data.ProfileData;
+import engine.input.Action;
+import engine.input.ActionMap;
+import engine.input.MouseAndKeyboardSettings;
+import engine.misc.FixedStepTimer;
+import engine.misc.FrameProfiler;
+import engine.misc.FrameProfiler.Scope;
+import engine.misc.SettingsProvider;
+import engine.sound.SoundManager;
+import engine.taskmanagement.TaskManager;
+
+/**
+ * Headless runner of the game state, it measures the throughput of the
+ * simulation without any window, any OpenGL context and any sound system. It
+ * loads a level, drives the controllers of the game state and the state
+ * machine of the player with a scripted input source and a timer advanced
+ * manually with a fixed time step, it never renders anything. It reports the
+ * count of simulated ticks per second, the allocation rate and the time spent
+ * in each subsystem. The time spent in each subsystem during the measured
+ * ticks is written into a CSV file per level in the temporary directory.
+ * 
+ * Usage: HeadlessGameStateRunner [tick count] [level identifiers...], it runs
+ * 3600 ticks (one minute at 60 Hz) on the levels 0 to 3 by default. The level
+ * of detail of the animations is disabled by the system property
+ * engine.animationLod=false.
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public class HeadlessGameStateRunner {
+
+    private static final int SIMULATION_RATE = 60;
+
+    private static final int WARM_UP_TICK_COUNT = 600;
+
+    private static final int DEFAULT_TICK_COUNT = 3600;
+
+    /** scopes of the game logic run by the controllers during the update of the scenegraph */
+    private static final EnumSet<Scope> gameLogicScopes = EnumSet.of(Scope.MOVEMENT, Scope.COLLECTIBLES,
+            Scope.TELEPORTERS, Scope.PROJECTILES, Scope.ENEMIES, Scope.OBJECTIVES, Scope.PLAYER_STATE_MACHINE,
+            Scope.ANIMATIONS, Scope.STREAMING);
+
+    /**
+     * Keyboard driven by a script, it emits the key events needed to switch
+     * from the keys pressed during the previous tick to the keys pressed
+     * during the current tick
+     */
+    private static final class ScriptedKeyboardWrapper implements KeyboardWrapper {
+
+        private final EnumSet<Key> pressedKeys = EnumSet.noneOf(Key.class);
+
+        private final ArrayDeque<KeyEvent> events = new ArrayDeque<>();
+
+        private final PeekingIterator<KeyEvent> iterator = new PeekingIterator<KeyEvent>() {
+
+            @Override
+            public boolean hasNext() {
+                return (!events.isEmpty());
+            }
+
+            @Override
+            public KeyEvent peek() {
+                return (events.peekFirst());
+            }
+
+            @Override
+            public KeyEvent next() {
+                return (events.pollFirst());
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public PeekingIterator<KeyEvent> getEvents() {
+            return (iterator);
+        }
+
+        private void press(final EnumSet<Key> keys) {
+            for (final Iterator<Key> it = pressedKeys.iterator(); it.hasNext();) {
+                final Key key = it.next();
+                if (!keys.contains(key)) {
+                    events.add(new KeyEvent(key, KeyState.UP, Character.MIN_VALUE));
+                    it.remove();
+                }
+            }
+            for (final Key key : keys)
+                if (pressedKeys.add(key))
+                    events.add(new KeyEvent(key, KeyState.DOWN, Character.MIN_VALUE));
+        }
+    }
+
+    /**
+     * Script of the input, a cycle of 4 seconds: the player walks forward,
+     * turns, strafes and shoots
+     */
+    private static final EnumSet<Key> getScriptedKeys(final int tick) {
+        final int cycleTick = tick % (4 * SIMULATION_RATE);
+        final EnumSet<Key> keys = EnumSet.noneOf(Key.class);
+        if (cycleTick < 2 * SIMULATION_RATE)
+            keys.add(Key.W);
+        else if (cycleTick < 2.5 * SIMULATION_RATE)
+            keys.add(Key.LEFT);
+        else if (cycleTick < 3.5 * SIMULATION_RATE)
+            keys.add(Key.D);
+        if (cycleTick % 30 < 5)
+            keys.add(Key.SPACE);
+        return (keys);
+    }
+
+    private static final class HeadlessMouseManager implements MouseManager {
+
+        private GrabbedState grabbedState = GrabbedState.NOT_GRABBED;
+
+        @Override
+        public void setCursor(final MouseCursor cursor) {
+        }
+
+        @Override
+        public void setPosition(final int x, final int y) {
+        }
+
+        @Override
+        public void setGrabbed(final GrabbedState state) {
+            grabbedState = state;
+        }
+
+        @Override
+        public GrabbedState getGrabbed() {
+            return (grabbedState);
+        }
+
+        @Override
+        public boolean isSetPositionSupported() {
+            return (false);
+        }
+
+        @Override
+        public boolean isSetGrabbedSupported() {
+            return (false);
+        }
+    }
+
+    /**
+     * Canvas without any window nor OpenGL context, it only provides a camera
+     * and a render context
+     */
+    private static final class HeadlessCanvas implements NativeCanvas, CanvasRenderer {
+
+        private Camera camera;
+
+        private final RenderContext renderContext;
+
+        private MouseManager mouseManager;
+
+        private Scene scene;
+
+        private HeadlessCanvas(final int width, final int height) {
+            super();
+            camera = new Camera(width, height);
+            camera.setFrustumPerspective(45.0, width / (double) height, 1, 1000);
+            renderContext = new RenderContext(this, new ContextCapabilities());
+            ContextManager.addContext(this, renderContext);
+            ContextManager.switchContext(this);
+            renderContext.setCurrentCamera(camera);
+        }
+
+        @Override
+        public void init() {
+        }
+
+        @Override
+        public void draw(final CountDownLatch latch) {
+            // nothing is drawn
+            if (latch != null)
+                latch.countDown();
+        }
+
+        @Override
+        public CanvasRenderer getCanvasRenderer() {
+            return (this);
+        }
+
+        @Override
+        public MouseManager getMouseManager() {
+            return (mouseManager);
+        }
+
+        @Override
+        public void setMouseManager(final MouseManager mouseManager) {
+            this.mouseManager = mouseManager;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean isActive() {
+            return (true);
+        }
+
+        @Override
+        public boolean isClosing() {
+            return (false);
+        }
+
+        @Override
+        public void setVSyncEnabled(final boolean enabled) {
+        }
+
+        @Override
+        public void setTitle(final String title) {
+        }
+
+        @Override
+        public void setIcon(final Image[] iconImages) {
+        }
+
+        @Override
+        public void moveWindowTo(final int locX, final int locY) {
+        }
+
+        @Override
+        public void init(final DisplaySettings settings, final boolean doSwap) {
+        }
+
+        @Override
+        public boolean draw() {
+            return (false);
+        }
+
+        @Override
+        public Camera getCamera() {
+            return (camera);
+        }
+
+        @Override
+        public void setCamera(final Camera camera) {
+            this.camera = camera;
+        }
+
+        @Override
+        public Scene getScene() {
+            return (scene);
+        }
+
+        @Override
+        public void setScene(final Scene scene) {
+            this.scene = scene;
+        }
+
+        @Override
+        public Renderer createRenderer() {
+            return (null);
+        }
+
+        @Override
+        public Renderer getRenderer() {
+            return (null);
+        }
+
+        @Override
+        public void makeCurrentContext() {
+        }
+
+        @Override
+        public void releaseCurrentContext() {
+        }
+
+        @Override
+        public RenderContext getRenderContext() {
+            return (renderContext);
+        }
+
+        @Override
+        public int getFrameClear() {
+            return (0);
+        }
+
+        @Override
+        public void setFrameClear(final int buffers) {
+        }
+    }
+
+    /**
+     * Trigger action that only records the transition instead of firing it,
+     * the simulation goes on
+     */
+    private static final class RecordingTransitionTriggerAction extends TransitionTriggerAction<ScenegraphState, String> {
+
+        private boolean performed;
+
+        private RecordingTransitionTriggerAction() {
+            super(null, null, new ScenegraphTransitionTriggerActionArguments(), null);
+        }
+
+        @Override
+        public void run() {
+            performed = true;
+        }
+    }
+
+    public static void main(String[] args) {
+        final int tickCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TICK_COUNT;
+        final String[] levelIdentifiers;
+        if (args.length > 1) {
+            levelIdentifiers = new String[args.length - 1];
+            System.arraycopy(args, 1, levelIdentifiers, 0, levelIdentifiers.length);
+        } else
+            levelIdentifiers = new String[] { "0", "1", "2", "3" };
+        final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final HeadlessCanvas canvas = new HeadlessCanvas(1920, 1080);
+        final ScriptedKeyboardWrapper keyboardWrapper = new ScriptedKeyboardWrapper();
+        final PhysicalLayer physicalLayer = new PhysicalLayer(keyboardWrapper, DummyMouseWrapper.INSTANCE,
+                DummyFocusWrapper.INSTANCE);
+        final MouseManager mouseManager = new HeadlessMouseManager();
+        canvas.setMouseManager(mouseManager);
+        final ActionMap actionMap = new ActionMap();
+        // same bindings as the game
+        actionMap.setKeyActionBinding(Action.MOVE_FORWARD, Key.W);
+        actionMap.setKeyActionBinding(Action.MOVE_FORWARD, Key.Z);
+        actionMap.setKeyActionBinding(Action.MOVE_FORWARD, Key.NUMPAD8);
+        actionMap.setKeyActionBinding(Action.MOVE_BACKWARD, Key.S);
+        actionMap.setKeyActionBinding(Action.MOVE_BACKWARD, Key.NUMPAD2);
+        actionMap.setKeyActionBinding(Action.STRAFE_LEFT, Key.A);
+        actionMap.setKeyActionBinding(Action.STRAFE_LEFT, Key.Q);
+        actionMap.setKeyActionBinding(Action.STRAFE_LEFT, Key.NUMPAD4);
+        actionMap.setKeyActionBinding(Action.STRAFE_RIGHT, Key.D);
+        actionMap.setKeyActionBinding(Action.STRAFE_RIGHT, Key.NUMPAD6);
+        actionMap.setKeyActionBinding(Action.TURN_LEFT, Key.LEFT);
+        actionMap.setKeyActionBinding(Action.TURN_RIGHT, Key.RIGHT);
+        actionMap.setKeyActionBinding(Action.LOOK_UP, Key.UP);
+        actionMap.setKeyActionBinding(Action.LOOK_DOWN, Key.DOWN);
+        actionMap.setKeyActionBinding(Action.CROUCH, Key.C);
+        actionMap.setMouseButtonActionBinding(Action.CROUCH, MouseButton.MIDDLE);
+        actionMap.setKeyActionBinding(Action.PAUSE, Key.P);
+        actionMap.setKeyActionBinding(Action.RELOAD, Key.R);
+        actionMap.setMouseButtonActionBinding(Action.RELOAD, MouseButton.RIGHT);
+        actionMap.setKeyActionBinding(Action.ACTIVATE, Key.RETURN);
+        actionMap.setKeyActionBinding(Action.RUN, Key.LSHIFT);
+        actionMap.setKeyActionBinding(Action.RUN, Key.RSHIFT);
+        actionMap.setKeyActionBinding(Action.ATTACK, Key.SPACE);
+        actionMap.setMouseButtonActionBinding(Action.ATTACK, MouseButton.LEFT);
+        actionMap.setKeyActionBinding(Action.NEXT_WEAPON, Key.M);
+        actionMap.setMouseWheelMoveActionBinding(Action.NEXT_WEAPON, Boolean.TRUE);
+        actionMap.setKeyActionBinding(Action.PREVIOUS_WEAPON, Key.L);
+        actionMap.setMouseWheelMoveActionBinding(Action.PREVIOUS_WEAPON, Boolean.FALSE);
+        actionMap.setKeyActionBinding(Action.TOGGLE_WIREFRAME_MODE, Key.T);
+        actionMap.setKeyActionBinding(Action.QUIT, Key.ESCAPE);
+        final MouseAndKeyboardSettings mouseAndKeyboardSettings = new MouseAndKeyboardSettings();
+        mouseAndKeyboardSettings.setKeyRotateSpeed(2.2);
+        mouseAndKeyboardSettings.setLookUpDownReversed(false);
+        mouseAndKeyboardSettings.setMousePointerNeverHidden(false);
+        mouseAndKeyboardSettings.setMouseRotateSpeed(0.005);
+        mouseAndKeyboardSettings.setMoveSpeed(5);
+        // uses the default settings, the configuration file doesn't exist
+        final SettingsProvider settingsProvider = new SettingsProvider("headless",
+                new File(System.getProperty("java.io.tmpdir"), HeadlessGameStateRunner.class.getName() + "/config"));
+        settingsProvider.load();
+        // the level of detail of the animations can be disabled to measure its
+        // gain
+        settingsProvider.setAnimationLodEnabled(
+                Boolean.parseBoolean(System.getProperty("engine.animationLod", Boolean.TRUE.toString())));
+        // the level can be kept in memory to measure the duration of a restart
+        settingsProvider.setResidentLevelEnabled(
+                Boolean.parseBoolean(System.getProperty("engine.residentLevel", Boolean.FALSE.toString())));
+        System.out.println(
+                "level; ticks; ticks/s; allocated MB/s; allocated KB/tick; input us/tick; scenegraph us/tick; scenegraph p99 us/tick; movement us/tick; collectibles us/tick; teleporters us/tick; projectiles us/tick; enemies us/tick; objectives us/tick; player state machine us/tick; keyframe interpolation us/tick; level streaming us/tick; other controllers us/tick");
+        for (final String levelIdentifier : levelIdentifiers) {
+            final FixedStepTimer simulationTimer = new FixedStepTimer(SIMULATION_RATE);
+            final FrameProfiler frameProfiler = new FrameProfiler(tickCount);
+            final TaskManager taskManager = new TaskManager();
+            final RecordingTransitionTriggerAction toPauseMenuTriggerAction = new RecordingTransitionTriggerAction();
+            final RecordingTransitionTriggerAction toPauseMenuTriggerActionForExitConfirm = new RecordingTransitionTriggerAction();
+            final RecordingTransitionTriggerAction toGameOverTriggerAction = new RecordingTransitionTriggerAction();
+            final GameState gameState = new GameState(canvas, physicalLayer, toPauseMenuTriggerAction,
+                    toPauseMenuTriggerActionForExitConfirm, toGameOverTriggerAction, null, new SoundManager(false),
+                    taskManager, mouseManager, actionMap, actionMap.clone(), mouseAndKeyboardSettings,
+                    mouseAndKeyboardSettings.clone(), new ProfileData(), settingsProvider, simulationTimer, frameProfiler);
+            // the state shows its root only when it is a child of a switch
+            // node
+            final SwitchNode switchNode = new SwitchNode();
+            switchNode.attachChild(gameState.getRoot());
+            // checks that the player never gets into a collision volume
+            gameState.setCollisionVolumePenetrationChecked(true);
+            // loads the level
+            gameState.setLevelIdentifier(levelIdentifier);
+            final long loadingStartTime = System.nanoTime();
+            gameState.init();
+            taskManager.executeAllTasks();
+            final long loadingDuration = System.nanoTime() - loadingStartTime;
+            gameState.setEnabled(true);
+            final double timePerFrame = simulationTimer.getTimePerFrame();
+            int gameOverTick = -1;
+            long allocatedBytes = 0;
+            long startTime = 0;
+            for (int tick = 0; tick < WARM_UP_TICK_COUNT + tickCount; tick++) {
+                if (tick == WARM_UP_TICK_COUNT) {
+                    frameProfiler.reset();
+                    frameProfiler.setEnabled(true);
+                    allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+                    startTime = System.nanoTime();
+                }
+                keyboardWrapper.press(getScriptedKeys(tick));
+                simulationTimer.step();
+                frameProfiler.begin(Scope.INPUT);
+                gameState.getLogicalLayer().checkTriggers(timePerFrame);
+                frameProfiler.end(Scope.INPUT);
+                frameProfiler.begin(Scope.SCENEGRAPH);
+                switchNode.updateGeometricState(timePerFrame, true);
+                frameProfiler.end(Scope.SCENEGRAPH);
+                frameProfiler.endFrame();
+                if (gameOverTick == -1 && toGameOverTriggerAction.performed)
+                    gameOverTick = tick;
+            }
+            final int measuredTickCount = tickCount;
+            {
+                final long duration = System.nanoTime() - startTime;
+                allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBytes;
+                final StringBuilder builder = new StringBuilder();
+                builder.append(levelIdentifier).append("; ").append(measuredTickCount);
+                builder.append("; ").append(format(measuredTickCount / (duration / 1.0e9)));
+                builder.append("; ").append(format((allocatedBytes / (1024.0 * 1024.0)) / (duration / 1.0e9)));
+                builder.append("; ").append(format(allocatedBytes / 1024.0 / measuredTickCount));
+                builder.append("; ").append(format(frameProfiler.getTotalTime(Scope.INPUT) / 1000.0 / measuredTickCount));
+                builder.append("; ")
+                        .append(format(frameProfiler.getTotalTime(Scope.SCENEGRAPH) / 1000.0 / measuredTickCount));
+                builder.append("; ")
+                        .append(format(frameProfiler.getPercentileFrameTime(Scope.SCENEGRAPH, 99) / 1000.0));
+                long gameLogicTime = 0;
+                for (final Scope scope : gameLogicScopes) {
+                    builder.append("; ")
+                            .append(format(frameProfiler.getTotalTime(scope) / 1000.0 / measuredTickCount));
+                    gameLogicTime += frameProfiler.getTotalTime(scope);
+                }
+                builder.append("; ").append(format(
+                        (frameProfiler.getTotalTime(Scope.SCENEGRAPH) - gameLogicTime) / 1000.0 / measuredTickCount));
+                if (gameOverTick != -1)
+                    builder.append(" (game over at the tick ").append(gameOverTick).append(")");
+                System.out.println(builder.toString());
+            }
+            final File profileFile = new File(System.getProperty("java.io.tmpdir"),
+                    HeadlessGameStateRunner.class.getName() + "/level" + levelIdentifier + "-profile.csv");
+            profileFile.getParentFile().mkdirs();
+            try (final FileWriter fileWriter = new FileWriter(profileFile)) {
+                frameProfiler.writeCsv(fileWriter, measuredTickCount);
+            } catch (IOException ioe) {
+                throw new RuntimeException("Failed in writing the profile into " + profileFile.getAbsolutePath(), ioe);
+            }
+            System.out.println("Level " + levelIdentifier + " loaded in " + (loadingDuration / 1000000) + " ms, "
+                    + gameState.getPerceptionScheduler().getPerformedCheckCount() + " perception checks, "
+                    + gameState.getProjectilePool().getHighWaterMark() + " projectiles at most ("
+                    + gameState.getProjectilePool().getOverflowCount() + " out of the pool), "
+                    + gameState.getAnimationLod().getInterpolationCount() + " keyframe interpolations ("
+                    + gameState.getAnimationLod().getSkippedInterpolationCount() + " skipped), "
+                    + gameState.getModelTemplateCache().getMissCount() + " model templates imported ("
+                    + gameState.getModelTemplateCache().getHitCount() + " reused)");
+            if (gameState.getCollisionVolumeMovementCount() > 0)
+                System.out.println("Level " + levelIdentifier + " collision volumes: "
+                        + gameState.getCollisionVolumeMovementCount() + " movements resolved, "
+                        + gameState.getCollisionVolumePenetrationCount() + " ended inside a volume");
+            final LevelStreamingManager streamingManager = gameState.getLevelStreamingManager();
+            if (streamingManager != null)
+                System.out.println("Level " + levelIdentifier + " streaming: "
+                        + streamingManager.getResidentTileCount() + "/"
+                        + streamingManager.getLayout().getTiles().size() + " tiles resident ("
+                        + (streamingManager.getResidentByteCount() / 1024) + " KB, at most "
+                        + (streamingManager.getResidentByteCountHighWaterMark() / 1024) + " KB out of "
+                        + (streamingManager.getLayout().getByteSize() / 1024) + " KB), "
+                        + streamingManager.getStreamedInTileCount() + " streamed in, "
+                        + streamingManager.getStreamedOutTileCount() + " streamed out, "
+                        + streamingManager.getDiscardedTileCount() + " discarded, stream-in latency "
+                        + (streamingManager.getAverageStreamInLatency() / 1000000) + " ms on average, "
+                        + (streamingManager.getMaxStreamInLatency() / 1000000) + " ms at most");
+            gameState.setEnabled(false);
+            gameState.cleanup();
+            taskManager.executeAllTasks();
+            if (settingsProvider.isResidentLevelEnabled()) {
+                // restarts the level as after a game over
+                gameState.setLevelIdentifier(levelIdentifier);
+                final long restartStartTime = System.nanoTime();
+                gameState.init();
+                taskManager.executeAllTasks();
+                final long restartDuration = System.nanoTime() - restartStartTime;
+                gameState.setEnabled(true);
+                for (int tick = 0; tick < WARM_UP_TICK_COUNT; tick++) {
+                    keyboardWrapper.press(getScriptedKeys(tick));
+                    simulationTimer.step();
+                    gameState.getLogicalLayer().checkTriggers(timePerFrame);
+                    switchNode.updateGeometricState(timePerFrame, true);
+                }
+                System.out.println("Level " + levelIdentifier + " restarted in " + (restartDuration / 1000000)
+                        + " ms (" + gameState.getResidentLevelHitCount() + " restart(s) with the resident level)");
+                gameState.setEnabled(false);
+                gameState.cleanup();
+                taskManager.executeAllTasks();
+            }
+        }
+    }
+
+    private static String format(final double value) {
+        return (String.format(Locale.ENGLISH, "%.2f", Double.valueOf(value)));
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2006-2021 Julien Gouesse
+ * 
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package engine.telemetry;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import engine.data.Level;
+import engine.misc.DirectBufferArena;
+
+/**
+ * Headless test of the ledger of the direct buffers, it loads the level 1 and
+ * unloads it correctly, then it loads it again and "forgets" to close the
+ * arena of its main model so that the report shows the outstanding buffers
+ * with their stack traces, and finally it drops this arena to check that its
+ * buffers are counted as collected
+ * 
+ * @author Julien Gouesse
+ *
+ */
+public class TestDirectMemoryLedger {
+
+    public static void main(String[] args) throws JMException, InterruptedException {
+        final DirectMemoryLedger ledger = DirectMemoryLedger.getInstance();
+        ledger.setAllocationTraceRecorded(true);
+        ledger.setCurrentStateName("LoadingDisplayState");
+        Level level = new Level("Level 1", "1", "/abin/LID1.abin", "/abin/LID1.collision.abin", null, null, null,
+                null, null, null);
+        level.loadMainModel(0);
+        ledger.setCurrentStateName("UnloadingDisplayState");
+        level.removeDisposableSpatials();
+        level.removeBufferArena().close();
+        System.out.println("After a correct unload:");
+        System.out.print(ledger.getReport());
+        ledger.setCurrentStateName("LoadingDisplayState");
+        level = new Level("Level 1", "1", "/abin/LID1.abin", "/abin/LID1.collision.abin", null, null, null, null,
+                null, null);
+        level.loadMainModel(0);
+        level.removeDisposableSpatials();
+        DirectBufferArena leakedArena = level.removeBufferArena();
+        System.out.println("After an unload without closing the arena:");
+        System.out.print(ledger.getReport());
+        final ObjectName objectName = new ObjectName("engine.telemetry:type=DirectMemoryLedger");
+        System.out.println("MBean: " + ManagementFactory.getPlatformMBeanServer().getAttribute(objectName,
+                "OutstandingBytes") + " bytes outstanding");
+        System.out.println("Arena still open: " + !leakedArena.isClosed());
+        leakedArena = null;
+        level = null;
+        for (int gcIndex = 0; gcIndex < 5 && ledger.getOutstandingBufferCount() > 0; gcIndex++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        System.out.println("After the collection of the arena:");
+        System.out.print(ledger.getReport());
+    }
+}